@@ -18,15 +18,30 @@
 package com.github.jnidzwetzki.bitfinex.v2;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
-import com.google.common.base.Stopwatch;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONTokener;
@@ -42,10 +57,15 @@ import com.github.jnidzwetzki.bitfinex.v2.callback.api.PositionHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.TradeHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.WalletHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.CandlestickHandler;
-import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelCallbackHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelDispatcher;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelFrameTokenizer;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelResubscriber;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelSubscription;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.RawOrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.SubscriptionState;
 import com.github.jnidzwetzki.bitfinex.v2.callback.channel.TickHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.AuthCallback;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.CommandCallbackHandler;
@@ -65,6 +85,7 @@ import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTickerCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTradesCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ConnectionCapabilities;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
@@ -80,6 +101,10 @@ import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.RawOrderbookManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.TradeManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.WalletManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.RingBuffer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class BitfinexApiBroker implements Closeable {
 
@@ -87,6 +112,11 @@ public class BitfinexApiBroker implements Closeable {
 	 * The bitfinex api
 	 */
 	public final static String BITFINEX_URI = "wss://api.bitfinex.com/ws/2";
+	
+	/**
+	 * The timeout of an async subscription
+	 */
+	public final static long SUBSCRIPTION_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
 
 	/**
 	 * broker configuration
@@ -104,9 +134,14 @@ public class BitfinexApiBroker implements Closeable {
 	private WebsocketClientEndpoint websocketEndpoint;
 
 	/**
-	 * The channel map
+	 * The subscribed channels
+	 */
+	private final ChannelRegistry channelRegistry;
+	
+	/**
+	 * The factories for the channel dispatchers
 	 */
-	private final Map<Integer, BitfinexStreamSymbol> channelIdSymbolMap;
+	private final Map<Class<? extends BitfinexStreamSymbol>, Function<BitfinexStreamSymbol, ChannelDispatcher>> channelDispatcherFactories;
 	
 	/**
 	 * The tick manager
@@ -182,6 +217,71 @@ public class BitfinexApiBroker implements Closeable {
 	 * The sequence number auditor
 	 */
 	private final SequenceNumberAuditor sequenceNumberAuditor;
+	
+	/**
+	 * The ring buffer between the websocket receive thread and the dispatch thread (null if disabled)
+	 */
+	private volatile RingBuffer<String> ringBuffer;
+	
+	/**
+	 * Is a reconnect requested by the dispatch thread pending
+	 */
+	private final AtomicBoolean reconnectPending;
+	
+	/**
+	 * The number of received messages
+	 */
+	private final LongAdder receivedMessages;
+	
+	/**
+	 * The scheduler for delayed tasks (e.g. the resubscription)
+	 */
+	private final ScheduledExecutorService scheduler;
+	
+	/**
+	 * The executor for the deliveries of the conflating callbacks
+	 */
+	private final ExecutorService conflationExecutorService;
+	
+	/**
+	 * The executor of the command scheduler (null if the command scheduler is not active)
+	 */
+	private final ScheduledExecutorService commandExecutorService;
+	
+	/**
+	 * The executor services of the managers that are owned by the connection
+	 */
+	private final List<ExecutorService> ownedExecutorServices;
+	
+	/**
+	 * The outbound command pipeline (null if the commands are sent directly)
+	 */
+	private final CommandScheduler commandScheduler;
+	
+	/**
+	 * The resubscriber of the channels after a reconnect
+	 */
+	private final ChannelResubscriber channelResubscriber;
+	
+	/**
+	 * The resubscription of the channels of the last reconnect
+	 */
+	private volatile CompletableFuture<List<BitfinexStreamSymbol>> resubscription;
+	
+	/**
+	 * The arbiter of redundant feeds (null if the connection is not arbitrated)
+	 */
+	private volatile FeedArbiter feedArbiter;
+	
+	/**
+	 * The feed of the connection in the arbiter
+	 */
+	private volatile int arbitratedFeed;
+	
+	/**
+	 * The tokenizer for channel frames (only used by the websocket receive thread)
+	 */
+	private final ChannelFrameTokenizer channelFrameTokenizer;
 
 	private final static Logger logger = LoggerFactory.getLogger(BitfinexApiBroker.class);
 
@@ -194,23 +294,83 @@ public class BitfinexApiBroker implements Closeable {
 		this.callbackRegistry = callbackRegistry;
 		this.channelHandler = new HashMap<>();
 
-		this.channelIdSymbolMap = new ConcurrentHashMap<>();
+		this.channelRegistry = new ChannelRegistry();
+		this.channelDispatcherFactories = new HashMap<>();
 		this.capabilities = ConnectionCapabilities.NO_CAPABILITIES;
 		this.sequenceNumberAuditor = new SequenceNumberAuditor();
+		this.channelFrameTokenizer = new ChannelFrameTokenizer();
+		this.reconnectPending = new AtomicBoolean(false);
 		this.lastHeartbeat = new AtomicLong();
-		this.quoteManager = new QuoteManager(this, configuration.getExecutorService(), callbackRegistry);
-		this.orderbookManager = new OrderbookManager(this, configuration.getExecutorService(), callbackRegistry);
-		this.rawOrderbookManager = new RawOrderbookManager(this, configuration.getExecutorService(), callbackRegistry);
-		this.orderManager = new OrderManager(this, configuration.getExecutorService(), callbackRegistry);
-		this.tradeManager = new TradeManager(this, configuration.getExecutorService(), callbackRegistry);
-		this.positionManager = new PositionManager(this, configuration.getExecutorService(), callbackRegistry);
-		this.walletManager = new WalletManager(this, configuration.getExecutorService(), callbackRegistry);
+		this.receivedMessages = new LongAdder();
+		this.ownedExecutorServices = new ArrayList<>();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("bitfinex-scheduler-%d")
+				.setDaemon(true)
+				.build());
+		this.conflationExecutorService = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+				.setNameFormat("bitfinex-conflation-%d")
+				.setDaemon(true)
+				.build());
+		
+		if(configuration.isCommandSchedulerActive()) {
+			this.commandExecutorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("bitfinex-commands-%d")
+					.setDaemon(true)
+					.build());
+			this.commandScheduler = new CommandScheduler(commandExecutorService, this::transmitCommand, configuration);
+		} else {
+			this.commandExecutorService = null;
+			this.commandScheduler = null;
+		}
+		
+		// The subscribe commands are rate limited only once, by the command scheduler if it is active
+		if(commandScheduler != null) {
+			this.channelResubscriber = new ChannelResubscriber(channelRegistry, commandScheduler::submit, 
+					scheduler, configuration.getResubscriptionTimeoutMillis(), 
+					configuration.getResubscriptionAttempts());
+		} else {
+			this.channelResubscriber = new ChannelResubscriber(channelRegistry, this::sendCommand, scheduler, 
+					configuration.getResubscriptionRate(), configuration.getResubscriptionTimeoutMillis(), 
+					configuration.getResubscriptionAttempts());
+		}
+		
+		this.resubscription = CompletableFuture.completedFuture(Collections.emptyList());
+		
+		if(configuration.getCallbackMonitor() != null) {
+			callbackRegistry.setCallbackMonitor(configuration.getCallbackMonitor());
+		}
+		
+		this.quoteManager = new QuoteManager(this, createExecutorService(ManagerType.QUOTES), callbackRegistry);
+		this.orderbookManager = new OrderbookManager(this, createExecutorService(ManagerType.ORDERBOOKS), callbackRegistry);
+		this.rawOrderbookManager = new RawOrderbookManager(this, createExecutorService(ManagerType.RAW_ORDERBOOKS), callbackRegistry);
+		this.orderManager = new OrderManager(this, createExecutorService(ManagerType.ORDERS), callbackRegistry);
+		this.tradeManager = new TradeManager(this, createExecutorService(ManagerType.TRADES), callbackRegistry);
+		this.positionManager = new PositionManager(this, createExecutorService(ManagerType.POSITIONS), callbackRegistry);
+		this.walletManager = new WalletManager(this, createExecutorService(ManagerType.WALLETS), callbackRegistry);
 		this.connectionFeatureManager = new ConnectionFeatureManager(this, configuration.getExecutorService());
 
         setupChannelHandler();
+        setupChannelDispatcherFactories();
         setupCommandCallbacks();
 	}
 
+	/**
+	 * Create the executor service of the manager
+	 * @param managerType
+	 * @return
+	 */
+	private ExecutorService createExecutorService(final ManagerType managerType) {
+		final ExecutorProfile executorProfile = configuration.getExecutorProfile(managerType);
+		final ExecutorService executorService = executorProfile.createExecutorService(configuration);
+		
+		// The shared executor service is owned by the caller
+		if(executorProfile != ExecutorProfile.SHARED) {
+			ownedExecutorServices.add(executorService);
+		}
+		
+		return executorService;
+	}
+
 	/**
 	 * Setup the channel handler
 	 */
@@ -282,10 +442,90 @@ public class BitfinexApiBroker implements Closeable {
 			callbackRegistry.acceptExchangeOrderNotification(eo);
 		});
 		
+		notificationHandler.onOrderRequestError(callbackRegistry::acceptOrderRequestError);
+		
 		// General notification
 		channelHandler.put("n", notificationHandler);
 	}
 
+	/**
+	 * Setup the factories for the channel dispatchers. The handlers are 
+	 * created once per channel, when the channel is subscribed.
+	 */
+	private void setupChannelDispatcherFactories() {
+		channelDispatcherFactories.put(BitfinexTickerSymbol.class, symbol -> {
+			final BitfinexTickerSymbol tickerSymbol = (BitfinexTickerSymbol) symbol;
+			final TickHandler handler = new TickHandler();
+			handler.onTickEvent(callbackRegistry::acceptTickEvent);
+			handler.setFixedPointScale(getFixedPointScale(tickerSymbol.getBitfinexCurrencyPair()));
+			return new ChannelDispatcher(symbol, handler, new SubscribeTickerCommand(tickerSymbol));
+		});
+		
+		channelDispatcherFactories.put(BitfinexExecutedTradeSymbol.class, symbol -> {
+			final BitfinexExecutedTradeSymbol tradeSymbol = (BitfinexExecutedTradeSymbol) symbol;
+			final ExecutedTradeHandler handler = new ExecutedTradeHandler();
+			handler.onExecutedTradeEvent(callbackRegistry::acceptExecutedTradeEvent);
+			handler.setFixedPointScale(getFixedPointScale(tradeSymbol.getBitfinexCurrencyPair()));
+			return new ChannelDispatcher(symbol, handler, new SubscribeTradesCommand(tradeSymbol));
+		});
+		
+		channelDispatcherFactories.put(BitfinexCandlestickSymbol.class, symbol -> {
+			final BitfinexCandlestickSymbol candlestickSymbol = (BitfinexCandlestickSymbol) symbol;
+			final CandlestickHandler handler = new CandlestickHandler();
+			handler.onCandlesticksEvent(callbackRegistry::acceptCandlesticksEvent);
+			handler.setFixedPointScale(getFixedPointScale(candlestickSymbol.getSymbol()));
+			return new ChannelDispatcher(symbol, handler, new SubscribeCandlesCommand(candlestickSymbol));
+		});
+		
+		channelDispatcherFactories.put(OrderbookConfiguration.class, symbol -> {
+			final OrderbookConfiguration orderbookConfiguration = (OrderbookConfiguration) symbol;
+			final OrderbookHandler handler = new OrderbookHandler();
+			handler.onOrderbookEvent(callbackRegistry::acceptOrderbookEvent);
+			handler.setFixedPointScale(getFixedPointScale(orderbookConfiguration.getCurrencyPair()));
+			return new ChannelDispatcher(symbol, handler, new SubscribeOrderbookCommand(orderbookConfiguration), 
+					checksum -> orderbookManager.verifyChecksum(orderbookConfiguration, checksum));
+		});
+		
+		channelDispatcherFactories.put(RawOrderbookConfiguration.class, symbol -> {
+			final RawOrderbookConfiguration orderbookConfiguration = (RawOrderbookConfiguration) symbol;
+			final RawOrderbookHandler handler = new RawOrderbookHandler();
+			handler.onOrderbookEvent(callbackRegistry::acceptRawOrderbookEvent);
+			handler.setFixedPointScale(getFixedPointScale(orderbookConfiguration.getCurrencyPair()));
+			return new ChannelDispatcher(symbol, handler, new SubscribeRawOrderbookCommand(orderbookConfiguration), 
+					checksum -> rawOrderbookManager.verifyChecksum(orderbookConfiguration, checksum));
+		});
+	}
+	
+	/**
+	 * Get the fixed point scale for the currency pair
+	 * @param currencyPair
+	 * @return the scale or FixedPoint.NO_SCALE if BigDecimals are used
+	 */
+	private int getFixedPointScale(final BitfinexCurrencyPair currencyPair) {
+		if(configuration.getNumericMode() != NumericMode.FIXED_POINT) {
+			return FixedPoint.NO_SCALE;
+		}
+		
+		return configuration.getFixedPointScale(currencyPair);
+	}
+	
+	/**
+	 * Build the dispatcher for the given symbol
+	 * @param symbol
+	 * @return the dispatcher or null, if the stream type is unknown
+	 */
+	private ChannelDispatcher buildChannelDispatcher(final BitfinexStreamSymbol symbol) {
+		final Function<BitfinexStreamSymbol, ChannelDispatcher> factory 
+			= channelDispatcherFactories.get(symbol.getClass());
+		
+		if(factory == null) {
+			logger.error("Unknown stream type: {}", symbol);
+			return null;
+		}
+		
+		return factory.apply(symbol);
+	}
+
 	/**
 	 * Setup the command callbacks
 	 */
@@ -300,18 +540,23 @@ public class BitfinexApiBroker implements Closeable {
 
 		final SubscribedCallback subscribed = new SubscribedCallback();
 		subscribed.onSubscribedEvent((channelId, symbol) -> {
-			synchronized (channelIdSymbolMap) {
-				channelIdSymbolMap.put(channelId, symbol);
-				channelIdSymbolMap.notifyAll();
+			final ChannelDispatcher dispatcher = buildChannelDispatcher(symbol);
+			
+			channelRegistry.subscribed(channelId, symbol, dispatcher);
+			
+			final FeedArbiter arbiter = feedArbiter;
+			if(arbiter != null) {
+				arbiter.feedSubscribed(arbitratedFeed, symbol);
 			}
 		});
 		commandCallbacks.put("subscribed", subscribed);
 
 		UnsubscribedCallback unsubscribed = new UnsubscribedCallback();
 		unsubscribed.onUnsubscribedChannelEvent(channelId -> {
-			synchronized (channelIdSymbolMap) {
-				channelIdSymbolMap.remove(channelId);
-				channelIdSymbolMap.notifyAll();
+			final ChannelSubscription subscription = channelRegistry.unsubscribed(channelId);
+			
+			if(subscription != null) {
+				feedUnsubscribed(subscription.getSymbol());
 			}
 		});
 		commandCallbacks.put("unsubscribed", unsubscribed);
@@ -324,7 +569,11 @@ public class BitfinexApiBroker implements Closeable {
 		final ConfCallback conf = new ConfCallback();
 		conf.onConnectionFeatureEvent(connectionFeatureManager::setActiveConnectionFeatures);
 		commandCallbacks.put("conf", conf);
-		commandCallbacks.put("error", new ErrorCallback());
+		
+		final ErrorCallback error = new ErrorCallback();
+		error.onSubscribeErrorEvent((symbol, message) -> channelRegistry.subscriptionFailed(symbol, 
+				new APIException("Subscription of " + symbol + " failed: " + message)));
+		commandCallbacks.put("error", error);
 	}
 	
 	/**
@@ -336,34 +585,30 @@ public class BitfinexApiBroker implements Closeable {
 			sequenceNumberAuditor.reset();
 			CountDownLatch connectionReadyLatch = new CountDownLatch(4);
 
-			Closeable authSuccessEventCallback = callbackRegistry.onAuthenticationSuccessEvent(c -> {
+			Closeable authSuccessEventCallback = callbackRegistry.onAuthenticationSuccessEvent(callbackRegistry.unmonitored(c -> {
 				capabilities = c;
 				authenticated = true;
 				connectionReadyLatch.countDown();
-			});
-			Closeable authFailedCallback = callbackRegistry.onAuthenticationFailedEvent(c -> {
+			}));
+			Closeable authFailedCallback = callbackRegistry.onAuthenticationFailedEvent(callbackRegistry.unmonitored(c -> {
 				capabilities = c;
 				authenticated = false;
 				while (connectionReadyLatch.getCount() != 0) {
 					connectionReadyLatch.countDown();
 				}
-			});
-			Closeable positionInitCallback = callbackRegistry.onPositionsEvent(positions -> {
+			}));
+			Closeable positionInitCallback = callbackRegistry.onPositionsEvent(callbackRegistry.unmonitored(positions -> {
 				connectionReadyLatch.countDown();
-			});
-			Closeable walletsInitCallback = callbackRegistry.onWalletsEvent(wallets -> {
+			}));
+			Closeable walletsInitCallback = callbackRegistry.onWalletsEvent(callbackRegistry.unmonitored(wallets -> {
 				connectionReadyLatch.countDown();
-			});
-			Closeable orderInitCallback = callbackRegistry.onExchangeOrdersEvent(exchangeOrders -> {
+			}));
+			Closeable orderInitCallback = callbackRegistry.onExchangeOrdersEvent(callbackRegistry.unmonitored(exchangeOrders -> {
 				connectionReadyLatch.countDown();
-			});
+			}));
 
-			final URI bitfinexURI = new URI(BITFINEX_URI);
-			websocketEndpoint = new WebsocketClientEndpoint(bitfinexURI, this::websocketCallback);
-			websocketEndpoint.connect();
-			updateConnectionHeartbeat();
+			openWebsocket();
 			
-			connectionFeatureManager.applyConnectionFeatures();
 			if( configuration.isAuthenticationEnabled()) {
 				authenticateAndWait(connectionReadyLatch);
 			}
@@ -374,15 +619,236 @@ public class BitfinexApiBroker implements Closeable {
 			walletsInitCallback.close();
 			orderInitCallback.close();
 
-			if (configuration.isHeartbeatThreadActive()) {
-				heartbeatThread = new Thread(new HeartbeatThread(this, websocketEndpoint));
-				heartbeatThread.start();
-			}
+			startHeartbeatThread();
 		} catch (Exception e) {
 			throw new APIException(e);
 		}
 	}
 
+	/**
+	 * Open the connection without blocking the caller. The websocket is opened on the 
+	 * scheduler of the connection, the future is completed by the authentication and 
+	 * the connection ready events.
+	 * @return the future, completed when the connection is ready (and authenticated)
+	 */
+	public CompletableFuture<Void> connectAsync() {
+		sequenceNumberAuditor.reset();
+		
+		final CompletableFuture<Void> ready = new CompletableFuture<>();
+		final AtomicInteger pendingReadyEvents = new AtomicInteger(4);
+		
+		final Runnable readyEvent = () -> {
+			if(pendingReadyEvents.decrementAndGet() == 0) {
+				ready.complete(null);
+			}
+		};
+		
+		final List<Closeable> readyCallbacks = Arrays.asList(
+			callbackRegistry.onAuthenticationSuccessEvent(callbackRegistry.unmonitored(c -> {
+				capabilities = c;
+				authenticated = true;
+				readyEvent.run();
+			})),
+			callbackRegistry.onAuthenticationFailedEvent(callbackRegistry.unmonitored(c -> {
+				capabilities = c;
+				authenticated = false;
+				ready.completeExceptionally(new APIException(
+						"Unable to perform authentication, capabilities are: " + c));
+			})),
+			callbackRegistry.onPositionsEvent(callbackRegistry.unmonitored(positions -> readyEvent.run())),
+			callbackRegistry.onWalletsEvent(callbackRegistry.unmonitored(wallets -> readyEvent.run())),
+			callbackRegistry.onExchangeOrdersEvent(callbackRegistry.unmonitored(exchangeOrders -> readyEvent.run()))
+		);
+		
+		// Like connect(), an authenticated connection is ready after the timeout
+		final ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+			if(authenticated) {
+				ready.complete(null);
+			} else {
+				ready.completeExceptionally(new APIException(
+						"Unable to perform authentication, capabilities are: " + capabilities));
+			}
+		}, 10, TimeUnit.SECONDS);
+		
+		scheduler.execute(() -> {
+			try {
+				openWebsocket();
+				
+				if(configuration.isAuthenticationEnabled() && ! authenticated) {
+					sendCommand(new AuthCommand(configuration.getAuthNonceProducer()));
+				} else {
+					ready.complete(null);
+				}
+			} catch (Exception e) {
+				ready.completeExceptionally(new APIException(e));
+			}
+		});
+		
+		final CompletableFuture<Void> result = new CompletableFuture<>();
+		
+		ready.whenComplete((r, e) -> {
+			timeout.cancel(false);
+			closeCallbacks(readyCallbacks);
+			
+			if(e != null) {
+				result.completeExceptionally(e);
+				return;
+			}
+			
+			startHeartbeatThread();
+			result.complete(null);
+		});
+		
+		return result;
+	}
+	
+	/**
+	 * Open the websocket and apply the connection features
+	 * @throws Exception
+	 */
+	private void openWebsocket() throws Exception {
+		final URI bitfinexURI = new URI(BITFINEX_URI);
+		websocketEndpoint = new WebsocketClientEndpoint(bitfinexURI, setupMessageConsumer());
+		websocketEndpoint.connect();
+		updateConnectionHeartbeat();
+		
+		connectionFeatureManager.applyConnectionFeatures();
+	}
+	
+	/**
+	 * Start the heartbeat thread, if enabled
+	 */
+	private void startHeartbeatThread() {
+		if (configuration.isHeartbeatThreadActive()) {
+			heartbeatThread = new Thread(new HeartbeatThread(this, websocketEndpoint));
+			heartbeatThread.start();
+		}
+	}
+	
+	/**
+	 * Close the registered callbacks
+	 * @param callbacks
+	 */
+	private void closeCallbacks(final List<Closeable> callbacks) {
+		for(final Closeable callback : callbacks) {
+			try {
+				callback.close();
+			} catch (IOException e) {
+				logger.error("Unable to close callback", e);
+			}
+		}
+	}
+	
+	/**
+	 * Register the pending subscription of the symbol and send the subscribe command. 
+	 * The command is not sent again for pending or active subscriptions (the server 
+	 * rejects duplicate subscriptions). Pending subscriptions fail on subscribe errors 
+	 * and when they are not confirmed within SUBSCRIPTION_TIMEOUT_MILLIS.
+	 * @param symbol
+	 * @param subscribeCommand
+	 * @return the pending or active subscription
+	 */
+	public ChannelSubscription subscribeChannel(final BitfinexStreamSymbol symbol, 
+			final AbstractAPICommand subscribeCommand) {
+		
+		final ChannelSubscription subscription;
+		
+		synchronized (channelRegistry) {
+			final ChannelSubscription existingSubscription = channelRegistry.getSubscription(symbol);
+			subscription = channelRegistry.subscribing(symbol);
+			
+			if(subscription == existingSubscription) {
+				return subscription;
+			}
+		}
+		
+		final ScheduledFuture<?> timeout = scheduler.schedule(() -> channelRegistry.subscriptionFailed(symbol, 
+				new TimeoutException("Subscription of " + symbol + " timed out")), 
+				SUBSCRIPTION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		
+		subscription.getSubscribedFuture().whenComplete((channelId, e) -> timeout.cancel(false));
+		
+		sendCommand(subscribeCommand);
+		return subscription;
+	}
+	
+	/**
+	 * Subscribe the channel of the symbol without blocking the caller
+	 * @param symbol
+	 * @param subscribeCommand
+	 * @return the future, completed with the channel id when the channel is subscribed and 
+	 *         the first data (the snapshot) is dispatched. The future of a pending subscription 
+	 *         is shared, it fails when the subscription is rejected or times out.
+	 */
+	public CompletableFuture<Integer> subscribeAsync(final BitfinexStreamSymbol symbol, 
+			final AbstractAPICommand subscribeCommand) {
+		
+		return subscribeChannel(symbol, subscribeCommand).getSnapshotFuture();
+	}
+
+	/**
+	 * Setup the consumer for the received messages. The messages are dispatched 
+	 * on the websocket receive thread or handed over to the ring buffer.
+	 * @return
+	 */
+	private Consumer<String> setupMessageConsumer() {
+		if(configuration.getRingBufferSize() == 0) {
+			return this::websocketCallback;
+		}
+		
+		if(ringBuffer == null) {
+			final RingBuffer<String> newRingBuffer = new RingBuffer<>(configuration.getRingBufferSize(), 
+					configuration.getRingBufferWaitStrategy(), configuration.getRingBufferOverflowPolicy(), 
+					this::getConflationKey);
+			
+			newRingBuffer.addConsumer("bitfinex-dispatcher", this::websocketCallback);
+			newRingBuffer.start();
+			ringBuffer = newRingBuffer;
+		}
+		
+		return ringBuffer::publish;
+	}
+	
+	/**
+	 * Get the conflation key of a message. Only ticker updates are conflated, 
+	 * the channel id is the key.
+	 * 
+	 * @param message
+	 * @return the key or RingBuffer.NO_CONFLATION_KEY
+	 */
+	private long getConflationKey(final String message) {
+		
+		// Sequence numbers have to be complete
+		if(connectionFeatureManager.isConnectionFeatureActive(BitfinexConnectionFeature.SEQ_ALL)) {
+			return RingBuffer.NO_CONFLATION_KEY;
+		}
+		
+		// Updates are formatted like [chanId,[...]]
+		if(! message.startsWith("[")) {
+			return RingBuffer.NO_CONFLATION_KEY;
+		}
+		
+		int channel = 0;
+		int pos = 1;
+		
+		while(pos < message.length() && pos < 10 && Character.isDigit(message.charAt(pos))) {
+			channel = channel * 10 + (message.charAt(pos) - '0');
+			pos++;
+		}
+		
+		if(pos == 1 || ! message.startsWith(",[", pos)) {
+			return RingBuffer.NO_CONFLATION_KEY;
+		}
+		
+		final ChannelDispatcher dispatcher = channelRegistry.getDispatcher(channel);
+		
+		if(dispatcher == null || ! (dispatcher.getSymbol() instanceof BitfinexTickerSymbol)) {
+			return RingBuffer.NO_CONFLATION_KEY;
+		}
+		
+		return channel;
+	}
+
 	/**
 	 * Execute the authentication and wait until the socket is ready
 	 * @throws InterruptedException
@@ -402,7 +868,8 @@ public class BitfinexApiBroker implements Closeable {
 	}
 
 	/**
-	 * Disconnect the websocket
+	 * Disconnect the websocket and release the threads of the connection. 
+	 * The connection can not be reused after it is closed.
 	 */
 	@Override
 	public void close() {
@@ -410,11 +877,34 @@ public class BitfinexApiBroker implements Closeable {
 			heartbeatThread.interrupt();
 			heartbeatThread = null;
 		}
+		
+		// Send the queued commands (e.g. unsubscriptions) before the connection is closed
+		if (commandScheduler != null) {
+			if (websocketEndpoint != null) {
+				commandScheduler.flush();
+			} else {
+				commandScheduler.clear();
+			}
+			
+			commandExecutorService.shutdownNow();
+		}
 
 		if (websocketEndpoint != null) {
 			websocketEndpoint.close();
 			websocketEndpoint = null;
 		}
+		
+		if (ringBuffer != null) {
+			ringBuffer.close();
+			ringBuffer = null;
+		}
+		
+		// The timeouts of the pending order requests are canceled with the scheduler
+		orderManager.failPendingRequests(new APIException("The connection is closed"));
+		
+		scheduler.shutdownNow();
+		conflationExecutorService.shutdown();
+		ownedExecutorServices.forEach(ExecutorService::shutdown);
 	}
 
 	/**
@@ -422,6 +912,18 @@ public class BitfinexApiBroker implements Closeable {
 	 * @param apiCommand
 	 */
 	public void sendCommand(final AbstractAPICommand apiCommand) {
+		if(commandScheduler != null) {
+			commandScheduler.submit(apiCommand);
+		} else {
+			transmitCommand(apiCommand);
+		}
+	}
+	
+	/**
+	 * Write the command to the websocket
+	 * @param apiCommand
+	 */
+	private void transmitCommand(final AbstractAPICommand apiCommand) {
 		try {
 			final String command = apiCommand.getCommand(this);
 			logger.debug("Sending to server: {}", command);
@@ -437,6 +939,7 @@ public class BitfinexApiBroker implements Closeable {
 	 */
 	private void websocketCallback(final String message) {
 		logger.debug("Got message: {}", message);
+		receivedMessages.increment();
 		
 		if(message.startsWith("{")) {
 			handleCommandCallback(message);
@@ -484,12 +987,27 @@ public class BitfinexApiBroker implements Closeable {
 		logger.debug("Channel callback");
 		updateConnectionHeartbeat();
 
-		// JSON callback
-		final JSONArray jsonArray = new JSONArray(new JSONTokener(message));
+		JSONArray jsonArray = null;
 		
+		// The sequence numbers are counted per connection, the duplicates of 
+		// the redundant feeds are audited before they are suppressed
 		if(connectionFeatureManager.isConnectionFeatureActive(BitfinexConnectionFeature.SEQ_ALL)) {
+			jsonArray = new JSONArray(new JSONTokener(message));
 			sequenceNumberAuditor.auditPackage(jsonArray);
 		}
+
+		if(feedArbiter != null && ! isArbitratedFrameDelivered(message)) {
+			return;
+		}
+		
+		if(jsonArray == null) {
+			if(isStreamingFrameDecoderUsable() && decodeChannelFrame(message)) {
+				return;
+			}
+			
+			// JSON callback
+			jsonArray = new JSONArray(new JSONTokener(message));
+		}
 		
 		final int channel = jsonArray.getInt(0);
 		
@@ -500,6 +1018,167 @@ public class BitfinexApiBroker implements Closeable {
 		}
 	}
 
+	/**
+	 * Arbitrate the channel frame against the redundant feeds
+	 * @param message
+	 * @return
+	 */
+	private boolean isArbitratedFrameDelivered(final String message) {
+		final int payloadStart = message.indexOf(',');
+		
+		if(payloadStart == -1) {
+			return true;
+		}
+		
+		int channel = 0;
+		for(int pos = 1; pos < payloadStart; pos++) {
+			final char digit = message.charAt(pos);
+			
+			// Not a channel frame, handled by the JSON path
+			if(digit < '0' || digit > '9') {
+				return true;
+			}
+			
+			channel = channel * 10 + (digit - '0');
+		}
+		
+		final ChannelDispatcher dispatcher = channel == 0 ? null : channelRegistry.getDispatcher(channel);
+		
+		// Signaling channel and unknown channels are not arbitrated
+		if(dispatcher == null) {
+			return true;
+		}
+		
+		// The payload without the channel id and the sequence number
+		final int payloadEnd = connectionFeatureManager.isConnectionFeatureActive(BitfinexConnectionFeature.SEQ_ALL) 
+				? message.lastIndexOf(',') : message.length() - 1;
+		
+		if(message.startsWith("\"hb\"", payloadStart + 1)) {
+			return true;
+		}
+		
+		// The local books of the connection only see the delivered updates, 
+		// the checksums are verified against the merged data
+		if(message.startsWith("\"cs\"", payloadStart + 1)) {
+			handleArbitratedChecksum(channel, dispatcher, message.substring(payloadStart + 6, payloadEnd));
+			return false;
+		}
+		
+		return feedArbiter.accept(arbitratedFeed, dispatcher.getSymbol(), 
+				message.substring(payloadStart + 1, payloadEnd));
+	}
+
+	/**
+	 * Verify the checksum of the channel against the merged data of the redundant 
+	 * feeds. On a mismatch, the channel is subscribed again and the new snapshot 
+	 * replaces the merged data.
+	 * @param channel
+	 * @param dispatcher
+	 * @param checksumValue
+	 */
+	private void handleArbitratedChecksum(final int channel, final ChannelDispatcher dispatcher, 
+			final String checksumValue) {
+		
+		final int checksum;
+		
+		try {
+			checksum = Integer.parseInt(checksumValue.trim());
+		} catch (NumberFormatException e) {
+			logger.error("Unable to parse checksum {} of channel {}", checksumValue, channel);
+			return;
+		}
+		
+		// Resubscription is already in progress
+		final ChannelSubscription subscription = channelRegistry.getSubscription(channel);
+		if(subscription == null || subscription.getState() != SubscriptionState.ACTIVE) {
+			return;
+		}
+		
+		if(feedArbiter.verifyChecksum(arbitratedFeed, dispatcher.getSymbol(), checksum)) {
+			return;
+		}
+		
+		logger.warn("Checksum mismatch of the merged data on channel {} ({}), resubscribing channel", 
+				channel, dispatcher.getSymbol());
+		
+		resubscribeChannel(channel, dispatcher);
+	}
+
+	/**
+	 * The streaming decoder is used for market data channels, as long as
+	 * no sequence numbers need to be audited
+	 * @return
+	 */
+	private boolean isStreamingFrameDecoderUsable() {
+		return configuration.isStreamingFrameDecoderActive() 
+				&& ! connectionFeatureManager.isConnectionFeatureActive(BitfinexConnectionFeature.SEQ_ALL);
+	}
+
+	/**
+	 * Decode the channel frame with the streaming tokenizer
+	 * @param message
+	 * @return true if the frame was handled, false if the frame needs to be handled by the JSON path
+	 */
+	private boolean decodeChannelFrame(final String message) {
+		try {
+			channelFrameTokenizer.reset(message);
+			channelFrameTokenizer.beginArray();
+			final int channel = channelFrameTokenizer.nextInt();
+			
+			// Signaling channel and unknown channels are handled by the JSON path
+			if(channel == 0) {
+				return false;
+			}
+			
+			final ChannelDispatcher dispatcher = channelRegistry.getDispatcher(channel);
+			
+			if(dispatcher == null) {
+				return false;
+			}
+			
+			if(channelFrameTokenizer.peek() == ChannelFrameTokenizer.Token.STRING) {
+				return decodeChannelDataString(channel, dispatcher);
+			} 
+			
+			dispatcher.dispatch(channelFrameTokenizer);
+			channelRegistry.dataReceived(channel);
+			return true;
+		} catch (APIException e) {
+			logger.debug("Unable to decode frame {}, using JSON path", message, e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Decode the channel data with has a string at first position
+	 * @param channel
+	 * @param dispatcher
+	 * @return
+	 * @throws APIException
+	 */
+	private boolean decodeChannelDataString(final int channel, final ChannelDispatcher dispatcher) 
+			throws APIException {
+		
+		if(channelFrameTokenizer.isNextString("hb")) {
+			quoteManager.updateChannelHeartbeat(dispatcher.getSymbol());
+			return true;
+		} else if(channelFrameTokenizer.isNextString("te")) {
+			channelFrameTokenizer.skipValue();
+			dispatcher.dispatch(channelFrameTokenizer);
+			channelRegistry.dataReceived(channel);
+			return true;
+		} else if(channelFrameTokenizer.isNextString("tu")) {
+			// Ignore tu messages (see issue #13)
+			return true;
+		} else if(channelFrameTokenizer.isNextString("cs")) {
+			channelFrameTokenizer.skipValue();
+			handleChecksum(channel, dispatcher, channelFrameTokenizer.nextInt());
+			return true;
+		}
+		
+		return false;
+	}
+
 	/**
 	 * Handle signaling channel data
 	 * @param message
@@ -529,17 +1208,18 @@ public class BitfinexApiBroker implements Closeable {
 	 */
 	private void handleChannelData(final JSONArray jsonArray) {
 		final int channel = jsonArray.getInt(0);
-		final BitfinexStreamSymbol channelSymbol = channelIdSymbolMap.get(channel);
-		if (channelSymbol == null) {
+		final ChannelDispatcher dispatcher = channelRegistry.getDispatcher(channel);
+		if (dispatcher == null) {
 			logger.error("Unable to determine symbol for channel {} / data is {} ", channel, jsonArray);
-			reconnect();
+			requestReconnect();
 			return;
 		}
 		try {
 			if (jsonArray.get(1) instanceof String) {
-				handleChannelDataString(jsonArray, channelSymbol);
+				handleChannelDataString(jsonArray, dispatcher);
 			} else {
-				handleChannelDataArray(jsonArray, channelSymbol);
+				dispatcher.dispatch(jsonArray.getJSONArray(1));
+				channelRegistry.dataReceived(channel);
 			}
 		} catch (APIException e) {
 			logger.error("Got exception while handling callback", e);
@@ -549,60 +1229,88 @@ public class BitfinexApiBroker implements Closeable {
 	/**
 	 * Handle the channel data with has a string at first position
 	 * @param jsonArray
-	 * @param channelSymbol
+	 * @param dispatcher
 	 * @throws APIException
 	 */
 	private void handleChannelDataString(final JSONArray jsonArray, 
-			final BitfinexStreamSymbol channelSymbol) throws APIException {
+			final ChannelDispatcher dispatcher) throws APIException {
 		
 		final String value = jsonArray.getString(1);
 		
 		if("hb".equals(value)) {
-			quoteManager.updateChannelHeartbeat(channelSymbol);		
+			quoteManager.updateChannelHeartbeat(dispatcher.getSymbol());		
 		} else if("te".equals(value)) {
-			final JSONArray subarray = jsonArray.getJSONArray(2);			
-			final ChannelCallbackHandler handler = new ExecutedTradeHandler();
-			handler.handleChannelData(channelSymbol, subarray);
+			dispatcher.dispatch(jsonArray.getJSONArray(2));
+			channelRegistry.dataReceived(jsonArray.getInt(0));
 		} else if("tu".equals(value)) {
 			// Ignore tu messages (see issue #13)
+		} else if("cs".equals(value)) {
+			handleChecksum(jsonArray.getInt(0), dispatcher, jsonArray.getInt(2));
 		} else {
 			logger.error("Unable to process: {}", jsonArray);
 		}
 	}
 
 	/**
-	 * Handle the channel data with has an array at first position
-	 * @param message
-	 * @param channelSymbol
-	 * @throws APIException
+	 * Verify the checksum of the channel. On a mismatch, only the affected 
+	 * channel is subscribed again, the local data is rebuilt from the new snapshot.
+	 * 
+	 * @param channel
+	 * @param dispatcher
+	 * @param checksum
 	 */
-	private void handleChannelDataArray(final JSONArray message, final BitfinexStreamSymbol channelSymbol)
-			throws APIException {
-		final JSONArray jsonArray = message.getJSONArray(1);
+	private void handleChecksum(final int channel, final ChannelDispatcher dispatcher, final int checksum) {
 		
-		if(channelSymbol instanceof BitfinexCandlestickSymbol) {
-			final CandlestickHandler handler = new CandlestickHandler();
-			handler.onCandlesticksEvent(callbackRegistry::acceptCandlesticksEvent);
-			handler.handleChannelData(channelSymbol, jsonArray);
-		} else if(channelSymbol instanceof RawOrderbookConfiguration) {
-			final RawOrderbookHandler handler = new RawOrderbookHandler();
-			handler.onOrderbookEvent(callbackRegistry::acceptRawOrderbookEvent);
-			handler.handleChannelData(channelSymbol, jsonArray);
-		} else if(channelSymbol instanceof OrderbookConfiguration) {
-			final OrderbookHandler handler = new OrderbookHandler();
-			handler.onOrderbookEvent(callbackRegistry::acceptOrderbookEvent);
-			handler.handleChannelData(channelSymbol, jsonArray);
-		} else if(channelSymbol instanceof BitfinexTickerSymbol) {
-			final TickHandler handler = new TickHandler();
-			handler.onTickEvent(callbackRegistry::acceptTickEvent);
-			handler.handleChannelData(channelSymbol, jsonArray);
-		} else if(channelSymbol instanceof BitfinexExecutedTradeSymbol) {
-			final ExecutedTradeHandler handler = new ExecutedTradeHandler();
-			handler.onExecutedTradeEvent(callbackRegistry::acceptExecutedTradeEvent);
-			handler.handleChannelData(channelSymbol, jsonArray);
-		} else {
-			logger.error("Unknown stream type: {}", channelSymbol);
+		// Resubscription is already in progress
+		final ChannelSubscription subscription = channelRegistry.getSubscription(channel);
+		if(subscription == null || subscription.getState() != SubscriptionState.ACTIVE) {
+			return;
+		}
+		
+		if(dispatcher.verifyChecksum(checksum)) {
+			return;
+		}
+		
+		logger.warn("Checksum mismatch on channel {} ({}), resubscribing channel", 
+				channel, dispatcher.getSymbol());
+		
+		resubscribeChannel(channel, dispatcher);
+	}
+	
+	/**
+	 * Subscribe the channel of the symbol again, the local data is rebuilt from the 
+	 * new snapshot (e.g. when the local data could not be updated)
+	 * @param symbol
+	 */
+	public void resubscribeChannel(final BitfinexStreamSymbol symbol) {
+		final ChannelSubscription subscription = channelRegistry.getSubscription(symbol);
+		
+		// Not subscribed or resubscription is already in progress
+		if(subscription == null || subscription.getState() != SubscriptionState.ACTIVE 
+				|| subscription.getDispatcher() == null) {
+			return;
+		}
+		
+		logger.warn("Resubscribing channel {} ({})", subscription.getChannelId(), symbol);
+		resubscribeChannel(subscription.getChannelId(), subscription.getDispatcher());
+	}
+	
+	/**
+	 * Unsubscribe the channel and subscribe it again
+	 * @param channel
+	 * @param dispatcher
+	 */
+	private void resubscribeChannel(final int channel, final ChannelDispatcher dispatcher) {
+		
+		// The snapshot of the new subscription rebuilds the merged data
+		final FeedArbiter arbiter = feedArbiter;
+		if(arbiter != null) {
+			arbiter.resetSnapshot(dispatcher.getSymbol());
 		}
+		
+		channelRegistry.unsubscribing(channel);
+		sendCommand(new UnsubscribeChannelCommand(channel));
+		sendCommand(dispatcher.getSubscribeCommand());
 	}
 
 	/**
@@ -620,13 +1328,7 @@ public class BitfinexApiBroker implements Closeable {
 	 * @return
 	 */
 	public int getChannelForSymbol(final BitfinexStreamSymbol symbol) {
-		synchronized (channelIdSymbolMap) {
-			return channelIdSymbolMap.entrySet()
-					.stream()
-					.filter((v) -> v.getValue().equals(symbol))
-					.map(Map.Entry::getKey)
-					.findAny().orElse(-1);
-		}
+		return channelRegistry.getChannel(symbol);
 	}
 	
 	/**
@@ -638,10 +1340,8 @@ public class BitfinexApiBroker implements Closeable {
 		final int channel = getChannelForSymbol(symbol);
 		
 		if(channel != -1) {
-			synchronized (channelIdSymbolMap) {
-				channelIdSymbolMap.remove(channel);
-			}
-			
+			channelRegistry.unsubscribed(channel);
+			feedUnsubscribed(symbol);
 			return true;
 		}
 		
@@ -649,13 +1349,47 @@ public class BitfinexApiBroker implements Closeable {
 	}
 	
 	/**
-	 * Perform a reconnect
+	 * Perform a reconnect in a own thread, the reconnect waits for messages that are 
+	 * dispatched by the current thread.
+	 */
+	private void requestReconnect() {
+		if(! reconnectPending.compareAndSet(false, true)) {
+			return;
+		}
+		
+		final Thread reconnectThread = new Thread(() -> {
+			try {
+				reconnect();
+			} finally {
+				reconnectPending.set(false);
+			}
+		}, "bitfinex-reconnect");
+		
+		reconnectThread.start();
+	}
+	
+	/**
+	 * Perform a reconnect. The method returns when the connection is established and 
+	 * authenticated, the channels are resubscribed in the background (see getResubscription()).
 	 * @return
 	 */
 	public synchronized boolean reconnect() {
 		try {
 			logger.info("Performing reconnect");
 			websocketEndpoint.close();
+			
+			// Stop the pending attempts of the previous reconnect
+			resubscription.cancel(false);
+			
+			// The queued commands belong to the old connection
+			if(commandScheduler != null) {
+				final List<AbstractAPICommand> droppedCommands = commandScheduler.clear();
+				
+				if(! droppedCommands.isEmpty()) {
+					logger.warn("Dropped {} queued commands of the old connection: {}", 
+							droppedCommands.size(), droppedCommands);
+				}
+			}
 
 			capabilities = ConnectionCapabilities.NO_CAPABILITIES;
 			authenticated = false;
@@ -666,44 +1400,69 @@ public class BitfinexApiBroker implements Closeable {
 			quoteManager.invalidateTickerHeartbeat();
 			orderManager.clear();
 			positionManager.clear();
+			orderbookManager.clear();
+			rawOrderbookManager.clear();
 
 			CountDownLatch connectionReadyLatch = new CountDownLatch(4);
 
-			Closeable authSuccessEventCallback = callbackRegistry.onAuthenticationSuccessEvent(c -> {
+			Closeable authSuccessEventCallback = callbackRegistry.onAuthenticationSuccessEvent(callbackRegistry.unmonitored(c -> {
 				capabilities = c;
 				authenticated = true;
 				connectionReadyLatch.countDown();
-			});
-			Closeable authFailedCallback = callbackRegistry.onAuthenticationFailedEvent(c -> {
+			}));
+			Closeable authFailedCallback = callbackRegistry.onAuthenticationFailedEvent(callbackRegistry.unmonitored(c -> {
 				capabilities = c;
 				authenticated = false;
 				while (connectionReadyLatch.getCount() != 0) {
 					connectionReadyLatch.countDown();
 				}
-			});
-			Closeable positionInitCallback = callbackRegistry.onPositionsEvent(positions -> {
+			}));
+			Closeable positionInitCallback = callbackRegistry.onPositionsEvent(callbackRegistry.unmonitored(positions -> {
 				connectionReadyLatch.countDown();
-			});
-			Closeable walletsInitCallback = callbackRegistry.onWalletsEvent(wallets -> {
+			}));
+			Closeable walletsInitCallback = callbackRegistry.onWalletsEvent(callbackRegistry.unmonitored(wallets -> {
 				connectionReadyLatch.countDown();
-			});
-			Closeable orderInitCallback = callbackRegistry.onExchangeOrdersEvent(exchangeOrders -> {
+			}));
+			Closeable orderInitCallback = callbackRegistry.onExchangeOrdersEvent(callbackRegistry.unmonitored(exchangeOrders -> {
 				connectionReadyLatch.countDown();
-			});
+			}));
 
 			websocketEndpoint.connect();
 			
 			connectionFeatureManager.applyConnectionFeatures();
-			if( configuration.isAuthenticationEnabled()) {
-				authenticateAndWait(connectionReadyLatch);
+			
+			// The public channels are subscribed while the authentication is running
+			final Map<Integer, ChannelDispatcher> oldChannelDispatchers = channelRegistry.clear();
+			oldChannelDispatchers.values().forEach(d -> feedUnsubscribed(d.getSymbol()));
+			
+			final CompletableFuture<List<BitfinexStreamSymbol>> newResubscription 
+				= channelResubscriber.resubscribe(oldChannelDispatchers.values());
+			
+			try {
+				if( configuration.isAuthenticationEnabled()) {
+					authenticateAndWait(connectionReadyLatch);
+				}
+			} catch(Exception e) {
+				newResubscription.cancel(false);
+				channelRegistry.restore(oldChannelDispatchers);
+				throw e;
+			} finally {
+				authSuccessEventCallback.close();
+				authFailedCallback.close();
+				positionInitCallback.close();
+				walletsInitCallback.close();
+				orderInitCallback.close();
 			}
-			authSuccessEventCallback.close();
-			authFailedCallback.close();
-			positionInitCallback.close();
-			walletsInitCallback.close();
-			orderInitCallback.close();
 
-			resubscribeChannels();
+			resubscription = newResubscription;
+			
+			// The channels that failed all attempts are logged and do not fail the reconnect
+			newResubscription.thenAccept(failedSymbols -> {
+				if(! failedSymbols.isEmpty()) {
+					logger.error("Unable to resubscribe {} of {} channels: {}", failedSymbols.size(), 
+							oldChannelDispatchers.size(), failedSymbols);
+				}
+			});
 
 			updateConnectionHeartbeat();
 			
@@ -714,92 +1473,13 @@ public class BitfinexApiBroker implements Closeable {
 			return false;
 		}
 	}
-
-	/**
-	 * Re-subscribe the old ticker
-	 * @throws InterruptedException
-	 * @throws APIException
-	 */
-	private void resubscribeChannels() throws InterruptedException, APIException {
-		final Map<Integer, BitfinexStreamSymbol> oldChannelIdSymbolMap = new HashMap<>();
-
-		synchronized (channelIdSymbolMap) {
-			oldChannelIdSymbolMap.putAll(channelIdSymbolMap);
-			channelIdSymbolMap.clear();
-			channelIdSymbolMap.notifyAll();
-		}
-		
-		// Resubscribe channels
-		for(BitfinexStreamSymbol symbol : oldChannelIdSymbolMap.values()) {
-			if(symbol instanceof BitfinexTickerSymbol) {
-				sendCommand(new SubscribeTickerCommand((BitfinexTickerSymbol) symbol));
-			} else if(symbol instanceof BitfinexExecutedTradeSymbol) {
-				sendCommand(new SubscribeTradesCommand((BitfinexExecutedTradeSymbol) symbol));
-			} else if(symbol instanceof BitfinexCandlestickSymbol) {
-				sendCommand(new SubscribeCandlesCommand((BitfinexCandlestickSymbol) symbol));
-			} else if(symbol instanceof OrderbookConfiguration) {
-				sendCommand(new SubscribeOrderbookCommand((OrderbookConfiguration) symbol));
-			} else if(symbol instanceof RawOrderbookConfiguration) {
-				sendCommand(new SubscribeRawOrderbookCommand((RawOrderbookConfiguration) symbol));
-			} else {
-				logger.error("Unknown stream symbol: {}", symbol);
-			}
-		}
-		
-		waitForChannelResubscription(oldChannelIdSymbolMap);
-	}
-
-	/**
-	 * Wait for the successful channel re-subscription
-	 * @param oldChannelIdSymbolMap
-	 * @throws APIException
-	 * @throws InterruptedException
-	 */
-	private void waitForChannelResubscription(final Map<Integer, BitfinexStreamSymbol> oldChannelIdSymbolMap)
-			throws APIException, InterruptedException {
-		
-		final Stopwatch stopwatch = Stopwatch.createStarted();
-		final long MAX_WAIT_TIME_IN_MS = TimeUnit.MINUTES.toMillis(3);
-		logger.info("Waiting for streams to resubscribe (max wait time {} msec)", MAX_WAIT_TIME_IN_MS);
-
-		synchronized (channelIdSymbolMap) {		
-			
-			while(channelIdSymbolMap.size() != oldChannelIdSymbolMap.size()) {
-				
-				if(stopwatch.elapsed(TimeUnit.MILLISECONDS) > MAX_WAIT_TIME_IN_MS) {
-					handleResubscribeFailed(oldChannelIdSymbolMap);
-				}
-				
-				channelIdSymbolMap.wait(500);
-			}
-		}
-	}
-
+	
 	/**
-	 * Handle channel re-subscribe failed
-	 * 
-	 * @param oldChannelIdSymbolMap
-	 * @throws APIException
-	 * @throws InterruptedException 
+	 * Get the resubscription of the channels of the last reconnect
+	 * @return the future of the resubscription, completed with the symbols that could not be subscribed
 	 */
-	private void handleResubscribeFailed(final Map<Integer, BitfinexStreamSymbol> oldChannelIdSymbolMap)
-			throws APIException, InterruptedException {
-		
-		final int requiredSymbols = oldChannelIdSymbolMap.size();
-		final int subscribedSymbols = channelIdSymbolMap.size();
-		
-		// Unsubscribe old channels before the symbol map is restored
-		// otherwise we will get a lot of unknown symbol messages
-		unsubscribeAllChannels();
-
-		// Restore old symbol map for reconnect
-		synchronized (channelIdSymbolMap) {
-			channelIdSymbolMap.clear();
-			channelIdSymbolMap.putAll(oldChannelIdSymbolMap);
-		}
-		
-		throw new APIException("Subscription of ticker failed: got only " 
-				+ subscribedSymbols + " of " + requiredSymbols + " symbols subscribed");
+	public CompletableFuture<List<BitfinexStreamSymbol>> getResubscription() {
+		return resubscription;
 	}
 
 	/**
@@ -809,23 +1489,25 @@ public class BitfinexApiBroker implements Closeable {
 	 */
 	public boolean unsubscribeAllChannels() throws InterruptedException {
 		
-		for(final Integer channel : channelIdSymbolMap.keySet()) {
-			sendCommand(new UnsubscribeChannelCommand(channel));
-		}
-
-		final Stopwatch stopwatch = Stopwatch.createStarted();
+		final List<CompletableFuture<Void>> unsubscriptions = new ArrayList<>();
 		
-		synchronized (channelIdSymbolMap) {
-			while(! channelIdSymbolMap.isEmpty()) {
-				channelIdSymbolMap.wait(500);
-				
-				// Wait max 1 minute for unsubscription complete
-				if(stopwatch.elapsed(TimeUnit.SECONDS) >= 60) {
-					logger.error("Unable to unsubscribe channels in 60 seconds");
-					return false;
-				}
+		for(final Integer channel : channelRegistry.getChannels().keySet()) {
+			final ChannelSubscription subscription = channelRegistry.unsubscribing(channel);
+			
+			if(subscription != null) {
+				unsubscriptions.add(subscription.getUnsubscribedFuture());
+				sendCommand(new UnsubscribeChannelCommand(channel));
 			}
 		}
+
+		// Wait max 1 minute for unsubscription complete
+		try {
+			CompletableFuture.allOf(unsubscriptions.toArray(new CompletableFuture<?>[0]))
+				.get(60, TimeUnit.SECONDS);
+		} catch (ExecutionException | TimeoutException e) {
+			logger.error("Unable to unsubscribe channels in 60 seconds");
+			return false;
+		}
 		
 		return true;
 	}
@@ -927,11 +1609,100 @@ public class BitfinexApiBroker implements Closeable {
 	}
 	
 	/**
-	 * Get the channel id symbol map
+	 * Get the channel id symbol map, the threads waiting on the map are notified on changes
 	 * @return
+	 * @deprecated use getChannelRegistry() and the futures of the subscriptions
 	 */
+	@Deprecated
 	public Map<Integer, BitfinexStreamSymbol> getChannelIdSymbolMap() {
-		return channelIdSymbolMap;
+		return channelRegistry.getChannelSymbols();
+	}
+	
+	/**
+	 * Get the executor for the deliveries of the conflating callbacks
+	 * @return
+	 */
+	public ExecutorService getConflationExecutorService() {
+		return conflationExecutorService;
+	}
+	
+	/**
+	 * Get the channel registry
+	 * @return
+	 */
+	public ChannelRegistry getChannelRegistry() {
+		return channelRegistry;
+	}
+
+	/**
+	 * Get the number of received messages
+	 * @return
+	 */
+	public long getReceivedMessages() {
+		return receivedMessages.sum();
+	}
+
+	/**
+	 * Get the command scheduler (null if the commands are sent directly)
+	 * @return
+	 */
+	public CommandScheduler getCommandScheduler() {
+		return commandScheduler;
+	}
+	
+	/**
+	 * Get the scheduler for delayed tasks of the connection (e.g. timeouts)
+	 * @return
+	 */
+	public ScheduledExecutorService getScheduler() {
+		return scheduler;
+	}
+	
+	/**
+	 * Arbitrate the channel data of this connection against redundant connections 
+	 * (null disables the arbitration)
+	 * @param feedArbiter
+	 * @param feed
+	 */
+	public void setFeedArbiter(final FeedArbiter feedArbiter, final int feed) {
+		this.arbitratedFeed = feed;
+		this.feedArbiter = feedArbiter;
+	}
+	
+	/**
+	 * The channel of the symbol is no longer subscribed on this connection
+	 * @param symbol
+	 */
+	private void feedUnsubscribed(final BitfinexStreamSymbol symbol) {
+		final FeedArbiter arbiter = feedArbiter;
+		
+		if(arbiter != null) {
+			arbiter.feedUnsubscribed(arbitratedFeed, symbol);
+		}
+	}
+	
+	/**
+	 * Get the feed arbiter (null if the connection is not arbitrated)
+	 * @return
+	 */
+	public FeedArbiter getFeedArbiter() {
+		return feedArbiter;
+	}
+
+	/**
+	 * Get the callback registry
+	 * @return
+	 */
+	public BitfinexApiCallbackRegistry getCallbackRegistry() {
+		return callbackRegistry;
+	}
+
+	/**
+	 * Get the callback monitor (null if disabled)
+	 * @return
+	 */
+	public CallbackMonitor getCallbackMonitor() {
+		return configuration.getCallbackMonitor();
 	}
 
 	public BitfinexApiBrokerConfig getConfiguration() {
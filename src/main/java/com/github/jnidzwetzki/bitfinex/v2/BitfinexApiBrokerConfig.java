@@ -17,12 +17,21 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
 import com.google.common.util.concurrent.MoreExecutors;
 
 import com.github.jnidzwetzki.bitfinex.v2.commands.AuthCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CommandClass;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
+import com.github.jnidzwetzki.bitfinex.v2.util.WaitStrategy;
 
 public class BitfinexApiBrokerConfig {
 
@@ -34,9 +43,28 @@ public class BitfinexApiBrokerConfig {
     private boolean managersActive = true;
     private Supplier<String> authNonceProducer = AuthCommand.AUTH_NONCE_PRODUCER_TIMESTAMP;
     private ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+    private boolean streamingFrameDecoderActive = true;
+    private NumericMode numericMode = NumericMode.BIG_DECIMAL;
+    private int defaultFixedPointScale = 8;
+    private Map<BitfinexCurrencyPair, Integer> fixedPointScales = new HashMap<>();
+    private int ringBufferSize = 0;
+    private WaitStrategy ringBufferWaitStrategy = WaitStrategy.PARK;
+    private OverflowPolicy ringBufferOverflowPolicy = OverflowPolicy.BLOCK;
+    private Map<ManagerType, ExecutorProfile> executorProfiles = new EnumMap<>(ManagerType.class);
+    private int stripedExecutorThreads = Runtime.getRuntime().availableProcessors();
+    private CallbackMonitor callbackMonitor = null;
+    private int resubscriptionRate = 20;
+    private long resubscriptionTimeoutMillis = 10000;
+    private int resubscriptionAttempts = 3;
+    private boolean commandSchedulerActive = false;
+    private boolean commandCoalescingActive = false;
+    private Map<CommandClass, Integer> commandBurstSizes = new EnumMap<>(CommandClass.class);
+    private Map<CommandClass, Integer> commandRates = new EnumMap<>(CommandClass.class);
 
     public BitfinexApiBrokerConfig() {
-
+        setCommandRateLimit(CommandClass.ORDER, 50, 50);
+        setCommandRateLimit(CommandClass.CONTROL, 20, 10);
+        setCommandRateLimit(CommandClass.SUBSCRIPTION, 20, 20);
     }
 
     public BitfinexApiBrokerConfig(final BitfinexApiBrokerConfig copy) {
@@ -48,6 +76,23 @@ public class BitfinexApiBrokerConfig {
         this.managersActive = copy.managersActive;
         this.authNonceProducer = copy.authNonceProducer;
         this.executorService = copy.executorService;
+        this.streamingFrameDecoderActive = copy.streamingFrameDecoderActive;
+        this.numericMode = copy.numericMode;
+        this.defaultFixedPointScale = copy.defaultFixedPointScale;
+        this.fixedPointScales = new HashMap<>(copy.fixedPointScales);
+        this.ringBufferSize = copy.ringBufferSize;
+        this.ringBufferWaitStrategy = copy.ringBufferWaitStrategy;
+        this.ringBufferOverflowPolicy = copy.ringBufferOverflowPolicy;
+        this.executorProfiles = new EnumMap<>(copy.executorProfiles);
+        this.stripedExecutorThreads = copy.stripedExecutorThreads;
+        this.callbackMonitor = copy.callbackMonitor;
+        this.resubscriptionRate = copy.resubscriptionRate;
+        this.resubscriptionTimeoutMillis = copy.resubscriptionTimeoutMillis;
+        this.resubscriptionAttempts = copy.resubscriptionAttempts;
+        this.commandSchedulerActive = copy.commandSchedulerActive;
+        this.commandCoalescingActive = copy.commandCoalescingActive;
+        this.commandBurstSizes = new EnumMap<>(copy.commandBurstSizes);
+        this.commandRates = new EnumMap<>(copy.commandRates);
     }
 
     public void setApiCredentials(final String apiKey, final String apiSecret) {
@@ -111,4 +156,242 @@ public class BitfinexApiBrokerConfig {
     public void setExecutorService(final ExecutorService executorService) {
         this.executorService = executorService;
     }
+
+    public boolean isStreamingFrameDecoderActive() {
+        return streamingFrameDecoderActive;
+    }
+
+    /**
+     * Decode channel frames with the streaming tokenizer instead of building a JSON tree
+     * (frames that can not be decoded are still handled by the JSON path)
+     * @param streamingFrameDecoderActive
+     */
+    public void setStreamingFrameDecoderActive(final boolean streamingFrameDecoderActive) {
+        this.streamingFrameDecoderActive = streamingFrameDecoderActive;
+    }
+
+    public NumericMode getNumericMode() {
+        return numericMode;
+    }
+
+    /**
+     * Select the representation of prices and amounts in the market data entities
+     * @param numericMode
+     */
+    public void setNumericMode(final NumericMode numericMode) {
+        this.numericMode = numericMode;
+    }
+
+    public int getDefaultFixedPointScale() {
+        return defaultFixedPointScale;
+    }
+
+    /**
+     * Set the scale for currency pairs without an explicit scale
+     * @param defaultFixedPointScale
+     */
+    public void setDefaultFixedPointScale(final int defaultFixedPointScale) {
+        FixedPoint.checkScale(defaultFixedPointScale);
+        this.defaultFixedPointScale = defaultFixedPointScale;
+    }
+
+    /**
+     * Get the fixed point scale of the currency pair
+     * @param currencyPair
+     * @return
+     */
+    public int getFixedPointScale(final BitfinexCurrencyPair currencyPair) {
+        return fixedPointScales.getOrDefault(currencyPair, defaultFixedPointScale);
+    }
+
+    /**
+     * Set the fixed point scale of the currency pair
+     * @param currencyPair
+     * @param scale
+     */
+    public void setFixedPointScale(final BitfinexCurrencyPair currencyPair, final int scale) {
+        FixedPoint.checkScale(scale);
+        fixedPointScales.put(currencyPair, scale);
+    }
+
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    /**
+     * Hand the received messages over to a dispatch thread through a ring buffer 
+     * with the given size (a power of two), instead of dispatching them on the 
+     * websocket receive thread (0 = disabled)
+     * @param ringBufferSize
+     */
+    public void setRingBufferSize(final int ringBufferSize) {
+        if (ringBufferSize < 0 || (ringBufferSize != 0 && Integer.bitCount(ringBufferSize) != 1)) {
+            throw new IllegalArgumentException("The ring buffer size has to be 0 or a power of two: " 
+                    + ringBufferSize);
+        }
+        this.ringBufferSize = ringBufferSize;
+    }
+
+    public WaitStrategy getRingBufferWaitStrategy() {
+        return ringBufferWaitStrategy;
+    }
+
+    /**
+     * Set the strategy of the threads waiting on the ring buffer
+     * @param ringBufferWaitStrategy
+     */
+    public void setRingBufferWaitStrategy(final WaitStrategy ringBufferWaitStrategy) {
+        this.ringBufferWaitStrategy = ringBufferWaitStrategy;
+    }
+
+    public OverflowPolicy getRingBufferOverflowPolicy() {
+        return ringBufferOverflowPolicy;
+    }
+
+    /**
+     * Set the behavior of the receive thread on a full ring buffer
+     * (CONFLATE conflates ticker updates)
+     * @param ringBufferOverflowPolicy
+     */
+    public void setRingBufferOverflowPolicy(final OverflowPolicy ringBufferOverflowPolicy) {
+        this.ringBufferOverflowPolicy = ringBufferOverflowPolicy;
+    }
+
+    /**
+     * Get the executor profile of the manager
+     * @param managerType
+     * @return
+     */
+    public ExecutorProfile getExecutorProfile(final ManagerType managerType) {
+        return executorProfiles.getOrDefault(managerType, ExecutorProfile.SHARED);
+    }
+
+    /**
+     * Set the executor profile of the manager (default: SHARED, the executor service
+     * of this configuration)
+     * @param managerType
+     * @param executorProfile
+     */
+    public void setExecutorProfile(final ManagerType managerType, final ExecutorProfile executorProfile) {
+        executorProfiles.put(managerType, executorProfile);
+    }
+
+    public int getStripedExecutorThreads() {
+        return stripedExecutorThreads;
+    }
+
+    /**
+     * Set the number of threads of the executors with the STRIPED profile
+     * @param stripedExecutorThreads
+     */
+    public void setStripedExecutorThreads(final int stripedExecutorThreads) {
+        if (stripedExecutorThreads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: " + stripedExecutorThreads);
+        }
+        this.stripedExecutorThreads = stripedExecutorThreads;
+    }
+
+    public CallbackMonitor getCallbackMonitor() {
+        return callbackMonitor;
+    }
+
+    /**
+     * Time the callback invocations with the monitor (null = disabled)
+     * @param callbackMonitor
+     */
+    public void setCallbackMonitor(final CallbackMonitor callbackMonitor) {
+        this.callbackMonitor = callbackMonitor;
+    }
+
+    public int getResubscriptionRate() {
+        return resubscriptionRate;
+    }
+
+    /**
+     * Set the number of subscribe commands per second during the resubscription. When the 
+     * command scheduler is active, the subscription rate of the scheduler applies instead.
+     * @param resubscriptionRate
+     */
+    public void setResubscriptionRate(final int resubscriptionRate) {
+        if (resubscriptionRate < 1) {
+            throw new IllegalArgumentException("Invalid resubscription rate: " + resubscriptionRate);
+        }
+        this.resubscriptionRate = resubscriptionRate;
+    }
+
+    public long getResubscriptionTimeoutMillis() {
+        return resubscriptionTimeoutMillis;
+    }
+
+    /**
+     * Set the timeout of a single subscription attempt during the resubscription
+     * @param resubscriptionTimeoutMillis
+     */
+    public void setResubscriptionTimeoutMillis(final long resubscriptionTimeoutMillis) {
+        this.resubscriptionTimeoutMillis = resubscriptionTimeoutMillis;
+    }
+
+    public int getResubscriptionAttempts() {
+        return resubscriptionAttempts;
+    }
+
+    /**
+     * Set the number of subscription attempts per channel during the resubscription
+     * @param resubscriptionAttempts
+     */
+    public void setResubscriptionAttempts(final int resubscriptionAttempts) {
+        if (resubscriptionAttempts < 1) {
+            throw new IllegalArgumentException("Invalid number of attempts: " + resubscriptionAttempts);
+        }
+        this.resubscriptionAttempts = resubscriptionAttempts;
+    }
+
+    public boolean isCommandSchedulerActive() {
+        return commandSchedulerActive;
+    }
+
+    /**
+     * Send the commands through the rate limited command scheduler (otherwise the 
+     * commands are sent directly by the calling thread). Disabled by default, with 
+     * the scheduler the commands are sent asynchronously.
+     * @param commandSchedulerActive
+     */
+    public void setCommandSchedulerActive(final boolean commandSchedulerActive) {
+        this.commandSchedulerActive = commandSchedulerActive;
+    }
+
+    public boolean isCommandCoalescingActive() {
+        return commandCoalescingActive;
+    }
+
+    /**
+     * Coalesce queued order operations into multi operation frames (disabled by default,
+     * the errors of the single operations are only reported in the ox_multi-req notification)
+     * @param commandCoalescingActive
+     */
+    public void setCommandCoalescingActive(final boolean commandCoalescingActive) {
+        this.commandCoalescingActive = commandCoalescingActive;
+    }
+
+    public int getCommandBurstSize(final CommandClass commandClass) {
+        return commandBurstSizes.get(commandClass);
+    }
+
+    public int getCommandRate(final CommandClass commandClass) {
+        return commandRates.get(commandClass);
+    }
+
+    /**
+     * Set the rate limit of the command class
+     * @param commandClass
+     * @param burstSize the number of commands that can be sent at once
+     * @param commandsPerSecond the sustained rate
+     */
+    public void setCommandRateLimit(final CommandClass commandClass, final int burstSize, final int commandsPerSecond) {
+        if (burstSize < 1 || commandsPerSecond < 1) {
+            throw new IllegalArgumentException("Invalid rate limit: " + burstSize + " / " + commandsPerSecond);
+        }
+        commandBurstSizes.put(commandClass, burstSize);
+        commandRates.put(commandClass, commandsPerSecond);
+    }
 }
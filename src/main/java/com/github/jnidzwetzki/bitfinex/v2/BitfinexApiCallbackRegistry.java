@@ -19,8 +19,10 @@ package com.github.jnidzwetzki.bitfinex.v2;
 
 import java.io.Closeable;
 import java.util.Collection;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -29,6 +31,7 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ConnectionCapabilities;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExecutedTrade;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderRequestError;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
 import com.github.jnidzwetzki.bitfinex.v2.entity.Position;
@@ -39,128 +42,402 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.Wallet;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackArray;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor.ConsumerStatistics;
+import com.github.jnidzwetzki.bitfinex.v2.util.SymbolCallbackIndex;
 
+/**
+ * The registry of the API consumers
+ *
+ * The consumers are kept in immutable copy on write arrays, the accept methods do not
+ * lock and do not allocate iterators. Consumers of market data can be registered for
+ * all symbols or for one symbol, a event only reaches the consumers of its symbol.
+ *
+ * With a CallbackMonitor, each invocation of a user consumer is timed and quarantined 
+ * consumers are skipped. The consumers of the connection and the managers are registered 
+ * as unmonitored, a quarantine would leave their state incomplete.
+ */
 public class BitfinexApiCallbackRegistry {
 
-    private final Queue<Consumer<ExchangeOrder>> exchangeOrderConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<Consumer<Collection<ExchangeOrder>>> exchangeOrdersConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<Consumer<Collection<Position>>> positionConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<Consumer<Trade>> tradeConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<Consumer<Collection<Wallet>>> walletConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<BiConsumer<BitfinexCandlestickSymbol, Collection<BitfinexCandle>>> candlesConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<BiConsumer<BitfinexExecutedTradeSymbol, Collection<ExecutedTrade>>> executedTradesConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<BiConsumer<OrderbookConfiguration, Collection<OrderbookEntry>>> orderbookEntryConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<BiConsumer<RawOrderbookConfiguration, Collection<RawOrderbookEntry>>> rawOrderbookEntryConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<BiConsumer<BitfinexTickerSymbol, BitfinexTick>> tickConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<Consumer<ConnectionCapabilities>> authSuccessConsumers = new ConcurrentLinkedQueue<>();
-    private final Queue<Consumer<ConnectionCapabilities>> authFailedConsumers = new ConcurrentLinkedQueue<>();
+    private volatile CallbackMonitor callbackMonitor = null;
+    private final Set<Object> unmonitoredConsumers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicReference<CallbackArray<Consumer<ExchangeOrder>>> exchangeOrderConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final AtomicReference<CallbackArray<Consumer<OrderRequestError>>> orderRequestErrorConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final AtomicReference<CallbackArray<Consumer<Collection<ExchangeOrder>>>> exchangeOrdersConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final AtomicReference<CallbackArray<Consumer<Collection<Position>>>> positionConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final AtomicReference<CallbackArray<Consumer<Trade>>> tradeConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final AtomicReference<CallbackArray<Consumer<Collection<Wallet>>>> walletConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final AtomicReference<CallbackArray<BiConsumer<BitfinexCandlestickSymbol, Collection<BitfinexCandle>>>> candlesConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final SymbolCallbackIndex<BitfinexCandlestickSymbol, BiConsumer<BitfinexCandlestickSymbol, Collection<BitfinexCandle>>> candlesSymbolConsumers = new SymbolCallbackIndex<>();
+    private final AtomicReference<CallbackArray<BiConsumer<BitfinexExecutedTradeSymbol, Collection<ExecutedTrade>>>> executedTradesConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final SymbolCallbackIndex<BitfinexExecutedTradeSymbol, BiConsumer<BitfinexExecutedTradeSymbol, Collection<ExecutedTrade>>> executedTradesSymbolConsumers = new SymbolCallbackIndex<>();
+    private final AtomicReference<CallbackArray<BiConsumer<OrderbookConfiguration, Collection<OrderbookEntry>>>> orderbookEntryConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final SymbolCallbackIndex<OrderbookConfiguration, BiConsumer<OrderbookConfiguration, Collection<OrderbookEntry>>> orderbookEntrySymbolConsumers = new SymbolCallbackIndex<>();
+    private final AtomicReference<CallbackArray<BiConsumer<RawOrderbookConfiguration, Collection<RawOrderbookEntry>>>> rawOrderbookEntryConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final SymbolCallbackIndex<RawOrderbookConfiguration, BiConsumer<RawOrderbookConfiguration, Collection<RawOrderbookEntry>>> rawOrderbookEntrySymbolConsumers = new SymbolCallbackIndex<>();
+    private final AtomicReference<CallbackArray<BiConsumer<BitfinexTickerSymbol, BitfinexTick>>> tickConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final SymbolCallbackIndex<BitfinexTickerSymbol, BiConsumer<BitfinexTickerSymbol, BitfinexTick>> tickSymbolConsumers = new SymbolCallbackIndex<>();
+    private final AtomicReference<CallbackArray<Consumer<ConnectionCapabilities>>> authSuccessConsumers = new AtomicReference<>(CallbackArray.empty());
+    private final AtomicReference<CallbackArray<Consumer<ConnectionCapabilities>>> authFailedConsumers = new AtomicReference<>(CallbackArray.empty());
 
     public Closeable onExchangeOrderNotification(final Consumer<ExchangeOrder> consumer) {
-        exchangeOrderConsumers.offer(consumer);
-        return () -> exchangeOrderConsumers.remove(consumer);
+        return register(exchangeOrderConsumers, consumer);
     }
 
     public void acceptExchangeOrderNotification(final ExchangeOrder event) {
-        exchangeOrderConsumers.forEach(consumer -> consumer.accept(event));
+        final CallbackArray<Consumer<ExchangeOrder>> consumers = exchangeOrderConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), event);
+        }
+    }
+
+    public Closeable onOrderRequestError(final Consumer<OrderRequestError> consumer) {
+        return register(orderRequestErrorConsumers, consumer);
+    }
+
+    public void acceptOrderRequestError(final OrderRequestError event) {
+        final CallbackArray<Consumer<OrderRequestError>> consumers = orderRequestErrorConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), event);
+        }
     }
 
     public Closeable onExchangeOrdersEvent(final Consumer<Collection<ExchangeOrder>> consumer) {
-        exchangeOrdersConsumers.offer(consumer);
-        return () -> exchangeOrdersConsumers.remove(consumer);
+        return register(exchangeOrdersConsumers, consumer);
     }
 
     public void acceptExchangeOrdersEvent(final Collection<ExchangeOrder> event) {
-        exchangeOrdersConsumers.forEach(consumer -> consumer.accept(event));
+        final CallbackArray<Consumer<Collection<ExchangeOrder>>> consumers = exchangeOrdersConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), event);
+        }
     }
 
     public Closeable onPositionsEvent(final Consumer<Collection<Position>> consumer) {
-        positionConsumers.offer(consumer);
-        return () -> positionConsumers.remove(consumer);
+        return register(positionConsumers, consumer);
     }
 
     public void acceptPositionsEvent(final Collection<Position> event) {
-        positionConsumers.forEach(consumer -> consumer.accept(event));
+        final CallbackArray<Consumer<Collection<Position>>> consumers = positionConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), event);
+        }
     }
 
     public Closeable onTradeEvent(final Consumer<Trade> consumer) {
-        tradeConsumers.offer(consumer);
-        return () -> tradeConsumers.remove(consumer);
+        return register(tradeConsumers, consumer);
     }
 
     public void acceptTradeEvent(final Trade event) {
-        tradeConsumers.forEach(consumer -> consumer.accept(event));
+        final CallbackArray<Consumer<Trade>> consumers = tradeConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), event);
+        }
     }
 
     public Closeable onWalletsEvent(final Consumer<Collection<Wallet>> consumer) {
-        walletConsumers.offer(consumer);
-        return () -> walletConsumers.remove(consumer);
+        return register(walletConsumers, consumer);
     }
 
     public void acceptWalletsEvent(final Collection<Wallet> event) {
-        walletConsumers.forEach(consumer -> consumer.accept(event));
+        final CallbackArray<Consumer<Collection<Wallet>>> consumers = walletConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), event);
+        }
     }
 
     public Closeable onCandlesticksEvent(final BiConsumer<BitfinexCandlestickSymbol, Collection<BitfinexCandle>> consumer) {
-        candlesConsumers.offer(consumer);
-        return () -> candlesConsumers.remove(consumer);
+        return register(candlesConsumers, consumer);
+    }
+
+    /**
+     * Register a consumer for the events of one symbol
+     * @param symbol
+     * @param consumer
+     * @return
+     */
+    public Closeable onCandlesticksEvent(final BitfinexCandlestickSymbol symbol, final BiConsumer<BitfinexCandlestickSymbol, Collection<BitfinexCandle>> consumer) {
+        return register(candlesSymbolConsumers, symbol, consumer);
     }
 
     public void acceptCandlesticksEvent(final BitfinexCandlestickSymbol symbol, final Collection<BitfinexCandle> entries) {
-        candlesConsumers.forEach(consumer -> consumer.accept(symbol, entries));
+        final CallbackArray<BiConsumer<BitfinexCandlestickSymbol, Collection<BitfinexCandle>>> consumers = candlesConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), symbol, entries);
+        }
+
+        final CallbackArray<BiConsumer<BitfinexCandlestickSymbol, Collection<BitfinexCandle>>> symbolConsumers = candlesSymbolConsumers.get(symbol);
+        for (int i = 0; i < symbolConsumers.size(); i++) {
+            invoke(symbolConsumers.get(i), symbol, entries);
+        }
     }
 
     public Closeable onExecutedTradeEvent(final BiConsumer<BitfinexExecutedTradeSymbol, Collection<ExecutedTrade>> consumer) {
-        executedTradesConsumers.offer(consumer);
-        return () -> executedTradesConsumers.remove(consumer);
+        return register(executedTradesConsumers, consumer);
+    }
+
+    /**
+     * Register a consumer for the events of one symbol
+     * @param symbol
+     * @param consumer
+     * @return
+     */
+    public Closeable onExecutedTradeEvent(final BitfinexExecutedTradeSymbol symbol, final BiConsumer<BitfinexExecutedTradeSymbol, Collection<ExecutedTrade>> consumer) {
+        return register(executedTradesSymbolConsumers, symbol, consumer);
     }
 
     public void acceptExecutedTradeEvent(final BitfinexExecutedTradeSymbol symbol, final Collection<ExecutedTrade> entries) {
-        executedTradesConsumers.forEach(consumer -> consumer.accept(symbol, entries));
+        final CallbackArray<BiConsumer<BitfinexExecutedTradeSymbol, Collection<ExecutedTrade>>> consumers = executedTradesConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), symbol, entries);
+        }
+
+        final CallbackArray<BiConsumer<BitfinexExecutedTradeSymbol, Collection<ExecutedTrade>>> symbolConsumers = executedTradesSymbolConsumers.get(symbol);
+        for (int i = 0; i < symbolConsumers.size(); i++) {
+            invoke(symbolConsumers.get(i), symbol, entries);
+        }
     }
 
     public Closeable onOrderbookEvent(final BiConsumer<OrderbookConfiguration, Collection<OrderbookEntry>> consumer) {
-        orderbookEntryConsumers.offer(consumer);
-        return () -> orderbookEntryConsumers.remove(consumer);
+        return register(orderbookEntryConsumers, consumer);
+    }
+
+    /**
+     * Register a consumer for the events of one symbol
+     * @param symbol
+     * @param consumer
+     * @return
+     */
+    public Closeable onOrderbookEvent(final OrderbookConfiguration symbol, final BiConsumer<OrderbookConfiguration, Collection<OrderbookEntry>> consumer) {
+        return register(orderbookEntrySymbolConsumers, symbol, consumer);
     }
 
     public void acceptOrderbookEvent(final OrderbookConfiguration symbol, final Collection<OrderbookEntry> entries) {
-        orderbookEntryConsumers.forEach(consumer -> consumer.accept(symbol, entries));
+        final CallbackArray<BiConsumer<OrderbookConfiguration, Collection<OrderbookEntry>>> consumers = orderbookEntryConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), symbol, entries);
+        }
+
+        final CallbackArray<BiConsumer<OrderbookConfiguration, Collection<OrderbookEntry>>> symbolConsumers = orderbookEntrySymbolConsumers.get(symbol);
+        for (int i = 0; i < symbolConsumers.size(); i++) {
+            invoke(symbolConsumers.get(i), symbol, entries);
+        }
     }
 
     public Closeable onRawOrderbookEvent(final BiConsumer<RawOrderbookConfiguration, Collection<RawOrderbookEntry>> consumer) {
-        rawOrderbookEntryConsumers.offer(consumer);
-        return () -> rawOrderbookEntryConsumers.remove(consumer);
+        return register(rawOrderbookEntryConsumers, consumer);
+    }
+
+    /**
+     * Register a consumer for the events of one symbol
+     * @param symbol
+     * @param consumer
+     * @return
+     */
+    public Closeable onRawOrderbookEvent(final RawOrderbookConfiguration symbol, final BiConsumer<RawOrderbookConfiguration, Collection<RawOrderbookEntry>> consumer) {
+        return register(rawOrderbookEntrySymbolConsumers, symbol, consumer);
     }
 
     public void acceptRawOrderbookEvent(final RawOrderbookConfiguration symbol, final Collection<RawOrderbookEntry> entries) {
-        rawOrderbookEntryConsumers.forEach(consumer -> consumer.accept(symbol, entries));
+        final CallbackArray<BiConsumer<RawOrderbookConfiguration, Collection<RawOrderbookEntry>>> consumers = rawOrderbookEntryConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), symbol, entries);
+        }
+
+        final CallbackArray<BiConsumer<RawOrderbookConfiguration, Collection<RawOrderbookEntry>>> symbolConsumers = rawOrderbookEntrySymbolConsumers.get(symbol);
+        for (int i = 0; i < symbolConsumers.size(); i++) {
+            invoke(symbolConsumers.get(i), symbol, entries);
+        }
     }
 
     public Closeable onTickEvent(final BiConsumer<BitfinexTickerSymbol, BitfinexTick> consumer) {
-        tickConsumers.offer(consumer);
-        return () -> tickConsumers.remove(consumer);
+        return register(tickConsumers, consumer);
+    }
+
+    /**
+     * Register a consumer for the events of one symbol
+     * @param symbol
+     * @param consumer
+     * @return
+     */
+    public Closeable onTickEvent(final BitfinexTickerSymbol symbol, final BiConsumer<BitfinexTickerSymbol, BitfinexTick> consumer) {
+        return register(tickSymbolConsumers, symbol, consumer);
     }
 
     public void acceptTickEvent(final BitfinexTickerSymbol symbol, final BitfinexTick tick) {
-        tickConsumers.forEach(consumer -> consumer.accept(symbol, tick));
+        final CallbackArray<BiConsumer<BitfinexTickerSymbol, BitfinexTick>> consumers = tickConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), symbol, tick);
+        }
+
+        final CallbackArray<BiConsumer<BitfinexTickerSymbol, BitfinexTick>> symbolConsumers = tickSymbolConsumers.get(symbol);
+        for (int i = 0; i < symbolConsumers.size(); i++) {
+            invoke(symbolConsumers.get(i), symbol, tick);
+        }
     }
 
     public Closeable onAuthenticationSuccessEvent(final Consumer<ConnectionCapabilities> consumer) {
-        authSuccessConsumers.offer(consumer);
-        return () -> authSuccessConsumers.remove(consumer);
+        return register(authSuccessConsumers, consumer);
     }
 
     public void acceptAuthenticationSuccessEvent(final ConnectionCapabilities event) {
-        authSuccessConsumers.forEach(consumer -> consumer.accept(event));
+        final CallbackArray<Consumer<ConnectionCapabilities>> consumers = authSuccessConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), event);
+        }
     }
 
     public Closeable onAuthenticationFailedEvent(final Consumer<ConnectionCapabilities> consumer) {
-        authFailedConsumers.offer(consumer);
-        return () -> authFailedConsumers.remove(consumer);
+        return register(authFailedConsumers, consumer);
     }
 
     public void acceptAuthenticationFailedEvent(final ConnectionCapabilities event) {
-        authFailedConsumers.forEach(consumer -> consumer.accept(event));
+        final CallbackArray<Consumer<ConnectionCapabilities>> consumers = authFailedConsumers.get();
+        for (int i = 0; i < consumers.size(); i++) {
+            invoke(consumers.get(i), event);
+        }
+    }
+
+    /**
+     * Forward all events of this registry into the target registry
+     * @param target
+     */
+    public void forwardEvents(final BitfinexApiCallbackRegistry target) {
+        onExchangeOrderNotification(unmonitored(target::acceptExchangeOrderNotification));
+        onOrderRequestError(unmonitored(target::acceptOrderRequestError));
+        onExchangeOrdersEvent(unmonitored(target::acceptExchangeOrdersEvent));
+        onPositionsEvent(unmonitored(target::acceptPositionsEvent));
+        onTradeEvent(unmonitored(target::acceptTradeEvent));
+        onWalletsEvent(unmonitored(target::acceptWalletsEvent));
+        onCandlesticksEvent(unmonitored(target::acceptCandlesticksEvent));
+        onExecutedTradeEvent(unmonitored(target::acceptExecutedTradeEvent));
+        onOrderbookEvent(unmonitored(target::acceptOrderbookEvent));
+        onRawOrderbookEvent(unmonitored(target::acceptRawOrderbookEvent));
+        onTickEvent(unmonitored(target::acceptTickEvent));
+        onAuthenticationSuccessEvent(unmonitored(target::acceptAuthenticationSuccessEvent));
+        onAuthenticationFailedEvent(unmonitored(target::acceptAuthenticationFailedEvent));
+    }
+
+    /**
+     * Exclude the consumer from the timing and the quarantine of the callback monitor
+     * (e.g. the consumers of the managers), the consumer has to be registered afterwards
+     * @param consumer
+     * @return the consumer
+     */
+    public <C> C unmonitored(final C consumer) {
+        unmonitoredConsumers.add(consumer);
+        return consumer;
+    }
+
+    public CallbackMonitor getCallbackMonitor() {
+        return callbackMonitor;
+    }
+
+    /**
+     * Time the consumer invocations with the monitor (null = disabled)
+     * @param callbackMonitor
+     */
+    public void setCallbackMonitor(final CallbackMonitor callbackMonitor) {
+        this.callbackMonitor = callbackMonitor;
+    }
+
+    /**
+     * Invoke the consumer
+     * @param consumer
+     * @param event
+     */
+    private <E> void invoke(final Consumer<E> consumer, final E event) {
+        final CallbackMonitor monitor = callbackMonitor;
+
+        if (monitor == null || unmonitoredConsumers.contains(consumer)) {
+            consumer.accept(event);
+            return;
+        }
+
+        final ConsumerStatistics statistics = monitor.getStatistics(consumer);
+
+        if (statistics.isQuarantined()) {
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+        try {
+            consumer.accept(event);
+        } finally {
+            monitor.record(statistics, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Invoke the consumer
+     * @param consumer
+     * @param symbol
+     * @param event
+     */
+    private <S, E> void invoke(final BiConsumer<S, E> consumer, final S symbol, final E event) {
+        final CallbackMonitor monitor = callbackMonitor;
+
+        if (monitor == null || unmonitoredConsumers.contains(consumer)) {
+            consumer.accept(symbol, event);
+            return;
+        }
+
+        final ConsumerStatistics statistics = monitor.getStatistics(consumer);
+
+        if (statistics.isQuarantined()) {
+            return;
+        }
+
+        final long startTime = System.nanoTime();
+        try {
+            consumer.accept(symbol, event);
+        } finally {
+            monitor.record(statistics, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Add the consumer to the array
+     * @param consumers
+     * @param consumer
+     * @return the closeable that removes the consumer
+     */
+    private <C> Closeable register(final AtomicReference<CallbackArray<C>> consumers, final C consumer) {
+        consumers.updateAndGet(array -> array.with(consumer));
+        return () -> {
+            consumers.updateAndGet(array -> array.without(consumer));
+            released(consumer);
+        };
+    }
+
+    /**
+     * Add the consumer of the symbol to the index
+     * @param index
+     * @param symbol
+     * @param consumer
+     * @return the closeable that removes the consumer
+     */
+    private <S, C> Closeable register(final SymbolCallbackIndex<S, C> index, final S symbol, final C consumer) {
+        index.register(symbol, consumer);
+        return () -> {
+            index.remove(symbol, consumer);
+            released(consumer);
+        };
+    }
+
+    /**
+     * Drop the state of a removed consumer (the monitor keeps no reference to the consumer)
+     * @param consumer
+     */
+    private void released(final Object consumer) {
+        unmonitoredConsumers.remove(consumer);
+
+        final CallbackMonitor monitor = callbackMonitor;
+
+        if (monitor != null) {
+            monitor.remove(consumer);
+        }
     }
 
 }
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.math.BigDecimal;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderUpdate;
+
+public class BitfinexOrderUpdateBuilder {
+
+	private final long orderId;
+	
+	private BigDecimal price;
+	private BigDecimal amount;
+	private BigDecimal delta;
+	private BigDecimal priceTrailing;
+	private BigDecimal priceAuxLimit;
+	private Integer flags;
+	private Integer groupId;
+
+	private BitfinexOrderUpdateBuilder(final long orderId) {
+		this.orderId = orderId;
+	}
+	
+	public static BitfinexOrderUpdateBuilder create(final long orderId) {
+		return new BitfinexOrderUpdateBuilder(orderId);
+	}
+	
+	public BitfinexOrderUpdateBuilder withPrice(final double price) {
+		return withPrice(BigDecimal.valueOf(price));
+	}
+	
+	public BitfinexOrderUpdateBuilder withPrice(final BigDecimal price) {
+		this.price = price;
+		return this;
+	}
+	
+	/**
+	 * Set the new amount of the order
+	 * @param amount
+	 * @return
+	 */
+	public BitfinexOrderUpdateBuilder withAmount(final BigDecimal amount) {
+		this.amount = amount;
+		return this;
+	}
+	
+	/**
+	 * Change the amount of the order by the delta (the remaining amount is 
+	 * changed, executed parts are kept)
+	 * @param delta
+	 * @return
+	 */
+	public BitfinexOrderUpdateBuilder withDelta(final BigDecimal delta) {
+		this.delta = delta;
+		return this;
+	}
+	
+	public BitfinexOrderUpdateBuilder withPriceTrailing(final BigDecimal price) {
+		this.priceTrailing = price;
+		return this;
+	}
+	
+	public BitfinexOrderUpdateBuilder withPriceAuxLimit(final BigDecimal price) {
+		this.priceAuxLimit = price;
+		return this;
+	}
+	
+	/**
+	 * Set the flags of the order (replaces all flags, e.g. BitfinexOrderUpdate.FLAG_HIDDEN)
+	 * @param flags
+	 * @return
+	 */
+	public BitfinexOrderUpdateBuilder withFlags(final int flags) {
+		this.flags = flags;
+		return this;
+	}
+	
+	public BitfinexOrderUpdateBuilder withGroupId(final int groupId) {
+		this.groupId = groupId;
+		return this;
+	}
+	
+	public BitfinexOrderUpdate build() {
+		
+		if(amount != null && delta != null) {
+			throw new IllegalArgumentException("The amount and the delta can not be changed both");
+		}
+		
+		return new BitfinexOrderUpdate(orderId, price, amount, delta, priceTrailing, 
+				priceAuxLimit, flags, groupId);
+	}
+}
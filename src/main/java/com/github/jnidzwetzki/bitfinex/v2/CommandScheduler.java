@@ -0,0 +1,373 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.commands.AbstractAPICommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CommandClass;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderMultiCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderOperationCommand;
+import com.github.jnidzwetzki.bitfinex.v2.util.LatencyHistogram;
+import com.github.jnidzwetzki.bitfinex.v2.util.TokenBucket;
+
+/**
+ * The outbound command pipeline of a connection.
+ * 
+ * The commands are queued per command class, each class has its own token bucket. 
+ * The queues are drained in the order of the classes (order operations first), 
+ * within a class the commands are sent in submission order. If enabled, queued 
+ * order operations that follow each other are coalesced into one ox_multi frame. 
+ * The queues are drained on the given executor, a drain is scheduled again 
+ * when the next token is available. The executor should be dedicated to the 
+ * scheduler, other tasks on the executor delay the outgoing commands.
+ * 
+ * The queued commands are dropped when the connection is lost (see clear()) and 
+ * sent without rate limit when the connection is closed (see flush()).
+ */
+public class CommandScheduler {
+	
+	/**
+	 * The command classes
+	 */
+	private final static CommandClass[] COMMAND_CLASSES = CommandClass.values();
+	
+	/**
+	 * The executor for the drain
+	 */
+	private final ScheduledExecutorService executor;
+	
+	/**
+	 * The sender of the commands
+	 */
+	private final Consumer<AbstractAPICommand> sender;
+	
+	/**
+	 * Coalesce order operations
+	 */
+	private final boolean coalescingActive;
+	
+	/**
+	 * The queues per command class
+	 */
+	private final ArrayDeque<QueuedCommand>[] queues;
+	
+	/**
+	 * The rate limits per command class
+	 */
+	private final TokenBucket[] rateLimits;
+	
+	/**
+	 * The wait times per command class
+	 */
+	private final LatencyHistogram[] waitTimes;
+	
+	/**
+	 * The number of sent frames
+	 */
+	private final LongAdder sentFrames;
+	
+	/**
+	 * The number of commands that were coalesced into multi operation frames
+	 */
+	private final LongAdder coalescedCommands;
+	
+	/**
+	 * Is a drain running or scheduled
+	 */
+	private boolean drainActive;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(CommandScheduler.class);
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public CommandScheduler(final ScheduledExecutorService executor, final Consumer<AbstractAPICommand> sender, 
+			final BitfinexApiBrokerConfig config) {
+		
+		this.executor = executor;
+		this.sender = sender;
+		this.coalescingActive = config.isCommandCoalescingActive();
+		this.queues = new ArrayDeque[COMMAND_CLASSES.length];
+		this.rateLimits = new TokenBucket[COMMAND_CLASSES.length];
+		this.waitTimes = new LatencyHistogram[COMMAND_CLASSES.length];
+		this.sentFrames = new LongAdder();
+		this.coalescedCommands = new LongAdder();
+		
+		final long now = System.nanoTime();
+		
+		for(final CommandClass commandClass : COMMAND_CLASSES) {
+			final int pos = commandClass.ordinal();
+			queues[pos] = new ArrayDeque<>();
+			rateLimits[pos] = new TokenBucket(config.getCommandBurstSize(commandClass), 
+					config.getCommandRate(commandClass), now);
+			waitTimes[pos] = new LatencyHistogram();
+		}
+	}
+	
+	/**
+	 * Queue the command
+	 * @param command
+	 */
+	public void submit(final AbstractAPICommand command) {
+		submit(command, null);
+	}
+	
+	/**
+	 * Queue the command, the callback is executed after the command is sent. 
+	 * Commands with a callback are not coalesced.
+	 * @param command
+	 * @param sentCallback
+	 */
+	public void submit(final AbstractAPICommand command, final Runnable sentCallback) {
+		final int pos = command.getCommandClass().ordinal();
+		
+		synchronized (this) {
+			queues[pos].addLast(new QueuedCommand(command, System.nanoTime(), sentCallback));
+			
+			if(drainActive) {
+				return;
+			}
+			
+			drainActive = true;
+		}
+		
+		executor.execute(this::drain);
+	}
+	
+	/**
+	 * Send the queued commands as long as tokens are available
+	 */
+	private void drain() {
+		while(true) {
+			final QueuedCommand command;
+			
+			synchronized (this) {
+				final long now = System.nanoTime();
+				command = pollCommand(now);
+				
+				if(command == null) {
+					final long waitNanos = getWaitNanos(now);
+					
+					if(waitNanos < 0) {
+						drainActive = false;
+					} else {
+						executor.schedule(this::drain, waitNanos, TimeUnit.NANOSECONDS);
+					}
+					
+					return;
+				}
+			}
+			
+			send(command);
+		}
+	}
+	
+	/**
+	 * Send the command and execute its callback
+	 * @param queuedCommand
+	 */
+	private void send(final QueuedCommand queuedCommand) {
+		try {
+			sender.accept(queuedCommand.command);
+			sentFrames.increment();
+		} catch (Exception e) {
+			logger.error("Got exception while sending command {}", queuedCommand.command, e);
+		}
+		
+		if(queuedCommand.sentCallback != null) {
+			try {
+				queuedCommand.sentCallback.run();
+			} catch (Exception e) {
+				logger.error("Got exception in sent callback of command {}", queuedCommand.command, e);
+			}
+		}
+	}
+
+	/**
+	 * Poll the next command of the highest class that has a token
+	 * @param now
+	 * @return the command or null
+	 */
+	private QueuedCommand pollCommand(final long now) {
+		for(int pos = 0; pos < queues.length; pos++) {
+			final ArrayDeque<QueuedCommand> queue = queues[pos];
+			
+			if(queue.isEmpty() || ! rateLimits[pos].tryAcquire(now)) {
+				continue;
+			}
+			
+			final QueuedCommand head = queue.pollFirst();
+			waitTimes[pos].record(now - head.submitTime);
+			
+			if(! coalescingActive || ! isOrderOperation(head) || ! isOrderOperation(queue.peekFirst())) {
+				return head;
+			}
+			
+			final List<OrderOperationCommand> operations = new ArrayList<>();
+			operations.add((OrderOperationCommand) head.command);
+			
+			while(operations.size() < OrderMultiCommand.MAX_OPERATIONS && isOrderOperation(queue.peekFirst())) {
+				final QueuedCommand next = queue.pollFirst();
+				waitTimes[pos].record(now - next.submitTime);
+				operations.add((OrderOperationCommand) next.command);
+			}
+			
+			coalescedCommands.add(operations.size());
+			return new QueuedCommand(new OrderMultiCommand(operations), head.submitTime, null);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Is the queued command a order operation without callback
+	 * @param queuedCommand
+	 * @return
+	 */
+	private static boolean isOrderOperation(final QueuedCommand queuedCommand) {
+		return queuedCommand != null && queuedCommand.sentCallback == null 
+				&& queuedCommand.command instanceof OrderOperationCommand;
+	}
+	
+	/**
+	 * Get the time until the next queued command can be sent
+	 * @param now
+	 * @return the wait time in nanoseconds, -1 if no commands are queued
+	 */
+	private long getWaitNanos(final long now) {
+		long waitNanos = -1;
+		
+		for(int pos = 0; pos < queues.length; pos++) {
+			if(queues[pos].isEmpty()) {
+				continue;
+			}
+			
+			final long classWaitNanos = rateLimits[pos].getWaitNanos(now);
+			
+			if(waitNanos == -1 || classWaitNanos < waitNanos) {
+				waitNanos = classWaitNanos;
+			}
+		}
+		
+		return waitNanos;
+	}
+	
+	/**
+	 * Drop the queued commands (e.g. on reconnect, the commands belong to the old 
+	 * connection)
+	 * @return the dropped commands
+	 */
+	public List<AbstractAPICommand> clear() {
+		final List<AbstractAPICommand> droppedCommands = new ArrayList<>();
+		pollAll().forEach(c -> droppedCommands.add(c.command));
+		return droppedCommands;
+	}
+	
+	/**
+	 * Remove all queued commands
+	 * @return the removed commands
+	 */
+	private synchronized List<QueuedCommand> pollAll() {
+		final List<QueuedCommand> commands = new ArrayList<>();
+		
+		for(final ArrayDeque<QueuedCommand> queue : queues) {
+			commands.addAll(queue);
+			queue.clear();
+		}
+		
+		return commands;
+	}
+	
+	/**
+	 * Send all queued commands on the calling thread, the rate limits are 
+	 * not applied (e.g. before the connection is closed)
+	 */
+	public void flush() {
+		pollAll().forEach(this::send);
+	}
+	
+	/**
+	 * Get the number of queued commands of the class
+	 * @param commandClass
+	 * @return
+	 */
+	public synchronized int getQueueDepth(final CommandClass commandClass) {
+		return queues[commandClass.ordinal()].size();
+	}
+	
+	/**
+	 * Get the wait times (submission until send) of the commands of the class
+	 * @param commandClass
+	 * @return
+	 */
+	public LatencyHistogram getWaitTimes(final CommandClass commandClass) {
+		return waitTimes[commandClass.ordinal()];
+	}
+	
+	/**
+	 * Get the number of sent frames
+	 * @return
+	 */
+	public long getSentFrames() {
+		return sentFrames.sum();
+	}
+	
+	/**
+	 * Get the number of commands that were coalesced into multi operation frames
+	 * @return
+	 */
+	public long getCoalescedCommands() {
+		return coalescedCommands.sum();
+	}
+	
+	private static class QueuedCommand {
+		
+		/**
+		 * The command
+		 */
+		private final AbstractAPICommand command;
+		
+		/**
+		 * The submission time
+		 */
+		private final long submitTime;
+		
+		/**
+		 * The callback that is executed after the command is sent (or null)
+		 */
+		private final Runnable sentCallback;
+		
+		public QueuedCommand(final AbstractAPICommand command, final long submitTime, 
+				final Runnable sentCallback) {
+			this.command = command;
+			this.submitTime = submitTime;
+			this.sentCallback = sentCallback;
+		}
+	}
+}
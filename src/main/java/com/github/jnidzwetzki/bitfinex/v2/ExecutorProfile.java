@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.StripedExecutor;
+
+public enum ExecutorProfile {
+	
+	/**
+	 * The callbacks are executed by the executor service of the configuration
+	 */
+	SHARED,
+	
+	/**
+	 * The callbacks are executed inline on the dispatch thread (lowest latency, 
+	 * slow callbacks delay all other messages)
+	 */
+	DIRECT,
+	
+	/**
+	 * The callbacks are executed on a StripedExecutor of the manager, the callbacks 
+	 * of one symbol are executed in order
+	 */
+	STRIPED,
+	
+	/**
+	 * Each callback is executed on a new virtual thread (for callbacks that block 
+	 * on I/O). JDKs without virtual threads use a cached thread pool.
+	 */
+	VIRTUAL_THREAD;
+	
+	/**
+	 * The factory method of the virtual thread executor (null if not supported)
+	 */
+	private final static Method VIRTUAL_THREAD_EXECUTOR_FACTORY = findVirtualThreadExecutorFactory();
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(ExecutorProfile.class);
+	
+	/**
+	 * Create the executor service of the profile
+	 * @param configuration
+	 * @return
+	 */
+	public ExecutorService createExecutorService(final BitfinexApiBrokerConfig configuration) {
+		switch(this) {
+		case SHARED:
+			return configuration.getExecutorService();
+		case DIRECT:
+			return MoreExecutors.newDirectExecutorService();
+		case STRIPED:
+			return new StripedExecutor(configuration.getStripedExecutorThreads());
+		case VIRTUAL_THREAD:
+			return createVirtualThreadExecutorService();
+		default:
+			throw new IllegalArgumentException("Unknown executor profile: " + this);
+		}
+	}
+	
+	/**
+	 * Does the JDK support virtual threads
+	 * @return
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return VIRTUAL_THREAD_EXECUTOR_FACTORY != null;
+	}
+	
+	/**
+	 * Create a virtual thread per task executor or a cached thread pool
+	 * @return
+	 */
+	private static ExecutorService createVirtualThreadExecutorService() {
+		if(VIRTUAL_THREAD_EXECUTOR_FACTORY != null) {
+			try {
+				return (ExecutorService) VIRTUAL_THREAD_EXECUTOR_FACTORY.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				logger.warn("Unable to create virtual thread executor, using a thread pool", e);
+			}
+		} else {
+			logger.warn("Virtual threads are not supported by this JDK, using a thread pool");
+		}
+		
+		return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+				.setNameFormat("bitfinex-callback-%d")
+				.setDaemon(true)
+				.build());
+	}
+	
+	/**
+	 * Find the Executors.newVirtualThreadPerTaskExecutor() method
+	 * @return the method or null
+	 */
+	private static Method findVirtualThreadExecutorFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
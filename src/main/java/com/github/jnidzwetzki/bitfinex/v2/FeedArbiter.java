@@ -0,0 +1,331 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+/**
+ * Arbitrates between redundant feeds that receive the same channels on 
+ * independent connections. The first copy of an update is delivered, the 
+ * copies of the other feeds are suppressed.
+ * 
+ * The sequence numbers of SEQ_ALL are counted per connection, so the copies 
+ * are matched by their payload (the frame without channel id and sequence 
+ * number). For each channel and feed, the payloads that were delivered by the 
+ * other feeds and not yet seen on this feed are queued. A payload that is found 
+ * in the queue is a duplicate, the older queued payloads were missed by the feed 
+ * and are dropped. Only the first snapshot of a channel is delivered, the 
+ * snapshots after a resubscription are suppressed and the feed catches up 
+ * by the queued payloads. The state of a channel is dropped when no feed has 
+ * a live subscription, the next snapshot is delivered again.
+ * 
+ * The checksums of the feeds are verified against the merged data by the 
+ * checksum verifier, as long as the feed has seen all delivered payloads.
+ */
+public class FeedArbiter {
+	
+	/**
+	 * The default number of queued payloads per channel and feed
+	 */
+	public final static int DEFAULT_QUEUE_SIZE = 1024;
+
+	/**
+	 * The number of feeds
+	 */
+	private final int numberOfFeeds;
+	
+	/**
+	 * The maximal number of queued payloads per channel and feed
+	 */
+	private final int queueSize;
+	
+	/**
+	 * The state of the channels
+	 */
+	private final Map<BitfinexStreamSymbol, ChannelState> channels;
+	
+	/**
+	 * The delivered updates per feed
+	 */
+	private final LongAdder[] deliveredUpdates;
+	
+	/**
+	 * The number of suppressed updates
+	 */
+	private final LongAdder suppressedUpdates;
+	
+	/**
+	 * The verifier for the checksums of the merged data
+	 */
+	private volatile BiPredicate<BitfinexStreamSymbol, Integer> checksumVerifier;
+	
+	public FeedArbiter(final int numberOfFeeds) {
+		this(numberOfFeeds, DEFAULT_QUEUE_SIZE);
+	}
+	
+	public FeedArbiter(final int numberOfFeeds, final int queueSize) {
+		
+		if(numberOfFeeds < 2) {
+			throw new IllegalArgumentException("At least two feeds are required: " + numberOfFeeds);
+		}
+		
+		if(queueSize < 1) {
+			throw new IllegalArgumentException("Invalid queue size: " + queueSize);
+		}
+		
+		this.numberOfFeeds = numberOfFeeds;
+		this.queueSize = queueSize;
+		this.channels = new ConcurrentHashMap<>();
+		this.deliveredUpdates = new LongAdder[numberOfFeeds];
+		this.suppressedUpdates = new LongAdder();
+		
+		for(int feed = 0; feed < numberOfFeeds; feed++) {
+			deliveredUpdates[feed] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * Arbitrate the payload of a channel frame
+	 * @param feed
+	 * @param symbol
+	 * @param payload
+	 * @return true if the payload has to be delivered, false for a duplicate
+	 */
+	public boolean accept(final int feed, final BitfinexStreamSymbol symbol, final String payload) {
+		
+		if(feed < 0 || feed >= numberOfFeeds) {
+			throw new IllegalArgumentException("Invalid feed: " + feed);
+		}
+		
+		final ChannelState state = channels.computeIfAbsent(symbol, s -> new ChannelState(numberOfFeeds));
+		final boolean deliver;
+		
+		synchronized (state) {
+			if(payload.startsWith("[[") || payload.equals("[]")) {
+				deliver = ! state.snapshotDelivered;
+				state.snapshotDelivered = true;
+			} else if(removeQueuedPayload(state.pendingPayloads[feed], payload)) {
+				deliver = false;
+			} else {
+				deliver = true;
+				
+				for(int otherFeed = 0; otherFeed < numberOfFeeds; otherFeed++) {
+					if(otherFeed == feed) {
+						continue;
+					}
+					
+					final ArrayDeque<String> queue = state.pendingPayloads[otherFeed];
+					if(queue.size() == queueSize) {
+						queue.removeFirst();
+					}
+					queue.addLast(payload);
+				}
+			}
+		}
+		
+		if(deliver) {
+			deliveredUpdates[feed].increment();
+		} else {
+			suppressedUpdates.increment();
+		}
+		
+		return deliver;
+	}
+
+	/**
+	 * Remove the payload and all older payloads from the queue
+	 * @param queue
+	 * @param payload
+	 * @return true if the payload was queued
+	 */
+	private boolean removeQueuedPayload(final ArrayDeque<String> queue, final String payload) {
+		int position = 0;
+		
+		for(final Iterator<String> iterator = queue.iterator(); iterator.hasNext(); position++) {
+			if(iterator.next().equals(payload)) {
+				for(int i = 0; i <= position; i++) {
+					queue.removeFirst();
+				}
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * The channel is subscribed on the feed
+	 * @param feed
+	 * @param symbol
+	 */
+	public void feedSubscribed(final int feed, final BitfinexStreamSymbol symbol) {
+		channels.compute(symbol, (s, state) -> {
+			final ChannelState channelState = state != null ? state : new ChannelState(numberOfFeeds);
+			
+			synchronized (channelState) {
+				channelState.subscribedFeeds[feed] = true;
+			}
+			
+			return channelState;
+		});
+	}
+	
+	/**
+	 * The channel is unsubscribed on the feed (or the connection is lost), the 
+	 * state of the channel is dropped when no feed has a live subscription
+	 * @param feed
+	 * @param symbol
+	 */
+	public void feedUnsubscribed(final int feed, final BitfinexStreamSymbol symbol) {
+		channels.computeIfPresent(symbol, (s, state) -> {
+			synchronized (state) {
+				state.subscribedFeeds[feed] = false;
+				
+				for(final boolean subscribed : state.subscribedFeeds) {
+					if(subscribed) {
+						return state;
+					}
+				}
+				
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Deliver the next snapshot of the channel (e.g. when the merged data has to 
+	 * be rebuilt after a checksum mismatch)
+	 * @param symbol
+	 */
+	public void resetSnapshot(final BitfinexStreamSymbol symbol) {
+		final ChannelState state = channels.get(symbol);
+		
+		if(state == null) {
+			return;
+		}
+		
+		synchronized (state) {
+			state.snapshotDelivered = false;
+			
+			for(final ArrayDeque<String> queue : state.pendingPayloads) {
+				queue.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Verify the checksum received by the feed against the merged data. The checksum 
+	 * is only verified when the feed has seen all delivered payloads of the channel.
+	 * @param feed
+	 * @param symbol
+	 * @param checksum
+	 * @return false if the merged data does not match the checksum
+	 */
+	public boolean verifyChecksum(final int feed, final BitfinexStreamSymbol symbol, final int checksum) {
+		final BiPredicate<BitfinexStreamSymbol, Integer> verifier = checksumVerifier;
+		final ChannelState state = channels.get(symbol);
+		
+		if(verifier == null || state == null) {
+			return true;
+		}
+		
+		synchronized (state) {
+			if(! state.snapshotDelivered || ! state.pendingPayloads[feed].isEmpty()) {
+				return true;
+			}
+			
+			return verifier.test(symbol, checksum);
+		}
+	}
+	
+	/**
+	 * Set the verifier for the checksums of the merged data (null disables the verification)
+	 * @param checksumVerifier
+	 */
+	public void setChecksumVerifier(final BiPredicate<BitfinexStreamSymbol, Integer> checksumVerifier) {
+		this.checksumVerifier = checksumVerifier;
+	}
+	
+	/**
+	 * Forget the state of the channel (e.g. after the channel is unsubscribed on all feeds)
+	 * @param symbol
+	 */
+	public void reset(final BitfinexStreamSymbol symbol) {
+		channels.remove(symbol);
+	}
+	
+	/**
+	 * Get the number of feeds
+	 * @return
+	 */
+	public int getNumberOfFeeds() {
+		return numberOfFeeds;
+	}
+	
+	/**
+	 * Get the number of updates that were delivered from the feed
+	 * @param feed
+	 * @return
+	 */
+	public long getDeliveredUpdates(final int feed) {
+		return deliveredUpdates[feed].sum();
+	}
+	
+	/**
+	 * Get the number of suppressed duplicates
+	 * @return
+	 */
+	public long getSuppressedUpdates() {
+		return suppressedUpdates.sum();
+	}
+	
+	private static class ChannelState {
+		
+		/**
+		 * Was a snapshot of the channel delivered
+		 */
+		private boolean snapshotDelivered;
+		
+		/**
+		 * The feeds with a live subscription of the channel
+		 */
+		private final boolean[] subscribedFeeds;
+		
+		/**
+		 * The payloads delivered by the other feeds, not yet seen on the feed
+		 */
+		private final ArrayDeque<String>[] pendingPayloads;
+		
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		public ChannelState(final int numberOfFeeds) {
+			this.pendingPayloads = new ArrayDeque[numberOfFeeds];
+			this.subscribedFeeds = new boolean[numberOfFeeds];
+			
+			for(int feed = 0; feed < numberOfFeeds; feed++) {
+				pendingPayloads[feed] = new ArrayDeque<>();
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+public enum NumericMode {
+	
+	/**
+	 * Prices and amounts are decoded as BigDecimal
+	 */
+	BIG_DECIMAL,
+	
+	/**
+	 * Prices and amounts are decoded as fixed point longs with the scale 
+	 * of the currency pair, BigDecimals are only created on demand
+	 */
+	FIXED_POINT;
+	
+}
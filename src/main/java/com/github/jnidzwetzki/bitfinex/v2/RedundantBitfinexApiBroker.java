@@ -0,0 +1,331 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookManager;
+import com.github.jnidzwetzki.bitfinex.v2.manager.RawOrderbookManager;
+
+/**
+ * A broker that subscribes the channels on redundant connections (A/B feeds). 
+ * The updates are arbitrated by a FeedArbiter, the first copy of each update 
+ * is delivered to the merged callback registry. When one connection stalls or 
+ * reconnects, the other connections keep delivering.
+ * 
+ * Only the first connection (the primary broker) is authenticated. The managers 
+ * of the single connections only see the updates delivered by their connection, 
+ * the merged callback registry has to be used to consume the channels. The local 
+ * orderbooks are maintained by the orderbook managers of this broker, the checksums
+ * of the feeds are verified against these books.
+ */
+public class RedundantBitfinexApiBroker implements Closeable {
+
+	/**
+	 * The connections
+	 */
+	private final List<BitfinexApiBroker> feeds;
+	
+	/**
+	 * The arbiter
+	 */
+	private final FeedArbiter feedArbiter;
+	
+	/**
+	 * The merged callback registry
+	 */
+	private final BitfinexApiCallbackRegistry callbackRegistry;
+	
+	/**
+	 * The orderbook manager of the merged orderbooks
+	 */
+	private final OrderbookManager orderbookManager;
+	
+	/**
+	 * The raw orderbook manager of the merged orderbooks
+	 */
+	private final RawOrderbookManager rawOrderbookManager;
+	
+	/**
+	 * The executor services owned by this broker
+	 */
+	private final List<ExecutorService> ownedExecutorServices;
+	
+	public RedundantBitfinexApiBroker(final BitfinexApiBrokerConfig config) {
+		this(config, 2);
+	}
+	
+	public RedundantBitfinexApiBroker(final BitfinexApiBrokerConfig config, final int numberOfFeeds) {
+		this.feedArbiter = new FeedArbiter(numberOfFeeds);
+		this.callbackRegistry = new BitfinexApiCallbackRegistry();
+		
+		final List<BitfinexApiBroker> brokers = new ArrayList<>();
+		
+		for(int feed = 0; feed < numberOfFeeds; feed++) {
+			final BitfinexApiBrokerConfig feedConfig = new BitfinexApiBrokerConfig(config);
+			
+			if(feed > 0) {
+				feedConfig.setAuthenticationEnabled(false);
+				feedConfig.setDeadmanSwitchActive(false);
+			}
+			
+			final BitfinexApiCallbackRegistry feedRegistry = new BitfinexApiCallbackRegistry();
+			feedRegistry.forwardEvents(callbackRegistry);
+			
+			final BitfinexApiBroker broker = new BitfinexApiBroker(feedConfig, feedRegistry);
+			broker.setFeedArbiter(feedArbiter, feed);
+			brokers.add(broker);
+		}
+		
+		this.feeds = Collections.unmodifiableList(brokers);
+		this.ownedExecutorServices = new ArrayList<>();
+		
+		this.orderbookManager = new OrderbookManager(getPrimaryBroker(), 
+				createExecutorService(config, ManagerType.ORDERBOOKS), callbackRegistry);
+		this.rawOrderbookManager = new RawOrderbookManager(getPrimaryBroker(), 
+				createExecutorService(config, ManagerType.RAW_ORDERBOOKS), callbackRegistry);
+		
+		feedArbiter.setChecksumVerifier(this::verifyChecksum);
+	}
+	
+	/**
+	 * Create the executor service of the merged manager
+	 * @param config
+	 * @param managerType
+	 * @return
+	 */
+	private ExecutorService createExecutorService(final BitfinexApiBrokerConfig config, 
+			final ManagerType managerType) {
+		
+		final ExecutorProfile executorProfile = config.getExecutorProfile(managerType);
+		final ExecutorService executorService = executorProfile.createExecutorService(config);
+		
+		// The shared executor service is owned by the caller
+		if(executorProfile != ExecutorProfile.SHARED) {
+			ownedExecutorServices.add(executorService);
+		}
+		
+		return executorService;
+	}
+	
+	/**
+	 * Verify the checksum of the merged orderbook
+	 * @param symbol
+	 * @param checksum
+	 * @return false if the merged orderbook does not match the checksum
+	 */
+	private boolean verifyChecksum(final BitfinexStreamSymbol symbol, final int checksum) {
+		if(symbol instanceof OrderbookConfiguration) {
+			return orderbookManager.verifyChecksum((OrderbookConfiguration) symbol, checksum);
+		}
+		
+		if(symbol instanceof RawOrderbookConfiguration) {
+			return rawOrderbookManager.verifyChecksum((RawOrderbookConfiguration) symbol, checksum);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Connect all feeds
+	 * @throws APIException
+	 */
+	public void connect() throws APIException {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.connect();
+		}
+	}
+	
+	/**
+	 * Disconnect all feeds
+	 */
+	@Override
+	public void close() {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.close();
+		}
+		
+		ownedExecutorServices.forEach(ExecutorService::shutdown);
+	}
+	
+	/**
+	 * Subscribe the ticker on all feeds
+	 * @param symbol
+	 * @throws APIException
+	 */
+	public void subscribeTicker(final BitfinexTickerSymbol symbol) throws APIException {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getQuoteManager().subscribeTicker(symbol);
+		}
+	}
+	
+	/**
+	 * Unsubscribe the ticker on all feeds
+	 * @param symbol
+	 */
+	public void unsubscribeTicker(final BitfinexTickerSymbol symbol) {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getQuoteManager().unsubscribeTicker(symbol);
+		}
+		feedArbiter.reset(symbol);
+	}
+	
+	/**
+	 * Subscribe the candles on all feeds
+	 * @param symbol
+	 * @throws APIException
+	 */
+	public void subscribeCandles(final BitfinexCandlestickSymbol symbol) throws APIException {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getQuoteManager().subscribeCandles(symbol);
+		}
+	}
+	
+	/**
+	 * Unsubscribe the candles on all feeds
+	 * @param symbol
+	 */
+	public void unsubscribeCandles(final BitfinexCandlestickSymbol symbol) {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getQuoteManager().unsubscribeCandles(symbol);
+		}
+		feedArbiter.reset(symbol);
+	}
+	
+	/**
+	 * Subscribe the executed trades on all feeds
+	 * @param symbol
+	 */
+	public void subscribeExecutedTrades(final BitfinexExecutedTradeSymbol symbol) {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getQuoteManager().subscribeExecutedTrades(symbol);
+		}
+	}
+	
+	/**
+	 * Unsubscribe the executed trades on all feeds
+	 * @param symbol
+	 */
+	public void unsubscribeExecutedTrades(final BitfinexExecutedTradeSymbol symbol) {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getQuoteManager().unsubscribeExecutedTrades(symbol);
+		}
+		feedArbiter.reset(symbol);
+	}
+	
+	/**
+	 * Subscribe the orderbook on all feeds
+	 * @param orderbookConfiguration
+	 */
+	public void subscribeOrderbook(final OrderbookConfiguration orderbookConfiguration) {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getOrderbookManager().subscribeOrderbook(orderbookConfiguration);
+		}
+	}
+	
+	/**
+	 * Unsubscribe the orderbook on all feeds
+	 * @param orderbookConfiguration
+	 */
+	public void unsubscribeOrderbook(final OrderbookConfiguration orderbookConfiguration) {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getOrderbookManager().unsubscribeOrderbook(orderbookConfiguration);
+		}
+		feedArbiter.reset(orderbookConfiguration);
+	}
+	
+	/**
+	 * Subscribe the raw orderbook on all feeds
+	 * @param orderbookConfiguration
+	 */
+	public void subscribeRawOrderbook(final RawOrderbookConfiguration orderbookConfiguration) {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getRawOrderbookManager().subscribeOrderbook(orderbookConfiguration);
+		}
+	}
+	
+	/**
+	 * Unsubscribe the raw orderbook on all feeds
+	 * @param orderbookConfiguration
+	 */
+	public void unsubscribeRawOrderbook(final RawOrderbookConfiguration orderbookConfiguration) {
+		for(final BitfinexApiBroker feed : feeds) {
+			feed.getRawOrderbookManager().unsubscribeOrderbook(orderbookConfiguration);
+		}
+		feedArbiter.reset(orderbookConfiguration);
+	}
+	
+	/**
+	 * Get the primary (authenticated) broker
+	 * @return
+	 */
+	public BitfinexApiBroker getPrimaryBroker() {
+		return feeds.get(0);
+	}
+	
+	/**
+	 * Get the connections of the feeds
+	 * @return
+	 */
+	public List<BitfinexApiBroker> getFeeds() {
+		return feeds;
+	}
+	
+	/**
+	 * Get the orderbook manager of the merged orderbooks
+	 * @return
+	 */
+	public OrderbookManager getOrderbookManager() {
+		return orderbookManager;
+	}
+	
+	/**
+	 * Get the raw orderbook manager of the merged orderbooks
+	 * @return
+	 */
+	public RawOrderbookManager getRawOrderbookManager() {
+		return rawOrderbookManager;
+	}
+	
+	/**
+	 * Get the feed arbiter
+	 * @return
+	 */
+	public FeedArbiter getFeedArbiter() {
+		return feedArbiter;
+	}
+	
+	/**
+	 * Get the merged callback registry
+	 * @return
+	 */
+	public BitfinexApiCallbackRegistry getCallbackRegistry() {
+		return callbackRegistry;
+	}
+}
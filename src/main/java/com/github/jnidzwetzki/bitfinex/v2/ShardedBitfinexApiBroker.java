@@ -0,0 +1,533 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookManager;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+import com.github.jnidzwetzki.bitfinex.v2.manager.RawOrderbookManager;
+
+/**
+ * A broker that spreads the public channels over multiple websocket connections
+ * to lift the channel quota of a single connection.
+ * 
+ * Each shard is a complete BitfinexApiBroker with its own connection. Only the 
+ * first shard (the primary broker) is authenticated, the order, trade, position 
+ * and wallet events are received there. The channels are subscribed on this broker, 
+ * a new symbol is placed on the least loaded shard (placed channels and received 
+ * messages) when it is subscribed and stays there until it is unsubscribed. The 
+ * events of all shards are merged into one callback registry.
+ * 
+ * The managers of this broker consume the merged callback registry, so their callbacks 
+ * receive the events of a symbol independent of its shard and can be registered before 
+ * the symbol is subscribed. The channels have to be subscribed with this broker, not 
+ * with the managers.
+ */
+public class ShardedBitfinexApiBroker implements Closeable {
+
+	/**
+	 * The minimal interval between two samples of the message rates
+	 */
+	private final static long RATE_SAMPLE_INTERVAL_MILLIS = 1000;
+	
+	/**
+	 * The shards
+	 */
+	private final List<BitfinexApiBroker> shards;
+	
+	/**
+	 * The merged callback registry
+	 */
+	private final BitfinexApiCallbackRegistry callbackRegistry;
+	
+	/**
+	 * The quote manager of the merged events
+	 */
+	private final QuoteManager quoteManager;
+	
+	/**
+	 * The orderbook manager of the merged events
+	 */
+	private final OrderbookManager orderbookManager;
+	
+	/**
+	 * The raw orderbook manager of the merged events
+	 */
+	private final RawOrderbookManager rawOrderbookManager;
+	
+	/**
+	 * The executor services owned by this broker
+	 */
+	private final List<ExecutorService> ownedExecutorServices;
+	
+	/**
+	 * The shard of the placed symbols
+	 */
+	private final Map<BitfinexStreamSymbol, Integer> placements;
+	
+	/**
+	 * The number of placed symbols per shard
+	 */
+	private final int[] placedSymbols;
+	
+	/**
+	 * The received messages per shard at the last sample
+	 */
+	private final long[] sampledMessages;
+	
+	/**
+	 * The message rate (messages per second) per shard
+	 */
+	private final double[] messageRates;
+	
+	/**
+	 * The time of the last sample
+	 */
+	private long lastSample;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(ShardedBitfinexApiBroker.class);
+	
+	public ShardedBitfinexApiBroker(final BitfinexApiBrokerConfig config, final int numberOfShards) {
+		
+		if(numberOfShards < 1) {
+			throw new IllegalArgumentException("Number of shards has to be >= 1: " + numberOfShards);
+		}
+		
+		this.callbackRegistry = new BitfinexApiCallbackRegistry();
+		this.placements = new HashMap<>();
+		this.placedSymbols = new int[numberOfShards];
+		this.sampledMessages = new long[numberOfShards];
+		this.messageRates = new double[numberOfShards];
+		this.lastSample = System.currentTimeMillis();
+		
+		final List<BitfinexApiBroker> brokers = new ArrayList<>();
+		
+		for(int shard = 0; shard < numberOfShards; shard++) {
+			final BitfinexApiBrokerConfig shardConfig = new BitfinexApiBrokerConfig(config);
+			
+			if(shard > 0) {
+				shardConfig.setAuthenticationEnabled(false);
+				shardConfig.setDeadmanSwitchActive(false);
+			}
+			
+			final BitfinexApiCallbackRegistry shardRegistry = new BitfinexApiCallbackRegistry();
+			shardRegistry.forwardEvents(callbackRegistry);
+			brokers.add(createShard(shardConfig, shardRegistry));
+		}
+		
+		this.shards = Collections.unmodifiableList(brokers);
+		this.ownedExecutorServices = new ArrayList<>();
+		
+		this.quoteManager = new QuoteManager(getPrimaryBroker(), 
+				createExecutorService(config, ManagerType.QUOTES), callbackRegistry);
+		this.orderbookManager = new OrderbookManager(getPrimaryBroker(), 
+				createExecutorService(config, ManagerType.ORDERBOOKS), callbackRegistry);
+		this.rawOrderbookManager = new RawOrderbookManager(getPrimaryBroker(), 
+				createExecutorService(config, ManagerType.RAW_ORDERBOOKS), callbackRegistry);
+	}
+	
+	/**
+	 * Create the executor service of the merged manager
+	 * @param config
+	 * @param managerType
+	 * @return
+	 */
+	private ExecutorService createExecutorService(final BitfinexApiBrokerConfig config, 
+			final ManagerType managerType) {
+		
+		final ExecutorProfile executorProfile = config.getExecutorProfile(managerType);
+		final ExecutorService executorService = executorProfile.createExecutorService(config);
+		
+		// The shared executor service is owned by the caller
+		if(executorProfile != ExecutorProfile.SHARED) {
+			ownedExecutorServices.add(executorService);
+		}
+		
+		return executorService;
+	}
+	
+	/**
+	 * Create the broker of a shard
+	 * @param config
+	 * @param callbackRegistry
+	 * @return
+	 */
+	protected BitfinexApiBroker createShard(final BitfinexApiBrokerConfig config, 
+			final BitfinexApiCallbackRegistry callbackRegistry) {
+		
+		return new BitfinexApiBroker(config, callbackRegistry);
+	}
+	
+	/**
+	 * Connect all shards
+	 * @throws APIException
+	 */
+	public void connect() throws APIException {
+		for(final BitfinexApiBroker shard : shards) {
+			shard.connect();
+		}
+	}
+	
+	/**
+	 * Disconnect all shards
+	 */
+	@Override
+	public void close() {
+		for(final BitfinexApiBroker shard : shards) {
+			shard.close();
+		}
+		
+		ownedExecutorServices.forEach(ExecutorService::shutdown);
+	}
+	
+	/**
+	 * Get the shard the symbol is placed on
+	 * @param symbol
+	 * @return the shard or null, if the symbol is not subscribed
+	 */
+	public synchronized BitfinexApiBroker getShard(final BitfinexStreamSymbol symbol) {
+		final Integer placedShard = placements.get(symbol);
+		
+		if(placedShard == null) {
+			return null;
+		}
+		
+		return shards.get(placedShard);
+	}
+	
+	/**
+	 * Place the symbol on the least loaded shard
+	 * @param symbol
+	 * @return
+	 * @throws APIException - if all shards have reached the channel quota
+	 */
+	private synchronized BitfinexApiBroker placeSymbol(final BitfinexStreamSymbol symbol) throws APIException {
+		final Integer placedShard = placements.get(symbol);
+		
+		if(placedShard != null) {
+			return shards.get(placedShard);
+		}
+		
+		sampleMessageRates();
+		
+		double totalRate = 0;
+		for(final double rate : messageRates) {
+			totalRate += rate;
+		}
+		
+		int bestShard = -1;
+		double bestLoad = Double.MAX_VALUE;
+		
+		for(int shard = 0; shard < shards.size(); shard++) {
+			if(placedSymbols[shard] >= QuoteManager.SYMBOL_QUOTA) {
+				continue;
+			}
+			
+			final double channelLoad = placedSymbols[shard] / (double) QuoteManager.SYMBOL_QUOTA;
+			final double rateLoad = totalRate > 0 ? messageRates[shard] / totalRate : 0;
+			final double load = channelLoad + rateLoad;
+			
+			if(load < bestLoad) {
+				bestLoad = load;
+				bestShard = shard;
+			}
+		}
+		
+		if(bestShard == -1) {
+			throw new APIException("Unable to place " + symbol + ", all " + shards.size() 
+				+ " shards have reached the quota of " + QuoteManager.SYMBOL_QUOTA + " channels");
+		}
+		
+		logger.debug("Placing {} on shard {}", symbol, bestShard);
+		placements.put(symbol, bestShard);
+		placedSymbols[bestShard]++;
+		
+		return shards.get(bestShard);
+	}
+	
+	/**
+	 * Release the placement of the symbol
+	 * @param symbol
+	 * @return
+	 */
+	private synchronized boolean releaseSymbol(final BitfinexStreamSymbol symbol) {
+		final Integer placedShard = placements.remove(symbol);
+		
+		if(placedShard == null) {
+			return false;
+		}
+		
+		placedSymbols[placedShard]--;
+		return true;
+	}
+	
+	/**
+	 * Subscribe the symbol on the shard it is placed on, a new symbol is placed 
+	 * on the least loaded shard. The placement of a new symbol is released if 
+	 * the subscription fails.
+	 * @param symbol
+	 * @param subscriber
+	 * @throws APIException
+	 */
+	private void subscribe(final BitfinexStreamSymbol symbol, final ShardSubscriber subscriber) 
+			throws APIException {
+		
+		final BitfinexApiBroker placedShard = getShard(symbol);
+		final BitfinexApiBroker shard = placedShard != null ? placedShard : placeSymbol(symbol);
+		
+		try {
+			subscriber.subscribe(shard);
+		} catch(APIException | RuntimeException e) {
+			if(placedShard == null) {
+				releaseSymbol(symbol);
+			}
+			
+			throw e;
+		}
+	}
+	
+	/**
+	 * Unsubscribe the symbol on the shard it is placed on and release the placement
+	 * @param symbol
+	 * @param unsubscriber
+	 */
+	private void unsubscribe(final BitfinexStreamSymbol symbol, final Consumer<BitfinexApiBroker> unsubscriber) {
+		final BitfinexApiBroker shard = getShard(symbol);
+		
+		if(shard == null) {
+			throw new IllegalArgumentException("Unknown symbol: " + symbol);
+		}
+		
+		try {
+			unsubscriber.accept(shard);
+		} finally {
+			releaseSymbol(symbol);
+		}
+	}
+	
+	/**
+	 * Subscribe a ticker
+	 * @param tickerSymbol
+	 * @throws APIException - if all shards have reached the channel quota
+	 */
+	public void subscribeTicker(final BitfinexTickerSymbol tickerSymbol) throws APIException {
+		subscribe(tickerSymbol, s -> s.getQuoteManager().subscribeTicker(tickerSymbol));
+	}
+	
+	/**
+	 * Unsubscribe a ticker
+	 * @param tickerSymbol
+	 */
+	public void unsubscribeTicker(final BitfinexTickerSymbol tickerSymbol) {
+		unsubscribe(tickerSymbol, s -> s.getQuoteManager().unsubscribeTicker(tickerSymbol));
+	}
+	
+	/**
+	 * Subscribe candles
+	 * @param symbol
+	 * @throws APIException - if all shards have reached the channel quota
+	 */
+	public void subscribeCandles(final BitfinexCandlestickSymbol symbol) throws APIException {
+		subscribe(symbol, s -> s.getQuoteManager().subscribeCandles(symbol));
+	}
+	
+	/**
+	 * Unsubscribe candles
+	 * @param symbol
+	 */
+	public void unsubscribeCandles(final BitfinexCandlestickSymbol symbol) {
+		unsubscribe(symbol, s -> s.getQuoteManager().unsubscribeCandles(symbol));
+	}
+	
+	/**
+	 * Subscribe the executed trades
+	 * @param tradeSymbol
+	 * @throws APIException - if all shards have reached the channel quota
+	 */
+	public void subscribeExecutedTrades(final BitfinexExecutedTradeSymbol tradeSymbol) throws APIException {
+		subscribe(tradeSymbol, s -> s.getQuoteManager().subscribeExecutedTrades(tradeSymbol));
+	}
+	
+	/**
+	 * Unsubscribe the executed trades
+	 * @param tradeSymbol
+	 */
+	public void unsubscribeExecutedTrades(final BitfinexExecutedTradeSymbol tradeSymbol) {
+		unsubscribe(tradeSymbol, s -> s.getQuoteManager().unsubscribeExecutedTrades(tradeSymbol));
+	}
+	
+	/**
+	 * Subscribe a orderbook
+	 * @param orderbookConfiguration
+	 * @throws APIException - if all shards have reached the channel quota
+	 */
+	public void subscribeOrderbook(final OrderbookConfiguration orderbookConfiguration) throws APIException {
+		subscribe(orderbookConfiguration, s -> s.getOrderbookManager().subscribeOrderbook(orderbookConfiguration));
+	}
+	
+	/**
+	 * Unsubscribe a orderbook
+	 * @param orderbookConfiguration
+	 */
+	public void unsubscribeOrderbook(final OrderbookConfiguration orderbookConfiguration) {
+		unsubscribe(orderbookConfiguration, s -> s.getOrderbookManager().unsubscribeOrderbook(orderbookConfiguration));
+	}
+	
+	/**
+	 * Subscribe a raw orderbook
+	 * @param orderbookConfiguration
+	 * @throws APIException - if all shards have reached the channel quota
+	 */
+	public void subscribeRawOrderbook(final RawOrderbookConfiguration orderbookConfiguration) throws APIException {
+		subscribe(orderbookConfiguration, s -> s.getRawOrderbookManager().subscribeOrderbook(orderbookConfiguration));
+	}
+	
+	/**
+	 * Unsubscribe a raw orderbook
+	 * @param orderbookConfiguration
+	 */
+	public void unsubscribeRawOrderbook(final RawOrderbookConfiguration orderbookConfiguration) {
+		unsubscribe(orderbookConfiguration, s -> s.getRawOrderbookManager().unsubscribeOrderbook(orderbookConfiguration));
+	}
+	
+	/**
+	 * Sample the message rates of the shards
+	 */
+	private void sampleMessageRates() {
+		final long now = System.currentTimeMillis();
+		final long elapsed = now - lastSample;
+		
+		if(elapsed < RATE_SAMPLE_INTERVAL_MILLIS) {
+			return;
+		}
+		
+		for(int shard = 0; shard < shards.size(); shard++) {
+			final long receivedMessages = shards.get(shard).getReceivedMessages();
+			messageRates[shard] = (receivedMessages - sampledMessages[shard]) * 1000.0 / elapsed;
+			sampledMessages[shard] = receivedMessages;
+		}
+		
+		lastSample = now;
+	}
+	
+	/**
+	 * Get the quote manager of the merged events (ticker, candlestick and executed trade symbols)
+	 * @return
+	 */
+	public QuoteManager getQuoteManager() {
+		return quoteManager;
+	}
+	
+	/**
+	 * Get the orderbook manager of the merged orderbooks
+	 * @return
+	 */
+	public OrderbookManager getOrderbookManager() {
+		return orderbookManager;
+	}
+	
+	/**
+	 * Get the raw orderbook manager of the merged raw orderbooks
+	 * @return
+	 */
+	public RawOrderbookManager getRawOrderbookManager() {
+		return rawOrderbookManager;
+	}
+	
+	/**
+	 * Get the primary (authenticated) broker
+	 * @return
+	 */
+	public BitfinexApiBroker getPrimaryBroker() {
+		return shards.get(0);
+	}
+	
+	/**
+	 * Get the shards
+	 * @return
+	 */
+	public List<BitfinexApiBroker> getShards() {
+		return shards;
+	}
+	
+	/**
+	 * Get the number of shards
+	 * @return
+	 */
+	public int getNumberOfShards() {
+		return shards.size();
+	}
+	
+	/**
+	 * Get the number of placed symbols of the shard
+	 * @param shard
+	 * @return
+	 */
+	public synchronized int getPlacedSymbols(final int shard) {
+		return placedSymbols[shard];
+	}
+	
+	/**
+	 * Get the last sampled message rate (messages per second) of the shard
+	 * @param shard
+	 * @return
+	 */
+	public synchronized double getMessageRate(final int shard) {
+		return messageRates[shard];
+	}
+	
+	/**
+	 * Get the merged callback registry of all shards
+	 * @return
+	 */
+	public BitfinexApiCallbackRegistry getCallbackRegistry() {
+		return callbackRegistry;
+	}
+	
+	@FunctionalInterface
+	private interface ShardSubscriber {
+		
+		/**
+		 * Subscribe the channel on the shard
+		 * @param shard
+		 * @throws APIException
+		 */
+		public void subscribe(final BitfinexApiBroker shard) throws APIException;
+	}
+}
@@ -17,6 +17,9 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.callback.api;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 
 import org.json.JSONArray;
@@ -26,6 +29,8 @@ import org.slf4j.LoggerFactory;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrderState;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderRequestError;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderRequestError.RequestType;
 
 public class NotificationHandler implements APICallbackHandler {
 
@@ -33,6 +38,8 @@ public class NotificationHandler implements APICallbackHandler {
 
     private Consumer<ExchangeOrder> exchangeOrderConsumer = ex -> {};
 
+    private Consumer<OrderRequestError> orderRequestErrorConsumer = e -> {};
+
     /**
      * {@inheritDoc}
      */
@@ -46,19 +53,104 @@ public class NotificationHandler implements APICallbackHandler {
             return;
         }
 
+        handleNotification(array);
+    }
+
+    /**
+     * Handle the notification, the notifications of the operations of a
+     * multi operation request are handled one by one
+     * @param array
+     */
+    private void handleNotification(final JSONArray array) {
+        final String type = array.optString(1);
+        final boolean error = "ERROR".equals(array.optString(6));
+
         // Test for order error callback
         // [0,"n",[null,"on-req",null,null,[null,null,1513970684865000,"tBTCUSD",null,null,0.001,0.001,"EXCHANGE MARKET",null,null,null,null,null,null,null,12940,null,null,null,null,null,null,0,null,null],null,"ERROR","Invalid order: minimum size for BTC/USD is 0.002"]]
-        if ("on-req".equals(array.getString(1))) {
-            final String state = array.optString(6);
-            if ("ERROR".equals(state)) {
-                ExchangeOrder exchangeOrder = jsonToExchangeOrder(array);
+        if ("on-req".equals(type) && error) {
+            for (final JSONArray orderJson : getOrderArrays(array)) {
+                ExchangeOrder exchangeOrder = jsonToExchangeOrder(orderJson, array);
                 exchangeOrderConsumer.accept(exchangeOrder);
             }
         }
+
+        // Test for cancel error callback
+        // [0,"n",[1575289447641,"oc-req",null,null,[1185815100,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null],null,"ERROR","Order not found."]]
+        // The errors of multi cancellations contain the affected orders
+        if (("oc-req".equals(type) || "oc_multi-req".equals(type)) && error) {
+            for (final JSONArray orderJson : getOrderArrays(array)) {
+                orderRequestErrorConsumer.accept(jsonToOrderRequestError(RequestType.CANCEL, orderJson, array));
+            }
+        }
+
+        // Test for update error callback
+        if ("ou-req".equals(type) && error) {
+            for (final JSONArray orderJson : getOrderArrays(array)) {
+                orderRequestErrorConsumer.accept(jsonToOrderRequestError(RequestType.UPDATE, orderJson, array));
+            }
+        }
+
+        // Test for multi operation callback, the info contains the notifications of the operations
+        // [0,"n",[1568711312683,"ox_multi-req",null,null,[[1568711312683,"oc-req",null,null,[1185815100,...],null,"ERROR","Order not found."],[...]],null,"INFO","Submitting 2 orders."]]
+        if ("ox_multi-req".equals(type)) {
+            final JSONArray operations = array.optJSONArray(4);
+
+            if (operations == null) {
+                if (error) {
+                    logger.error("Multi operation request failed, reason is {}", array.optString(7));
+                }
+                return;
+            }
+
+            for (int i = 0; i < operations.length(); i++) {
+                final JSONArray operation = operations.optJSONArray(i);
+                if (operation != null) {
+                    handleNotification(operation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the orders of the notification info (a single order or a list of orders)
+     * @param array
+     * @return
+     */
+    private static List<JSONArray> getOrderArrays(final JSONArray array) {
+        final JSONArray info = array.optJSONArray(4);
+
+        if (info == null) {
+            return Collections.emptyList();
+        }
+
+        if (info.optJSONArray(0) == null) {
+            return Collections.singletonList(info);
+        }
+
+        final List<JSONArray> orders = new ArrayList<>(info.length());
+
+        for (int i = 0; i < info.length(); i++) {
+            final JSONArray orderJson = info.optJSONArray(i);
+            if (orderJson != null) {
+                orders.add(orderJson);
+            }
+        }
+
+        return orders;
+    }
+
+    private OrderRequestError jsonToOrderRequestError(final RequestType requestType, final JSONArray orderJson,
+            final JSONArray array) {
+
+        final long oid = orderJson.optLong(0, 0);
+        final long cid = orderJson.optLong(2, 0);
+        final String reason = array.optString(7);
+
+        logger.error("Request {} for order {} failed, reason is {}", requestType, oid, reason);
+        return new OrderRequestError(requestType, oid, cid, reason);
     }
 
-    private ExchangeOrder jsonToExchangeOrder(JSONArray array) {
-        final JSONArray orderJson = array.optJSONArray(4);
+    private ExchangeOrder jsonToExchangeOrder(final JSONArray orderJson, final JSONArray array) {
         final long oid = orderJson.optLong(0, -1);
         final int gid = orderJson.optInt(1, -1);
         final long cid = orderJson.getLong(2);
@@ -78,7 +170,7 @@ public class NotificationHandler implements APICallbackHandler {
 
         exchangeOrder.setState(ExchangeOrderState.STATE_ERROR);
 
-        logger.error("State for order {} is {}, reason is {}", exchangeOrder.getOrderId(), state, stateValue);
+        logger.error("State for order {} is {}, reason is {}", exchangeOrder.getOrderId(), state, stateValue);
         return exchangeOrder;
 
     }
@@ -90,4 +182,12 @@ public class NotificationHandler implements APICallbackHandler {
     public void onExchangeOrderNotification(Consumer<ExchangeOrder> consumer) {
         this.exchangeOrderConsumer = consumer;
     }
+
+    /**
+     * order request error consumer
+     * @param consumer of event
+     */
+    public void onOrderRequestError(Consumer<OrderRequestError> consumer) {
+        this.orderRequestErrorConsumer = consumer;
+    }
 }
@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderType;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrderState;
 
@@ -44,10 +45,11 @@ public class OrderHandler implements APICallbackHandler {
         logger.info("Got order callback {}", message.toString());
 
         final JSONArray json = message.getJSONArray(2);
+        final boolean snapshot = "os".equals(message.optString(1));
 
         // No orders active
         if (json.length() == 0) {
-            exchangeOrdersConsumer.accept(Lists.newArrayList());
+            exchangeOrdersConsumer.accept(new EntryBatch<>(Lists.newArrayList(), snapshot));
             return;
         }
 
@@ -63,7 +65,7 @@ public class OrderHandler implements APICallbackHandler {
             ExchangeOrder exchangeOrder = jsonToExchangeOrder(json);
             orders.add(exchangeOrder);
         }
-        exchangeOrdersConsumer.accept(orders);
+        exchangeOrdersConsumer.accept(new EntryBatch<>(orders, snapshot));
     }
 
     private ExchangeOrder jsonToExchangeOrder(final JSONArray json) {
@@ -29,24 +29,36 @@ import org.json.JSONArray;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCandle;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
 
 public class CandlestickHandler implements ChannelCallbackHandler {
 
     private BiConsumer<BitfinexCandlestickSymbol, Collection<BitfinexCandle>> candlesConsumer = (c, l) -> {};
 
+    private int fixedPointScale = FixedPoint.NO_SCALE;
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void handleChannelData(final BitfinexStreamSymbol channelSymbol, final JSONArray jsonArray) throws APIException {
+        try {
+            handleJSONCandles(channelSymbol, jsonArray);
+        } catch (ArithmeticException e) {
+            throw new APIException(e);
+        }
+    }
 
+    private void handleJSONCandles(final BitfinexStreamSymbol channelSymbol, final JSONArray jsonArray) {
         // channel symbol trade:1m:tLTCUSD
         final Set<BitfinexCandle> candlestickList = new TreeSet<>(Comparator.comparing(BitfinexCandle::getTimestamp));
 
         // Snapshots contain multiple Bars, Updates only one
-        if (jsonArray.get(0) instanceof JSONArray) {
+        final boolean snapshot = jsonArray.get(0) instanceof JSONArray;
+        if (snapshot) {
             for (int pos = 0; pos < jsonArray.length(); pos++) {
                 final JSONArray parts = jsonArray.getJSONArray(pos);
                 BitfinexCandle candlestick = jsonToCandlestick(parts);
@@ -56,12 +68,82 @@ public class CandlestickHandler implements ChannelCallbackHandler {
             BitfinexCandle candlestick = jsonToCandlestick(jsonArray);
             candlestickList.add(candlestick);
         }
-        candlesConsumer.accept((BitfinexCandlestickSymbol) channelSymbol, candlestickList);
+        candlesConsumer.accept((BitfinexCandlestickSymbol) channelSymbol, new EntryBatch<>(candlestickList, snapshot));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleChannelData(final BitfinexStreamSymbol channelSymbol, final ChannelFrameTokenizer tokenizer) throws APIException {
+        final Set<BitfinexCandle> candlestickList = new TreeSet<>(Comparator.comparing(BitfinexCandle::getTimestamp));
+
+        tokenizer.beginArray();
+
+        // Snapshots contain multiple Bars, Updates only one
+        final boolean snapshot = tokenizer.peek() == ChannelFrameTokenizer.Token.BEGIN_ARRAY;
+        if (snapshot) {
+            while (tokenizer.hasNext()) {
+                tokenizer.beginArray();
+                candlestickList.add(decodeCandlestick(tokenizer));
+                tokenizer.endArray();
+            }
+        } else {
+            candlestickList.add(decodeCandlestick(tokenizer));
+        }
+
+        tokenizer.endArray();
+        candlesConsumer.accept((BitfinexCandlestickSymbol) channelSymbol, new EntryBatch<>(candlestickList, snapshot));
+    }
+
+    private BitfinexCandle decodeCandlestick(final ChannelFrameTokenizer tokenizer) throws APIException {
+        // 0 = Timestamp, 1 = Open, 2 = Close, 3 = High, 4 = Low,  5 = Volume
+        final long timestamp = tokenizer.nextLong();
+
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            final int start = tokenizer.getPosition();
+
+            try {
+                final long open = tokenizer.nextFixedPoint(fixedPointScale);
+                final long close = tokenizer.nextFixedPoint(fixedPointScale);
+                final long high = tokenizer.nextFixedPoint(fixedPointScale);
+                final long low = tokenizer.nextFixedPoint(fixedPointScale);
+                final long volume = tokenizer.nextFixedPoint(fixedPointScale);
+
+                return new BitfinexCandle(timestamp, open, close, high, low, volume, fixedPointScale);
+            } catch (APIException e) {
+                // A value does not fit into the scale, the candle is decoded as BigDecimal
+                tokenizer.setPosition(start);
+            }
+        }
+
+        final BigDecimal open = tokenizer.nextBigDecimal();
+        final BigDecimal close = tokenizer.nextBigDecimal();
+        final BigDecimal high = tokenizer.nextBigDecimal();
+        final BigDecimal low = tokenizer.nextBigDecimal();
+        final BigDecimal volume = tokenizer.nextBigDecimal();
+
+        return new BitfinexCandle(timestamp, open, close, high, low, Optional.of(volume));
     }
 
     private BitfinexCandle jsonToCandlestick(final JSONArray parts) {
         // 0 = Timestamp, 1 = Open, 2 = Close, 3 = High, 4 = Low,  5 = Volume
         final long timestamp = parts.getLong(0);
+
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            try {
+                final long open = FixedPoint.toFixedPoint(parts.getBigDecimal(1), fixedPointScale);
+                final long close = FixedPoint.toFixedPoint(parts.getBigDecimal(2), fixedPointScale);
+                final long high = FixedPoint.toFixedPoint(parts.getBigDecimal(3), fixedPointScale);
+                final long low = FixedPoint.toFixedPoint(parts.getBigDecimal(4), fixedPointScale);
+                final long volume = FixedPoint.toFixedPoint(parts.getBigDecimal(5), fixedPointScale);
+
+                return new BitfinexCandle(timestamp, open, close, high, low, volume, fixedPointScale);
+            } catch (ArithmeticException e) {
+                // A value does not fit into the scale, the candle is decoded as BigDecimal
+            }
+        }
+
         final BigDecimal open = parts.getBigDecimal(1);
         final BigDecimal close = parts.getBigDecimal(2);
         final BigDecimal high = parts.getBigDecimal(3);
@@ -79,4 +161,15 @@ public class CandlestickHandler implements ChannelCallbackHandler {
     public void onCandlesticksEvent(BiConsumer<BitfinexCandlestickSymbol, Collection<BitfinexCandle>> consumer) {
         this.candlesConsumer = consumer;
     }
+
+    /**
+     * Decode prices and amounts as fixed point values with the given scale
+     * (FixedPoint.NO_SCALE decodes BigDecimals). Values that do not fit into
+     * the scale are decoded as BigDecimals, isFixedPoint() of the entity is false.
+     *
+     * @param fixedPointScale the scale
+     */
+    public void setFixedPointScale(final int fixedPointScale) {
+        this.fixedPointScale = fixedPointScale;
+    }
 }
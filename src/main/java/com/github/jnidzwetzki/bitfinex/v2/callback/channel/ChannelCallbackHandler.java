@@ -33,4 +33,13 @@ public interface ChannelCallbackHandler {
      */
     void handleChannelData(final BitfinexStreamSymbol channelSymbol, final JSONArray message) throws APIException;
 
+    /**
+     * Decode the data for the channel directly from the frame
+     *
+     * @param channelSymbol - channel symbol
+     * @param tokenizer     - tokenizer, positioned at the payload of the frame
+     * @throws APIException raised in case of exception
+     */
+    void handleChannelData(final BitfinexStreamSymbol channelSymbol, final ChannelFrameTokenizer tokenizer) throws APIException;
+
 }
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
+
+import java.util.function.IntPredicate;
+
+import org.json.JSONArray;
+
+import com.github.jnidzwetzki.bitfinex.v2.commands.AbstractAPICommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+/**
+ * The pre-built dispatcher of a subscribed channel. The dispatcher is created once
+ * when the channel is subscribed and is reused for every frame of the channel.
+ */
+public final class ChannelDispatcher {
+
+    /**
+     * The symbol of the channel
+     */
+    private final BitfinexStreamSymbol symbol;
+
+    /**
+     * The handler (with the consumer already wired)
+     */
+    private final ChannelCallbackHandler handler;
+
+    /**
+     * The command to subscribe the channel again
+     */
+    private final AbstractAPICommand subscribeCommand;
+
+    /**
+     * The verifier for the checksums of the channel (null if the channel has no checksums)
+     */
+    private final IntPredicate checksumVerifier;
+
+    public ChannelDispatcher(final BitfinexStreamSymbol symbol, final ChannelCallbackHandler handler,
+            final AbstractAPICommand subscribeCommand) {
+        this(symbol, handler, subscribeCommand, null);
+    }
+
+    public ChannelDispatcher(final BitfinexStreamSymbol symbol, final ChannelCallbackHandler handler,
+            final AbstractAPICommand subscribeCommand, final IntPredicate checksumVerifier) {
+        this.symbol = symbol;
+        this.handler = handler;
+        this.subscribeCommand = subscribeCommand;
+        this.checksumVerifier = checksumVerifier;
+    }
+
+    /**
+     * Dispatch the payload of a frame
+     * @param tokenizer
+     * @throws APIException
+     */
+    public void dispatch(final ChannelFrameTokenizer tokenizer) throws APIException {
+        handler.handleChannelData(symbol, tokenizer);
+    }
+
+    /**
+     * Dispatch the payload of a frame
+     * @param payload
+     * @throws APIException
+     */
+    public void dispatch(final JSONArray payload) throws APIException {
+        handler.handleChannelData(symbol, payload);
+    }
+
+    /**
+     * Verify a checksum of the channel
+     * @param checksum
+     * @return false if the local data does not match the checksum
+     */
+    public boolean verifyChecksum(final int checksum) {
+        if (checksumVerifier == null) {
+            return true;
+        }
+
+        return checksumVerifier.test(checksum);
+    }
+
+    /**
+     * Get the symbol of the channel
+     * @return
+     */
+    public BitfinexStreamSymbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Get the handler of the channel
+     * @return
+     */
+    public ChannelCallbackHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Get the command to subscribe the channel again
+     * @return
+     */
+    public AbstractAPICommand getSubscribeCommand() {
+        return subscribeCommand;
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelDispatcher [symbol=" + symbol + ", handler=" + handler.getClass().getSimpleName() + "]";
+    }
+}
@@ -0,0 +1,583 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
+
+import java.math.BigDecimal;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
+/**
+ * Pull-style tokenizer for channel frames (e.g. [17082,[7254.7,3,3.3]])
+ *
+ * The tokenizer reads the values directly from the characters of the frame,
+ * no intermediate JSON tree is build. Separators (',' and ':') are treated
+ * like whitespace, so the tokenizer is lenient and only intended for the
+ * well-formed frames of the bitfinex API.
+ *
+ * Instances are not thread safe, they are meant to be reused by the receiving thread.
+ */
+public class ChannelFrameTokenizer {
+
+    public enum Token {
+        BEGIN_ARRAY,
+        END_ARRAY,
+        BEGIN_OBJECT,
+        END_OBJECT,
+        STRING,
+        NUMBER,
+        LITERAL,
+        END_OF_FRAME;
+    }
+
+    /**
+     * The max amount of significant digits that fit into the long mantissa
+     */
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    /**
+     * The frame
+     */
+    private String frame = "";
+
+    /**
+     * The read position
+     */
+    private int position;
+
+    /**
+     * The length of the frame
+     */
+    private int limit;
+
+    /**
+     * The mantissa of the last scanned number
+     */
+    private long mantissa;
+
+    /**
+     * The scale of the last scanned number
+     */
+    private int scale;
+
+    /**
+     * Does the last scanned number not fit into the mantissa
+     */
+    private boolean overflow;
+
+    /**
+     * The start position of the last scanned number
+     */
+    private int numberStart;
+
+    /**
+     * Reset the tokenizer to the beginning of a new frame
+     * @param frame
+     */
+    public void reset(final String frame) {
+        this.frame = frame;
+        this.position = 0;
+        this.limit = frame.length();
+    }
+
+    /**
+     * Get the type of the next token without consuming it
+     * @return
+     */
+    public Token peek() {
+        skipSeparators();
+
+        if (position >= limit) {
+            return Token.END_OF_FRAME;
+        }
+
+        switch (frame.charAt(position)) {
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case ']':
+                return Token.END_ARRAY;
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '}':
+                return Token.END_OBJECT;
+            case '"':
+                return Token.STRING;
+            case 'n':
+            case 't':
+            case 'f':
+                return Token.LITERAL;
+            default:
+                return Token.NUMBER;
+        }
+    }
+
+    /**
+     * Are there more values in the current array
+     * @return
+     */
+    public boolean hasNext() {
+        final Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_OF_FRAME;
+    }
+
+    /**
+     * Consume the begin of an array
+     * @throws APIException
+     */
+    public void beginArray() throws APIException {
+        expect(Token.BEGIN_ARRAY);
+        position++;
+    }
+
+    /**
+     * Skip all remaining values of the current array and consume the end of the array
+     * @throws APIException
+     */
+    public void endArray() throws APIException {
+        while (hasNext()) {
+            skipValue();
+        }
+
+        expect(Token.END_ARRAY);
+        position++;
+    }
+
+    /**
+     * Is the next value a null literal
+     * @return
+     */
+    public boolean isNextNull() {
+        return peek() == Token.LITERAL && frame.startsWith("null", position);
+    }
+
+    /**
+     * Is the next value the given string (no escape sequences are supported in the value)
+     * @param value
+     * @return
+     */
+    public boolean isNextString(final String value) {
+        if (peek() != Token.STRING) {
+            return false;
+        }
+
+        final int end = position + 1 + value.length();
+
+        return end < limit
+                && frame.charAt(end) == '"'
+                && frame.regionMatches(position + 1, value, 0, value.length());
+    }
+
+    /**
+     * Read the next value as string
+     * @return
+     * @throws APIException
+     */
+    public String nextString() throws APIException {
+        expect(Token.STRING);
+        position++;
+
+        final StringBuilder sb = new StringBuilder();
+
+        while (position < limit) {
+            final char c = frame.charAt(position++);
+
+            if (c == '"') {
+                return sb.toString();
+            }
+
+            if (c == '\\' && position < limit) {
+                final char escaped = frame.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'u':
+                        sb.append(scanUnicodeEscape());
+                        break;
+                    default:
+                        sb.append(escaped);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+
+        throw buildException("Unterminated string");
+    }
+
+    /**
+     * Scan the four hex digits of an unicode escape sequence
+     * @return
+     * @throws APIException
+     */
+    private char scanUnicodeEscape() throws APIException {
+        if (position + 4 > limit) {
+            throw buildException("Invalid unicode escape");
+        }
+
+        int value = 0;
+
+        for (int i = 0; i < 4; i++) {
+            final int digit = Character.digit(frame.charAt(position++), 16);
+
+            if (digit == -1) {
+                throw buildException("Invalid unicode escape");
+            }
+
+            value = value * 16 + digit;
+        }
+
+        return (char) value;
+    }
+
+    /**
+     * Read the next value as long
+     * @return
+     * @throws APIException
+     */
+    public long nextLong() throws APIException {
+        scanNumber();
+
+        if (!overflow && scale == 0) {
+            return mantissa;
+        }
+
+        return currentNumberAsBigDecimal().longValue();
+    }
+
+    /**
+     * Read the next value as int
+     * @return
+     * @throws APIException
+     */
+    public int nextInt() throws APIException {
+        final long value = nextLong();
+
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw buildException("Value " + value + " does not fit into an int");
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Read the next value as BigDecimal
+     * @return
+     * @throws APIException
+     */
+    public BigDecimal nextBigDecimal() throws APIException {
+        scanNumber();
+        return currentNumberAsBigDecimal();
+    }
+
+    /**
+     * Read the next value as fixed point value with the given scale
+     * @param targetScale
+     * @return
+     * @throws APIException
+     */
+    public long nextFixedPoint(final int targetScale) throws APIException {
+        scanNumber();
+
+        try {
+            if (!overflow) {
+                return FixedPoint.toFixedPoint(mantissa, scale, targetScale);
+            }
+
+            return FixedPoint.toFixedPoint(currentNumberAsBigDecimal(), targetScale);
+        } catch (ArithmeticException e) {
+            throw buildException("Value does not fit into a fixed point value with scale " + targetScale);
+        }
+    }
+
+    /**
+     * Set the read position to a position returned by getPosition() (e.g. to 
+     * decode the following values again)
+     * @param position
+     */
+    public void setPosition(final int position) {
+        if (position < 0 || position > limit) {
+            throw new IllegalArgumentException("Invalid position: " + position);
+        }
+
+        this.position = position;
+    }
+
+    /**
+     * Skip the next value (including nested arrays and objects)
+     * @throws APIException
+     */
+    public void skipValue() throws APIException {
+        final Token token = peek();
+
+        switch (token) {
+            case BEGIN_ARRAY:
+            case BEGIN_OBJECT:
+                skipNested();
+                break;
+            case STRING:
+                skipString();
+                break;
+            case NUMBER:
+            case LITERAL:
+                while (position < limit && !isValueTerminator(frame.charAt(position))) {
+                    position++;
+                }
+                break;
+            default:
+                throw buildException("Unable to skip token " + token);
+        }
+    }
+
+    /**
+     * Get the current read position
+     * @return
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Skip a nested array or object
+     * @throws APIException
+     */
+    private void skipNested() throws APIException {
+        int depth = 0;
+
+        do {
+            if (position >= limit) {
+                break;
+            }
+
+            final char c = frame.charAt(position);
+
+            if (c == '"') {
+                skipString();
+                continue;
+            }
+
+            if (c == '[' || c == '{') {
+                depth++;
+            } else if (c == ']' || c == '}') {
+                depth--;
+            }
+
+            position++;
+        } while (depth > 0 && position < limit);
+
+        if (depth > 0) {
+            throw buildException("Unterminated array or object");
+        }
+    }
+
+    /**
+     * Skip a string value
+     * @throws APIException
+     */
+    private void skipString() throws APIException {
+        position++;
+
+        while (position < limit) {
+            final char c = frame.charAt(position++);
+
+            if (c == '\\') {
+                position++;
+            } else if (c == '"') {
+                return;
+            }
+        }
+
+        throw buildException("Unterminated string");
+    }
+
+    /**
+     * Scan the next number into mantissa and scale
+     * @throws APIException
+     */
+    private void scanNumber() throws APIException {
+        expect(Token.NUMBER);
+
+        numberStart = position;
+        mantissa = 0;
+        scale = 0;
+        overflow = false;
+
+        boolean negative = false;
+        boolean fraction = false;
+        int significantDigits = 0;
+        int digits = 0;
+
+        char c = frame.charAt(position);
+
+        if (c == '-' || c == '+') {
+            negative = (c == '-');
+            position++;
+        }
+
+        while (position < limit) {
+            c = frame.charAt(position);
+
+            if (c >= '0' && c <= '9') {
+                digits++;
+
+                if (mantissa != 0 || c != '0') {
+                    significantDigits++;
+                }
+
+                if (significantDigits <= MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+
+                    if (fraction) {
+                        scale++;
+                    }
+                } else {
+                    overflow = true;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == 'e' || c == 'E') {
+                position++;
+                scale -= scanExponent();
+                break;
+            } else {
+                break;
+            }
+
+            position++;
+        }
+
+        if (digits == 0) {
+            throw buildException("Invalid number");
+        }
+
+        if (negative) {
+            mantissa = -mantissa;
+        }
+    }
+
+    /**
+     * Scan the exponent of a number
+     * @return
+     * @throws APIException
+     */
+    private int scanExponent() throws APIException {
+        boolean negative = false;
+        int exponent = 0;
+        int digits = 0;
+
+        if (position < limit && (frame.charAt(position) == '-' || frame.charAt(position) == '+')) {
+            negative = (frame.charAt(position) == '-');
+            position++;
+        }
+
+        while (position < limit) {
+            final char c = frame.charAt(position);
+
+            if (c < '0' || c > '9') {
+                break;
+            }
+
+            exponent = exponent * 10 + (c - '0');
+            digits++;
+            position++;
+        }
+
+        if (digits == 0) {
+            throw buildException("Invalid exponent");
+        }
+
+        return negative ? -exponent : exponent;
+    }
+
+    /**
+     * Convert the last scanned number into a BigDecimal
+     * @return
+     * @throws APIException
+     */
+    private BigDecimal currentNumberAsBigDecimal() throws APIException {
+        if (!overflow) {
+            return BigDecimal.valueOf(mantissa, scale);
+        }
+
+        // Too many digits for the fast path
+        try {
+            return new BigDecimal(frame.substring(numberStart, position));
+        } catch (NumberFormatException e) {
+            throw new APIException(e);
+        }
+    }
+
+    /**
+     * Skip whitespace and separators
+     */
+    private void skipSeparators() {
+        while (position < limit) {
+            final char c = frame.charAt(position);
+
+            if (c != ',' && c != ':' && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+
+            position++;
+        }
+    }
+
+    /**
+     * Is the char the end of a number or literal
+     * @param c
+     * @return
+     */
+    private boolean isValueTerminator(final char c) {
+        return c == ',' || c == ']' || c == '}' || c == ':' || c == ' ';
+    }
+
+    /**
+     * Ensure the next token has the given type
+     * @param expected
+     * @throws APIException
+     */
+    private void expect(final Token expected) throws APIException {
+        final Token token = peek();
+
+        if (token != expected) {
+            throw buildException("Expected " + expected + " but got " + token);
+        }
+    }
+
+    /**
+     * Build a exception for the current position
+     * @param message
+     * @return
+     */
+    private APIException buildException(final String message) {
+        return new APIException(message + " at position " + position + " of frame " + frame);
+    }
+
+}
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.IntKeyTable;
+
+/**
+ * The subscriptions of a connection, indexed by channel id and by symbol
+ *
+ * The channel id tables and the symbol index are read without locks, the modifications
+ * (subscribed / unsubscribed messages) are serialized by the registry. A symbol is
+ * mapped to its latest subscription, older channels of the symbol (e.g. during a
+ * resubscription) stay in the channel tables until they are unsubscribed.
+ */
+public class ChannelRegistry {
+
+    /**
+     * The dispatchers by channel id
+     */
+    private final IntKeyTable<ChannelDispatcher> dispatchTable;
+
+    /**
+     * The subscriptions by channel id
+     */
+    private final IntKeyTable<ChannelSubscription> channels;
+
+    /**
+     * The latest subscription of each symbol
+     */
+    private final Map<BitfinexStreamSymbol, ChannelSubscription> symbols;
+
+    /**
+     * The symbols by channel id, the waiting threads are notified on changes
+     */
+    private final Map<Integer, BitfinexStreamSymbol> channelSymbols;
+
+    public ChannelRegistry() {
+        this.dispatchTable = new IntKeyTable<>();
+        this.channels = new IntKeyTable<>();
+        this.symbols = new ConcurrentHashMap<>();
+        this.channelSymbols = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Register a pending subscription of the symbol
+     * @param symbol
+     * @return the pending subscription (an existing pending or active subscription is reused)
+     */
+    public synchronized ChannelSubscription subscribing(final BitfinexStreamSymbol symbol) {
+        final ChannelSubscription subscription = symbols.get(symbol);
+
+        if (subscription != null && (subscription.getState() == SubscriptionState.PENDING 
+                || subscription.getState() == SubscriptionState.ACTIVE)) {
+            return subscription;
+        }
+
+        final ChannelSubscription newSubscription = new ChannelSubscription(symbol);
+        symbols.put(symbol, newSubscription);
+        return newSubscription;
+    }
+
+    /**
+     * Handle the subscribed message of the channel
+     * @param channelId
+     * @param symbol
+     * @param dispatcher the dispatcher or null
+     * @return the active subscription
+     */
+    public synchronized ChannelSubscription subscribed(final int channelId, final BitfinexStreamSymbol symbol,
+            final ChannelDispatcher dispatcher) {
+
+        ChannelSubscription subscription = symbols.get(symbol);
+
+        if (subscription == null || subscription.getState() != SubscriptionState.PENDING) {
+            subscription = new ChannelSubscription(symbol);
+            symbols.put(symbol, subscription);
+        }
+
+        if (dispatcher != null) {
+            dispatchTable.put(channelId, dispatcher);
+        }
+
+        channels.put(channelId, subscription);
+        subscription.activate(channelId, dispatcher);
+
+        synchronized (channelSymbols) {
+            channelSymbols.put(channelId, symbol);
+            channelSymbols.notifyAll();
+        }
+
+        return subscription;
+    }
+
+    /**
+     * Handle the failed subscription of the symbol (e.g. an error event or a timeout)
+     * @param symbol
+     * @param cause
+     * @return the removed pending subscription or null
+     */
+    public synchronized ChannelSubscription subscriptionFailed(final BitfinexStreamSymbol symbol, 
+            final Throwable cause) {
+
+        final ChannelSubscription subscription = symbols.get(symbol);
+
+        if (subscription == null || subscription.getState() != SubscriptionState.PENDING) {
+            return null;
+        }
+
+        symbols.remove(symbol);
+        subscription.fail(cause);
+        return subscription;
+    }
+
+    /**
+     * Handle the data of the channel, the first data completes the snapshot future
+     * @param channelId
+     */
+    public void dataReceived(final int channelId) {
+        final ChannelSubscription subscription = channels.get(channelId);
+
+        if (subscription != null) {
+            subscription.snapshotReceived();
+        }
+    }
+
+    /**
+     * Mark the channel as unsubscribing
+     * @param channelId
+     * @return the subscription or null
+     */
+    public synchronized ChannelSubscription unsubscribing(final int channelId) {
+        final ChannelSubscription subscription = channels.get(channelId);
+
+        if (subscription != null) {
+            subscription.unsubscribing();
+        }
+
+        return subscription;
+    }
+
+    /**
+     * Handle the unsubscribed message of the channel
+     * @param channelId
+     * @return the removed subscription or null
+     */
+    public synchronized ChannelSubscription unsubscribed(final int channelId) {
+        dispatchTable.remove(channelId);
+        final ChannelSubscription subscription = channels.remove(channelId);
+
+        synchronized (channelSymbols) {
+            channelSymbols.remove(channelId);
+            channelSymbols.notifyAll();
+        }
+
+        if (subscription == null) {
+            return null;
+        }
+
+        symbols.remove(subscription.getSymbol(), subscription);
+        subscription.close();
+        return subscription;
+    }
+
+    /**
+     * Remove all subscriptions (e.g. on reconnect)
+     * @return the dispatchers of the removed channels
+     */
+    public synchronized Map<Integer, ChannelDispatcher> clear() {
+        final Map<Integer, ChannelDispatcher> oldDispatchers = dispatchTable.snapshot();
+        final List<ChannelSubscription> oldSubscriptions = new ArrayList<>(symbols.values());
+        oldSubscriptions.addAll(channels.snapshot().values());
+
+        dispatchTable.clear();
+        channels.clear();
+        symbols.clear();
+
+        synchronized (channelSymbols) {
+            channelSymbols.clear();
+            channelSymbols.notifyAll();
+        }
+
+        oldSubscriptions.forEach(ChannelSubscription::close);
+        return oldDispatchers;
+    }
+
+    /**
+     * Replace the subscriptions with the given channels
+     * @param channelDispatchers
+     */
+    public synchronized void restore(final Map<Integer, ChannelDispatcher> channelDispatchers) {
+        clear();
+
+        for (final Map.Entry<Integer, ChannelDispatcher> entry : channelDispatchers.entrySet()) {
+            subscribed(entry.getKey(), entry.getValue().getSymbol(), entry.getValue());
+        }
+    }
+
+    /**
+     * Get the dispatcher of the channel
+     * @param channelId
+     * @return the dispatcher or null
+     */
+    public ChannelDispatcher getDispatcher(final int channelId) {
+        return dispatchTable.get(channelId);
+    }
+
+    /**
+     * Get the subscription of the channel
+     * @param channelId
+     * @return the subscription or null
+     */
+    public ChannelSubscription getSubscription(final int channelId) {
+        return channels.get(channelId);
+    }
+
+    /**
+     * Get the latest subscription of the symbol
+     * @param symbol
+     * @return the subscription or null
+     */
+    public ChannelSubscription getSubscription(final BitfinexStreamSymbol symbol) {
+        return symbols.get(symbol);
+    }
+
+    /**
+     * Get the channel of the symbol
+     * @param symbol
+     * @return the channel id or -1 if the symbol is not subscribed
+     */
+    public int getChannel(final BitfinexStreamSymbol symbol) {
+        final ChannelSubscription subscription = symbols.get(symbol);
+
+        if (subscription == null) {
+            return -1;
+        }
+
+        return subscription.getChannelId();
+    }
+
+    /**
+     * Get the subscribed channels
+     * @return
+     */
+    public Map<Integer, ChannelSubscription> getChannels() {
+        return channels.snapshot();
+    }
+
+    /**
+     * Get the symbols of the subscribed channels. The map is updated by the registry and 
+     * must not be modified, the threads waiting on the map are notified on changes.
+     * @return
+     */
+    public Map<Integer, BitfinexStreamSymbol> getChannelSymbols() {
+        return channelSymbols;
+    }
+
+    /**
+     * Get the number of subscribed channels
+     * @return
+     */
+    public int size() {
+        return channels.size();
+    }
+}
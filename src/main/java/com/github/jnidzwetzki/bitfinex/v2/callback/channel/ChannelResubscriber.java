@@ -0,0 +1,333 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.commands.AbstractAPICommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+/**
+ * Subscribes a set of channels again (e.g. after a reconnect).
+ *
+ * The subscribe commands are pipelined at a fixed rate (or by a rate limited sender),
+ * each channel is tracked by the future of its subscription. A channel that is not
+ * subscribed within the timeout (measured from the sending of the command) or whose
+ * subscription is rejected is retried on its own, the other channels are not affected.
+ * The channels deliver data as soon as they are subscribed. A channel that failed all
+ * attempts is removed from the registry.
+ */
+public class ChannelResubscriber {
+
+    /**
+     * The channel registry
+     */
+    private final ChannelRegistry channelRegistry;
+
+    /**
+     * The sender of the subscribe commands, runs the callback when the command is sent
+     */
+    private final BiConsumer<AbstractAPICommand, Runnable> commandSender;
+
+    /**
+     * The scheduler for the commands and the timeouts
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The interval between two subscribe commands (0 if the sender applies the rate limit)
+     */
+    private final long commandIntervalNanos;
+
+    /**
+     * The timeout of a subscription attempt
+     */
+    private final long timeoutMillis;
+
+    /**
+     * The number of attempts per channel
+     */
+    private final int maxAttempts;
+
+    /**
+     * The time of the next free command slot
+     */
+    private long nextCommandSlot;
+
+    /**
+     * The Logger
+     */
+    private final static Logger logger = LoggerFactory.getLogger(ChannelResubscriber.class);
+
+    /**
+     * Create a resubscriber that sends the commands at the given rate
+     * @param channelRegistry
+     * @param commandSender
+     * @param scheduler
+     * @param commandsPerSecond
+     * @param timeoutMillis
+     * @param maxAttempts
+     */
+    public ChannelResubscriber(final ChannelRegistry channelRegistry, final Consumer<AbstractAPICommand> commandSender,
+            final ScheduledExecutorService scheduler, final int commandsPerSecond,
+            final long timeoutMillis, final int maxAttempts) {
+
+        this(channelRegistry, (command, sentCallback) -> {
+            commandSender.accept(command);
+            sentCallback.run();
+        }, scheduler, getCommandIntervalNanos(commandsPerSecond), timeoutMillis, maxAttempts);
+    }
+
+    /**
+     * Create a resubscriber for a sender that applies the rate limit itself (e.g. the 
+     * command scheduler) and runs the callback when the command is sent
+     * @param channelRegistry
+     * @param commandSender
+     * @param scheduler
+     * @param timeoutMillis
+     * @param maxAttempts
+     */
+    public ChannelResubscriber(final ChannelRegistry channelRegistry, 
+            final BiConsumer<AbstractAPICommand, Runnable> commandSender,
+            final ScheduledExecutorService scheduler, final long timeoutMillis, final int maxAttempts) {
+
+        this(channelRegistry, commandSender, scheduler, 0, timeoutMillis, maxAttempts);
+    }
+
+    private ChannelResubscriber(final ChannelRegistry channelRegistry, 
+            final BiConsumer<AbstractAPICommand, Runnable> commandSender,
+            final ScheduledExecutorService scheduler, final long commandIntervalNanos,
+            final long timeoutMillis, final int maxAttempts) {
+
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid number of attempts: " + maxAttempts);
+        }
+
+        this.channelRegistry = channelRegistry;
+        this.commandSender = commandSender;
+        this.scheduler = scheduler;
+        this.commandIntervalNanos = commandIntervalNanos;
+        this.timeoutMillis = timeoutMillis;
+        this.maxAttempts = maxAttempts;
+        this.nextCommandSlot = System.nanoTime();
+    }
+
+    /**
+     * Get the interval between two commands
+     * @param commandsPerSecond
+     * @return
+     */
+    private static long getCommandIntervalNanos(final int commandsPerSecond) {
+        if (commandsPerSecond < 1) {
+            throw new IllegalArgumentException("Invalid command rate: " + commandsPerSecond);
+        }
+
+        return TimeUnit.SECONDS.toNanos(1) / commandsPerSecond;
+    }
+
+    /**
+     * Subscribe the channels of the dispatchers
+     * @param dispatchers
+     * @return the future of the resubscription, completed with the symbols that could
+     *         not be subscribed (empty on success). Cancelling the future stops the
+     *         pending attempts.
+     */
+    public CompletableFuture<List<BitfinexStreamSymbol>> resubscribe(final Collection<ChannelDispatcher> dispatchers) {
+        final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        final List<BitfinexStreamSymbol> symbols = new ArrayList<>();
+
+        for (final ChannelDispatcher dispatcher : dispatchers) {
+            final CompletableFuture<Boolean> result = new CompletableFuture<>();
+            results.add(result);
+            symbols.add(dispatcher.getSymbol());
+            scheduleAttempt(dispatcher, 1, result);
+        }
+
+        final CompletableFuture<List<BitfinexStreamSymbol>> resubscription
+            = CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+                final List<BitfinexStreamSymbol> failedSymbols = new ArrayList<>();
+
+                for (int i = 0; i < results.size(); i++) {
+                    if (! results.get(i).join()) {
+                        failedSymbols.add(symbols.get(i));
+                    }
+                }
+
+                return Collections.unmodifiableList(failedSymbols);
+            });
+
+        // The attempts of the channels check their result before they are executed
+        resubscription.whenComplete((failedSymbols, e) -> {
+            if (resubscription.isCancelled()) {
+                results.forEach(result -> result.complete(false));
+            }
+        });
+
+        return resubscription;
+    }
+
+    /**
+     * Schedule the subscription attempt in the next free command slot
+     * @param dispatcher
+     * @param attempt
+     * @param result
+     */
+    private void scheduleAttempt(final ChannelDispatcher dispatcher, final int attempt,
+            final CompletableFuture<Boolean> result) {
+
+        final long delay;
+
+        synchronized (this) {
+            final long now = System.nanoTime();
+            nextCommandSlot = Math.max(nextCommandSlot, now);
+            delay = nextCommandSlot - now;
+            nextCommandSlot += commandIntervalNanos;
+        }
+
+        scheduler.schedule(() -> subscribe(dispatcher, attempt, result), delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Send the subscribe command
+     * @param dispatcher
+     * @param attempt
+     * @param result
+     */
+    private void subscribe(final ChannelDispatcher dispatcher, final int attempt,
+            final CompletableFuture<Boolean> result) {
+
+        if (result.isDone()) {
+            return;
+        }
+
+        final ChannelSubscription subscription = channelRegistry.subscribing(dispatcher.getSymbol());
+        commandSender.accept(dispatcher.getSubscribeCommand(),
+                () -> awaitSubscription(dispatcher, subscription, attempt, result));
+    }
+
+    /**
+     * Wait for the subscription, retry on timeouts and rejections. Either the timeout 
+     * or the completion of the subscription retries the attempt, never both.
+     * @param dispatcher
+     * @param subscription
+     * @param attempt
+     * @param result
+     */
+    private void awaitSubscription(final ChannelDispatcher dispatcher, final ChannelSubscription subscription,
+            final int attempt, final CompletableFuture<Boolean> result) {
+
+        if (result.isDone()) {
+            return;
+        }
+
+        final CompletableFuture<Integer> subscribedFuture = subscription.getSubscribedFuture();
+
+        final ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+
+            if (! subscribedFuture.isDone()) {
+                retryOrFail(dispatcher, attempt, result, "timed out");
+            } else if (isRejected(subscribedFuture)) {
+                retryOrFail(dispatcher, attempt, result, "was rejected");
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        subscribedFuture.whenComplete((channelId, e) -> {
+            final boolean timeoutPending = timeout.cancel(false);
+
+            if (e == null) {
+                result.complete(true);
+            } else if (! isRejection(e)) {
+                // Closed or unsubscribed, the channel is not wanted anymore
+                result.complete(false);
+            } else if (timeoutPending) {
+                retryOrFail(dispatcher, attempt, result, "was rejected");
+            }
+        });
+    }
+
+    /**
+     * Schedule the next attempt or fail the channel after the last attempt
+     * @param dispatcher
+     * @param attempt
+     * @param result
+     * @param reason
+     */
+    private void retryOrFail(final ChannelDispatcher dispatcher, final int attempt,
+            final CompletableFuture<Boolean> result, final String reason) {
+
+        final BitfinexStreamSymbol symbol = dispatcher.getSymbol();
+
+        if (attempt < maxAttempts) {
+            logger.warn("Subscription of {} {}, retrying (attempt {} of {})",
+                    symbol, reason, attempt + 1, maxAttempts);
+            scheduleAttempt(dispatcher, attempt + 1, result);
+            return;
+        }
+
+        logger.error("Unable to subscribe {} after {} attempts", symbol, maxAttempts);
+
+        // Rejected subscriptions are already removed, pending ones are failed
+        channelRegistry.subscriptionFailed(symbol, new TimeoutException(
+                "Unable to subscribe " + symbol + " after " + maxAttempts + " attempts"));
+        result.complete(false);
+    }
+
+    /**
+     * Is the subscription completed with a rejection of the exchange
+     * @param subscribedFuture
+     * @return
+     */
+    private static boolean isRejected(final CompletableFuture<Integer> subscribedFuture) {
+        try {
+            subscribedFuture.getNow(null);
+            return false;
+        } catch (CompletionException e) {
+            return isRejection(e);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Is the exception a rejection of the exchange (a subscribe error event)
+     * @param e
+     * @return
+     */
+    private static boolean isRejection(final Throwable e) {
+        final Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+        return cause instanceof APIException;
+    }
+}
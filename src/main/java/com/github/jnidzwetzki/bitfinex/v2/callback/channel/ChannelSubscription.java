@@ -0,0 +1,160 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.callback.channel;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+/**
+ * The subscription of a symbol. The futures complete when the channel is subscribed
+ * (with the channel id), when the first data (the snapshot) of the channel is
+ * dispatched and when it is unsubscribed.
+ */
+public class ChannelSubscription {
+
+    /**
+     * The symbol
+     */
+    private final BitfinexStreamSymbol symbol;
+
+    /**
+     * The channel id (-1 while pending)
+     */
+    private volatile int channelId;
+
+    /**
+     * The state
+     */
+    private volatile SubscriptionState state;
+
+    /**
+     * The dispatcher of the channel
+     */
+    private volatile ChannelDispatcher dispatcher;
+
+    /**
+     * Completed with the channel id on subscription
+     */
+    private final CompletableFuture<Integer> subscribedFuture;
+
+    /**
+     * Completed with the channel id when the first data is dispatched
+     */
+    private final CompletableFuture<Integer> snapshotFuture;
+
+    /**
+     * Completed on unsubscription
+     */
+    private final CompletableFuture<Void> unsubscribedFuture;
+
+    public ChannelSubscription(final BitfinexStreamSymbol symbol) {
+        this.symbol = symbol;
+        this.channelId = -1;
+        this.state = SubscriptionState.PENDING;
+        this.subscribedFuture = new CompletableFuture<>();
+        this.snapshotFuture = new CompletableFuture<>();
+        this.unsubscribedFuture = new CompletableFuture<>();
+    }
+
+    /**
+     * Mark the subscription as active
+     * @param channelId
+     * @param dispatcher
+     */
+    void activate(final int channelId, final ChannelDispatcher dispatcher) {
+        this.channelId = channelId;
+        this.dispatcher = dispatcher;
+        this.state = SubscriptionState.ACTIVE;
+        subscribedFuture.complete(channelId);
+    }
+
+    /**
+     * The first data of the channel was dispatched
+     */
+    void snapshotReceived() {
+        if (! snapshotFuture.isDone()) {
+            snapshotFuture.complete(channelId);
+        }
+    }
+
+    /**
+     * Mark the subscription as unsubscribing
+     */
+    void unsubscribing() {
+        if (state == SubscriptionState.ACTIVE) {
+            state = SubscriptionState.UNSUBSCRIBING;
+        }
+    }
+
+    /**
+     * Mark the subscription as failed (e.g. rejected by the server)
+     * @param cause
+     */
+    void fail(final Throwable cause) {
+        state = SubscriptionState.CLOSED;
+        subscribedFuture.completeExceptionally(cause);
+        snapshotFuture.completeExceptionally(cause);
+        unsubscribedFuture.complete(null);
+    }
+
+    /**
+     * Mark the subscription as closed
+     */
+    void close() {
+        state = SubscriptionState.CLOSED;
+        final IllegalStateException exception
+            = new IllegalStateException("The subscription of " + symbol + " is closed");
+        subscribedFuture.completeExceptionally(exception);
+        snapshotFuture.completeExceptionally(exception);
+        unsubscribedFuture.complete(null);
+    }
+
+    public BitfinexStreamSymbol getSymbol() {
+        return symbol;
+    }
+
+    public int getChannelId() {
+        return channelId;
+    }
+
+    public SubscriptionState getState() {
+        return state;
+    }
+
+    public ChannelDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public CompletableFuture<Integer> getSubscribedFuture() {
+        return subscribedFuture;
+    }
+
+    public CompletableFuture<Integer> getSnapshotFuture() {
+        return snapshotFuture;
+    }
+
+    public CompletableFuture<Void> getUnsubscribedFuture() {
+        return unsubscribedFuture;
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelSubscription [symbol=" + symbol + ", channelId=" + channelId + ", state=" + state + "]";
+    }
+}
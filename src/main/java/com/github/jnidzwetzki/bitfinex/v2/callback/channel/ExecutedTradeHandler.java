@@ -27,14 +27,18 @@ import org.json.JSONArray;
 import org.json.JSONException;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExecutedTrade;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
 
 public class ExecutedTradeHandler implements ChannelCallbackHandler {
 
     private BiConsumer<BitfinexExecutedTradeSymbol, Collection<ExecutedTrade>> executedTradesConsumer = (s, t) -> {};
 
+    private int fixedPointScale = FixedPoint.NO_SCALE;
+
     /**
      * {@inheritDoc}
      */
@@ -45,7 +49,8 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
             final List<ExecutedTrade> trades = new ArrayList<>();
 
             // Snapshots contain multiple executes entries, updates only one
-            if (jsonArray.get(0) instanceof JSONArray) {
+            final boolean snapshot = jsonArray.get(0) instanceof JSONArray;
+            if (snapshot) {
                 for (int pos = 0; pos < jsonArray.length(); pos++) {
                     final JSONArray parts = jsonArray.getJSONArray(pos);
                     ExecutedTrade trade = jsonToExecutedTrade(parts);
@@ -55,12 +60,90 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
                 ExecutedTrade trade = jsonToExecutedTrade(jsonArray);
                 trades.add(trade);
             }
-            executedTradesConsumer.accept(config, trades);
-        } catch (JSONException e) {
+            executedTradesConsumer.accept(config, new EntryBatch<>(trades, snapshot));
+        } catch (JSONException | ArithmeticException e) {
             throw new APIException(e);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleChannelData(final BitfinexStreamSymbol channelSymbol, final ChannelFrameTokenizer tokenizer) throws APIException {
+        final BitfinexExecutedTradeSymbol config = (BitfinexExecutedTradeSymbol) channelSymbol;
+        final List<ExecutedTrade> trades = new ArrayList<>();
+
+        tokenizer.beginArray();
+
+        // Snapshots contain multiple executes entries, updates only one
+        final boolean snapshot = tokenizer.peek() == ChannelFrameTokenizer.Token.BEGIN_ARRAY;
+        if (snapshot) {
+            while (tokenizer.hasNext()) {
+                tokenizer.beginArray();
+                trades.add(decodeExecutedTrade(tokenizer));
+                tokenizer.endArray();
+            }
+        } else {
+            trades.add(decodeExecutedTrade(tokenizer));
+        }
+
+        tokenizer.endArray();
+        executedTradesConsumer.accept(config, new EntryBatch<>(trades, snapshot));
+    }
+
+    private ExecutedTrade decodeExecutedTrade(final ChannelFrameTokenizer tokenizer) throws APIException {
+        final ExecutedTrade executedTrade = new ExecutedTrade();
+        executedTrade.setId(tokenizer.nextLong());
+        executedTrade.setTimestamp(tokenizer.nextLong());
+
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            final int start = tokenizer.getPosition();
+            final long amount;
+            final long priceOrRate;
+
+            try {
+                amount = tokenizer.nextFixedPoint(fixedPointScale);
+                priceOrRate = tokenizer.nextFixedPoint(fixedPointScale);
+            } catch (APIException e) {
+                // A value does not fit into the scale, the trade is decoded as BigDecimal
+                tokenizer.setPosition(start);
+                return decodeExecutedTradeValues(tokenizer, executedTrade);
+            }
+
+            executedTrade.setScale(fixedPointScale);
+            executedTrade.setScaledAmount(amount);
+
+            // Funding or Currency
+            if (tokenizer.peek() == ChannelFrameTokenizer.Token.NUMBER) {
+                executedTrade.setScaledRate(priceOrRate);
+                executedTrade.setPeriod(tokenizer.nextInt());
+            } else {
+                executedTrade.setScaledPrice(priceOrRate);
+            }
+            return executedTrade;
+        }
+
+        return decodeExecutedTradeValues(tokenizer, executedTrade);
+    }
+
+    private ExecutedTrade decodeExecutedTradeValues(final ChannelFrameTokenizer tokenizer, 
+            final ExecutedTrade executedTrade) throws APIException {
+
+        executedTrade.setAmount(tokenizer.nextBigDecimal());
+
+        final BigDecimal priceOrRate = tokenizer.nextBigDecimal();
+
+        // Funding or Currency
+        if (tokenizer.peek() == ChannelFrameTokenizer.Token.NUMBER) {
+            executedTrade.setRate(priceOrRate);
+            executedTrade.setPeriod(tokenizer.nextInt());
+        } else {
+            executedTrade.setPrice(priceOrRate);
+        }
+        return executedTrade;
+    }
+
     private ExecutedTrade jsonToExecutedTrade(final JSONArray jsonArray) {
         final ExecutedTrade executedTrade = new ExecutedTrade();
 
@@ -70,6 +153,35 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
         final long timestamp = jsonArray.getNumber(1).longValue();
         executedTrade.setTimestamp(timestamp);
 
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            final long amount;
+            final long priceOrRate;
+
+            try {
+                amount = FixedPoint.toFixedPoint(jsonArray.getBigDecimal(2), fixedPointScale);
+                priceOrRate = FixedPoint.toFixedPoint(jsonArray.getBigDecimal(3), fixedPointScale);
+            } catch (ArithmeticException e) {
+                // A value does not fit into the scale, the trade is decoded as BigDecimal
+                return jsonToExecutedTradeValues(jsonArray, executedTrade);
+            }
+
+            executedTrade.setScale(fixedPointScale);
+            executedTrade.setScaledAmount(amount);
+
+            // Funding or Currency
+            if (jsonArray.optNumber(4) != null) {
+                executedTrade.setScaledRate(priceOrRate);
+                executedTrade.setPeriod(jsonArray.getNumber(4).intValue());
+            } else {
+                executedTrade.setScaledPrice(priceOrRate);
+            }
+            return executedTrade;
+        }
+
+        return jsonToExecutedTradeValues(jsonArray, executedTrade);
+    }
+
+    private ExecutedTrade jsonToExecutedTradeValues(final JSONArray jsonArray, final ExecutedTrade executedTrade) {
         final BigDecimal amount = jsonArray.getBigDecimal(2);
         executedTrade.setAmount(amount);
 
@@ -95,4 +207,15 @@ public class ExecutedTradeHandler implements ChannelCallbackHandler {
     public void onExecutedTradeEvent(BiConsumer<BitfinexExecutedTradeSymbol, Collection<ExecutedTrade>> consumer) {
         this.executedTradesConsumer = consumer;
     }
+
+    /**
+     * Decode prices and amounts as fixed point values with the given scale
+     * (FixedPoint.NO_SCALE decodes BigDecimals). Values that do not fit into
+     * the scale are decoded as BigDecimals, isFixedPoint() of the entity is false.
+     *
+     * @param fixedPointScale the scale
+     */
+    public void setFixedPointScale(final int fixedPointScale) {
+        this.fixedPointScale = fixedPointScale;
+    }
 }
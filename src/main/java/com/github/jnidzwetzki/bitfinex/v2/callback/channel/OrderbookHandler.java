@@ -27,14 +27,18 @@ import org.json.JSONArray;
 import org.json.JSONException;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
 
 public class OrderbookHandler implements ChannelCallbackHandler {
 
     private BiConsumer<OrderbookConfiguration, Collection<OrderbookEntry>> orderbookEntryConsumer = (sym, e) -> {};
 
+    private int fixedPointScale = FixedPoint.NO_SCALE;
+
     /**
      * {@inheritDoc}
      */
@@ -46,7 +50,8 @@ public class OrderbookHandler implements ChannelCallbackHandler {
             final List<OrderbookEntry> entries = new ArrayList<>();
 
             // Snapshots contain multiple Orderbook entries, updates only one
-            if (jsonArray.get(0) instanceof JSONArray) {
+            final boolean snapshot = jsonArray.get(0) instanceof JSONArray;
+            if (snapshot) {
                 for (int pos = 0; pos < jsonArray.length(); pos++) {
                     final JSONArray parts = jsonArray.getJSONArray(pos);
                     OrderbookEntry entry = jsonToOrderbookEntry(parts);
@@ -56,13 +61,74 @@ public class OrderbookHandler implements ChannelCallbackHandler {
                 OrderbookEntry entry = jsonToOrderbookEntry(jsonArray);
                 entries.add(entry);
             }
-            orderbookEntryConsumer.accept(config, entries);
-        } catch (JSONException e) {
+            orderbookEntryConsumer.accept(config, new EntryBatch<>(entries, snapshot));
+        } catch (JSONException | ArithmeticException e) {
             throw new APIException(e);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleChannelData(final BitfinexStreamSymbol channelSymbol, final ChannelFrameTokenizer tokenizer) throws APIException {
+        final OrderbookConfiguration config = (OrderbookConfiguration) channelSymbol;
+        final List<OrderbookEntry> entries = new ArrayList<>();
+
+        tokenizer.beginArray();
+
+        // Snapshots contain multiple Orderbook entries, updates only one
+        final boolean snapshot = tokenizer.peek() == ChannelFrameTokenizer.Token.BEGIN_ARRAY;
+        if (snapshot) {
+            while (tokenizer.hasNext()) {
+                tokenizer.beginArray();
+                entries.add(decodeOrderbookEntry(tokenizer));
+                tokenizer.endArray();
+            }
+        } else {
+            entries.add(decodeOrderbookEntry(tokenizer));
+        }
+
+        tokenizer.endArray();
+        orderbookEntryConsumer.accept(config, new EntryBatch<>(entries, snapshot));
+    }
+
+    private OrderbookEntry decodeOrderbookEntry(final ChannelFrameTokenizer tokenizer) throws APIException {
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            final int start = tokenizer.getPosition();
+
+            try {
+                final long price = tokenizer.nextFixedPoint(fixedPointScale);
+                final long count = tokenizer.nextLong();
+                final long amount = tokenizer.nextFixedPoint(fixedPointScale);
+
+                return new OrderbookEntry(price, count, amount, fixedPointScale);
+            } catch (APIException e) {
+                // A value does not fit into the scale, the entry is decoded as BigDecimal
+                tokenizer.setPosition(start);
+            }
+        }
+
+        final BigDecimal price = tokenizer.nextBigDecimal();
+        final BigDecimal count = tokenizer.nextBigDecimal();
+        final BigDecimal amount = tokenizer.nextBigDecimal();
+
+        return new OrderbookEntry(price, count, amount);
+    }
+
     private OrderbookEntry jsonToOrderbookEntry(final JSONArray jsonArray) {
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            try {
+                final long price = FixedPoint.toFixedPoint(jsonArray.getBigDecimal(0), fixedPointScale);
+                final long count = jsonArray.getLong(1);
+                final long amount = FixedPoint.toFixedPoint(jsonArray.getBigDecimal(2), fixedPointScale);
+
+                return new OrderbookEntry(price, count, amount, fixedPointScale);
+            } catch (ArithmeticException e) {
+                // A value does not fit into the scale, the entry is decoded as BigDecimal
+            }
+        }
+
         final BigDecimal price = jsonArray.getBigDecimal(0);
         final BigDecimal count = jsonArray.getBigDecimal(1);
         final BigDecimal amount = jsonArray.getBigDecimal(2);
@@ -73,4 +139,15 @@ public class OrderbookHandler implements ChannelCallbackHandler {
     public void onOrderbookEvent(BiConsumer<OrderbookConfiguration, Collection<OrderbookEntry>> consumer) {
         this.orderbookEntryConsumer = consumer;
     }
+
+    /**
+     * Decode prices and amounts as fixed point values with the given scale
+     * (FixedPoint.NO_SCALE decodes BigDecimals). Values that do not fit into
+     * the scale are decoded as BigDecimals, isFixedPoint() of the entity is false.
+     *
+     * @param fixedPointScale the scale
+     */
+    public void setFixedPointScale(final int fixedPointScale) {
+        this.fixedPointScale = fixedPointScale;
+    }
 }
@@ -27,14 +27,18 @@ import org.json.JSONArray;
 import org.json.JSONException;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
 import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookEntry;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
 
 public class RawOrderbookHandler implements ChannelCallbackHandler {
 
     private BiConsumer<RawOrderbookConfiguration, Collection<RawOrderbookEntry>> orderbookEntryConsumer = (c, e) -> {};
 
+    private int fixedPointScale = FixedPoint.NO_SCALE;
+
     /**
      * {@inheritDoc}
      */
@@ -46,7 +50,8 @@ public class RawOrderbookHandler implements ChannelCallbackHandler {
             final List<RawOrderbookEntry> entries = new ArrayList<>();
 
             // Snapshots contain multiple Orderbook entries, updates only one
-            if (jsonArray.get(0) instanceof JSONArray) {
+            final boolean snapshot = jsonArray.get(0) instanceof JSONArray;
+            if (snapshot) {
                 for (int pos = 0; pos < jsonArray.length(); pos++) {
                     final JSONArray part = jsonArray.getJSONArray(pos);
                     RawOrderbookEntry entry = jsonToRawOrderbookEntry(part);
@@ -56,14 +61,75 @@ public class RawOrderbookHandler implements ChannelCallbackHandler {
                 RawOrderbookEntry entry = jsonToRawOrderbookEntry(jsonArray);
                 entries.add(entry);
             }
-            orderbookEntryConsumer.accept(config, entries);
-        } catch (JSONException e) {
+            orderbookEntryConsumer.accept(config, new EntryBatch<>(entries, snapshot));
+        } catch (JSONException | ArithmeticException e) {
             throw new APIException(e);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleChannelData(final BitfinexStreamSymbol channelSymbol, final ChannelFrameTokenizer tokenizer) throws APIException {
+        final RawOrderbookConfiguration config = (RawOrderbookConfiguration) channelSymbol;
+        final List<RawOrderbookEntry> entries = new ArrayList<>();
+
+        tokenizer.beginArray();
+
+        // Snapshots contain multiple Orderbook entries, updates only one
+        final boolean snapshot = tokenizer.peek() == ChannelFrameTokenizer.Token.BEGIN_ARRAY;
+        if (snapshot) {
+            while (tokenizer.hasNext()) {
+                tokenizer.beginArray();
+                entries.add(decodeRawOrderbookEntry(tokenizer));
+                tokenizer.endArray();
+            }
+        } else {
+            entries.add(decodeRawOrderbookEntry(tokenizer));
+        }
+
+        tokenizer.endArray();
+        orderbookEntryConsumer.accept(config, new EntryBatch<>(entries, snapshot));
+    }
+
+    private RawOrderbookEntry decodeRawOrderbookEntry(final ChannelFrameTokenizer tokenizer) throws APIException {
+        final long orderId = tokenizer.nextLong();
+
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            final int start = tokenizer.getPosition();
+
+            try {
+                final long price = tokenizer.nextFixedPoint(fixedPointScale);
+                final long amount = tokenizer.nextFixedPoint(fixedPointScale);
+
+                return new RawOrderbookEntry(orderId, price, amount, fixedPointScale);
+            } catch (APIException e) {
+                // A value does not fit into the scale, the entry is decoded as BigDecimal
+                tokenizer.setPosition(start);
+            }
+        }
+
+        final BigDecimal price = tokenizer.nextBigDecimal();
+        final BigDecimal amount = tokenizer.nextBigDecimal();
+
+        return new RawOrderbookEntry(orderId, price, amount);
+    }
+
     private RawOrderbookEntry jsonToRawOrderbookEntry(final JSONArray jsonArray) {
         final long orderId = jsonArray.getNumber(0).longValue();
+
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            try {
+                final long price = FixedPoint.toFixedPoint(jsonArray.getBigDecimal(1), fixedPointScale);
+                final long amount = FixedPoint.toFixedPoint(jsonArray.getBigDecimal(2), fixedPointScale);
+
+                return new RawOrderbookEntry(orderId, price, amount, fixedPointScale);
+            } catch (ArithmeticException e) {
+                // A value does not fit into the scale, the entry is decoded as BigDecimal
+            }
+        }
+
         final BigDecimal price = jsonArray.getBigDecimal(1);
         final BigDecimal amount = jsonArray.getBigDecimal(2);
 
@@ -74,4 +140,14 @@ public class RawOrderbookHandler implements ChannelCallbackHandler {
         this.orderbookEntryConsumer = consumer;
     }
 
+    /**
+     * Decode prices and amounts as fixed point values with the given scale
+     * (FixedPoint.NO_SCALE decodes BigDecimals). Values that do not fit into
+     * the scale are decoded as BigDecimals, isFixedPoint() of the entity is false.
+     *
+     * @param fixedPointScale the scale
+     */
+    public void setFixedPointScale(final int fixedPointScale) {
+        this.fixedPointScale = fixedPointScale;
+    }
 }
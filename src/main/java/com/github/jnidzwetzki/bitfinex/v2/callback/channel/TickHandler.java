@@ -26,22 +26,84 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
 
 public class TickHandler implements ChannelCallbackHandler {
 
     private BiConsumer<BitfinexTickerSymbol, BitfinexTick> tickConsumer = (s, t) -> {};
 
+    private int fixedPointScale = FixedPoint.NO_SCALE;
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void handleChannelData(final BitfinexStreamSymbol channelSymbol, final JSONArray jsonArray) throws APIException {
         final BitfinexTickerSymbol symbol = (BitfinexTickerSymbol) channelSymbol;
-        BitfinexTick tick = jsonToBitfinexTick(jsonArray);
+        try {
+            BitfinexTick tick = jsonToBitfinexTick(jsonArray);
+            tickConsumer.accept(symbol, tick);
+        } catch (ArithmeticException e) {
+            throw new APIException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void handleChannelData(final BitfinexStreamSymbol channelSymbol, final ChannelFrameTokenizer tokenizer) throws APIException {
+        final BitfinexTickerSymbol symbol = (BitfinexTickerSymbol) channelSymbol;
+        tokenizer.beginArray();
+        final BitfinexTick tick = decodeBitfinexTick(tokenizer);
+        tokenizer.endArray();
         tickConsumer.accept(symbol, tick);
     }
 
+    private BitfinexTick decodeBitfinexTick(final ChannelFrameTokenizer tokenizer) throws APIException {
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            final int start = tokenizer.getPosition();
+
+            try {
+                // Arguments are evaluated from left to right, so the values are read in the order of the frame
+                return new BitfinexTick(tokenizer.nextFixedPoint(fixedPointScale), tokenizer.nextFixedPoint(fixedPointScale),
+                        tokenizer.nextFixedPoint(fixedPointScale), tokenizer.nextFixedPoint(fixedPointScale),
+                        tokenizer.nextFixedPoint(fixedPointScale), tokenizer.nextFixedPoint(fixedPointScale),
+                        tokenizer.nextFixedPoint(fixedPointScale), tokenizer.nextFixedPoint(fixedPointScale),
+                        tokenizer.nextFixedPoint(fixedPointScale), tokenizer.nextFixedPoint(fixedPointScale),
+                        fixedPointScale);
+            } catch (APIException e) {
+                // A value does not fit into the scale, the tick is decoded as BigDecimal
+                tokenizer.setPosition(start);
+            }
+        }
+
+        final BigDecimal bid = tokenizer.nextBigDecimal(); // 0 = BID
+        final BigDecimal bidSize = tokenizer.nextBigDecimal();//  1 = BID SIZE
+        final BigDecimal ask = tokenizer.nextBigDecimal(); // 2 = ASK
+        final BigDecimal askSize = tokenizer.nextBigDecimal();//  3 = ASK SIZE
+        final BigDecimal dailyChange = tokenizer.nextBigDecimal();//  4 = Daily Change
+        final BigDecimal dailyChangePerc = tokenizer.nextBigDecimal();// 5  = Daily Change %
+        final BigDecimal price = tokenizer.nextBigDecimal();//  6 = Last Price
+        final BigDecimal volume = tokenizer.nextBigDecimal(); // 7 = Volume
+        final BigDecimal high = tokenizer.nextBigDecimal(); // 8 = High
+        final BigDecimal low = tokenizer.nextBigDecimal(); // 9 = Low
+
+        return new BitfinexTick(bid, bidSize, ask, askSize, dailyChange, dailyChangePerc, price, volume, high, low);
+    }
+
     private BitfinexTick jsonToBitfinexTick(final JSONArray jsonArray) {
+        if (fixedPointScale != FixedPoint.NO_SCALE) {
+            try {
+                return new BitfinexTick(toFixedPoint(jsonArray, 0), toFixedPoint(jsonArray, 1),
+                        toFixedPoint(jsonArray, 2), toFixedPoint(jsonArray, 3), toFixedPoint(jsonArray, 4),
+                        toFixedPoint(jsonArray, 5), toFixedPoint(jsonArray, 6), toFixedPoint(jsonArray, 7),
+                        toFixedPoint(jsonArray, 8), toFixedPoint(jsonArray, 9), fixedPointScale);
+            } catch (ArithmeticException e) {
+                // A value does not fit into the scale, the tick is decoded as BigDecimal
+            }
+        }
+
         final BigDecimal bid = jsonArray.getBigDecimal(0); // 0 = BID
         final BigDecimal bidSize = jsonArray.getBigDecimal(1);//  1 = BID SIZE
         final BigDecimal ask = jsonArray.getBigDecimal(2); // 2 = ASK
@@ -56,6 +118,10 @@ public class TickHandler implements ChannelCallbackHandler {
         return new BitfinexTick(bid, bidSize, ask, askSize, dailyChange, dailyChangePerc, price, volume, high, low);
     }
 
+    private long toFixedPoint(final JSONArray jsonArray, final int pos) {
+        return FixedPoint.toFixedPoint(jsonArray.getBigDecimal(pos), fixedPointScale);
+    }
+
     /**
      * bitfinex tick event consumer
      *
@@ -64,4 +130,15 @@ public class TickHandler implements ChannelCallbackHandler {
     public void onTickEvent(BiConsumer<BitfinexTickerSymbol, BitfinexTick> consumer) {
         this.tickConsumer = consumer;
     }
+
+    /**
+     * Decode prices and amounts as fixed point values with the given scale
+     * (FixedPoint.NO_SCALE decodes BigDecimals). Values that do not fit into
+     * the scale are decoded as BigDecimals, isFixedPoint() of the entity is false.
+     *
+     * @param fixedPointScale the scale
+     */
+    public void setFixedPointScale(final int fixedPointScale) {
+        this.fixedPointScale = fixedPointScale;
+    }
 }
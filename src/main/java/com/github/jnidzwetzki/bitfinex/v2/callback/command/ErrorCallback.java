@@ -17,16 +17,22 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.callback.command;
 
+import java.util.function.BiConsumer;
+
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
 
 public class ErrorCallback implements CommandCallbackHandler {
 
 	private final static Logger logger = LoggerFactory.getLogger(ErrorCallback.class);
 
+	private BiConsumer<BitfinexStreamSymbol, String> subscribeErrorConsumer = (s, m) -> {};
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -34,5 +40,27 @@ public class ErrorCallback implements CommandCallbackHandler {
 	public void handleChannelData(final JSONObject jsonObject) throws APIException {
 		// {"channel":"ticker","symbol":"tLTCUSD","event":"error","msg":"subscribe: dup","code":10301,"pair":"LTCUSD"}
 		logger.error("Got error callback: {}", jsonObject);
+		
+		if(! jsonObject.has("channel")) {
+			return;
+		}
+		
+		try {
+			final BitfinexStreamSymbol symbol = SubscribedCallback.getStreamSymbol(jsonObject);
+			
+			if(symbol != null) {
+				subscribeErrorConsumer.accept(symbol, jsonObject.optString("msg"));
+			}
+		} catch (JSONException | IllegalArgumentException e) {
+			logger.error("Unable to determine the symbol of the error callback", e);
+		}
+	}
+	
+	/**
+	 * subscribe error event consumer
+	 * @param consumer of the symbol and the error message
+	 */
+	public void onSubscribeErrorEvent(final BiConsumer<BitfinexStreamSymbol, String> consumer) {
+		this.subscribeErrorConsumer = consumer;
 	}
 }
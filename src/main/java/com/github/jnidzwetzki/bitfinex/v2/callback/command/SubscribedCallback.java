@@ -42,29 +42,35 @@ public class SubscribedCallback implements CommandCallbackHandler {
 	 */
 	@Override
 	public void handleChannelData(final JSONObject jsonObject) throws APIException {
-		final String channelType = jsonObject.getString("channel");
 		final int channelId = jsonObject.getInt("chanId");
+		final BitfinexStreamSymbol symbol = getStreamSymbol(jsonObject);
+
+		if (symbol != null) {
+			logger.info("Registering symbol {} on channel {}", symbol, channelId);
+			subscribeResultConsumer.accept(channelId, symbol);
+		}
+	}
+
+	/**
+	 * Get the symbol of a subscribe message (e.g. the subscribed or the error event)
+	 * @param jsonObject
+	 * @return the symbol or null, if the channel type is unknown
+	 */
+	static BitfinexStreamSymbol getStreamSymbol(final JSONObject jsonObject) {
+		final String channelType = jsonObject.getString("channel");
 
-		BitfinexStreamSymbol symbol = null;
 		switch (channelType) {
 			case "ticker":
-				symbol = handleTickerCallback(jsonObject);
-				break;
+				return handleTickerCallback(jsonObject);
 			case "trades":
-				symbol = handleTradesCallback(jsonObject);
-				break;
+				return handleTradesCallback(jsonObject);
 			case "candles":
-				symbol = handleCandlesCallback(jsonObject);
-				break;
+				return handleCandlesCallback(jsonObject);
 			case "book":
-				symbol = handleBookCallback(jsonObject);
-				break;
+				return handleBookCallback(jsonObject);
 			default:
 				logger.error("Unknown subscribed callback {}", jsonObject.toString());
-		}
-		if (symbol != null) {
-			logger.info("Registering symbol {} on channel {}", symbol, channelId);
-			subscribeResultConsumer.accept(channelId, symbol);
+				return null;
 		}
 	}
 
@@ -76,7 +82,7 @@ public class SubscribedCallback implements CommandCallbackHandler {
 		this.subscribeResultConsumer = consumer;
 	}
 
-	private BitfinexStreamSymbol handleBookCallback(final JSONObject jsonObject) {
+	private static BitfinexStreamSymbol handleBookCallback(final JSONObject jsonObject) {
 		BitfinexStreamSymbol symbol;
 		if("R0".equals(jsonObject.getString("prec"))) {
 			symbol = RawOrderbookConfiguration.fromJSON(jsonObject);
@@ -88,17 +94,17 @@ public class SubscribedCallback implements CommandCallbackHandler {
 		return symbol;
 	}
 
-	private BitfinexCandlestickSymbol handleCandlesCallback(final JSONObject jsonObject) {
+	private static BitfinexCandlestickSymbol handleCandlesCallback(final JSONObject jsonObject) {
 		final String key = jsonObject.getString("key");
 		return BitfinexCandlestickSymbol.fromBitfinexString(key);
 	}
 
-	private BitfinexExecutedTradeSymbol handleTradesCallback(final JSONObject jsonObject) {
+	private static BitfinexExecutedTradeSymbol handleTradesCallback(final JSONObject jsonObject) {
 		final String key = jsonObject.getString("symbol");
 		return BitfinexExecutedTradeSymbol.fromBitfinexString(key);
 	}
 
-	private BitfinexTickerSymbol handleTickerCallback(final JSONObject jsonObject) {
+	private static BitfinexTickerSymbol handleTickerCallback(final JSONObject jsonObject) {
 		final String key = jsonObject.getString("symbol");
 		return BitfinexTickerSymbol.fromBitfinexString(key);
 	}
@@ -22,5 +22,38 @@ import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 public abstract class AbstractAPICommand {
 
 	public abstract String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException;
+	
+	/**
+	 * Write the command into the encoder
+	 * @param encoder
+	 * @param bitfinexApiBroker
+	 * @throws CommandException
+	 */
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) 
+			throws CommandException {
+		
+		encoder.appendRaw(getCommand(bitfinexApiBroker));
+	}
+	
+	/**
+	 * Encode the command with the encoder of the current thread (for commands 
+	 * that implement encode())
+	 * @param bitfinexApiBroker
+	 * @return
+	 * @throws CommandException
+	 */
+	protected String encodeCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
+		final CommandEncoder encoder = CommandEncoder.getThreadEncoder().reset();
+		encode(encoder, bitfinexApiBroker);
+		return encoder.toString();
+	}
+
+	/**
+	 * Get the class of the command (rate limit and priority)
+	 * @return
+	 */
+	public CommandClass getCommandClass() {
+		return CommandClass.CONTROL;
+	}
 
 }
@@ -64,12 +64,12 @@ public class AuthCommand extends AbstractAPICommand {
 			mac.init(signingKey);
 			
 			final byte[] encodedBytes = mac.doFinal(authPayload.getBytes());		
-			final String authSig = BaseEncoding.base16().encode(encodedBytes);
+			final String authSig = BaseEncoding.base16().lowerCase().encode(encodedBytes);
 			
 			final JSONObject subscribeJson = new JSONObject();
 			subscribeJson.put("event", "auth");
 			subscribeJson.put("apiKey", APIKey);
-			subscribeJson.put("authSig", authSig.toLowerCase());
+			subscribeJson.put("authSig", authSig);
 			subscribeJson.put("authPayload", authPayload);
 			subscribeJson.put("authNonce", authNonce);
 			
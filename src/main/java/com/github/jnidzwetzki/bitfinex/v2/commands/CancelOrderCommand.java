@@ -17,11 +17,9 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.commands;
 
-import org.json.JSONObject;
-
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 
-public class CancelOrderCommand extends AbstractAPICommand {
+public class CancelOrderCommand extends AbstractAPICommand implements OrderOperationCommand {
 
 	/**
 	 * The cid
@@ -34,16 +32,33 @@ public class CancelOrderCommand extends AbstractAPICommand {
 
 	@Override
 	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
+		return encodeCommand(bitfinexApiBroker);
+	}
+	
+	@Override
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) 
+			throws CommandException {
 		
-		final JSONObject cancelJson = new JSONObject();
-		cancelJson.put("id", id);
-		
-		final StringBuilder sb = new StringBuilder();
-		sb.append("[0,\"oc\", null, ");
-		sb.append(cancelJson.toString());
-		sb.append("]\n");
-				
-		return sb.toString();
+		encoder.appendRaw("[0,\"oc\", null, ");
+		encodeOperationPayload(encoder, bitfinexApiBroker);
+		encoder.appendRaw("]\n");
+	}
+	
+	@Override
+	public String getOperation() {
+		return "oc";
+	}
+	
+	@Override
+	public void encodeOperationPayload(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) {
+		encoder.beginObject();
+		encoder.name("id").value(id);
+		encoder.endObject();
+	}
+	
+	@Override
+	public CommandClass getCommandClass() {
+		return CommandClass.ORDER;
 	}
 
 }
@@ -17,11 +17,9 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.commands;
 
-import org.json.JSONObject;
-
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 
-public class CancelOrderGroupCommand extends AbstractAPICommand {
+public class CancelOrderGroupCommand extends AbstractAPICommand implements OrderOperationCommand {
 
 	/**
 	 * The order group
@@ -33,16 +31,34 @@ public class CancelOrderGroupCommand extends AbstractAPICommand {
 	}
 
 	@Override
-	public String getCommand(BitfinexApiBroker bitfinexApiBroker) throws CommandException {
-		final JSONObject cancelJson = new JSONObject();
-		cancelJson.put("gid", orderGroup);
+	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
+		return encodeCommand(bitfinexApiBroker);
+	}
+	
+	@Override
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) 
+			throws CommandException {
 		
-		final StringBuilder sb = new StringBuilder();
-		sb.append("[0,\"oc_multi\", null, ");
-		sb.append(cancelJson.toString());
-		sb.append("]\n");
-				
-		return sb.toString();
+		encoder.appendRaw("[0,\"oc_multi\", null, ");
+		encodeOperationPayload(encoder, bitfinexApiBroker);
+		encoder.appendRaw("]\n");
+	}
+	
+	@Override
+	public String getOperation() {
+		return "oc_multi";
+	}
+	
+	@Override
+	public void encodeOperationPayload(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) {
+		encoder.beginObject();
+		encoder.name("gid").value(orderGroup);
+		encoder.endObject();
+	}
+	
+	@Override
+	public CommandClass getCommandClass() {
+		return CommandClass.ORDER;
 	}
 
 }
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.commands;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+
+/**
+ * Cancel multiple orders and order groups in one operation (oc_multi)
+ */
+public class CancelOrderMultiCommand extends AbstractAPICommand implements OrderOperationCommand {
+
+	/**
+	 * The ids of the orders
+	 */
+	private final List<Long> orderIds;
+	
+	/**
+	 * The order groups
+	 */
+	private final List<Integer> orderGroups;
+
+	public CancelOrderMultiCommand(final Collection<Long> orderIds, final Collection<Integer> orderGroups) {
+		
+		if(orderIds.isEmpty() && orderGroups.isEmpty()) {
+			throw new IllegalArgumentException("No orders or order groups to cancel");
+		}
+		
+		this.orderIds = new ArrayList<>(orderIds);
+		this.orderGroups = new ArrayList<>(orderGroups);
+	}
+
+	@Override
+	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
+		return encodeCommand(bitfinexApiBroker);
+	}
+	
+	@Override
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) 
+			throws CommandException {
+		
+		encoder.appendRaw("[0,\"oc_multi\", null, ");
+		encodeOperationPayload(encoder, bitfinexApiBroker);
+		encoder.appendRaw("]\n");
+	}
+	
+	@Override
+	public String getOperation() {
+		return "oc_multi";
+	}
+	
+	@Override
+	public void encodeOperationPayload(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) {
+		encoder.beginObject();
+		
+		if(! orderIds.isEmpty()) {
+			encoder.name("id").beginArray();
+			
+			for(final long orderId : orderIds) {
+				encoder.value(orderId);
+			}
+			
+			encoder.endArray();
+		}
+		
+		if(! orderGroups.isEmpty()) {
+			encoder.name("gid").beginArray();
+			
+			for(final int orderGroup : orderGroups) {
+				encoder.value(orderGroup);
+			}
+			
+			encoder.endArray();
+		}
+		
+		encoder.endObject();
+	}
+	
+	@Override
+	public CommandClass getCommandClass() {
+		return CommandClass.ORDER;
+	}
+	
+	/**
+	 * Get the ids of the orders
+	 * @return
+	 */
+	public List<Long> getOrderIds() {
+		return orderIds;
+	}
+	
+	/**
+	 * Get the order groups
+	 * @return
+	 */
+	public List<Integer> getOrderGroups() {
+		return orderGroups;
+	}
+}
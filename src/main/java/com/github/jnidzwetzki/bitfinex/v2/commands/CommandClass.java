@@ -0,0 +1,42 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.commands;
+
+/**
+ * The classes of the commands. Each class has its own rate limit, the classes 
+ * are sent in the order of their declaration (order operations before control 
+ * commands before subscriptions).
+ */
+public enum CommandClass {
+
+	/**
+	 * Order operations (new orders, updates and cancels)
+	 */
+	ORDER,
+	
+	/**
+	 * Connection control (authentication, connection features, pings, calculations)
+	 */
+	CONTROL,
+	
+	/**
+	 * Channel subscriptions and unsubscriptions
+	 */
+	SUBSCRIPTION;
+	
+}
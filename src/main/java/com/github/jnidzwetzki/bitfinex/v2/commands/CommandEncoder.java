@@ -0,0 +1,441 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.commands;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+
+/**
+ * A reusable JSON encoder for the outbound commands.
+ * 
+ * The commands are written into a char buffer that is reused for each command, 
+ * numbers and decimals are formatted directly into the buffer. The only allocation 
+ * per command is the final string (the websocket API sends strings).
+ * 
+ * The instances are not thread safe, getThreadEncoder() returns the encoder 
+ * of the current thread.
+ */
+public class CommandEncoder {
+
+	/**
+	 * The default capacity of the buffer
+	 */
+	public final static int DEFAULT_CAPACITY = 512;
+	
+	/**
+	 * The maximal nesting depth of arrays and objects
+	 */
+	private final static int MAX_DEPTH = 16;
+	
+	/**
+	 * The maximal precision of the decimals that are formatted without 
+	 * intermediate objects
+	 */
+	private final static int MAX_COMPACT_PRECISION = 15;
+	
+	/**
+	 * The powers of ten that are exact doubles
+	 */
+	private final static double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 
+			1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+	
+	/**
+	 * The encoders of the threads
+	 */
+	private final static ThreadLocal<CommandEncoder> THREAD_ENCODER 
+		= ThreadLocal.withInitial(CommandEncoder::new);
+	
+	/**
+	 * The buffer
+	 */
+	private char[] buffer;
+	
+	/**
+	 * The length of the encoded command
+	 */
+	private int length;
+	
+	/**
+	 * Is the next value the first value of the array or object
+	 */
+	private final boolean[] firstValue;
+	
+	/**
+	 * The nesting depth
+	 */
+	private int depth;
+	
+	/**
+	 * Was a name written and the value is pending
+	 */
+	private boolean afterName;
+	
+	public CommandEncoder() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public CommandEncoder(final int capacity) {
+		this.buffer = new char[capacity];
+		this.firstValue = new boolean[MAX_DEPTH];
+	}
+	
+	/**
+	 * Get the encoder of the current thread
+	 * @return
+	 */
+	public static CommandEncoder getThreadEncoder() {
+		return THREAD_ENCODER.get();
+	}
+	
+	/**
+	 * Reset the encoder for the next command
+	 * @return
+	 */
+	public CommandEncoder reset() {
+		length = 0;
+		depth = 0;
+		afterName = false;
+		return this;
+	}
+	
+	/**
+	 * Append raw text (e.g. the frame header of a command), no separators are written
+	 * @param text
+	 * @return
+	 */
+	public CommandEncoder appendRaw(final String text) {
+		final int textLength = text.length();
+		ensureCapacity(textLength);
+		text.getChars(0, textLength, buffer, length);
+		length += textLength;
+		return this;
+	}
+	
+	public CommandEncoder beginArray() {
+		beforeValue();
+		return push('[');
+	}
+	
+	public CommandEncoder endArray() {
+		return pop(']');
+	}
+	
+	public CommandEncoder beginObject() {
+		beforeValue();
+		return push('{');
+	}
+	
+	public CommandEncoder endObject() {
+		return pop('}');
+	}
+	
+	/**
+	 * Write the name of the next object member
+	 * @param name
+	 * @return
+	 */
+	public CommandEncoder name(final String name) {
+		beforeValue();
+		appendQuoted(name);
+		append(':');
+		afterName = true;
+		return this;
+	}
+	
+	public CommandEncoder value(final String value) {
+		if(value == null) {
+			return nullValue();
+		}
+		
+		beforeValue();
+		appendQuoted(value);
+		return this;
+	}
+	
+	public CommandEncoder value(final long value) {
+		beforeValue();
+		appendLong(value);
+		return this;
+	}
+	
+	/**
+	 * Write the decimal as string (the API expects prices and amounts as strings), 
+	 * the value is formatted like BigDecimal.toPlainString()
+	 * @param value
+	 * @return
+	 */
+	public CommandEncoder value(final BigDecimal value) {
+		if(value == null) {
+			return nullValue();
+		}
+		
+		beforeValue();
+		append('"');
+		
+		final int scale = value.scale();
+		
+		if(scale >= 0 && scale < POWERS_OF_TEN.length && value.precision() <= MAX_COMPACT_PRECISION) {
+			// The unscaled value is below 1e15 (< 2^53), the rounding errors of the 
+			// division in doubleValue() and the multiplication are below 0.5
+			final long unscaledValue = Math.round(value.doubleValue() * POWERS_OF_TEN[scale]);
+			appendFixedPoint(unscaledValue, scale);
+		} else {
+			appendRaw(value.toPlainString());
+		}
+		
+		append('"');
+		return this;
+	}
+	
+	/**
+	 * Write the fixed point value as decimal string (e.g. 205 with scale 2 is written as "2.05")
+	 * @param unscaledValue
+	 * @param scale
+	 * @return
+	 */
+	public CommandEncoder fixedPointValue(final long unscaledValue, final int scale) {
+		beforeValue();
+		append('"');
+		appendFixedPoint(unscaledValue, scale);
+		append('"');
+		return this;
+	}
+	
+	/**
+	 * Write the bitfinex string of the currency pair (e.g. tBTCUSD)
+	 * @param currencyPair
+	 * @return
+	 */
+	public CommandEncoder value(final BitfinexCurrencyPair currencyPair) {
+		beforeValue();
+		append('"');
+		append('t');
+		appendEscaped(currencyPair.getCurrency1());
+		appendEscaped(currencyPair.getCurrency2());
+		append('"');
+		return this;
+	}
+	
+	public CommandEncoder nullValue() {
+		beforeValue();
+		return appendRaw("null");
+	}
+	
+	/**
+	 * Write a already encoded JSON value
+	 * @param json
+	 * @return
+	 */
+	public CommandEncoder rawValue(final String json) {
+		beforeValue();
+		return appendRaw(json);
+	}
+	
+	/**
+	 * Get the length of the encoded command
+	 * @return
+	 */
+	public int length() {
+		return length;
+	}
+	
+	/**
+	 * Get the encoded command
+	 */
+	@Override
+	public String toString() {
+		return new String(buffer, 0, length);
+	}
+	
+	/**
+	 * Write the value separator if needed
+	 */
+	private void beforeValue() {
+		if(afterName) {
+			afterName = false;
+			return;
+		}
+		
+		if(depth > 0) {
+			if(! firstValue[depth - 1]) {
+				append(',');
+			}
+			
+			firstValue[depth - 1] = false;
+		}
+	}
+	
+	private CommandEncoder push(final char c) {
+		if(depth == MAX_DEPTH) {
+			throw new IllegalStateException("Maximal nesting depth reached: " + depth);
+		}
+		
+		append(c);
+		firstValue[depth++] = true;
+		return this;
+	}
+	
+	private CommandEncoder pop(final char c) {
+		if(depth == 0) {
+			throw new IllegalStateException("No open array or object");
+		}
+		
+		depth--;
+		append(c);
+		return this;
+	}
+	
+	private void append(final char c) {
+		ensureCapacity(1);
+		buffer[length++] = c;
+	}
+	
+	private void appendQuoted(final String text) {
+		append('"');
+		appendEscaped(text);
+		append('"');
+	}
+	
+	/**
+	 * Append the text with JSON escapes
+	 * @param text
+	 */
+	private void appendEscaped(final String text) {
+		final int textLength = text.length();
+		
+		for(int pos = 0; pos < textLength; pos++) {
+			final char c = text.charAt(pos);
+			
+			if(c == '"' || c == '\\') {
+				append('\\');
+				append(c);
+			} else if(c < 0x20) {
+				appendRaw("\\u00");
+				append(Character.forDigit(c >> 4, 16));
+				append(Character.forDigit(c & 0xF, 16));
+			} else {
+				append(c);
+			}
+		}
+	}
+	
+	/**
+	 * Append the digits of the value
+	 * @param value
+	 */
+	private void appendLong(final long value) {
+		if(value == Long.MIN_VALUE) {
+			appendRaw("-9223372036854775808");
+			return;
+		}
+		
+		long remaining = value;
+		
+		if(remaining < 0) {
+			append('-');
+			remaining = -remaining;
+		}
+		
+		int digits = 1;
+		for(long limit = 10; digits < 19 && remaining >= limit; limit *= 10) {
+			digits++;
+		}
+		
+		ensureCapacity(digits);
+		
+		for(int pos = length + digits - 1; pos >= length; pos--) {
+			buffer[pos] = (char) ('0' + remaining % 10);
+			remaining /= 10;
+		}
+		
+		length += digits;
+	}
+	
+	/**
+	 * Append the fixed point value with all digits of the scale
+	 * @param unscaledValue
+	 * @param scale
+	 */
+	private void appendFixedPoint(final long unscaledValue, final int scale) {
+		if(scale <= 0 || unscaledValue == Long.MIN_VALUE) {
+			appendRaw(BigDecimal.valueOf(unscaledValue, scale).toPlainString());
+			return;
+		}
+		
+		long remaining = unscaledValue;
+		
+		if(remaining < 0) {
+			append('-');
+			remaining = -remaining;
+		}
+		
+		// Integer digits, a leading zero for values below 1
+		final long divisor = powerOfTen(scale);
+		
+		if(divisor == 0) {
+			appendRaw(BigDecimal.valueOf(remaining, scale).toPlainString());
+			return;
+		}
+		
+		appendLong(remaining / divisor);
+		append('.');
+		
+		long fraction = remaining % divisor;
+		ensureCapacity(scale);
+		
+		for(int pos = length + scale - 1; pos >= length; pos--) {
+			buffer[pos] = (char) ('0' + fraction % 10);
+			fraction /= 10;
+		}
+		
+		length += scale;
+	}
+	
+	/**
+	 * Get the power of ten or 0 if the value does not fit into a long
+	 * @param exponent
+	 * @return
+	 */
+	private static long powerOfTen(final int exponent) {
+		if(exponent > 18) {
+			return 0;
+		}
+		
+		long result = 1;
+		for(int i = 0; i < exponent; i++) {
+			result *= 10;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Ensure the buffer has space for the given number of chars
+	 * @param additionalChars
+	 */
+	private void ensureCapacity(final int additionalChars) {
+		final int requiredCapacity = length + additionalChars;
+		
+		if(requiredCapacity > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, requiredCapacity));
+		}
+	}
+}
@@ -17,21 +17,12 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.commands;
 
-import org.json.JSONObject;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
 
-public class OrderCommand extends AbstractAPICommand {
+public class OrderCommand extends AbstractAPICommand implements OrderOperationCommand {
 
 	private final BitfinexOrder bitfinexOrder;
-	
-	/**
-	 * The Logger
-	 */
-	private final static Logger logger = LoggerFactory.getLogger(OrderCommand.class);
 
 	public OrderCommand(final BitfinexOrder bitfinexOrder) {
 		this.bitfinexOrder = bitfinexOrder;
@@ -39,47 +30,63 @@ public class OrderCommand extends AbstractAPICommand {
 
 	@Override
 	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
+		return encodeCommand(bitfinexApiBroker);
+	}
+	
+	@Override
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) 
+			throws CommandException {
 		
-		final JSONObject orderJson = new JSONObject();
-		orderJson.put("cid", bitfinexOrder.getCid());
-		orderJson.put("type", bitfinexOrder.getType().getBifinexString());
-		orderJson.put("symbol", bitfinexOrder.getSymbol().toBitfinexString());
-		orderJson.put("amount",  bitfinexOrder.getAmount().toString());
+		encoder.appendRaw("[0,\"on\", null, ");
+		encodeOperationPayload(encoder, bitfinexApiBroker);
+		encoder.appendRaw("]\n");
+	}
+	
+	@Override
+	public String getOperation() {
+		return "on";
+	}
+	
+	@Override
+	public void encodeOperationPayload(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) {
+		encoder.beginObject();
+		encoder.name("cid").value(bitfinexOrder.getCid());
+		encoder.name("type").value(bitfinexOrder.getType().getBifinexString());
+		encoder.name("symbol").value(bitfinexOrder.getSymbol());
+		encoder.name("amount").value(bitfinexOrder.getAmount());
 		
 		if(bitfinexOrder.getPrice() != null) {
-			orderJson.put("price", bitfinexOrder.getPrice().toString());
+			encoder.name("price").value(bitfinexOrder.getPrice());
 		}
 
 		if(bitfinexOrder.getPriceTrailing() != null) {
-			orderJson.put("price_trailing", bitfinexOrder.getPriceTrailing().toString());
+			encoder.name("price_trailing").value(bitfinexOrder.getPriceTrailing());
 		}
 		
 		if(bitfinexOrder.getPriceAuxLimit() != null) {
-			orderJson.put("price_aux_limit", bitfinexOrder.getPriceAuxLimit().toString());
+			encoder.name("price_aux_limit").value(bitfinexOrder.getPriceAuxLimit());
 		}
 		
 		if(bitfinexOrder.isHidden()) {
-			orderJson.put("hidden", 1);
+			encoder.name("hidden").value(1);
 		} else {
-			orderJson.put("hidden", 0);
+			encoder.name("hidden").value(0);
 		}
 		
 		if(bitfinexOrder.isPostOnly()) {
-			orderJson.put("postonly", 1);
+			encoder.name("postonly").value(1);
 		}
 		
 		if(bitfinexOrder.getGroupId() > 0) {
-			orderJson.put("gid", bitfinexOrder.getGroupId());
+			encoder.name("gid").value(bitfinexOrder.getGroupId());
 		}
 		
-		final StringBuilder sb = new StringBuilder();
-		sb.append("[0,\"on\", null, ");
-		sb.append(orderJson.toString());
-		sb.append("]\n");
-		
-		logger.debug(sb.toString());
-		
-		return sb.toString();
+		encoder.endObject();
+	}
+	
+	@Override
+	public CommandClass getCommandClass() {
+		return CommandClass.ORDER;
 	}
 
 }
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+
+/**
+ * Multiple order operations in one frame (ox_multi)
+ */
+public class OrderMultiCommand extends AbstractAPICommand {
+
+	/**
+	 * The maximal number of operations per frame
+	 */
+	public final static int MAX_OPERATIONS = 75;
+	
+	/**
+	 * The operations
+	 */
+	private final List<OrderOperationCommand> operations;
+
+	public OrderMultiCommand(final List<? extends OrderOperationCommand> operations) {
+		
+		if(operations.isEmpty() || operations.size() > MAX_OPERATIONS) {
+			throw new IllegalArgumentException("Invalid number of operations: " + operations.size());
+		}
+		
+		this.operations = new ArrayList<>(operations);
+	}
+
+	@Override
+	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
+		return encodeCommand(bitfinexApiBroker);
+	}
+	
+	@Override
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) 
+			throws CommandException {
+		
+		encoder.appendRaw("[0,\"ox_multi\", null, ");
+		encoder.beginArray();
+		
+		for(final OrderOperationCommand operation : operations) {
+			encoder.beginArray();
+			encoder.value(operation.getOperation());
+			operation.encodeOperationPayload(encoder, bitfinexApiBroker);
+			encoder.endArray();
+		}
+		
+		encoder.endArray();
+		encoder.appendRaw("]\n");
+	}
+	
+	@Override
+	public CommandClass getCommandClass() {
+		return CommandClass.ORDER;
+	}
+	
+	/**
+	 * Get the operations
+	 * @return
+	 */
+	public List<OrderOperationCommand> getOperations() {
+		return operations;
+	}
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.commands;
+
+import org.json.JSONObject;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+
+/**
+ * A order operation that can be sent as part of a multi operation frame (ox_multi)
+ */
+public interface OrderOperationCommand {
+
+	/**
+	 * Get the operation (e.g. 'on' or 'oc')
+	 * @return
+	 */
+	public String getOperation();
+	
+	/**
+	 * Write the payload of the operation into the encoder
+	 * @param encoder
+	 * @param bitfinexApiBroker
+	 * @throws CommandException
+	 */
+	public void encodeOperationPayload(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) 
+			throws CommandException;
+	
+	/**
+	 * Get the payload of the operation
+	 * @param bitfinexApiBroker
+	 * @return
+	 * @throws CommandException
+	 */
+	public default JSONObject getOperationPayload(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
+		final CommandEncoder encoder = new CommandEncoder();
+		encodeOperationPayload(encoder, bitfinexApiBroker);
+		return new JSONObject(encoder.toString());
+	}
+	
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.commands;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderUpdate;
+
+/**
+ * Update a open order in place (ou)
+ */
+public class OrderUpdateCommand extends AbstractAPICommand implements OrderOperationCommand {
+
+	/**
+	 * The update
+	 */
+	private final BitfinexOrderUpdate orderUpdate;
+
+	public OrderUpdateCommand(final BitfinexOrderUpdate orderUpdate) {
+		this.orderUpdate = orderUpdate;
+	}
+
+	@Override
+	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
+		return encodeCommand(bitfinexApiBroker);
+	}
+	
+	@Override
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) 
+			throws CommandException {
+		
+		encoder.appendRaw("[0,\"ou\", null, ");
+		encodeOperationPayload(encoder, bitfinexApiBroker);
+		encoder.appendRaw("]\n");
+	}
+	
+	@Override
+	public String getOperation() {
+		return "ou";
+	}
+	
+	@Override
+	public void encodeOperationPayload(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) {
+		encoder.beginObject();
+		encoder.name("id").value(orderUpdate.getOrderId());
+		
+		if(orderUpdate.getPrice() != null) {
+			encoder.name("price").value(orderUpdate.getPrice());
+		}
+		
+		if(orderUpdate.getAmount() != null) {
+			encoder.name("amount").value(orderUpdate.getAmount());
+		}
+		
+		if(orderUpdate.getDelta() != null) {
+			encoder.name("delta").value(orderUpdate.getDelta());
+		}
+		
+		if(orderUpdate.getPriceTrailing() != null) {
+			encoder.name("price_trailing").value(orderUpdate.getPriceTrailing());
+		}
+		
+		if(orderUpdate.getPriceAuxLimit() != null) {
+			encoder.name("price_aux_limit").value(orderUpdate.getPriceAuxLimit());
+		}
+		
+		if(orderUpdate.getFlags() != null) {
+			encoder.name("flags").value(orderUpdate.getFlags().intValue());
+		}
+		
+		if(orderUpdate.getGroupId() != null) {
+			encoder.name("gid").value(orderUpdate.getGroupId().intValue());
+		}
+		
+		encoder.endObject();
+	}
+	
+	@Override
+	public CommandClass getCommandClass() {
+		return CommandClass.ORDER;
+	}
+	
+	/**
+	 * Get the order update
+	 * @return
+	 */
+	public BitfinexOrderUpdate getOrderUpdate() {
+		return orderUpdate;
+	}
+}
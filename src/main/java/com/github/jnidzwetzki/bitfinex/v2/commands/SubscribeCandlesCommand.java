@@ -17,8 +17,6 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.commands;
 
-import org.json.JSONObject;
-
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
 
@@ -31,13 +29,21 @@ public class SubscribeCandlesCommand extends AbstractAPICommand {
 	}
 
 	@Override
-	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) {
-		final JSONObject subscribeJson = new JSONObject();
-		subscribeJson.put("event", "subscribe");
-		subscribeJson.put("channel", "candles");
-		subscribeJson.put("key", symbol.toBifinexCandlestickString());
-				
-		return subscribeJson.toString();
+	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
+		return encodeCommand(bitfinexApiBroker);
+	}
+	
+	@Override
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) {
+		encoder.beginObject();
+		encoder.name("event").value("subscribe");
+		encoder.name("channel").value("candles");
+		encoder.name("key").value(symbol.toBifinexCandlestickString());
+		encoder.endObject();
 	}
 
+	@Override
+	public CommandClass getCommandClass() {
+		return CommandClass.SUBSCRIPTION;
+	}
 }
@@ -17,8 +17,6 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.commands;
 
-import org.json.JSONObject;
-
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
 
@@ -35,15 +33,23 @@ public class SubscribeOrderbookCommand extends AbstractAPICommand {
 
 	@Override
 	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
-		final JSONObject subscribeJson = new JSONObject();
-		subscribeJson.put("event", "subscribe");
-		subscribeJson.put("channel", "book");
-		subscribeJson.put("symbol", orderbookConfiguration.getCurrencyPair().toBitfinexString());	
-		subscribeJson.put("prec", orderbookConfiguration.getOrderBookPrecision().toString());
-		subscribeJson.put("freq", orderbookConfiguration.getOrderBookFrequency().toString());
-		subscribeJson.put("len", Integer.toString(orderbookConfiguration.getPricePoints()));
+		return encodeCommand(bitfinexApiBroker);
+	}
 	
-		return subscribeJson.toString();
+	@Override
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) {
+		encoder.beginObject();
+		encoder.name("event").value("subscribe");
+		encoder.name("channel").value("book");
+		encoder.name("symbol").value(orderbookConfiguration.getCurrencyPair());
+		encoder.name("prec").value(orderbookConfiguration.getOrderBookPrecision().toString());
+		encoder.name("freq").value(orderbookConfiguration.getOrderBookFrequency().toString());
+		encoder.name("len").value(Integer.toString(orderbookConfiguration.getPricePoints()));
+		encoder.endObject();
 	}
 
+	@Override
+	public CommandClass getCommandClass() {
+		return CommandClass.SUBSCRIPTION;
+	}
 }
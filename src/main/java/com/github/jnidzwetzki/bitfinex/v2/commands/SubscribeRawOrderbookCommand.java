@@ -17,8 +17,6 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.commands;
 
-import org.json.JSONObject;
-
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
 
@@ -35,13 +33,21 @@ public class SubscribeRawOrderbookCommand extends AbstractAPICommand {
 
 	@Override
 	public String getCommand(final BitfinexApiBroker bitfinexApiBroker) throws CommandException {
-		final JSONObject subscribeJson = new JSONObject();
-		subscribeJson.put("event", "subscribe");
-		subscribeJson.put("channel", "book");
-		subscribeJson.put("symbol", rawOrderbookConfiguration.getCurrencyPair().toBitfinexString());
-		subscribeJson.put("prec", "R0");
-		
-		return subscribeJson.toString();
+		return encodeCommand(bitfinexApiBroker);
+	}
+	
+	@Override
+	public void encode(final CommandEncoder encoder, final BitfinexApiBroker bitfinexApiBroker) {
+		encoder.beginObject();
+		encoder.name("event").value("subscribe");
+		encoder.name("channel").value("book");
+		encoder.name("symbol").value(rawOrderbookConfiguration.getCurrencyPair());
+		encoder.name("prec").value("R0");
+		encoder.endObject();
 	}
 
+	@Override
+	public CommandClass getCommandClass() {
+		return CommandClass.SUBSCRIPTION;
+	}
 }
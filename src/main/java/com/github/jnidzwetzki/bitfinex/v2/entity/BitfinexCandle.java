@@ -20,6 +20,8 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 import java.math.BigDecimal;
 import java.util.Optional;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class BitfinexCandle implements Comparable<BitfinexCandle>{
 	
 	/**
@@ -52,6 +54,20 @@ public class BitfinexCandle implements Comparable<BitfinexCandle>{
 	 */
 	private final Optional<BigDecimal> volume;
 	
+	/**
+	 * The fixed point values (only used if scale != FixedPoint.NO_SCALE)
+	 */
+	private final long scaledOpen;
+	private final long scaledClose;
+	private final long scaledHigh;
+	private final long scaledLow;
+	private final long scaledVolume;
+	
+	/**
+	 * The scale of the fixed point values
+	 */
+	private final int scale;
+	
 	public BitfinexCandle(final long timestamp, final BigDecimal open, final BigDecimal close, 
 			final BigDecimal high, final BigDecimal low, final Optional<BigDecimal> volume) {
 		
@@ -66,6 +82,37 @@ public class BitfinexCandle implements Comparable<BitfinexCandle>{
 		this.high = high;
 		this.low = low;
 		this.volume = volume;
+		this.scaledOpen = FixedPoint.NULL_VALUE;
+		this.scaledClose = FixedPoint.NULL_VALUE;
+		this.scaledHigh = FixedPoint.NULL_VALUE;
+		this.scaledLow = FixedPoint.NULL_VALUE;
+		this.scaledVolume = FixedPoint.NULL_VALUE;
+		this.scale = FixedPoint.NO_SCALE;
+	}
+	
+	/**
+	 * Create a candle with fixed point values (use FixedPoint.NULL_VALUE for a missing volume)
+	 */
+	public BitfinexCandle(final long timestamp, final long scaledOpen, final long scaledClose, 
+			final long scaledHigh, final long scaledLow, final long scaledVolume, final int scale) {
+		
+		assert (scaledHigh >= scaledOpen) : "High needs to be >= open";
+		assert (scaledHigh >= scaledClose) : "High needs to be => close";
+		assert (scaledLow <= scaledOpen) : "Low needs to be <= open";
+		assert (scaledLow <= scaledClose) : "Low needs to be <= close";
+		
+		this.timestamp = timestamp;
+		this.open = null;
+		this.close = null;
+		this.high = null;
+		this.low = null;
+		this.volume = null;
+		this.scaledOpen = scaledOpen;
+		this.scaledClose = scaledClose;
+		this.scaledHigh = scaledHigh;
+		this.scaledLow = scaledLow;
+		this.scaledVolume = scaledVolume;
+		this.scale = scale;
 	}
 	
 	public BitfinexCandle(final long timestamp, final BigDecimal open, final BigDecimal close, 
@@ -92,23 +139,68 @@ public class BitfinexCandle implements Comparable<BitfinexCandle>{
 	}
 
 	public BigDecimal getOpen() {
-		return open;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledOpen, scale) : open;
 	}
 
 	public BigDecimal getClose() {
-		return close;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledClose, scale) : close;
 	}
 
 	public BigDecimal getHigh() {
-		return high;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledHigh, scale) : high;
 	}
 	
 	public BigDecimal getLow() {
-		return low;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledLow, scale) : low;
 	}
 
 	public Optional<BigDecimal> getVolume() {
-		return volume;
+		return isFixedPoint() ? Optional.ofNullable(FixedPoint.toBigDecimal(scaledVolume, scale)) : volume;
+	}
+	
+	/**
+	 * Is the candle decoded as fixed point value
+	 * @return
+	 */
+	public boolean isFixedPoint() {
+		return scale != FixedPoint.NO_SCALE;
+	}
+	
+	/**
+	 * Get the scale of the fixed point values
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+	
+	public long getScaledOpen() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledOpen;
+	}
+	
+	public long getScaledClose() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledClose;
+	}
+	
+	public long getScaledHigh() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledHigh;
+	}
+	
+	public long getScaledLow() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledLow;
+	}
+	
+	/**
+	 * Get the volume as fixed point value
+	 * @return the volume or FixedPoint.NULL_VALUE
+	 */
+	public long getScaledVolume() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledVolume;
 	}
 
 	@Override
@@ -121,6 +213,12 @@ public class BitfinexCandle implements Comparable<BitfinexCandle>{
 		result = prime * result + ((open == null) ? 0 : open.hashCode());
 		result = prime * result + (int) (timestamp ^ (timestamp >>> 32));
 		result = prime * result + ((volume == null) ? 0 : volume.hashCode());
+		result = prime * result + (int) (scaledOpen ^ (scaledOpen >>> 32));
+		result = prime * result + (int) (scaledClose ^ (scaledClose >>> 32));
+		result = prime * result + (int) (scaledHigh ^ (scaledHigh >>> 32));
+		result = prime * result + (int) (scaledLow ^ (scaledLow >>> 32));
+		result = prime * result + (int) (scaledVolume ^ (scaledVolume >>> 32));
+		result = prime * result + scale;
 		return result;
 	}
 
@@ -160,13 +258,18 @@ public class BitfinexCandle implements Comparable<BitfinexCandle>{
 				return false;
 		} else if (!volume.equals(other.volume))
 			return false;
+		if (scaledOpen != other.scaledOpen || scaledClose != other.scaledClose 
+				|| scaledHigh != other.scaledHigh || scaledLow != other.scaledLow)
+			return false;
+		if (scaledVolume != other.scaledVolume || scale != other.scale)
+			return false;
 		return true;
 	}
 
 	@Override
 	public String toString() {
-		return "Bar [timestamp=" + timestamp + ", open=" + open + ", close=" + close + ", high=" + high + ", low=" + low
-				+ ", volume=" + volume + "]";
+		return "Bar [timestamp=" + timestamp + ", open=" + getOpen() + ", close=" + getClose() + ", high=" + getHigh() 
+				+ ", low=" + getLow() + ", volume=" + getVolume() + "]";
 	}
 
 	@Override
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * A in-place update of a open order, the values that are null are not changed
+ */
+public class BitfinexOrderUpdate {
+	
+	/**
+	 * The flag of hidden orders
+	 */
+	public final static int FLAG_HIDDEN = 64;
+	
+	/**
+	 * The flag of post only orders
+	 */
+	public final static int FLAG_POSTONLY = 4096;
+
+	private final long orderId;
+	private final BigDecimal price;
+	private final BigDecimal amount;
+	private final BigDecimal delta;
+	private final BigDecimal priceTrailing;
+	private final BigDecimal priceAuxLimit;
+	private final Integer flags;
+	private final Integer groupId;
+	
+	public BitfinexOrderUpdate(final long orderId, final BigDecimal price, final BigDecimal amount, 
+			final BigDecimal delta, final BigDecimal priceTrailing, final BigDecimal priceAuxLimit, 
+			final Integer flags, final Integer groupId) {
+		
+		this.orderId = orderId;
+		this.price = price;
+		this.amount = amount;
+		this.delta = delta;
+		this.priceTrailing = priceTrailing;
+		this.priceAuxLimit = priceAuxLimit;
+		this.flags = flags;
+		this.groupId = groupId;
+	}
+
+	@Override
+	public String toString() {
+		return "BitfinexOrderUpdate [orderId=" + orderId + ", price=" + price + ", amount=" + amount 
+				+ ", delta=" + delta + ", priceTrailing=" + priceTrailing + ", priceAuxLimit=" 
+				+ priceAuxLimit + ", flags=" + flags + ", groupId=" + groupId + "]";
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public BigDecimal getPrice() {
+		return price;
+	}
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	public BigDecimal getDelta() {
+		return delta;
+	}
+
+	public BigDecimal getPriceTrailing() {
+		return priceTrailing;
+	}
+
+	public BigDecimal getPriceAuxLimit() {
+		return priceAuxLimit;
+	}
+
+	public Integer getFlags() {
+		return flags;
+	}
+
+	public Integer getGroupId() {
+		return groupId;
+	}
+}
@@ -19,6 +19,8 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 
 import java.math.BigDecimal;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class BitfinexTick {
 
 	/**
@@ -71,6 +73,25 @@ public class BitfinexTick {
 	 */
 	private final BigDecimal low;
 
+	/**
+	 * The fixed point values (only used if scale != FixedPoint.NO_SCALE)
+	 */
+	private final long scaledBid;
+	private final long scaledBidSize;
+	private final long scaledAsk;
+	private final long scaledAskSize;
+	private final long scaledDailyChange;
+	private final long scaledDailyChangePerc;
+	private final long scaledLastPrice;
+	private final long scaledVolume;
+	private final long scaledHigh;
+	private final long scaledLow;
+	
+	/**
+	 * The scale of the fixed point values
+	 */
+	private final int scale;
+
 	public BitfinexTick(final BigDecimal bid, final BigDecimal bidSize, final BigDecimal ask,
 			final BigDecimal askSize, final BigDecimal dailyChange, final BigDecimal dailyChangePerc,
 			final BigDecimal lastPrice, final BigDecimal volume, final BigDecimal high, final BigDecimal low) {
@@ -85,53 +106,158 @@ public class BitfinexTick {
 		this.volume = volume;
 		this.high = high;
 		this.low = low;
+		this.scaledBid = FixedPoint.NULL_VALUE;
+		this.scaledBidSize = FixedPoint.NULL_VALUE;
+		this.scaledAsk = FixedPoint.NULL_VALUE;
+		this.scaledAskSize = FixedPoint.NULL_VALUE;
+		this.scaledDailyChange = FixedPoint.NULL_VALUE;
+		this.scaledDailyChangePerc = FixedPoint.NULL_VALUE;
+		this.scaledLastPrice = FixedPoint.NULL_VALUE;
+		this.scaledVolume = FixedPoint.NULL_VALUE;
+		this.scaledHigh = FixedPoint.NULL_VALUE;
+		this.scaledLow = FixedPoint.NULL_VALUE;
+		this.scale = FixedPoint.NO_SCALE;
+	}
+
+	public BitfinexTick(final long scaledBid, final long scaledBidSize, final long scaledAsk,
+			final long scaledAskSize, final long scaledDailyChange, final long scaledDailyChangePerc,
+			final long scaledLastPrice, final long scaledVolume, final long scaledHigh, final long scaledLow,
+			final int scale) {
+
+		this.bid = null;
+		this.bidSize = null;
+		this.ask = null;
+		this.askSize = null;
+		this.dailyChange = null;
+		this.dailyChangePerc = null;
+		this.lastPrice = null;
+		this.volume = null;
+		this.high = null;
+		this.low = null;
+		this.scaledBid = scaledBid;
+		this.scaledBidSize = scaledBidSize;
+		this.scaledAsk = scaledAsk;
+		this.scaledAskSize = scaledAskSize;
+		this.scaledDailyChange = scaledDailyChange;
+		this.scaledDailyChangePerc = scaledDailyChangePerc;
+		this.scaledLastPrice = scaledLastPrice;
+		this.scaledVolume = scaledVolume;
+		this.scaledHigh = scaledHigh;
+		this.scaledLow = scaledLow;
+		this.scale = scale;
 	}
 
 	public BigDecimal getBid() {
-		return bid;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledBid, scale) : bid;
 	}
 
 	public BigDecimal getBidSize() {
-		return bidSize;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledBidSize, scale) : bidSize;
 	}
 
 	public BigDecimal getAsk() {
-		return ask;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledAsk, scale) : ask;
 	}
 
 	public BigDecimal getAskSize() {
-		return askSize;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledAskSize, scale) : askSize;
 	}
 
 	public BigDecimal getDailyChange() {
-		return dailyChange;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledDailyChange, scale) : dailyChange;
 	}
 
 	public BigDecimal getDailyChangePerc() {
-		return dailyChangePerc;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledDailyChangePerc, scale) : dailyChangePerc;
 	}
 
 	public BigDecimal getLastPrice() {
-		return lastPrice;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledLastPrice, scale) : lastPrice;
 	}
 
 	public BigDecimal getVolume() {
-		return volume;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledVolume, scale) : volume;
 	}
 
 	public BigDecimal getHigh() {
-		return high;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledHigh, scale) : high;
 	}
 
 	public BigDecimal getLow() {
-		return low;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledLow, scale) : low;
+	}
+
+	/**
+	 * Is the tick decoded as fixed point value
+	 * @return
+	 */
+	public boolean isFixedPoint() {
+		return scale != FixedPoint.NO_SCALE;
+	}
+	
+	/**
+	 * Get the scale of the fixed point values
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+
+	public long getScaledBid() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledBid;
+	}
+
+	public long getScaledBidSize() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledBidSize;
+	}
+
+	public long getScaledAsk() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledAsk;
+	}
+
+	public long getScaledAskSize() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledAskSize;
+	}
+
+	public long getScaledDailyChange() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledDailyChange;
+	}
+
+	public long getScaledDailyChangePerc() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledDailyChangePerc;
+	}
+
+	public long getScaledLastPrice() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledLastPrice;
+	}
+
+	public long getScaledVolume() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledVolume;
+	}
+
+	public long getScaledHigh() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledHigh;
+	}
+
+	public long getScaledLow() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledLow;
 	}
 
 	@Override
 	public String toString() {
-		return "BitfinexTick [bid=" + bid + ", bidSize=" + bidSize + ", ask=" + ask + ", askSize=" + askSize
-				+ ", dailyChange=" + dailyChange + ", dailyChangePerc=" + dailyChangePerc + ", lastPrice=" + lastPrice
-				+ ", volume=" + volume + ", high=" + high + ", low=" + low + "]";
+		return "BitfinexTick [bid=" + getBid() + ", bidSize=" + getBidSize() + ", ask=" + getAsk() + ", askSize=" + getAskSize()
+				+ ", dailyChange=" + getDailyChange() + ", dailyChangePerc=" + getDailyChangePerc() + ", lastPrice=" + getLastPrice()
+				+ ", volume=" + getVolume() + ", high=" + getHigh() + ", low=" + getLow() + "]";
 	}
 
 }
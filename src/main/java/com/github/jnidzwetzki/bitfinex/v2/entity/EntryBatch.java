@@ -0,0 +1,118 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.entity;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The entries of one frame of a channel (a snapshot or an update).
+ * 
+ * The batch is a read only view on the decoded entries, no copy is created.
+ */
+public class EntryBatch<T> extends AbstractCollection<T> {
+	
+	/**
+	 * The entries
+	 */
+	private final Collection<T> entries;
+	
+	/**
+	 * Is the batch a snapshot
+	 */
+	private final boolean snapshot;
+	
+	public EntryBatch(final Collection<T> entries, final boolean snapshot) {
+		this.entries = Collections.unmodifiableCollection(entries);
+		this.snapshot = snapshot;
+	}
+	
+	/**
+	 * Get the batch of the entries. Collections that are not created by the 
+	 * channel handlers are treated as snapshot, if they contain more than one entry.
+	 * 
+	 * @param entries
+	 * @return
+	 */
+	public static <T> EntryBatch<T> of(final Collection<T> entries) {
+		if(entries instanceof EntryBatch) {
+			return (EntryBatch<T>) entries;
+		}
+		
+		return new EntryBatch<>(entries, entries.size() > 1);
+	}
+	
+	/**
+	 * Merge two consecutive batches into one batch. A snapshot replaces the older 
+	 * batch, otherwise the newer entries replace the older entries with the same key 
+	 * (e.g. the price level of a orderbook entry).
+	 * 
+	 * @param older
+	 * @param newer
+	 * @param keyFunction
+	 * @return
+	 */
+	public static <T> EntryBatch<T> merge(final EntryBatch<T> older, final EntryBatch<T> newer, 
+			final Function<T, Object> keyFunction) {
+		
+		if(newer.isSnapshot()) {
+			return newer;
+		}
+		
+		final Map<Object, T> entries = new LinkedHashMap<>();
+		
+		for(final T entry : older) {
+			entries.put(keyFunction.apply(entry), entry);
+		}
+		
+		for(final T entry : newer) {
+			entries.put(keyFunction.apply(entry), entry);
+		}
+		
+		return new EntryBatch<>(entries.values(), older.isSnapshot());
+	}
+	
+	/**
+	 * Is the batch a snapshot (or a incremental update)
+	 * @return
+	 */
+	public boolean isSnapshot() {
+		return snapshot;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return entries.iterator();
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public String toString() {
+		return "EntryBatch [snapshot=" + snapshot + ", entries=" + entries + "]";
+	}
+	
+}
@@ -19,6 +19,8 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 
 import java.math.BigDecimal;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class ExecutedTrade {
 	
 	private long id;
@@ -28,6 +30,14 @@ public class ExecutedTrade {
 	private BigDecimal rate;
 	private int period;
 	
+	/**
+	 * The fixed point values (only used if scale != FixedPoint.NO_SCALE)
+	 */
+	private long scaledAmount = FixedPoint.NULL_VALUE;
+	private long scaledPrice = FixedPoint.NULL_VALUE;
+	private long scaledRate = FixedPoint.NULL_VALUE;
+	private int scale = FixedPoint.NO_SCALE;
+	
 	public ExecutedTrade() {
 	}
 	
@@ -40,7 +50,7 @@ public class ExecutedTrade {
 	}
 	
 	public BigDecimal getAmount() {
-		return amount;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledAmount, scale) : amount;
 	}
 
 	public void setAmount(final BigDecimal amount) {
@@ -48,7 +58,7 @@ public class ExecutedTrade {
 	}
 	
 	public BigDecimal getPrice() {
-		return price;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledPrice, scale) : price;
 	}
 
 	public void setPrice(final BigDecimal price) {
@@ -56,7 +66,7 @@ public class ExecutedTrade {
 	}
 
 	public BigDecimal getRate() {
-		return rate;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledRate, scale) : rate;
 	}
 
 	public void setRate(final BigDecimal rate) {
@@ -79,10 +89,69 @@ public class ExecutedTrade {
 		this.id = id;
 	}
 
+	/**
+	 * Is the trade decoded as fixed point value
+	 * @return
+	 */
+	public boolean isFixedPoint() {
+		return scale != FixedPoint.NO_SCALE;
+	}
+
+	/**
+	 * Get the scale of the fixed point values
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+
+	/**
+	 * Set the scale of the fixed point values
+	 * @param scale
+	 */
+	public void setScale(final int scale) {
+		this.scale = scale;
+	}
+
+	public long getScaledAmount() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledAmount;
+	}
+
+	public void setScaledAmount(final long scaledAmount) {
+		this.scaledAmount = scaledAmount;
+	}
+
+	/**
+	 * Get the price as fixed point value
+	 * @return the price or FixedPoint.NULL_VALUE for funding trades
+	 */
+	public long getScaledPrice() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledPrice;
+	}
+
+	public void setScaledPrice(final long scaledPrice) {
+		this.scaledPrice = scaledPrice;
+	}
+
+	/**
+	 * Get the rate as fixed point value
+	 * @return the rate or FixedPoint.NULL_VALUE for currency trades
+	 */
+	public long getScaledRate() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledRate;
+	}
+
+	public void setScaledRate(final long scaledRate) {
+		this.scaledRate = scaledRate;
+	}
+
 	@Override
 	public String toString() {
-		return "ExecutedTrade [id=" + id + ", timestamp=" + timestamp + ", amount=" + amount + ", price=" + price
-				+ ", rate=" + rate + ", period=" + period + "]";
+		return "ExecutedTrade [id=" + id + ", timestamp=" + timestamp + ", amount=" + getAmount() + ", price=" + getPrice()
+				+ ", rate=" + getRate() + ", period=" + period + "]";
 	}
 
 }
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.entity;
+
+/**
+ * A order request that is rejected by the exchange (e.g. a cancellation of a unknown order)
+ */
+public class OrderRequestError {
+	
+	public enum RequestType {
+		CANCEL,
+		UPDATE;
+	}
+
+	private final RequestType requestType;
+	private final long orderId;
+	private final long cid;
+	private final String reason;
+	
+	public OrderRequestError(final RequestType requestType, final long orderId, final long cid, 
+			final String reason) {
+		
+		this.requestType = requestType;
+		this.orderId = orderId;
+		this.cid = cid;
+		this.reason = reason;
+	}
+
+	@Override
+	public String toString() {
+		return "OrderRequestError [requestType=" + requestType + ", orderId=" + orderId + ", cid=" + cid
+				+ ", reason=" + reason + "]";
+	}
+
+	public RequestType getRequestType() {
+		return requestType;
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public long getCid() {
+		return cid;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+	
+	/**
+	 * Is the request rejected permanently (e.g. the order is unknown or the request 
+	 * is invalid), a retry of the request fails again
+	 * @return
+	 */
+	public boolean isPermanent() {
+		if(reason == null) {
+			return false;
+		}
+		
+		final String lowerCaseReason = reason.toLowerCase();
+		return lowerCaseReason.contains("not found") || lowerCaseReason.startsWith("invalid");
+	}
+}
@@ -19,6 +19,8 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 
 import java.math.BigDecimal;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class OrderbookEntry {
 	
 
@@ -26,27 +28,91 @@ public class OrderbookEntry {
 	private final BigDecimal amount;
 	private final BigDecimal count;
 	
+	/**
+	 * The fixed point values (only used if scale != FixedPoint.NO_SCALE)
+	 */
+	private final long scaledPrice;
+	private final long scaledAmount;
+	private final long orderCount;
+	private final int scale;
+	
 	public OrderbookEntry(BigDecimal price, BigDecimal count, BigDecimal amount) {
 		this.price = price;
 		this.count = count;
 		this.amount = amount;
+		this.scaledPrice = FixedPoint.NULL_VALUE;
+		this.scaledAmount = FixedPoint.NULL_VALUE;
+		this.orderCount = FixedPoint.NULL_VALUE;
+		this.scale = FixedPoint.NO_SCALE;
+	}
+	
+	public OrderbookEntry(final long scaledPrice, final long orderCount, final long scaledAmount, final int scale) {
+		this.price = null;
+		this.count = null;
+		this.amount = null;
+		this.scaledPrice = scaledPrice;
+		this.orderCount = orderCount;
+		this.scaledAmount = scaledAmount;
+		this.scale = scale;
 	}
 
 	public BigDecimal getPrice() {
-		return price;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledPrice, scale) : price;
 	}
 
 	public BigDecimal getAmount() {
-		return amount;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledAmount, scale) : amount;
 	}
 
 	public BigDecimal getCount() {
-		return count;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(orderCount, 0) : count;
+	}
+	
+	/**
+	 * Is the entry decoded as fixed point value
+	 * @return
+	 */
+	public boolean isFixedPoint() {
+		return scale != FixedPoint.NO_SCALE;
+	}
+	
+	/**
+	 * Get the scale of the fixed point values
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+	
+	/**
+	 * Get the price as fixed point value
+	 * @return
+	 */
+	public long getScaledPrice() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledPrice;
+	}
+	
+	/**
+	 * Get the amount as fixed point value
+	 * @return
+	 */
+	public long getScaledAmount() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledAmount;
+	}
+	
+	/**
+	 * Get the number of orders at the price level
+	 * @return
+	 */
+	public long getOrderCount() {
+		return isFixedPoint() ? orderCount : count.longValue();
 	}
 
 	@Override
 	public String toString() {
-		return "OrderbookEntry [price=" + price + ", count=" + count + ", amount=" + amount + "]";
+		return "OrderbookEntry [price=" + getPrice() + ", count=" + getCount() + ", amount=" + getAmount() + "]";
 	}
 
 }
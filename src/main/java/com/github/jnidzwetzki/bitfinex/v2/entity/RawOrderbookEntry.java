@@ -19,16 +19,37 @@ package com.github.jnidzwetzki.bitfinex.v2.entity;
 
 import java.math.BigDecimal;
 
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
 public class RawOrderbookEntry {
 
 	private final long orderId;
 	private final BigDecimal price;
 	private final BigDecimal amount;
+	
+	/**
+	 * The fixed point values (only used if scale != FixedPoint.NO_SCALE)
+	 */
+	private final long scaledPrice;
+	private final long scaledAmount;
+	private final int scale;
 
 	public RawOrderbookEntry(final long orderId, BigDecimal price, BigDecimal amount) {
 		this.orderId = orderId;
 		this.price = price;
 		this.amount = amount;
+		this.scaledPrice = FixedPoint.NULL_VALUE;
+		this.scaledAmount = FixedPoint.NULL_VALUE;
+		this.scale = FixedPoint.NO_SCALE;
+	}
+	
+	public RawOrderbookEntry(final long orderId, final long scaledPrice, final long scaledAmount, final int scale) {
+		this.orderId = orderId;
+		this.price = null;
+		this.amount = null;
+		this.scaledPrice = scaledPrice;
+		this.scaledAmount = scaledAmount;
+		this.scale = scale;
 	}
 
 	public long getOrderId() {
@@ -36,16 +57,50 @@ public class RawOrderbookEntry {
 	}
 
 	public BigDecimal getPrice() {
-		return price;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledPrice, scale) : price;
 	}
 
 	public BigDecimal getAmount() {
-		return amount;
+		return isFixedPoint() ? FixedPoint.toBigDecimal(scaledAmount, scale) : amount;
+	}
+	
+	/**
+	 * Is the entry decoded as fixed point value
+	 * @return
+	 */
+	public boolean isFixedPoint() {
+		return scale != FixedPoint.NO_SCALE;
+	}
+	
+	/**
+	 * Get the scale of the fixed point values
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+	
+	/**
+	 * Get the price as fixed point value
+	 * @return
+	 */
+	public long getScaledPrice() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledPrice;
+	}
+	
+	/**
+	 * Get the amount as fixed point value
+	 * @return
+	 */
+	public long getScaledAmount() {
+		FixedPoint.checkFixedPoint(scale);
+		return scaledAmount;
 	}
 
 	@Override
 	public String toString() {
-		return "RawOrderbookEntry [orderId=" + orderId + ", price=" + price + ", amount=" + amount + "]";
+		return "RawOrderbookEntry [orderId=" + orderId + ", price=" + getPrice() + ", amount=" + getAmount() + "]";
 	}
 
 }
@@ -17,9 +17,15 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
+import java.io.Closeable;
 import java.util.concurrent.ExecutorService;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.util.BufferedPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
 
 public abstract class AbstractManager {
 	
@@ -39,5 +45,36 @@ public abstract class AbstractManager {
 		this.executorService = executorService;
 		this.bitfinexApiBroker = bitfinexApiBroker;
 	}
+	
+	/**
+	 * Create a publisher that delivers the items on the executor of the manager
+	 * @param bufferSize the buffer size per subscriber
+	 * @param overflowPolicy the policy for full buffers
+	 * @param source registers the consumer of the items and returns the registration
+	 * @return
+	 */
+	protected <T> BufferedPublisher<T> createPublisher(final int bufferSize, final OverflowPolicy overflowPolicy, 
+			final Function<Consumer<T>, Closeable> source) {
+		
+		return createPublisher(bufferSize, overflowPolicy, null, source);
+	}
+	
+	/**
+	 * Create a publisher that delivers the items on the executor of the manager, 
+	 * the items are merged when the buffer of a subscriber is full
+	 * @param bufferSize the buffer size per subscriber
+	 * @param overflowPolicy the policy for full buffers
+	 * @param mergeFunction merges the newest buffered item and the new item (null to drop items)
+	 * @param source registers the consumer of the items and returns the registration
+	 * @return
+	 */
+	protected <T> BufferedPublisher<T> createPublisher(final int bufferSize, final OverflowPolicy overflowPolicy, 
+			final BinaryOperator<T> mergeFunction, final Function<Consumer<T>, Closeable> source) {
+		
+		final BufferedPublisher<T> publisher = new BufferedPublisher<>(bufferSize, overflowPolicy, 
+				executorService, mergeFunction);
+		publisher.setSource(source.apply(publisher::publish));
+		return publisher;
+	}
 
 }
@@ -18,28 +18,43 @@
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackArray;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor.ConsumerStatistics;
+import com.github.jnidzwetzki.bitfinex.v2.util.StripedExecutor;
+import com.github.jnidzwetzki.bitfinex.v2.util.SymbolCallbackIndex;
 
 public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 
 	/**
 	 * The callbacks
 	 */
-	private final Map<S, List<BiConsumer<S, T>>> callbacks;
+	private final SymbolCallbackIndex<S, BiConsumer<S, T>> callbacks;
+	
+	/**
+	 * The callback monitor (null if disabled)
+	 */
+	private final CallbackMonitor callbackMonitor;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(BiConsumerCallbackManager.class);
 	
 	public BiConsumerCallbackManager(final ExecutorService executorService, 
 			final BitfinexApiBroker bitfinexApiBroker) {
 		
 		super(bitfinexApiBroker, executorService);
-		this.callbacks = new ConcurrentHashMap<>();
+		this.callbacks = new SymbolCallbackIndex<>();
+		this.callbackMonitor = bitfinexApiBroker.getCallbackMonitor();
 	}
 	
 	/**
@@ -49,9 +64,7 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 	 * @throws APIException
 	 */
 	public void registerCallback(final S symbol, final BiConsumer<S, T> callback) throws APIException {
-		final List<BiConsumer<S, T>> callbackList 
-			= callbacks.computeIfAbsent(symbol, (k) -> new CopyOnWriteArrayList<>());	
-		callbackList.add(callback);
+		callbacks.register(symbol, callback);
 	}
 	
 	/**
@@ -63,13 +76,17 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 	 */
 	public boolean removeCallback(final S symbol, final BiConsumer<S, T> callback) throws APIException {
 		
-		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
-
-		if(callbackList == null) {
+		if(! callbacks.isKnownSymbol(symbol)) {
 			throw new APIException("Unknown ticker string: " + symbol);
 		}			
 		
-		return callbackList.remove(callback);	
+		final boolean removed = callbacks.remove(symbol, callback);
+		
+		if(removed && callbackMonitor != null && ! callbacks.contains(callback)) {
+			callbackMonitor.remove(callback);
+		}
+		
+		return removed;
 	}
 	
 	/**
@@ -79,21 +96,17 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 	 */
 	public void handleEventsCollection(final S symbol, final Collection<T> elements) {
 		
-		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
+		final CallbackArray<BiConsumer<S, T>> callbackArray = callbacks.get(symbol);
 		
-		if(callbackList == null) {
-			return;
-		}
-				
-		if(callbackList.isEmpty()) {
+		if(callbackArray.isEmpty()) {
 			return;
 		}
 		
 		// Notify callbacks synchronously, to preserve the order of events
 		for (final T element : elements) {
-			callbackList.forEach((c) -> {
-				c.accept(symbol, element);
-			});
+			for(int i = 0; i < callbackArray.size(); i++) {
+				invokeCallback(callbackArray.get(i), symbol, element);
+			}
 		}
 	}
 	
@@ -104,19 +117,85 @@ public class BiConsumerCallbackManager<S, T> extends AbstractManager {
 	 */
 	public void handleEvent(final S symbol, final T element) {
 		
-		final List<BiConsumer<S, T>> callbackList = callbacks.get(symbol);
+		final CallbackArray<BiConsumer<S, T>> callbackArray = callbacks.get(symbol);
 		
-		if(callbackList == null) {
+		if(callbackArray.isEmpty()) {
 			return;
 		}
-
-		if(callbackList.isEmpty()) {
+		
+		// One task per event on the stripe of the symbol, keeps the order of the events
+		if(executorService instanceof StripedExecutor) {
+			final Runnable runnable = () -> notifyCallbacks(callbackArray, symbol, element);
+			((StripedExecutor) executorService).execute(symbol, runnable);
 			return;
 		}
 
-		callbackList.forEach((c) -> {
-			final Runnable runnable = () -> c.accept(symbol, element);
+		for(int i = 0; i < callbackArray.size(); i++) {
+			final BiConsumer<S, T> c = callbackArray.get(i);
+			final Runnable runnable = () -> invokeCallback(c, symbol, element);
 			executorService.submit(runnable);
-		});
+		}
+	}
+	
+	/**
+	 * Handle a new event in the calling thread, the callbacks receive the 
+	 * events in order and have to hand them over on their own
+	 * @param symbol
+	 * @param element
+	 */
+	public void handleEventDirect(final S symbol, final T element) {
+		
+		notifyCallbacks(callbacks.get(symbol), symbol, element);
+	}
+	
+	/**
+	 * Are callbacks for the symbol registered
+	 * @param symbol
+	 * @return
+	 */
+	public boolean hasCallbacks(final S symbol) {
+		return ! callbacks.get(symbol).isEmpty();
+	}
+	
+	/**
+	 * Notify the callbacks, a failing callback does not affect the other callbacks
+	 * @param callbackArray
+	 * @param symbol
+	 * @param element
+	 */
+	private void notifyCallbacks(final CallbackArray<BiConsumer<S, T>> callbackArray, final S symbol, final T element) {
+		for(int i = 0; i < callbackArray.size(); i++) {
+			try {
+				invokeCallback(callbackArray.get(i), symbol, element);
+			} catch(Exception e) {
+				logger.error("Got exception while executing callback for {}", symbol, e);
+			}
+		}
+	}
+	
+	/**
+	 * Invoke the callback, timed if a callback monitor is configured
+	 * @param callback
+	 * @param symbol
+	 * @param element
+	 */
+	private void invokeCallback(final BiConsumer<S, T> callback, final S symbol, final T element) {
+		if(callbackMonitor == null) {
+			callback.accept(symbol, element);
+			return;
+		}
+		
+		final ConsumerStatistics statistics = callbackMonitor.getStatistics(callback);
+		
+		if(statistics.isQuarantined()) {
+			return;
+		}
+		
+		final long startTime = System.nanoTime();
+		try {
+			callback.accept(symbol, element);
+		} finally {
+			callbackMonitor.record(statistics, System.nanoTime() - startTime);
+		}
 	}
 }
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
+
+/**
+ * A callback that conflates the updates for consumers that fall behind.
+ * 
+ * Each symbol has one pending slot. New entries replace the pending entry with the 
+ * same conflation key (e.g. the price level of a orderbook entry), a snapshot 
+ * replaces all pending entries. One delivery task per symbol is active at a time, 
+ * it delivers the pending entries as one batch and picks up the entries that 
+ * arrived in the meantime. 
+ * 
+ * The callback has to be called in the order of the events (it is registered as 
+ * direct callback in the managers). 
+ */
+public class ConflatingCallback<S, T> implements BiConsumer<S, EntryBatch<T>> {
+
+	/**
+	 * The conflation key of the entries
+	 */
+	private final Function<T, Object> keyFunction;
+	
+	/**
+	 * The consumer
+	 */
+	private final BiConsumer<S, EntryBatch<T>> callback;
+	
+	/**
+	 * The executor for the deliveries
+	 */
+	private final Executor executor;
+	
+	/**
+	 * The pending entries per symbol
+	 */
+	private final Map<S, PendingEntries<T>> pendingEntries;
+	
+	/**
+	 * The number of conflated (not delivered) updates
+	 */
+	private final AtomicLong conflatedUpdates;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(ConflatingCallback.class);
+	
+	public ConflatingCallback(final Function<T, Object> keyFunction, 
+			final BiConsumer<S, EntryBatch<T>> callback, final Executor executor) {
+		
+		this.keyFunction = keyFunction;
+		this.callback = callback;
+		this.executor = executor;
+		this.pendingEntries = new ConcurrentHashMap<>();
+		this.conflatedUpdates = new AtomicLong();
+	}
+
+	@Override
+	public void accept(final S symbol, final EntryBatch<T> batch) {
+		final PendingEntries<T> pending = pendingEntries.computeIfAbsent(symbol, s -> new PendingEntries<>());
+		final boolean scheduleDelivery;
+		
+		synchronized (pending) {
+			if(batch.isSnapshot()) {
+				conflatedUpdates.addAndGet(pending.entries.size());
+				pending.entries.clear();
+				pending.snapshot = true;
+			}
+			
+			for(final T entry : batch) {
+				if(pending.entries.put(keyFunction.apply(entry), entry) != null) {
+					conflatedUpdates.incrementAndGet();
+				}
+			}
+			
+			scheduleDelivery = ! pending.deliveryActive;
+			pending.deliveryActive = true;
+		}
+		
+		if(scheduleDelivery) {
+			executor.execute(() -> deliver(symbol, pending));
+		}
+	}
+	
+	/**
+	 * Deliver the pending entries until no more entries are pending
+	 * @param symbol
+	 * @param pending
+	 */
+	private void deliver(final S symbol, final PendingEntries<T> pending) {
+		while(true) {
+			final EntryBatch<T> batch;
+			
+			synchronized (pending) {
+				if(pending.entries.isEmpty() && ! pending.snapshot) {
+					pending.deliveryActive = false;
+					return;
+				}
+				
+				batch = new EntryBatch<>(new ArrayList<>(pending.entries.values()), pending.snapshot);
+				pending.entries.clear();
+				pending.snapshot = false;
+			}
+			
+			try {
+				callback.accept(symbol, batch);
+			} catch(Exception e) {
+				logger.error("Got exception while executing callback for {}", symbol, e);
+			}
+		}
+	}
+	
+	/**
+	 * Get the number of conflated updates (updates that were replaced before 
+	 * they were delivered)
+	 * @return
+	 */
+	public long getConflatedUpdates() {
+		return conflatedUpdates.get();
+	}
+	
+	private static class PendingEntries<T> {
+		
+		/**
+		 * The pending entries by conflation key
+		 */
+		private final Map<Object, T> entries = new LinkedHashMap<>();
+		
+		/**
+		 * Do the pending entries start with a snapshot
+		 */
+		private boolean snapshot;
+		
+		/**
+		 * Is a delivery task scheduled or running
+		 */
+		private boolean deliveryActive;
+	}
+}
@@ -0,0 +1,572 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
+/**
+ * A local (L2) orderbook that is maintained from the orderbook snapshots and updates.
+ * 
+ * Prices and amounts are stored as fixed point values with the scale of the book, 
+ * amounts are stored as absolute values for both sides. Each side is stored in sorted
+ * primitive arrays with the best level at the end of the array, so the best level is 
+ * read in O(1), levels are found by a binary search and changes at the top of the 
+ * book only move a few elements. 
+ * 
+ * The book is written by one thread (the thread that delivers the orderbook events), 
+ * the read methods can be called from any thread, they use optimistic reads and
+ * don't allocate. 
+ *
+ */
+public class LocalOrderbook {
+	
+	/**
+	 * The initial capacity of a side
+	 */
+	private final static int INITIAL_CAPACITY = 32;
+
+	/**
+	 * The configuration of the book
+	 */
+	private final OrderbookConfiguration configuration;
+	
+	/**
+	 * The scale of the fixed point values
+	 */
+	private final int scale;
+	
+	/**
+	 * The bids (sorted by ascending price, best bid at the end)
+	 */
+	private final Side bids;
+	
+	/**
+	 * The asks (sorted by descending price, best ask at the end)
+	 */
+	private final Side asks;
+	
+	/**
+	 * The lock
+	 */
+	private final StampedLock lock;
+	
+	public LocalOrderbook(final OrderbookConfiguration configuration, final int scale) {
+		FixedPoint.checkScale(scale);
+		this.configuration = configuration;
+		this.scale = scale;
+		this.bids = new Side(true);
+		this.asks = new Side(false);
+		this.lock = new StampedLock();
+	}
+	
+	/**
+	 * Replace the content of the book with the snapshot. The entries are converted 
+	 * before the book is changed, the book is unchanged if a entry is invalid.
+	 * @param entries
+	 * @throws ArithmeticException if a value does not fit into the scale of the book
+	 */
+	public void applySnapshot(final Collection<OrderbookEntry> entries) {
+		final long[] prices = new long[entries.size()];
+		final long[] amounts = new long[entries.size()];
+		final long[] counts = new long[entries.size()];
+		int pos = 0;
+		
+		for(final OrderbookEntry entry : entries) {
+			prices[pos] = getPrice(entry);
+			amounts[pos] = getAmount(entry);
+			counts[pos] = entry.getOrderCount();
+			pos++;
+		}
+		
+		final long stamp = lock.writeLock();
+		try {
+			bids.clear();
+			asks.clear();
+			
+			for(int i = 0; i < pos; i++) {
+				applyLevel(prices[i], amounts[i], counts[i]);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Apply a update to the book
+	 * @param entry
+	 * @throws ArithmeticException if a value does not fit into the scale of the book
+	 */
+	public void applyUpdate(final OrderbookEntry entry) {
+		final long price = getPrice(entry);
+		final long amount = getAmount(entry);
+		
+		final long stamp = lock.writeLock();
+		try {
+			applyLevel(price, amount, entry.getOrderCount());
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Remove all levels
+	 */
+	public void clear() {
+		final long stamp = lock.writeLock();
+		try {
+			bids.clear();
+			asks.clear();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Get the price of the entry in the scale of the book
+	 * @param entry
+	 * @return
+	 * @throws ArithmeticException if the value does not fit into the scale of the book
+	 */
+	private long getPrice(final OrderbookEntry entry) {
+		if(entry.isFixedPoint()) {
+			return FixedPoint.toFixedPoint(entry.getScaledPrice(), entry.getScale(), scale);
+		}
+		
+		return FixedPoint.toFixedPoint(entry.getPrice(), scale);
+	}
+	
+	/**
+	 * Get the amount of the entry in the scale of the book
+	 * @param entry
+	 * @return
+	 * @throws ArithmeticException if the value does not fit into the scale of the book
+	 */
+	private long getAmount(final OrderbookEntry entry) {
+		if(entry.isFixedPoint()) {
+			return FixedPoint.toFixedPoint(entry.getScaledAmount(), entry.getScale(), scale);
+		}
+		
+		return FixedPoint.toFixedPoint(entry.getAmount(), scale);
+	}
+	
+	/**
+	 * Apply the level (count = 0 removes the level, amount > 0 is a bid, amount < 0 a ask)
+	 * @param price
+	 * @param amount
+	 * @param count
+	 */
+	private void applyLevel(final long price, final long amount, final long count) {
+		final Side side = amount > 0 ? bids : asks;
+		
+		if(count == 0) {
+			side.remove(price);
+		} else {
+			side.put(price, Math.abs(amount), count);
+		}
+	}
+	
+	/**
+	 * Get the configuration of the book
+	 * @return
+	 */
+	public OrderbookConfiguration getConfiguration() {
+		return configuration;
+	}
+	
+	/**
+	 * Get the scale of the prices and amounts
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+	
+	/**
+	 * Get the number of bid levels
+	 * @return
+	 */
+	public int getBidDepth() {
+		long stamp = lock.tryOptimisticRead();
+		int result = bids.size;
+		
+		if(! lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				result = bids.size;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the number of ask levels
+	 * @return
+	 */
+	public int getAskDepth() {
+		long stamp = lock.tryOptimisticRead();
+		int result = asks.size;
+		
+		if(! lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				result = asks.size;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the best bid price
+	 * @return the price or FixedPoint.NULL_VALUE
+	 */
+	public long getBestBidPrice() {
+		return getBidPrice(0);
+	}
+	
+	/**
+	 * Get the best ask price
+	 * @return the price or FixedPoint.NULL_VALUE
+	 */
+	public long getBestAskPrice() {
+		return getAskPrice(0);
+	}
+	
+	/**
+	 * Get the amount of the best bid
+	 * @return the amount or FixedPoint.NULL_VALUE
+	 */
+	public long getBestBidAmount() {
+		return getBidAmount(0);
+	}
+	
+	/**
+	 * Get the amount of the best ask
+	 * @return the amount or FixedPoint.NULL_VALUE
+	 */
+	public long getBestAskAmount() {
+		return getAskAmount(0);
+	}
+	
+	/**
+	 * Get the price of the bid level (0 = best bid)
+	 * @param level
+	 * @return the price or FixedPoint.NULL_VALUE
+	 */
+	public long getBidPrice(final int level) {
+		return readLevel(bids, level, Field.PRICE);
+	}
+	
+	/**
+	 * Get the amount of the bid level (0 = best bid)
+	 * @param level
+	 * @return the amount or FixedPoint.NULL_VALUE
+	 */
+	public long getBidAmount(final int level) {
+		return readLevel(bids, level, Field.AMOUNT);
+	}
+	
+	/**
+	 * Get the number of orders of the bid level (0 = best bid)
+	 * @param level
+	 * @return the count or FixedPoint.NULL_VALUE
+	 */
+	public long getBidCount(final int level) {
+		return readLevel(bids, level, Field.COUNT);
+	}
+	
+	/**
+	 * Get the price of the ask level (0 = best ask)
+	 * @param level
+	 * @return the price or FixedPoint.NULL_VALUE
+	 */
+	public long getAskPrice(final int level) {
+		return readLevel(asks, level, Field.PRICE);
+	}
+	
+	/**
+	 * Get the amount of the ask level (0 = best ask)
+	 * @param level
+	 * @return the amount or FixedPoint.NULL_VALUE
+	 */
+	public long getAskAmount(final int level) {
+		return readLevel(asks, level, Field.AMOUNT);
+	}
+	
+	/**
+	 * Get the number of orders of the ask level (0 = best ask)
+	 * @param level
+	 * @return the count or FixedPoint.NULL_VALUE
+	 */
+	public long getAskCount(final int level) {
+		return readLevel(asks, level, Field.COUNT);
+	}
+	
+	/**
+	 * Get the cumulative amount of all bids with a price >= the given price
+	 * @param price
+	 * @return
+	 */
+	public long getCumulativeBidAmount(final long price) {
+		return readCumulativeAmount(bids, price);
+	}
+	
+	/**
+	 * Get the cumulative amount of all asks with a price <= the given price
+	 * @param price
+	 * @return
+	 */
+	public long getCumulativeAskAmount(final long price) {
+		return readCumulativeAmount(asks, price);
+	}
+	
+	/**
+	 * Copy the top levels of a side (best level first) into the arrays
+	 * @param bid
+	 * @param prices
+	 * @param amounts
+	 * @return the number of copied levels
+	 */
+	int copyTopLevels(final boolean bid, final long[] prices, final long[] amounts) {
+		final long stamp = lock.readLock();
+		try {
+			final Side side = bid ? bids : asks;
+			final int levels = Math.min(side.size, Math.min(prices.length, amounts.length));
+			
+			for(int level = 0; level < levels; level++) {
+				final int pos = side.size - 1 - level;
+				prices[level] = side.prices[pos];
+				amounts[level] = side.amounts[pos];
+			}
+			
+			return levels;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Read a field of a level
+	 * @param side
+	 * @param level
+	 * @param field
+	 * @return
+	 */
+	private long readLevel(final Side side, final int level, final Field field) {
+		long stamp = lock.tryOptimisticRead();
+		long result = side.read(level, field);
+		
+		if(! lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				result = side.read(level, field);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Read the cumulative amount up to the price
+	 * @param side
+	 * @param price
+	 * @return
+	 */
+	private long readCumulativeAmount(final Side side, final long price) {
+		long stamp = lock.tryOptimisticRead();
+		long result = side.cumulativeAmount(price);
+		
+		if(! lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				result = side.cumulativeAmount(price);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		return "LocalOrderbook [configuration=" + configuration + ", scale=" + scale + ", bids=" 
+				+ getBidDepth() + ", asks=" + getAskDepth() + "]";
+	}
+	
+	private enum Field {
+		PRICE, AMOUNT, COUNT;
+	}
+	
+	/**
+	 * One side of the book
+	 */
+	private static class Side {
+		
+		/**
+		 * Bid side (ascending prices) or ask side (descending prices)
+		 */
+		private final boolean bid;
+		
+		private long[] prices = new long[INITIAL_CAPACITY];
+		private long[] amounts = new long[INITIAL_CAPACITY];
+		private long[] counts = new long[INITIAL_CAPACITY];
+		private int size;
+		
+		Side(final boolean bid) {
+			this.bid = bid;
+		}
+		
+		/**
+		 * Insert or update the level
+		 * @param price
+		 * @param amount
+		 * @param count
+		 */
+		void put(final long price, final long amount, final long count) {
+			final int pos = indexOf(price);
+			
+			if(pos >= 0) {
+				amounts[pos] = amount;
+				counts[pos] = count;
+				return;
+			}
+			
+			final int insertPos = -(pos + 1);
+			
+			if(size == prices.length) {
+				final int newCapacity = prices.length * 2;
+				prices = Arrays.copyOf(prices, newCapacity);
+				amounts = Arrays.copyOf(amounts, newCapacity);
+				counts = Arrays.copyOf(counts, newCapacity);
+			}
+			
+			final int elementsToMove = size - insertPos;
+			System.arraycopy(prices, insertPos, prices, insertPos + 1, elementsToMove);
+			System.arraycopy(amounts, insertPos, amounts, insertPos + 1, elementsToMove);
+			System.arraycopy(counts, insertPos, counts, insertPos + 1, elementsToMove);
+			
+			prices[insertPos] = price;
+			amounts[insertPos] = amount;
+			counts[insertPos] = count;
+			size++;
+		}
+		
+		/**
+		 * Remove the level
+		 * @param price
+		 */
+		void remove(final long price) {
+			final int pos = indexOf(price);
+			
+			if(pos < 0) {
+				return;
+			}
+			
+			final int elementsToMove = size - pos - 1;
+			System.arraycopy(prices, pos + 1, prices, pos, elementsToMove);
+			System.arraycopy(amounts, pos + 1, amounts, pos, elementsToMove);
+			System.arraycopy(counts, pos + 1, counts, pos, elementsToMove);
+			size--;
+		}
+		
+		void clear() {
+			size = 0;
+		}
+		
+		/**
+		 * Binary search for the price 
+		 * @param price
+		 * @return the position or (-(insertion point) - 1)
+		 */
+		private int indexOf(final long price) {
+			int low = 0;
+			int high = size - 1;
+			
+			while(low <= high) {
+				final int mid = (low + high) >>> 1;
+				final long midPrice = prices[mid];
+				
+				if(midPrice == price) {
+					return mid;
+				} 
+				
+				if(bid == (midPrice < price)) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			
+			return -(low + 1);
+		}
+		
+		/**
+		 * Read the field of the level (may be called concurrently to a write, 
+		 * the result is validated by the caller)
+		 * @param level
+		 * @param field
+		 * @return
+		 */
+		long read(final int level, final Field field) {
+			final long[] values = (field == Field.PRICE) ? prices : (field == Field.AMOUNT) ? amounts : counts;
+			final int pos = size - 1 - level;
+			
+			if(level < 0 || pos < 0 || pos >= values.length) {
+				return FixedPoint.NULL_VALUE;
+			}
+			
+			return values[pos];
+		}
+		
+		/**
+		 * Sum up the amounts from the best level to the price (may be called concurrently 
+		 * to a write, the result is validated by the caller)
+		 * @param price
+		 * @return
+		 */
+		long cumulativeAmount(final long price) {
+			final long[] levelPrices = prices;
+			final long[] levelAmounts = amounts;
+			long result = 0;
+			
+			for(int pos = Math.min(size, Math.min(levelPrices.length, levelAmounts.length)) - 1; pos >= 0; pos--) {
+				if(bid ? levelPrices[pos] < price : levelPrices[pos] > price) {
+					break;
+				}
+				
+				result += levelAmounts[pos];
+			}
+			
+			return result;
+		}
+	}
+}
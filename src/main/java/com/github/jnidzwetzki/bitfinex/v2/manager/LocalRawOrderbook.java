@@ -0,0 +1,763 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.github.jnidzwetzki.bitfinex.v2.util.LongIntHashMap;
+
+/**
+ * A local raw (L3) orderbook that is maintained from the raw orderbook snapshots and updates.
+ * 
+ * The orders are stored in primitive arrays (slots), the order id is mapped to the slot
+ * with an open addressing hash map. The orders of a price level form a FIFO queue (linked by 
+ * the slot numbers), new orders are appended at the end of the queue. An update of the amount
+ * keeps the position in the queue, a price change moves the order to the end of the queue
+ * of the new price level. The aggregated amount and the number of orders of each level is 
+ * maintained incrementally.
+ * 
+ * Prices and amounts are fixed point values with the scale of the book, amounts are stored 
+ * as absolute values. The book is written by one thread, the read methods can be called from 
+ * any thread and don't allocate.
+ *
+ */
+public class LocalRawOrderbook {
+	
+	/**
+	 * The initial number of order slots
+	 */
+	private final static int INITIAL_ORDER_CAPACITY = 256;
+	
+	/**
+	 * The initial number of levels per side
+	 */
+	private final static int INITIAL_LEVEL_CAPACITY = 64;
+	
+	/**
+	 * Marker for the end of a queue / free list
+	 */
+	private final static int NO_SLOT = -1;
+
+	/**
+	 * The configuration of the book
+	 */
+	private final RawOrderbookConfiguration configuration;
+	
+	/**
+	 * The scale of the fixed point values
+	 */
+	private final int scale;
+	
+	/**
+	 * The order id to slot mapping
+	 */
+	private final LongIntHashMap orderSlots;
+	
+	/**
+	 * The order slots
+	 */
+	private long[] orderIds;
+	private long[] orderPrices;
+	private long[] orderAmounts;
+	private boolean[] orderBids;
+	private int[] nextSlots;
+	private int[] prevSlots;
+	
+	/**
+	 * The first free slot and the number of used slots
+	 */
+	private int freeSlot;
+	private int usedSlots;
+	
+	/**
+	 * The bid levels (sorted by ascending price, best bid at the end)
+	 */
+	private final Levels bids;
+	
+	/**
+	 * The ask levels (sorted by descending price, best ask at the end)
+	 */
+	private final Levels asks;
+	
+	/**
+	 * The lock
+	 */
+	private final StampedLock lock;
+	
+	public LocalRawOrderbook(final RawOrderbookConfiguration configuration, final int scale) {
+		FixedPoint.checkScale(scale);
+		this.configuration = configuration;
+		this.scale = scale;
+		this.orderSlots = new LongIntHashMap(INITIAL_ORDER_CAPACITY);
+		this.bids = new Levels(true);
+		this.asks = new Levels(false);
+		this.lock = new StampedLock();
+		allocateSlots(INITIAL_ORDER_CAPACITY);
+	}
+	
+	/**
+	 * Replace the content of the book with the snapshot. The entries are converted 
+	 * before the book is changed, the book is unchanged if a entry is invalid.
+	 * @param entries
+	 * @throws ArithmeticException if a value does not fit into the scale of the book
+	 */
+	public void applySnapshot(final Collection<RawOrderbookEntry> entries) {
+		final long[] orderIds = new long[entries.size()];
+		final long[] prices = new long[entries.size()];
+		final long[] amounts = new long[entries.size()];
+		int pos = 0;
+		
+		for(final RawOrderbookEntry entry : entries) {
+			orderIds[pos] = entry.getOrderId();
+			prices[pos] = getPrice(entry);
+			amounts[pos] = getAmount(entry);
+			pos++;
+		}
+		
+		final long stamp = lock.writeLock();
+		try {
+			clearBook();
+			
+			for(int i = 0; i < pos; i++) {
+				applyOrder(orderIds[i], prices[i], amounts[i]);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Apply a update to the book
+	 * @param entry
+	 * @throws ArithmeticException if a value does not fit into the scale of the book
+	 */
+	public void applyUpdate(final RawOrderbookEntry entry) {
+		final long price = getPrice(entry);
+		final long amount = getAmount(entry);
+		
+		final long stamp = lock.writeLock();
+		try {
+			applyOrder(entry.getOrderId(), price, amount);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Remove all orders
+	 */
+	public void clear() {
+		final long stamp = lock.writeLock();
+		try {
+			clearBook();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Remove all orders (lock is held by the caller)
+	 */
+	private void clearBook() {
+		orderSlots.clear();
+		bids.clear();
+		asks.clear();
+		allocateSlots(INITIAL_ORDER_CAPACITY);
+	}
+	
+	/**
+	 * Get the price of the entry in the scale of the book
+	 * @param entry
+	 * @return
+	 * @throws ArithmeticException if the value does not fit into the scale of the book
+	 */
+	private long getPrice(final RawOrderbookEntry entry) {
+		if(entry.isFixedPoint()) {
+			return FixedPoint.toFixedPoint(entry.getScaledPrice(), entry.getScale(), scale);
+		}
+		
+		return FixedPoint.toFixedPoint(entry.getPrice(), scale);
+	}
+	
+	/**
+	 * Get the amount of the entry in the scale of the book
+	 * @param entry
+	 * @return
+	 * @throws ArithmeticException if the value does not fit into the scale of the book
+	 */
+	private long getAmount(final RawOrderbookEntry entry) {
+		if(entry.isFixedPoint()) {
+			return FixedPoint.toFixedPoint(entry.getScaledAmount(), entry.getScale(), scale);
+		}
+		
+		return FixedPoint.toFixedPoint(entry.getAmount(), scale);
+	}
+	
+	/**
+	 * Apply the order (price = 0 removes the order, amount > 0 is a bid, amount < 0 a ask)
+	 * @param orderId
+	 * @param price
+	 * @param amount
+	 */
+	private void applyOrder(final long orderId, final long price, final long amount) {
+		if(price == 0) {
+			removeOrder(orderId);
+			return;
+		}
+		
+		final boolean bid = amount > 0;
+		final int slot = orderSlots.get(orderId);
+		
+		// Amount change on the same level keeps the position in the queue
+		if(slot != LongIntHashMap.NO_VALUE && orderPrices[slot] == price && orderBids[slot] == bid) {
+			final Levels levels = bid ? bids : asks;
+			final int level = levels.indexOf(price);
+			levels.amounts[level] += Math.abs(amount) - orderAmounts[slot];
+			orderAmounts[slot] = Math.abs(amount);
+			return;
+		}
+		
+		if(slot != LongIntHashMap.NO_VALUE) {
+			removeOrder(orderId);
+		}
+		
+		addOrder(orderId, price, Math.abs(amount), bid);
+	}
+	
+	/**
+	 * Add the order at the end of the queue of the price level
+	 * @param orderId
+	 * @param price
+	 * @param amount
+	 * @param bid
+	 */
+	private void addOrder(final long orderId, final long price, final long amount, final boolean bid) {
+		final int slot = allocateSlot();
+		orderIds[slot] = orderId;
+		orderPrices[slot] = price;
+		orderAmounts[slot] = amount;
+		orderBids[slot] = bid;
+		nextSlots[slot] = NO_SLOT;
+		orderSlots.put(orderId, slot);
+		
+		final Levels levels = bid ? bids : asks;
+		int level = levels.indexOf(price);
+		
+		if(level < 0) {
+			level = levels.insert(-(level + 1), price);
+		}
+		
+		final int tail = levels.tails[level];
+		prevSlots[slot] = tail;
+		
+		if(tail == NO_SLOT) {
+			levels.heads[level] = slot;
+		} else {
+			nextSlots[tail] = slot;
+		}
+		
+		levels.tails[level] = slot;
+		levels.amounts[level] += amount;
+		levels.counts[level]++;
+	}
+	
+	/**
+	 * Remove the order
+	 * @param orderId
+	 */
+	private void removeOrder(final long orderId) {
+		final int slot = orderSlots.remove(orderId);
+		
+		if(slot == LongIntHashMap.NO_VALUE) {
+			return;
+		}
+		
+		final Levels levels = orderBids[slot] ? bids : asks;
+		final int level = levels.indexOf(orderPrices[slot]);
+		final int prev = prevSlots[slot];
+		final int next = nextSlots[slot];
+		
+		if(prev == NO_SLOT) {
+			levels.heads[level] = next;
+		} else {
+			nextSlots[prev] = next;
+		}
+		
+		if(next == NO_SLOT) {
+			levels.tails[level] = prev;
+		} else {
+			prevSlots[next] = prev;
+		}
+		
+		levels.amounts[level] -= orderAmounts[slot];
+		levels.counts[level]--;
+		
+		if(levels.counts[level] == 0) {
+			levels.removeAt(level);
+		}
+		
+		releaseSlot(slot);
+	}
+	
+	/**
+	 * Allocate a order slot
+	 * @return
+	 */
+	private int allocateSlot() {
+		if(freeSlot == NO_SLOT) {
+			final int oldCapacity = orderIds.length;
+			final int newCapacity = oldCapacity * 2;
+			orderIds = Arrays.copyOf(orderIds, newCapacity);
+			orderPrices = Arrays.copyOf(orderPrices, newCapacity);
+			orderAmounts = Arrays.copyOf(orderAmounts, newCapacity);
+			orderBids = Arrays.copyOf(orderBids, newCapacity);
+			nextSlots = Arrays.copyOf(nextSlots, newCapacity);
+			prevSlots = Arrays.copyOf(prevSlots, newCapacity);
+			linkFreeSlots(oldCapacity, newCapacity);
+		}
+		
+		final int slot = freeSlot;
+		freeSlot = nextSlots[slot];
+		usedSlots++;
+		return slot;
+	}
+	
+	/**
+	 * Put the slot back to the free list
+	 * @param slot
+	 */
+	private void releaseSlot(final int slot) {
+		nextSlots[slot] = freeSlot;
+		freeSlot = slot;
+		usedSlots--;
+	}
+	
+	/**
+	 * Allocate new (empty) order slots
+	 * @param capacity
+	 */
+	private void allocateSlots(final int capacity) {
+		orderIds = new long[capacity];
+		orderPrices = new long[capacity];
+		orderAmounts = new long[capacity];
+		orderBids = new boolean[capacity];
+		nextSlots = new int[capacity];
+		prevSlots = new int[capacity];
+		usedSlots = 0;
+		linkFreeSlots(0, capacity);
+	}
+	
+	/**
+	 * Build the free list for the slots from start (inclusive) to end (exclusive)
+	 * @param start
+	 * @param end
+	 */
+	private void linkFreeSlots(final int start, final int end) {
+		for(int slot = start; slot < end - 1; slot++) {
+			nextSlots[slot] = slot + 1;
+		}
+		nextSlots[end - 1] = NO_SLOT;
+		freeSlot = start;
+	}
+	
+	/**
+	 * Get the configuration of the book
+	 * @return
+	 */
+	public RawOrderbookConfiguration getConfiguration() {
+		return configuration;
+	}
+	
+	/**
+	 * Get the scale of the prices and amounts
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+	
+	/**
+	 * Get the number of orders in the book
+	 * @return
+	 */
+	public int getOrderCount() {
+		final long stamp = lock.readLock();
+		try {
+			return usedSlots;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Is the order in the book
+	 * @param orderId
+	 * @return
+	 */
+	public boolean containsOrder(final long orderId) {
+		final long stamp = lock.readLock();
+		try {
+			return orderSlots.get(orderId) != LongIntHashMap.NO_VALUE;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Get the price of the order
+	 * @param orderId
+	 * @return the price or FixedPoint.NULL_VALUE
+	 */
+	public long getOrderPrice(final long orderId) {
+		final long stamp = lock.readLock();
+		try {
+			final int slot = orderSlots.get(orderId);
+			return slot == LongIntHashMap.NO_VALUE ? FixedPoint.NULL_VALUE : orderPrices[slot];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Get the (absolute) amount of the order
+	 * @param orderId
+	 * @return the amount or FixedPoint.NULL_VALUE
+	 */
+	public long getOrderAmount(final long orderId) {
+		final long stamp = lock.readLock();
+		try {
+			final int slot = orderSlots.get(orderId);
+			return slot == LongIntHashMap.NO_VALUE ? FixedPoint.NULL_VALUE : orderAmounts[slot];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Get the position of the order in the queue of its price level (0 = first order)
+	 * @param orderId
+	 * @return the position or -1 if the order is unknown
+	 */
+	public int getQueuePosition(final long orderId) {
+		final long stamp = lock.readLock();
+		try {
+			final int slot = orderSlots.get(orderId);
+			
+			if(slot == LongIntHashMap.NO_VALUE) {
+				return -1;
+			}
+			
+			int position = 0;
+			for(int pos = prevSlots[slot]; pos != NO_SLOT; pos = prevSlots[pos]) {
+				position++;
+			}
+			
+			return position;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Get the amount of all orders ahead of the order in the queue of its price level
+	 * @param orderId
+	 * @return the amount or FixedPoint.NULL_VALUE if the order is unknown
+	 */
+	public long getAmountAhead(final long orderId) {
+		final long stamp = lock.readLock();
+		try {
+			final int slot = orderSlots.get(orderId);
+			
+			if(slot == LongIntHashMap.NO_VALUE) {
+				return FixedPoint.NULL_VALUE;
+			}
+			
+			long amount = 0;
+			for(int pos = prevSlots[slot]; pos != NO_SLOT; pos = prevSlots[pos]) {
+				amount += orderAmounts[pos];
+			}
+			
+			return amount;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Get the number of bid levels
+	 * @return
+	 */
+	public int getBidDepth() {
+		return (int) readLevel(bids, 0, Field.DEPTH);
+	}
+	
+	/**
+	 * Get the number of ask levels
+	 * @return
+	 */
+	public int getAskDepth() {
+		return (int) readLevel(asks, 0, Field.DEPTH);
+	}
+	
+	/**
+	 * Get the price of the bid level (0 = best bid)
+	 * @param level
+	 * @return the price or FixedPoint.NULL_VALUE
+	 */
+	public long getBidPrice(final int level) {
+		return readLevel(bids, level, Field.PRICE);
+	}
+	
+	/**
+	 * Get the aggregated amount of the bid level (0 = best bid)
+	 * @param level
+	 * @return the amount or FixedPoint.NULL_VALUE
+	 */
+	public long getBidAmount(final int level) {
+		return readLevel(bids, level, Field.AMOUNT);
+	}
+	
+	/**
+	 * Get the number of orders of the bid level (0 = best bid)
+	 * @param level
+	 * @return the number of orders or FixedPoint.NULL_VALUE
+	 */
+	public long getBidOrderCount(final int level) {
+		return readLevel(bids, level, Field.COUNT);
+	}
+	
+	/**
+	 * Get the price of the ask level (0 = best ask)
+	 * @param level
+	 * @return the price or FixedPoint.NULL_VALUE
+	 */
+	public long getAskPrice(final int level) {
+		return readLevel(asks, level, Field.PRICE);
+	}
+	
+	/**
+	 * Get the aggregated amount of the ask level (0 = best ask)
+	 * @param level
+	 * @return the amount or FixedPoint.NULL_VALUE
+	 */
+	public long getAskAmount(final int level) {
+		return readLevel(asks, level, Field.AMOUNT);
+	}
+	
+	/**
+	 * Get the number of orders of the ask level (0 = best ask)
+	 * @param level
+	 * @return the number of orders or FixedPoint.NULL_VALUE
+	 */
+	public long getAskOrderCount(final int level) {
+		return readLevel(asks, level, Field.COUNT);
+	}
+	
+	/**
+	 * Get the best bid price
+	 * @return the price or FixedPoint.NULL_VALUE
+	 */
+	public long getBestBidPrice() {
+		return getBidPrice(0);
+	}
+	
+	/**
+	 * Get the best ask price
+	 * @return the price or FixedPoint.NULL_VALUE
+	 */
+	public long getBestAskPrice() {
+		return getAskPrice(0);
+	}
+	
+	/**
+	 * Copy the top orders of a side (best level first, queue order within 
+	 * a level) into the arrays
+	 * @param bid
+	 * @param ids
+	 * @param amounts
+	 * @return the number of copied orders
+	 */
+	int copyTopOrders(final boolean bid, final long[] ids, final long[] amounts) {
+		final long stamp = lock.readLock();
+		try {
+			final Levels levels = bid ? bids : asks;
+			final int maxOrders = Math.min(ids.length, amounts.length);
+			int orders = 0;
+			
+			for(int pos = levels.size - 1; pos >= 0 && orders < maxOrders; pos--) {
+				for(int slot = levels.heads[pos]; slot != NO_SLOT && orders < maxOrders; slot = nextSlots[slot]) {
+					ids[orders] = orderIds[slot];
+					amounts[orders] = orderAmounts[slot];
+					orders++;
+				}
+			}
+			
+			return orders;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	/**
+	 * Read a field of a level
+	 * @param levels
+	 * @param level
+	 * @param field
+	 * @return
+	 */
+	private long readLevel(final Levels levels, final int level, final Field field) {
+		final long stamp = lock.readLock();
+		try {
+			if(field == Field.DEPTH) {
+				return levels.size;
+			}
+			
+			final int pos = levels.size - 1 - level;
+			
+			if(level < 0 || pos < 0) {
+				return FixedPoint.NULL_VALUE;
+			}
+			
+			switch(field) {
+				case PRICE:
+					return levels.prices[pos];
+				case AMOUNT:
+					return levels.amounts[pos];
+				default:
+					return levels.counts[pos];
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "LocalRawOrderbook [configuration=" + configuration + ", scale=" + scale + ", orders=" 
+				+ getOrderCount() + "]";
+	}
+	
+	private enum Field {
+		DEPTH, PRICE, AMOUNT, COUNT;
+	}
+	
+	/**
+	 * The price levels of one side
+	 */
+	private static class Levels {
+		
+		/**
+		 * Bid side (ascending prices) or ask side (descending prices)
+		 */
+		private final boolean bid;
+		
+		private long[] prices = new long[INITIAL_LEVEL_CAPACITY];
+		private long[] amounts = new long[INITIAL_LEVEL_CAPACITY];
+		private int[] counts = new int[INITIAL_LEVEL_CAPACITY];
+		private int[] heads = new int[INITIAL_LEVEL_CAPACITY];
+		private int[] tails = new int[INITIAL_LEVEL_CAPACITY];
+		private int size;
+		
+		Levels(final boolean bid) {
+			this.bid = bid;
+		}
+		
+		/**
+		 * Insert a empty level at the position
+		 * @param pos
+		 * @param price
+		 * @return the position
+		 */
+		int insert(final int pos, final long price) {
+			if(size == prices.length) {
+				final int newCapacity = prices.length * 2;
+				prices = Arrays.copyOf(prices, newCapacity);
+				amounts = Arrays.copyOf(amounts, newCapacity);
+				counts = Arrays.copyOf(counts, newCapacity);
+				heads = Arrays.copyOf(heads, newCapacity);
+				tails = Arrays.copyOf(tails, newCapacity);
+			}
+			
+			final int elementsToMove = size - pos;
+			System.arraycopy(prices, pos, prices, pos + 1, elementsToMove);
+			System.arraycopy(amounts, pos, amounts, pos + 1, elementsToMove);
+			System.arraycopy(counts, pos, counts, pos + 1, elementsToMove);
+			System.arraycopy(heads, pos, heads, pos + 1, elementsToMove);
+			System.arraycopy(tails, pos, tails, pos + 1, elementsToMove);
+			
+			prices[pos] = price;
+			amounts[pos] = 0;
+			counts[pos] = 0;
+			heads[pos] = NO_SLOT;
+			tails[pos] = NO_SLOT;
+			size++;
+			
+			return pos;
+		}
+		
+		/**
+		 * Remove the level at the position
+		 * @param pos
+		 */
+		void removeAt(final int pos) {
+			final int elementsToMove = size - pos - 1;
+			System.arraycopy(prices, pos + 1, prices, pos, elementsToMove);
+			System.arraycopy(amounts, pos + 1, amounts, pos, elementsToMove);
+			System.arraycopy(counts, pos + 1, counts, pos, elementsToMove);
+			System.arraycopy(heads, pos + 1, heads, pos, elementsToMove);
+			System.arraycopy(tails, pos + 1, tails, pos, elementsToMove);
+			size--;
+		}
+		
+		void clear() {
+			size = 0;
+		}
+		
+		/**
+		 * Binary search for the price 
+		 * @param price
+		 * @return the position or (-(insertion point) - 1)
+		 */
+		int indexOf(final long price) {
+			int low = 0;
+			int high = size - 1;
+			
+			while(low <= high) {
+				final int mid = (low + high) >>> 1;
+				final long midPrice = prices[mid];
+				
+				if(midPrice == price) {
+					return mid;
+				} 
+				
+				if(bid == (midPrice < price)) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			
+			return -(low + 1);
+		}
+	}
+}
@@ -17,35 +17,75 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
+import java.io.Closeable;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 
-import org.bboxdb.commons.Retryer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.commands.AbstractAPICommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderGroupCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderMultiCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.OrderCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderMultiCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderOperationCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderUpdateCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderUpdate;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ConnectionCapabilities;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrderState;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderRequestError;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderRequestError.RequestType;
+import com.github.jnidzwetzki.bitfinex.v2.util.BufferedPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
 
 public class OrderManager extends SimpleCallbackManager<ExchangeOrder> {
 
+	/**
+	 * The callback registry
+	 */
+	private final BitfinexApiCallbackRegistry callbackRegistry;
+
 	/**
 	 * The orders
 	 */
-	private final List<ExchangeOrder> orders;
+	private final OrderStore orderStore;
+
+	/**
+	 * The pending order placements by cid
+	 */
+	private final Map<Long, PendingOrderRequest> pendingPlacements;
+	
+	/**
+	 * The pending order cancellations by order id
+	 */
+	private final Map<Long, PendingOrderRequest> pendingCancellations;
+	
+	/**
+	 * The pending order updates by order id
+	 */
+	private final Map<Long, PendingOrderRequest> pendingUpdates;
 
 	/**
 	 * The order timeout
@@ -70,29 +110,39 @@ public class OrderManager extends SimpleCallbackManager<ExchangeOrder> {
 
 	public OrderManager(final BitfinexApiBroker bitfinexApiBroker, final ExecutorService executorService, BitfinexApiCallbackRegistry callbackRegistry) {
 		super(executorService, bitfinexApiBroker);
-		this.orders = new ArrayList<>();
-		callbackRegistry.onExchangeOrdersEvent(eos -> eos.forEach(this::updateOrder));
-		callbackRegistry.onExchangeOrderNotification(this::updateOrder);
+		this.callbackRegistry = callbackRegistry;
+		this.orderStore = new OrderStore();
+		this.pendingPlacements = new ConcurrentHashMap<>();
+		this.pendingCancellations = new ConcurrentHashMap<>();
+		this.pendingUpdates = new ConcurrentHashMap<>();
+		callbackRegistry.onExchangeOrdersEvent(callbackRegistry.unmonitored(eos -> eos.forEach(this::updateOrder)));
+		callbackRegistry.onExchangeOrderNotification(callbackRegistry.unmonitored(this::updateOrder));
+		callbackRegistry.onOrderRequestError(callbackRegistry.unmonitored(this::handleRequestError));
 	}
 
 	/**
 	 * Clear all orders
 	 */
 	public void clear() {
-		synchronized (orders) {
-			orders.clear();
-		}
+		orderStore.clear();
 	}
 
 	/**
-	 * Get the list with exchange orders
+	 * Get the list with the open exchange orders (orders in a terminal state 
+	 * are available in the archive of the order store)
 	 * @return
 	 * @throws APIException
 	 */
 	public List<ExchangeOrder> getOrders() throws APIException {
-		synchronized (orders) {
-			return orders;
-		}
+		return orderStore.getOpenOrders();
+	}
+	
+	/**
+	 * Get the order store
+	 * @return
+	 */
+	public OrderStore getOrderStore() {
+		return orderStore;
 	}
 
 	/**
@@ -101,21 +151,78 @@ public class OrderManager extends SimpleCallbackManager<ExchangeOrder> {
 	 */
 	public void updateOrder(final ExchangeOrder exchangeOrder) {
 
-		synchronized (orders) {
-			// Replace order
-			orders.removeIf(o -> o.getOrderId() == exchangeOrder.getOrderId());
+		orderStore.update(exchangeOrder);
+		completePendingRequests(exchangeOrder);
+		notifyCallbacks(exchangeOrder);
+	}
 
-			// Remove canceled orders
-			if(exchangeOrder.getState() != ExchangeOrderState.STATE_CANCELED) {
-				orders.add(exchangeOrder);
-			}
 
-			orders.notifyAll();
+	/**
+	 * Complete the pending requests of the order
+	 * @param exchangeOrder
+	 */
+	private void completePendingRequests(final ExchangeOrder exchangeOrder) {
+		final ExchangeOrderState state = exchangeOrder.getState();
+		
+		final PendingOrderRequest placement = pendingPlacements.get(exchangeOrder.getCid());
+		
+		if(placement != null) {
+			if(state == ExchangeOrderState.STATE_ERROR) {
+				retryRequest(placement, "Unable to place order " + exchangeOrder);
+			} else {
+				placement.future.complete(exchangeOrder);
+			}
+		}
+		
+		final PendingOrderRequest cancellation = pendingCancellations.get(exchangeOrder.getOrderId());
+		
+		if(cancellation != null) {
+			if(state == ExchangeOrderState.STATE_CANCELED 
+					|| state == ExchangeOrderState.STATE_POSTONLY_CANCELED) {
+				cancellation.future.complete(exchangeOrder);
+			} else if(state == ExchangeOrderState.STATE_EXECUTED) {
+				cancellation.future.completeExceptionally(
+						new APIException("Order is executed before it was canceled " + exchangeOrder));
+			}
+		}
+		
+		final PendingOrderRequest update = pendingUpdates.get(exchangeOrder.getOrderId());
+		
+		if(update != null) {
+			if(OrderStore.isTerminalState(state)) {
+				update.future.completeExceptionally(
+						new APIException("Order is closed before it was updated " + exchangeOrder));
+			} else if(update.confirmation.test(exchangeOrder)) {
+				update.future.complete(exchangeOrder);
+			}
 		}
-
-		notifyCallbacks(exchangeOrder);
 	}
 
+	/**
+	 * Handle a rejected order request, the request is retried (see placeOrderAsync()) 
+	 * unless it is rejected permanently (e.g. the order is not found)
+	 * @param requestError
+	 */
+	private void handleRequestError(final OrderRequestError requestError) {
+		final boolean cancellation = requestError.getRequestType() == RequestType.CANCEL;
+		
+		final PendingOrderRequest request = cancellation 
+				? pendingCancellations.get(requestError.getOrderId()) 
+				: pendingUpdates.get(requestError.getOrderId());
+		
+		if(request == null) {
+			return;
+		}
+		
+		final String errorMessage = "Unable to " + (cancellation ? "cancel" : "update") + " order " 
+				+ requestError.getOrderId() + ": " + requestError.getReason();
+		
+		if(requestError.isPermanent()) {
+			request.future.completeExceptionally(new APIException(errorMessage));
+		} else {
+			retryRequest(request, errorMessage);
+		}
+	}
 
 	/**
 	 * Place an order and retry if Exception occur
@@ -131,78 +238,35 @@ public class OrderManager extends SimpleCallbackManager<ExchangeOrder> {
 			throw new APIException("Unable to wait for order " + order + " connection has not enough capabilities: " + capabilities);
 		}
 
-		order.setApikey(bitfinexApiBroker.getConfiguration().getApiKey());
-
-		final Callable<Boolean> orderCallable = () -> placeOrderOrderOnAPI(order);
-
-		// Bitfinex does not implement a happens-before relationship. Sometimes
-		// canceling a stop-loss order and placing a new stop-loss order results
-		// in an 'ERROR, reason is Invalid order: not enough exchange balance'
-		// error for some seconds. The retryer tries to place the order up to
-		// three times
-		final Retryer<Boolean> retryer = new Retryer<>(ORDER_RETRIES, RETRY_DELAY_IN_MS,
-				TimeUnit.MILLISECONDS, orderCallable);
-		retryer.execute();
-
-		if(retryer.getNeededExecutions() > 1) {
-			logger.info("Nedded {} executions for placing the order", retryer.getNeededExecutions());
-		}
-
-		if(! retryer.isSuccessfully()) {
-			final Exception lastException = retryer.getLastException();
-
-			if(lastException == null) {
-				throw new APIException("Unable to execute order");
-			} else {
-				throw new APIException(lastException);
-			}
-		}
+		awaitPendingRequest(placeOrderAsync(order));
 	}
-
+	
 	/**
-	 * Execute a new Order
-	 * @param order
+	 * Place an order, the future is completed with the first order update of the cid. 
+	 * 
+	 * Bitfinex does not implement a happens-before relationship. Sometimes
+	 * canceling a stop-loss order and placing a new stop-loss order results
+	 * in an 'ERROR, reason is Invalid order: not enough exchange balance'
+	 * error for some seconds. Orders in the error state are placed again 
+	 * (up to three times) after a delay.
+	 * 
+	 * @param order - new BitfinexOrder to place
 	 * @return
-	 * @throws Exception
 	 */
-	private boolean placeOrderOrderOnAPI(final BitfinexOrder order) throws Exception {
-		final CountDownLatch waitLatch = new CountDownLatch(1);
-
-		final Consumer<ExchangeOrder> ordercallback = (o) -> {
-			if(o.getCid() == order.getCid()) {
-				waitLatch.countDown();
-			}
-		};
-
-		registerCallback(ordercallback);
-
-		try {
-			placeOrder(order);
-
-			waitLatch.await(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
-
-			if(waitLatch.getCount() != 0) {
-				throw new APIException("Timeout while waiting for order");
-			}
-
-			// Check for order error
-			final boolean orderInErrorState = bitfinexApiBroker
-					.getOrderManager()
-					.getOrders()
-					.stream()
-					.filter(o -> o.getCid() == order.getCid())
-					.anyMatch(o -> o.getState() == ExchangeOrderState.STATE_ERROR);
-
-			if(orderInErrorState) {
-				throw new APIException("Unable to place order " + order);
-			}
+	public CompletableFuture<ExchangeOrder> placeOrderAsync(final BitfinexOrder order) {
+		
+		final ConnectionCapabilities capabilities = bitfinexApiBroker.getCapabilities();
 
-			return true;
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			removeCallback(ordercallback);
+		if(! capabilities.isHavingOrdersWriteCapability()) {
+			return failedRequest(new APIException("Unable to place order " + order 
+					+ " connection has not enough capabilities: " + capabilities));
 		}
+		
+		final List<PendingOrderRequest> newRequests = new ArrayList<>(1);
+		final CompletableFuture<ExchangeOrder> future = registerPlacement(order, newRequests);
+		newRequests.forEach(this::sendRequest);
+		
+		return future;
 	}
 
 	/**
@@ -218,63 +282,459 @@ public class OrderManager extends SimpleCallbackManager<ExchangeOrder> {
 			throw new APIException("Unable to cancel order " + id + " connection has not enough capabilities: " + capabilities);
 		}
 
-		final Callable<Boolean> orderCallable = () -> cancelOrderOnAPI(id);
+		awaitPendingRequest(cancelOrderAsync(id));
+	}
+	
+	/**
+	 * Cancel a order, the future is completed with the canceled order (see placeOrderAsync()
+	 * for the retries)
+	 * @param id
+	 * @return
+	 */
+	public CompletableFuture<ExchangeOrder> cancelOrderAsync(final long id) {
+		
+		final ConnectionCapabilities capabilities = bitfinexApiBroker.getCapabilities();
 
-		// See comment in placeOrder()
-		final Retryer<Boolean> retryer = new Retryer<>(ORDER_RETRIES, RETRY_DELAY_IN_MS,
-				TimeUnit.MILLISECONDS, orderCallable);
-		retryer.execute();
+		if(! capabilities.isHavingOrdersWriteCapability()) {
+			return failedRequest(new APIException("Unable to cancel order " + id 
+					+ " connection has not enough capabilities: " + capabilities));
+		}
+		
+		final List<PendingOrderRequest> newRequests = new ArrayList<>(1);
+		final CompletableFuture<ExchangeOrder> future = registerCancellation(id, newRequests);
+		newRequests.forEach(this::sendRequest);
+		
+		return future;
+	}
+	
+	/**
+	 * Update a open order in place and wait for the confirmation
+	 * @param orderUpdate
+	 * @throws APIException
+	 * @throws InterruptedException
+	 */
+	public void updateOrderAndWaitForCompletion(final BitfinexOrderUpdate orderUpdate) 
+			throws APIException, InterruptedException {
+		
+		final ConnectionCapabilities capabilities = bitfinexApiBroker.getCapabilities();
 
-		if(retryer.getNeededExecutions() > 1) {
-			logger.info("Nedded {} executions for canceling the order", retryer.getNeededExecutions());
+		if(! capabilities.isHavingOrdersWriteCapability()) {
+			throw new APIException("Unable to update order " + orderUpdate + " connection has not enough capabilities: " + capabilities);
 		}
+		
+		awaitPendingRequest(updateOrderAsync(orderUpdate));
+	}
+	
+	/**
+	 * Update a open order in place (the order keeps the order id and, unless the price 
+	 * is changed or the amount is increased, the position in the book). The future is 
+	 * completed with the first update of the order that shows the new price and the 
+	 * new amount (or with the next update of the order, if neither is changed). One 
+	 * update per order can be pending.
+	 * @param orderUpdate
+	 * @return
+	 */
+	public CompletableFuture<ExchangeOrder> updateOrderAsync(final BitfinexOrderUpdate orderUpdate) {
+		
+		final ConnectionCapabilities capabilities = bitfinexApiBroker.getCapabilities();
 
-		if(! retryer.isSuccessfully()) {
-			final Exception lastException = retryer.getLastException();
+		if(! capabilities.isHavingOrdersWriteCapability()) {
+			return failedRequest(new APIException("Unable to update order " + orderUpdate 
+					+ " connection has not enough capabilities: " + capabilities));
+		}
+		
+		final long id = orderUpdate.getOrderId();
+		final BigDecimal price = orderUpdate.getPrice();
+		final BigDecimal amount = getUpdatedAmount(orderUpdate);
+		
+		final PendingOrderRequest request = new PendingOrderRequest(() -> sendOrderUpdate(orderUpdate), 
+				o -> isUpdatedValue(price, o.getPrice()) && isUpdatedValue(amount, o.getAmount()));
+		
+		if(pendingUpdates.putIfAbsent(id, request) != null) {
+			return failedRequest(new APIException("A update of the order " + id + " is already pending"));
+		}
+		
+		request.future.whenComplete((o, e) -> pendingUpdates.remove(id, request));
+		
+		if(scheduleTimeout(request, "Timeout while waiting for the update of order " + id)) {
+			sendRequest(request);
+		}
+		
+		return request.future;
+	}
+	
+	/**
+	 * Get the amount of the order after the update
+	 * @param orderUpdate
+	 * @return the amount or null if the amount is not changed or the order is unknown
+	 */
+	private BigDecimal getUpdatedAmount(final BitfinexOrderUpdate orderUpdate) {
+		if(orderUpdate.getAmount() != null) {
+			return orderUpdate.getAmount();
+		}
+		
+		if(orderUpdate.getDelta() == null) {
+			return null;
+		}
+		
+		final ExchangeOrder exchangeOrder = orderStore.getOrder(orderUpdate.getOrderId());
+		
+		if(exchangeOrder == null || exchangeOrder.getAmount() == null) {
+			return null;
+		}
+		
+		return exchangeOrder.getAmount().add(orderUpdate.getDelta());
+	}
+	
+	/**
+	 * Does the value of the order show the updated value
+	 * @param updatedValue - the updated value or null if the value is not changed
+	 * @param value
+	 * @return
+	 */
+	private static boolean isUpdatedValue(final BigDecimal updatedValue, final BigDecimal value) {
+		return updatedValue == null || value == null || updatedValue.compareTo(value) == 0;
+	}
+	
+	/**
+	 * Send the order update
+	 * @param orderUpdate
+	 * @throws APIException
+	 */
+	private void sendOrderUpdate(final BitfinexOrderUpdate orderUpdate) throws APIException {
+		
+		final ConnectionCapabilities capabilities = bitfinexApiBroker.getCapabilities();
 
-			if(lastException == null) {
-				throw new APIException("Unable to cancel order");
+		if(! capabilities.isHavingOrdersWriteCapability()) {
+			throw new APIException("Unable to update order " + orderUpdate + " connection has not enough capabilities: " + capabilities);
+		}
+		
+		logger.info("Update order {}", orderUpdate);
+		bitfinexApiBroker.sendCommand(new OrderUpdateCommand(orderUpdate));
+	}
+	
+	/**
+	 * Place the orders in multi operation frames (up to 75 orders per frame). The futures 
+	 * are completed like the future of placeOrderAsync() and have the order of the 
+	 * given orders. Retries are sent as single orders.
+	 * @param orders
+	 * @return
+	 */
+	public List<CompletableFuture<ExchangeOrder>> placeOrdersAsync(final List<BitfinexOrder> orders) {
+		return executeBatch(Collections.emptyList(), Collections.emptyList(), orders);
+	}
+	
+	/**
+	 * Cancel the orders with one oc_multi operation. The futures are completed like the 
+	 * future of cancelOrderAsync() and have the order of the given ids.
+	 * @param ids
+	 * @return
+	 */
+	public List<CompletableFuture<ExchangeOrder>> cancelOrdersAsync(final Collection<Long> ids) {
+		return executeBatch(ids, Collections.emptyList(), Collections.emptyList());
+	}
+	
+	/**
+	 * Cancel the orders by cid. The cids are resolved to order ids with the order store, 
+	 * the futures of unknown or closed orders fail.
+	 * @param cids
+	 * @return
+	 */
+	public List<CompletableFuture<ExchangeOrder>> cancelOrdersByCidAsync(final Collection<Long> cids) {
+		final List<Long> ids = new ArrayList<>(cids.size());
+		
+		// The order id of each cid or null for unknown cids
+		final List<Long> resolvedIds = new ArrayList<>(cids.size());
+		
+		for(final long cid : cids) {
+			final ExchangeOrder exchangeOrder = orderStore.getOrderByCid(cid);
+			
+			if(exchangeOrder != null && ! OrderStore.isTerminalState(exchangeOrder.getState())) {
+				ids.add(exchangeOrder.getOrderId());
+				resolvedIds.add(exchangeOrder.getOrderId());
+			} else {
+				resolvedIds.add(null);
+			}
+		}
+		
+		final Iterator<CompletableFuture<ExchangeOrder>> cancelFutures = cancelOrdersAsync(ids).iterator();
+		final Iterator<Long> cidIterator = cids.iterator();
+		final List<CompletableFuture<ExchangeOrder>> futures = new ArrayList<>(cids.size());
+		
+		for(final Long orderId : resolvedIds) {
+			final long cid = cidIterator.next();
+			
+			if(orderId != null) {
+				futures.add(cancelFutures.next());
 			} else {
-				throw new APIException(lastException);
+				futures.add(failedRequest(new APIException("Unable to find open order with cid " + cid)));
 			}
 		}
+		
+		return futures;
+	}
+	
+	/**
+	 * Cancel the order groups with one oc_multi operation. The returned futures belong 
+	 * to the open orders of the groups that are known by the order store.
+	 * @param groupIds
+	 * @return
+	 */
+	public List<CompletableFuture<ExchangeOrder>> cancelOrderGroupsAsync(final Collection<Integer> groupIds) {
+		return executeBatch(Collections.emptyList(), groupIds, Collections.emptyList());
+	}
+	
+	/**
+	 * Cancel the orders and place the new orders in one round trip (e.g. requote 
+	 * a ladder). The futures of the cancellations are followed by the futures of 
+	 * the placements.
+	 * @param cancelIds
+	 * @param newOrders
+	 * @return
+	 */
+	public List<CompletableFuture<ExchangeOrder>> replaceOrdersAsync(final Collection<Long> cancelIds, 
+			final List<BitfinexOrder> newOrders) {
+		
+		return executeBatch(cancelIds, Collections.emptyList(), newOrders);
 	}
+	
+	/**
+	 * Register the requests and send the operations in multi operation frames
+	 * @param cancelIds
+	 * @param cancelGroups
+	 * @param newOrders
+	 * @return
+	 */
+	private List<CompletableFuture<ExchangeOrder>> executeBatch(final Collection<Long> cancelIds, 
+			final Collection<Integer> cancelGroups, final List<BitfinexOrder> newOrders) {
+		
+		final List<Long> groupOrderIds = new ArrayList<>();
+		
+		for(final int groupId : cancelGroups) {
+			for(final ExchangeOrder exchangeOrder : orderStore.getOpenOrdersForGroup(groupId)) {
+				groupOrderIds.add(exchangeOrder.getOrderId());
+			}
+		}
+		
+		final List<CompletableFuture<ExchangeOrder>> futures = new ArrayList<>(
+				cancelIds.size() + groupOrderIds.size() + newOrders.size());
+		
+		final ConnectionCapabilities capabilities = bitfinexApiBroker.getCapabilities();
 
+		if(! capabilities.isHavingOrdersWriteCapability()) {
+			final int operations = cancelIds.size() + groupOrderIds.size() + newOrders.size();
+			
+			for(int i = 0; i < operations; i++) {
+				futures.add(failedRequest(new APIException("Unable to execute order operations, "
+						+ "connection has not enough capabilities: " + capabilities)));
+			}
+			
+			return futures;
+		}
+		
+		final List<PendingOrderRequest> newRequests = new ArrayList<>(futures.size());
+		final List<OrderOperationCommand> operations = new ArrayList<>(newOrders.size() + 1);
+		
+		for(final long id : cancelIds) {
+			futures.add(registerCancellation(id, newRequests));
+		}
+		
+		for(final long id : groupOrderIds) {
+			futures.add(registerCancellation(id, newRequests));
+		}
+		
+		if(! cancelIds.isEmpty() || ! cancelGroups.isEmpty()) {
+			operations.add(new CancelOrderMultiCommand(cancelIds, cancelGroups));
+		}
+		
+		for(final BitfinexOrder order : newOrders) {
+			final int registeredRequests = newRequests.size();
+			futures.add(registerPlacement(order, newRequests));
+			
+			if(newRequests.size() > registeredRequests) {
+				operations.add(new OrderCommand(order));
+			}
+		}
+		
+		newRequests.forEach(r -> r.attempts++);
+		
+		for(int pos = 0; pos < operations.size(); pos += OrderMultiCommand.MAX_OPERATIONS) {
+			final List<OrderOperationCommand> frameOperations = operations.subList(pos, 
+					Math.min(operations.size(), pos + OrderMultiCommand.MAX_OPERATIONS));
+			
+			if(frameOperations.size() == 1) {
+				bitfinexApiBroker.sendCommand((AbstractAPICommand) frameOperations.get(0));
+			} else {
+				bitfinexApiBroker.sendCommand(new OrderMultiCommand(frameOperations));
+			}
+		}
+		
+		return futures;
+	}
+	
 	/**
-	 * Cancel the order on the API
+	 * Register a pending placement, new requests are added to the list
+	 * @param order
+	 * @param newRequests
+	 * @return
+	 */
+	private CompletableFuture<ExchangeOrder> registerPlacement(final BitfinexOrder order, 
+			final List<PendingOrderRequest> newRequests) {
+		
+		order.setApikey(bitfinexApiBroker.getConfiguration().getApiKey());
+		
+		final PendingOrderRequest request = new PendingOrderRequest(() -> placeOrder(order));
+		
+		if(pendingPlacements.putIfAbsent(order.getCid(), request) != null) {
+			return failedRequest(new APIException("A order with the cid " + order.getCid() + " is already pending"));
+		}
+		
+		request.future.whenComplete((o, e) -> pendingPlacements.remove(order.getCid(), request));
+		
+		if(scheduleTimeout(request, "Timeout while waiting for order " + order)) {
+			newRequests.add(request);
+		}
+		
+		return request.future;
+	}
+	
+	/**
+	 * Register a pending cancellation, new requests are added to the list. Cancel 
+	 * requests for the same order share the result.
 	 * @param id
+	 * @param newRequests
 	 * @return
+	 */
+	private CompletableFuture<ExchangeOrder> registerCancellation(final long id, 
+			final List<PendingOrderRequest> newRequests) {
+		
+		final PendingOrderRequest request = new PendingOrderRequest(() -> cancelOrder(id));
+		final PendingOrderRequest pendingRequest = pendingCancellations.putIfAbsent(id, request);
+		
+		if(pendingRequest != null) {
+			return pendingRequest.future;
+		}
+		
+		request.future.whenComplete((o, e) -> pendingCancellations.remove(id, request));
+		
+		if(scheduleTimeout(request, "Timeout while waiting for the cancellation of order " + id)) {
+			newRequests.add(request);
+		}
+		
+		return request.future;
+	}
+	
+	/**
+	 * Schedule the timeout of the request
+	 * @param request
+	 * @param timeoutMessage
+	 * @return the timeout is scheduled
+	 */
+	private boolean scheduleTimeout(final PendingOrderRequest request, final String timeoutMessage) {
+		try {
+			final ScheduledFuture<?> timeout = bitfinexApiBroker.getScheduler().schedule(
+					() -> request.future.completeExceptionally(new APIException(timeoutMessage)), 
+					TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+			
+			request.future.whenComplete((o, e) -> timeout.cancel(false));
+			return true;
+		} catch (RejectedExecutionException e) {
+			request.future.completeExceptionally(new APIException(e));
+			return false;
+		}
+	}
+	
+	/**
+	 * Send the request, failed sends are retried
+	 * @param request
+	 */
+	private void sendRequest(final PendingOrderRequest request) {
+		if(request.future.isDone()) {
+			return;
+		}
+		
+		try {
+			request.attempts++;
+			request.sender.send();
+		} catch (APIException e) {
+			logger.warn("Unable to send order request (attempt {})", request.attempts, e);
+			retryRequest(request, e.getMessage());
+		}
+	}
+	
+	/**
+	 * Schedule the next attempt of the request or fail the request when 
+	 * all attempts are used
+	 * @param request
+	 * @param errorMessage
+	 */
+	private void retryRequest(final PendingOrderRequest request, final String errorMessage) {
+		if(request.attempts >= ORDER_RETRIES) {
+			request.future.completeExceptionally(new APIException(errorMessage));
+			return;
+		}
+		
+		logger.info("Retry order request after {} attempts: {}", request.attempts, errorMessage);
+		
+		try {
+			bitfinexApiBroker.getScheduler().schedule(() -> sendRequest(request), 
+					RETRY_DELAY_IN_MS, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			request.future.completeExceptionally(new APIException(e));
+		}
+	}
+	
+	/**
+	 * Wait for the result of the request
+	 * @param future
 	 * @throws APIException
 	 * @throws InterruptedException
 	 */
-	private boolean cancelOrderOnAPI(final long id) throws APIException, InterruptedException {
-		final CountDownLatch waitLatch = new CountDownLatch(1);
-
-		final Consumer<ExchangeOrder> ordercallback = (o) -> {
-			if(o.getOrderId() == id && o.getState() == ExchangeOrderState.STATE_CANCELED) {
-				waitLatch.countDown();
-			}
-		};
-
-		registerCallback(ordercallback);
-
+	private void awaitPendingRequest(final CompletableFuture<ExchangeOrder> future) 
+			throws APIException, InterruptedException {
+		
 		try {
-			logger.info("Cancel order: {}", id);
-			cancelOrder(id);
-			waitLatch.await(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
-
-			if(waitLatch.getCount() != 0) {
-				throw new APIException("Timeout while waiting for order");
+			future.get(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			throw new APIException("Timeout while waiting for the order request");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof APIException) {
+				throw (APIException) e.getCause();
 			}
-
-			return true;
-		} catch (Exception e) {
-			throw e;
-		} finally {
-			removeCallback(ordercallback);
+			
+			throw new APIException(e.getCause());
 		}
 	}
-
+	
+	/**
+	 * Get a failed request future
+	 * @param e
+	 * @return
+	 */
+	private static CompletableFuture<ExchangeOrder> failedRequest(final APIException e) {
+		final CompletableFuture<ExchangeOrder> future = new CompletableFuture<>();
+		future.completeExceptionally(e);
+		return future;
+	}
+	
+	/**
+	 * Fail all pending order placements, cancellations and updates (e.g. when the 
+	 * connection is closed)
+	 * @param e
+	 */
+	public void failPendingRequests(final APIException e) {
+		pendingPlacements.values().forEach(r -> r.future.completeExceptionally(e));
+		pendingCancellations.values().forEach(r -> r.future.completeExceptionally(e));
+		pendingUpdates.values().forEach(r -> r.future.completeExceptionally(e));
+	}
+	
+	/**
+	 * Get the number of pending order placements, cancellations and updates
+	 * @return
+	 */
+	public int getNumberOfPendingRequests() {
+		return pendingPlacements.size() + pendingCancellations.size() + pendingUpdates.size();
+	}
 
 	/**
 	 * Place a new order
@@ -328,4 +788,86 @@ public class OrderManager extends SimpleCallbackManager<ExchangeOrder> {
 		final CancelOrderGroupCommand cancelOrder = new CancelOrderGroupCommand(id);
 		bitfinexApiBroker.sendCommand(cancelOrder);
 	}
+
+	/**
+	 * Create a publisher for the order updates, the subscribers receive the items 
+	 * as requested (the publisher has to be closed after use). Each item is the batch 
+	 * of one frame (the order snapshot or a single order update). With DROP_OLDEST or 
+	 * CONFLATE, the batches of a full buffer are merged by order.
+	 * @param bufferSize
+	 * @param overflowPolicy
+	 * @return
+	 */
+	public BufferedPublisher<EntryBatch<ExchangeOrder>> createOrderPublisher(final int bufferSize, 
+			final OverflowPolicy overflowPolicy) {
+		
+		return createPublisher(bufferSize, overflowPolicy, 
+				(older, newer) -> EntryBatch.merge(older, newer, OrderManager::getMergeKey), c -> {
+			final Closeable orders = callbackRegistry.onExchangeOrdersEvent(eos -> c.accept(EntryBatch.of(eos)));
+			final Closeable notifications = callbackRegistry.onExchangeOrderNotification(
+					eo -> c.accept(new EntryBatch<>(Collections.singletonList(eo), false)));
+			
+			return () -> {
+				orders.close();
+				notifications.close();
+			};
+		});
+	}
+	
+	/**
+	 * Get the merge key of the order (the order id or the cid of orders without id, 
+	 * e.g. rejected placements)
+	 * @param exchangeOrder
+	 * @return
+	 */
+	private static Object getMergeKey(final ExchangeOrder exchangeOrder) {
+		if(exchangeOrder.getOrderId() != 0) {
+			return exchangeOrder.getOrderId();
+		}
+		
+		return "cid-" + exchangeOrder.getCid();
+	}
+	
+	@FunctionalInterface
+	private interface OrderRequestSender {
+		
+		/**
+		 * Send the order request
+		 * @throws APIException
+		 */
+		public void send() throws APIException;
+	}
+	
+	private static class PendingOrderRequest {
+		
+		/**
+		 * The result
+		 */
+		private final CompletableFuture<ExchangeOrder> future = new CompletableFuture<>();
+		
+		/**
+		 * The sender of the request
+		 */
+		private final OrderRequestSender sender;
+		
+		/**
+		 * Does the order update confirm the request
+		 */
+		private final Predicate<ExchangeOrder> confirmation;
+		
+		/**
+		 * The number of send attempts (changed by the sending thread only, 
+		 * the attempts are sequential)
+		 */
+		private volatile int attempts;
+		
+		public PendingOrderRequest(final OrderRequestSender sender) {
+			this(sender, o -> true);
+		}
+		
+		public PendingOrderRequest(final OrderRequestSender sender, final Predicate<ExchangeOrder> confirmation) {
+			this.sender = sender;
+			this.confirmation = confirmation;
+		}
+	}
 }
@@ -0,0 +1,363 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrderState;
+
+/**
+ * The orders of a connection, indexed by order id, cid, group id and symbol.
+ * 
+ * The open orders are kept in the live tier. Orders that reach a terminal state 
+ * (executed, canceled or error) are moved into a bounded archive, the oldest 
+ * archived orders are evicted. Orders without an order id (e.g. rejected 
+ * orders) are archived by cid only. The updates are serialized by the store and run 
+ * in constant time, the reads do not lock and see the state of the last 
+ * completed update.
+ */
+public class OrderStore {
+	
+	/**
+	 * The default number of archived orders
+	 */
+	public final static int DEFAULT_ARCHIVE_SIZE = 1000;
+
+	/**
+	 * The maximal number of archived orders
+	 */
+	private final int archiveSize;
+	
+	/**
+	 * The open orders by order id
+	 */
+	private final Map<Long, ExchangeOrder> openOrders;
+	
+	/**
+	 * The open orders by cid
+	 */
+	private final Map<Long, ExchangeOrder> openOrdersByCid;
+	
+	/**
+	 * The ids of the open orders by group id
+	 */
+	private final Map<Integer, Set<Long>> openOrdersByGroup;
+	
+	/**
+	 * The ids of the open orders by symbol
+	 */
+	private final Map<String, Set<Long>> openOrdersBySymbol;
+	
+	/**
+	 * The archived orders by order id
+	 */
+	private final Map<Long, ExchangeOrder> archivedOrders;
+	
+	/**
+	 * The archived orders by cid
+	 */
+	private final Map<Long, ExchangeOrder> archivedOrdersByCid;
+	
+	/**
+	 * The archived orders in archive order (eviction order)
+	 */
+	private final ArrayDeque<ExchangeOrder> archiveQueue;
+	
+	public OrderStore() {
+		this(DEFAULT_ARCHIVE_SIZE);
+	}
+	
+	public OrderStore(final int archiveSize) {
+		
+		if(archiveSize < 0) {
+			throw new IllegalArgumentException("Invalid archive size: " + archiveSize);
+		}
+		
+		this.archiveSize = archiveSize;
+		this.openOrders = new ConcurrentHashMap<>();
+		this.openOrdersByCid = new ConcurrentHashMap<>();
+		this.openOrdersByGroup = new ConcurrentHashMap<>();
+		this.openOrdersBySymbol = new ConcurrentHashMap<>();
+		this.archivedOrders = new ConcurrentHashMap<>();
+		this.archivedOrdersByCid = new ConcurrentHashMap<>();
+		this.archiveQueue = new ArrayDeque<>();
+	}
+	
+	/**
+	 * Is the state a terminal state
+	 * @param state
+	 * @return
+	 */
+	public static boolean isTerminalState(final ExchangeOrderState state) {
+		return state == ExchangeOrderState.STATE_EXECUTED
+				|| state == ExchangeOrderState.STATE_CANCELED
+				|| state == ExchangeOrderState.STATE_POSTONLY_CANCELED
+				|| state == ExchangeOrderState.STATE_ERROR;
+	}
+	
+	/**
+	 * Insert or update the order
+	 * @param exchangeOrder
+	 */
+	public synchronized void update(final ExchangeOrder exchangeOrder) {
+		final long orderId = exchangeOrder.getOrderId();
+		final ExchangeOrder oldOrder = openOrders.get(orderId);
+		
+		if(isTerminalState(exchangeOrder.getState())) {
+			if(oldOrder != null) {
+				removeOpenOrder(oldOrder);
+			}
+			archiveOrder(exchangeOrder);
+			return;
+		}
+		
+		if(oldOrder != null && oldOrder.getCid() != exchangeOrder.getCid()) {
+			openOrdersByCid.remove(oldOrder.getCid(), oldOrder);
+		}
+		
+		openOrders.put(orderId, exchangeOrder);
+		openOrdersByCid.put(exchangeOrder.getCid(), exchangeOrder);
+		
+		if(oldOrder == null || oldOrder.getGroupId() != exchangeOrder.getGroupId()) {
+			if(oldOrder != null) {
+				removeFromIndex(openOrdersByGroup, oldOrder.getGroupId(), orderId);
+			}
+			addToIndex(openOrdersByGroup, exchangeOrder.getGroupId(), orderId);
+		}
+		
+		if(oldOrder == null || ! Objects.equals(oldOrder.getSymbol(), exchangeOrder.getSymbol())) {
+			if(oldOrder != null) {
+				removeFromIndex(openOrdersBySymbol, oldOrder.getSymbol(), orderId);
+			}
+			addToIndex(openOrdersBySymbol, exchangeOrder.getSymbol(), orderId);
+		}
+	}
+	
+	/**
+	 * Remove the order from the live tier
+	 * @param exchangeOrder
+	 */
+	private void removeOpenOrder(final ExchangeOrder exchangeOrder) {
+		final long orderId = exchangeOrder.getOrderId();
+		openOrders.remove(orderId);
+		openOrdersByCid.remove(exchangeOrder.getCid(), exchangeOrder);
+		removeFromIndex(openOrdersByGroup, exchangeOrder.getGroupId(), orderId);
+		removeFromIndex(openOrdersBySymbol, exchangeOrder.getSymbol(), orderId);
+	}
+	
+	/**
+	 * Move the order into the archive
+	 * @param exchangeOrder
+	 */
+	private void archiveOrder(final ExchangeOrder exchangeOrder) {
+		if(archiveSize == 0) {
+			return;
+		}
+		
+		if(! hasOrderId(exchangeOrder)) {
+			archiveQueue.addLast(exchangeOrder);
+		} else if(archivedOrders.put(exchangeOrder.getOrderId(), exchangeOrder) == null) {
+			archiveQueue.addLast(exchangeOrder);
+		}
+		
+		archivedOrdersByCid.put(exchangeOrder.getCid(), exchangeOrder);
+		
+		while(archiveQueue.size() > archiveSize) {
+			final ExchangeOrder queuedOrder = archiveQueue.pollFirst();
+			
+			// The archived order of the id might be replaced by a later update
+			final ExchangeOrder evictedOrder = hasOrderId(queuedOrder) 
+					? archivedOrders.remove(queuedOrder.getOrderId()) : queuedOrder;
+			
+			if(evictedOrder != null) {
+				archivedOrdersByCid.remove(evictedOrder.getCid(), evictedOrder);
+			}
+		}
+	}
+	
+	/**
+	 * Has the order an order id (rejected orders have none)
+	 * @param exchangeOrder
+	 * @return
+	 */
+	private static boolean hasOrderId(final ExchangeOrder exchangeOrder) {
+		return exchangeOrder.getOrderId() != 0;
+	}
+	
+	/**
+	 * Add the order id to the index
+	 * @param index
+	 * @param key
+	 * @param orderId
+	 */
+	private static <K> void addToIndex(final Map<K, Set<Long>> index, final K key, final long orderId) {
+		if(key == null) {
+			return;
+		}
+		
+		index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(orderId);
+	}
+	
+	/**
+	 * Remove the order id from the index
+	 * @param index
+	 * @param key
+	 * @param orderId
+	 */
+	private static <K> void removeFromIndex(final Map<K, Set<Long>> index, final K key, final long orderId) {
+		if(key == null) {
+			return;
+		}
+		
+		final Set<Long> orderIds = index.get(key);
+		
+		if(orderIds == null) {
+			return;
+		}
+		
+		orderIds.remove(orderId);
+		
+		if(orderIds.isEmpty()) {
+			index.remove(key);
+		}
+	}
+	
+	/**
+	 * Remove all orders
+	 */
+	public synchronized void clear() {
+		openOrders.clear();
+		openOrdersByCid.clear();
+		openOrdersByGroup.clear();
+		openOrdersBySymbol.clear();
+		archivedOrders.clear();
+		archivedOrdersByCid.clear();
+		archiveQueue.clear();
+	}
+	
+	/**
+	 * Get the order (open or archived)
+	 * @param orderId
+	 * @return the order or null
+	 */
+	public ExchangeOrder getOrder(final long orderId) {
+		final ExchangeOrder order = openOrders.get(orderId);
+		
+		if(order != null) {
+			return order;
+		}
+		
+		return archivedOrders.get(orderId);
+	}
+	
+	/**
+	 * Get the order by cid (open or archived)
+	 * @param cid
+	 * @return the order or null
+	 */
+	public ExchangeOrder getOrderByCid(final long cid) {
+		final ExchangeOrder order = openOrdersByCid.get(cid);
+		
+		if(order != null) {
+			return order;
+		}
+		
+		return archivedOrdersByCid.get(cid);
+	}
+	
+	/**
+	 * Get the open orders
+	 * @return
+	 */
+	public List<ExchangeOrder> getOpenOrders() {
+		return new ArrayList<>(openOrders.values());
+	}
+	
+	/**
+	 * Get the open orders of the group
+	 * @param groupId
+	 * @return
+	 */
+	public List<ExchangeOrder> getOpenOrdersForGroup(final int groupId) {
+		return resolveOrders(openOrdersByGroup.get(groupId));
+	}
+	
+	/**
+	 * Get the open orders of the symbol
+	 * @param symbol - the bitfinex symbol (e.g. tBTCUSD)
+	 * @return
+	 */
+	public List<ExchangeOrder> getOpenOrdersForSymbol(final String symbol) {
+		return resolveOrders(openOrdersBySymbol.get(symbol));
+	}
+	
+	/**
+	 * Resolve the order ids of a index entry
+	 * @param orderIds
+	 * @return
+	 */
+	private List<ExchangeOrder> resolveOrders(final Set<Long> orderIds) {
+		if(orderIds == null) {
+			return Collections.emptyList();
+		}
+		
+		final List<ExchangeOrder> result = new ArrayList<>(orderIds.size());
+		
+		for(final Long orderId : orderIds) {
+			final ExchangeOrder order = openOrders.get(orderId);
+			
+			if(order != null) {
+				result.add(order);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the archived orders with an order id
+	 * @return
+	 */
+	public List<ExchangeOrder> getArchivedOrders() {
+		return new ArrayList<>(archivedOrders.values());
+	}
+	
+	/**
+	 * Get the number of open orders
+	 * @return
+	 */
+	public int getNumberOfOpenOrders() {
+		return openOrders.size();
+	}
+	
+	/**
+	 * Get the number of archived orders with an order id
+	 * @return
+	 */
+	public int getNumberOfArchivedOrders() {
+		return archivedOrders.size();
+	}
+}
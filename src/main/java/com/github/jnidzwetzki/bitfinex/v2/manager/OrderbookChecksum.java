@@ -0,0 +1,203 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.manager;
+
+import java.util.zip.CRC32;
+
+/**
+ * Calculates the orderbook checksum of the CHECKSUM connection feature.
+ *
+ * The checksum is the signed CRC32 of the top 25 bid and ask levels, joined
+ * as 'bidPrice:bidAmount:askPrice:askAmount:...' (raw books use the order id
+ * instead of the price, ask amounts are negative). The values are formatted
+ * like on the server (no trailing zeros, exponent notation below 1e-6) and fed
+ * directly into the CRC, no strings are built.
+ *
+ * The instances are not thread safe, the buffers are reused for each calculation.
+ */
+public class OrderbookChecksum {
+
+	/**
+	 * The number of levels per side that are part of the checksum
+	 */
+	public final static int CHECKSUM_LEVELS = 25;
+
+	/**
+	 * The CRC
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * The top levels of the book
+	 */
+	private final long[] bidKeys = new long[CHECKSUM_LEVELS];
+	private final long[] bidAmounts = new long[CHECKSUM_LEVELS];
+	private final long[] askKeys = new long[CHECKSUM_LEVELS];
+	private final long[] askAmounts = new long[CHECKSUM_LEVELS];
+
+	/**
+	 * The digits of the value (least significant digit first)
+	 */
+	private final byte[] digits = new byte[20];
+
+	/**
+	 * The formatted value
+	 */
+	private final byte[] buffer = new byte[48];
+
+	/**
+	 * Is the next value the first value of the checksum
+	 */
+	private boolean firstValue;
+
+	/**
+	 * Calculate the checksum of the orderbook
+	 * @param orderbook
+	 * @return
+	 */
+	public int calculate(final LocalOrderbook orderbook) {
+		final int bids = orderbook.copyTopLevels(true, bidKeys, bidAmounts);
+		final int asks = orderbook.copyTopLevels(false, askKeys, askAmounts);
+		return calculate(bids, asks, orderbook.getScale(), orderbook.getScale());
+	}
+
+	/**
+	 * Calculate the checksum of the raw orderbook
+	 * @param orderbook
+	 * @return
+	 */
+	public int calculate(final LocalRawOrderbook orderbook) {
+		final int bids = orderbook.copyTopOrders(true, bidKeys, bidAmounts);
+		final int asks = orderbook.copyTopOrders(false, askKeys, askAmounts);
+		return calculate(bids, asks, 0, orderbook.getScale());
+	}
+
+	/**
+	 * Calculate the checksum of the copied levels
+	 * @param bids
+	 * @param asks
+	 * @param keyScale
+	 * @param amountScale
+	 * @return
+	 */
+	private int calculate(final int bids, final int asks, final int keyScale, final int amountScale) {
+		crc.reset();
+		firstValue = true;
+
+		for(int level = 0; level < CHECKSUM_LEVELS; level++) {
+			if(level < bids) {
+				updateValue(bidKeys[level], keyScale);
+				updateValue(bidAmounts[level], amountScale);
+			}
+
+			if(level < asks) {
+				updateValue(askKeys[level], keyScale);
+				updateValue(-askAmounts[level], amountScale);
+			}
+		}
+
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Format the fixed point value and update the CRC
+	 * @param value
+	 * @param scale
+	 */
+	private void updateValue(final long value, final int scale) {
+		int length = 0;
+
+		if(! firstValue) {
+			buffer[length++] = ':';
+		}
+
+		firstValue = false;
+
+		if(value == 0) {
+			buffer[length++] = '0';
+			crc.update(buffer, 0, length);
+			return;
+		}
+
+		if(value < 0) {
+			buffer[length++] = '-';
+		}
+
+		// Digits of the absolute value, least significant digit first
+		int numberOfDigits = 0;
+		for(long remaining = value; remaining != 0; remaining /= 10) {
+			digits[numberOfDigits++] = (byte) ('0' + Math.abs(remaining % 10));
+		}
+
+		// Strip the trailing zeros of the fraction
+		int lowestDigit = 0;
+		int fractionDigits = scale;
+		while(fractionDigits > 0 && digits[lowestDigit] == '0') {
+			lowestDigit++;
+			fractionDigits--;
+		}
+
+		final int significantDigits = numberOfDigits - lowestDigit;
+		final int integerDigits = significantDigits - fractionDigits;
+
+		if(integerDigits > 0) {
+			for(int pos = numberOfDigits - 1; pos >= lowestDigit + fractionDigits; pos--) {
+				buffer[length++] = digits[pos];
+			}
+
+			if(fractionDigits > 0) {
+				buffer[length++] = '.';
+				for(int pos = lowestDigit + fractionDigits - 1; pos >= lowestDigit; pos--) {
+					buffer[length++] = digits[pos];
+				}
+			}
+		} else if(-integerDigits >= 6) {
+			// Values below 1e-6 are written in exponent notation (e.g. 1.5e-7)
+			buffer[length++] = digits[numberOfDigits - 1];
+
+			if(significantDigits > 1) {
+				buffer[length++] = '.';
+				for(int pos = numberOfDigits - 2; pos >= lowestDigit; pos--) {
+					buffer[length++] = digits[pos];
+				}
+			}
+
+			buffer[length++] = 'e';
+			buffer[length++] = '-';
+
+			final int exponent = 1 - integerDigits;
+			if(exponent >= 10) {
+				buffer[length++] = (byte) ('0' + exponent / 10);
+			}
+			buffer[length++] = (byte) ('0' + exponent % 10);
+		} else {
+			buffer[length++] = '0';
+			buffer[length++] = '.';
+
+			for(int zeros = 0; zeros < -integerDigits; zeros++) {
+				buffer[length++] = '0';
+			}
+
+			for(int pos = numberOfDigits - 1; pos >= lowestDigit; pos--) {
+				buffer[length++] = digits[pos];
+			}
+		}
+
+		crc.update(buffer, 0, length);
+	}
+}
@@ -17,31 +17,81 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeOrderbookCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.util.BufferedPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
 
 public class OrderbookManager extends AbstractManager {
 
+	/**
+	 * The callback registry
+	 */
+	private final BitfinexApiCallbackRegistry callbackRegistry;
+
 	/**
 	 * The channel callbacks
 	 */
 	private final BiConsumerCallbackManager<OrderbookConfiguration, OrderbookEntry> channelCallbacks;
+	
+	/**
+	 * The batch callbacks
+	 */
+	private final BiConsumerCallbackManager<OrderbookConfiguration, EntryBatch<OrderbookEntry>> batchCallbacks;
+	
+	/**
+	 * The conflating callbacks
+	 */
+	private final BiConsumerCallbackManager<OrderbookConfiguration, EntryBatch<OrderbookEntry>> conflatedCallbacks;
+	
+	/**
+	 * The local orderbooks
+	 */
+	private final Map<OrderbookConfiguration, LocalOrderbook> orderbooks;
+	
+	/**
+	 * The checksum calculator for the local orderbooks
+	 */
+	private final OrderbookChecksum orderbookChecksum;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OrderbookManager.class);
 
 	public OrderbookManager(final BitfinexApiBroker bitfinexApiBroker, ExecutorService executorService,
 							BitfinexApiCallbackRegistry callbackRegistry) {
 		super(bitfinexApiBroker, executorService);
+		this.callbackRegistry = callbackRegistry;
 		this.channelCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
-		callbackRegistry.onOrderbookEvent((sym,entries) -> {
+		this.batchCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
+		this.conflatedCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
+		this.orderbooks = new ConcurrentHashMap<>();
+		this.orderbookChecksum = new OrderbookChecksum();
+		callbackRegistry.onOrderbookEvent(callbackRegistry.unmonitored((sym, entries) -> {
+			final EntryBatch<OrderbookEntry> batch = EntryBatch.of(entries);
+			updateOrderbook(sym, batch);
+			batchCallbacks.handleEvent(sym, batch);
+			conflatedCallbacks.handleEventDirect(sym, batch);
 			entries.forEach(e -> handleNewOrderbookEntry(sym, e));
-		});
+		}));
 	}
 	
 	/**
@@ -69,6 +119,87 @@ public class OrderbookManager extends AbstractManager {
 		return channelCallbacks.removeCallback(orderbookConfiguration, callback);
 	}
 	
+	/**
+	 * Register a new orderbook batch callback, the callback receives all entries 
+	 * of a snapshot or update at once
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @throws APIException
+	 */
+	public void registerOrderbookBatchCallback(final OrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<OrderbookConfiguration, EntryBatch<OrderbookEntry>> callback) throws APIException {
+		
+		batchCallbacks.registerCallback(orderbookConfiguration, callback);
+	}
+	
+	/**
+	 * Remove a orderbook batch callback
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeOrderbookBatchCallback(final OrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<OrderbookConfiguration, EntryBatch<OrderbookEntry>> callback) throws APIException {
+		
+		return batchCallbacks.removeCallback(orderbookConfiguration, callback);
+	}
+	
+	/**
+	 * Register a new conflating orderbook callback. While the callback is busy, the updates 
+	 * are merged by price level, the callback receives the 
+	 * pending changes as one batch.
+	 * 
+	 * The callback is executed on the conflation executor of the connection.
+	 * 
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @return the registered callback (e.g. for the number of conflated updates)
+	 * @throws APIException
+	 */
+	public ConflatingCallback<OrderbookConfiguration, OrderbookEntry> registerConflatedOrderbookCallback(
+			final OrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<OrderbookConfiguration, EntryBatch<OrderbookEntry>> callback) throws APIException {
+		
+		return registerConflatedOrderbookCallback(orderbookConfiguration, callback, 
+				bitfinexApiBroker.getConflationExecutorService());
+	}
+	
+	/**
+	 * Register a new conflating orderbook callback, executed on the given executor
+	 * 
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @param executor
+	 * @return the registered callback (e.g. for the number of conflated updates)
+	 * @throws APIException
+	 */
+	public ConflatingCallback<OrderbookConfiguration, OrderbookEntry> registerConflatedOrderbookCallback(
+			final OrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<OrderbookConfiguration, EntryBatch<OrderbookEntry>> callback, 
+			final Executor executor) throws APIException {
+		
+		final ConflatingCallback<OrderbookConfiguration, OrderbookEntry> conflatingCallback 
+			= new ConflatingCallback<>(OrderbookManager::getConflationKey, callback, executor);
+		
+		conflatedCallbacks.registerCallback(orderbookConfiguration, conflatingCallback);
+		
+		return conflatingCallback;
+	}
+	
+	/**
+	 * Remove a conflating orderbook callback
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeConflatedOrderbookCallback(final OrderbookConfiguration orderbookConfiguration, 
+			final ConflatingCallback<OrderbookConfiguration, OrderbookEntry> callback) throws APIException {
+		
+		return conflatedCallbacks.removeCallback(orderbookConfiguration, callback);
+	}
+	
 	/**
 	 * Subscribe a orderbook
 	 * @param currencyPair
@@ -78,10 +209,27 @@ public class OrderbookManager extends AbstractManager {
 	 */
 	public void subscribeOrderbook(final OrderbookConfiguration orderbookConfiguration) {
 		
+		// The book is rebuild in place from the snapshot of the new subscription
+		clearOrderbook(orderbookConfiguration);
+		
 		final SubscribeOrderbookCommand subscribeOrderbookCommand 
 			= new SubscribeOrderbookCommand(orderbookConfiguration);
 		
-		bitfinexApiBroker.sendCommand(subscribeOrderbookCommand);
+		bitfinexApiBroker.subscribeChannel(orderbookConfiguration, subscribeOrderbookCommand);
+	}
+	
+	/**
+	 * Subscribe a orderbook without blocking the caller
+	 * @param orderbookConfiguration
+	 * @return the future, completed with the channel id when the snapshot is dispatched
+	 */
+	public CompletableFuture<Integer> subscribeOrderbookAsync(final OrderbookConfiguration orderbookConfiguration) {
+		
+		// The book is rebuild in place from the snapshot of the new subscription
+		clearOrderbook(orderbookConfiguration);
+		
+		return bitfinexApiBroker.subscribeAsync(orderbookConfiguration, 
+				new SubscribeOrderbookCommand(orderbookConfiguration));
 	}
 	
 	/**
@@ -102,6 +250,7 @@ public class OrderbookManager extends AbstractManager {
 		final UnsubscribeChannelCommand command = new UnsubscribeChannelCommand(channel);
 		bitfinexApiBroker.sendCommand(command);
 		bitfinexApiBroker.removeChannelForSymbol(orderbookConfiguration);
+		clearOrderbook(orderbookConfiguration);
 	}
 	
 	/**
@@ -114,4 +263,126 @@ public class OrderbookManager extends AbstractManager {
 		
 		channelCallbacks.handleEvent(configuration, entry);
 	}
+	
+	/**
+	 * Get the local orderbook
+	 * @param orderbookConfiguration
+	 * @return the orderbook or null, if no data for the orderbook is received
+	 */
+	public LocalOrderbook getOrderbook(final OrderbookConfiguration orderbookConfiguration) {
+		return orderbooks.get(orderbookConfiguration);
+	}
+	
+	/**
+	 * Verify the checksum of the local orderbook (CHECKSUM connection feature)
+	 * @param orderbookConfiguration
+	 * @param checksum
+	 * @return false if the local orderbook does not match the checksum
+	 */
+	public synchronized boolean verifyChecksum(final OrderbookConfiguration orderbookConfiguration, 
+			final int checksum) {
+		
+		final LocalOrderbook orderbook = orderbooks.get(orderbookConfiguration);
+		
+		// No data received yet
+		if(orderbook == null) {
+			return true;
+		}
+		
+		return orderbookChecksum.calculate(orderbook) == checksum;
+	}
+	
+	/**
+	 * Clear all local orderbooks (e.g. on reconnect)
+	 */
+	public void clear() {
+		orderbooks.values().forEach(LocalOrderbook::clear);
+	}
+	
+	/**
+	 * Clear the local orderbook of the configuration, the instance is kept, so the 
+	 * references returned by getOrderbook() stay valid
+	 * @param orderbookConfiguration
+	 */
+	private void clearOrderbook(final OrderbookConfiguration orderbookConfiguration) {
+		final LocalOrderbook orderbook = orderbooks.get(orderbookConfiguration);
+		
+		if(orderbook != null) {
+			orderbook.clear();
+		}
+	}
+	
+	/**
+	 * Apply the entries of a snapshot or update to the local orderbook
+	 * 
+	 * @param configuration
+	 * @param entries
+	 */
+	private void updateOrderbook(final OrderbookConfiguration configuration, 
+			final EntryBatch<OrderbookEntry> entries) {
+		
+		if(entries.isEmpty()) {
+			return;
+		}
+		
+		final LocalOrderbook orderbook = orderbooks.computeIfAbsent(configuration, 
+				c -> new LocalOrderbook(c, getScale(c, entries.iterator().next())));
+		
+		try {
+			if(entries.isSnapshot()) {
+				orderbook.applySnapshot(entries);
+			} else {
+				orderbook.applyUpdate(entries.iterator().next());
+			}
+		} catch (ArithmeticException e) {
+			logger.error("Unable to apply {} to orderbook {}, resubscribing", entries, configuration, e);
+			bitfinexApiBroker.resubscribeChannel(configuration);
+		}
+	}
+	
+	/**
+	 * Get the conflation key of the entry (the price of the level, negated for asks)
+	 * @param entry
+	 * @return
+	 */
+	private static Object getConflationKey(final OrderbookEntry entry) {
+		if(entry.isFixedPoint()) {
+			return entry.getScaledAmount() > 0 ? entry.getScaledPrice() : -entry.getScaledPrice();
+		}
+		
+		final BigDecimal price = entry.getPrice().stripTrailingZeros();
+		return entry.getAmount().signum() > 0 ? price : price.negate();
+	}
+	
+	/**
+	 * Get the scale for the local orderbook
+	 * @param configuration
+	 * @param entry
+	 * @return
+	 */
+	private int getScale(final OrderbookConfiguration configuration, final OrderbookEntry entry) {
+		if(entry.isFixedPoint()) {
+			return entry.getScale();
+		}
+		
+		return bitfinexApiBroker.getConfiguration().getFixedPointScale(configuration.getCurrencyPair());
+	}
+
+	/**
+	 * Create a publisher for the orderbook entries, the subscribers receive the items 
+	 * as requested (the publisher has to be closed after use). Each item is the batch 
+	 * of one frame, so snapshots stay distinguishable from updates. With DROP_OLDEST 
+	 * or CONFLATE, the batches of a full buffer are merged by price level.
+	 * @param configuration
+	 * @param bufferSize
+	 * @param overflowPolicy
+	 * @return
+	 */
+	public BufferedPublisher<EntryBatch<OrderbookEntry>> createOrderbookPublisher(final OrderbookConfiguration configuration, 
+			final int bufferSize, final OverflowPolicy overflowPolicy) {
+		
+		return createPublisher(bufferSize, overflowPolicy, 
+				(older, newer) -> EntryBatch.merge(older, newer, OrderbookManager::getConflationKey),
+				c -> callbackRegistry.onOrderbookEvent(configuration, (s, entries) -> c.accept(EntryBatch.of(entries))));
+	}
 }
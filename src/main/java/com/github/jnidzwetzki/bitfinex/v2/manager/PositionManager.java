@@ -24,9 +24,16 @@ import java.util.concurrent.ExecutorService;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
 import com.github.jnidzwetzki.bitfinex.v2.entity.Position;
+import com.github.jnidzwetzki.bitfinex.v2.util.BufferedPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
 
 public class PositionManager extends SimpleCallbackManager<Position> {
 
+	/**
+	 * The callback registry
+	 */
+	private final BitfinexApiCallbackRegistry callbackRegistry;
+
 	/**
 	 * The positions
 	 */
@@ -34,8 +41,9 @@ public class PositionManager extends SimpleCallbackManager<Position> {
 
 	public PositionManager(final BitfinexApiBroker bitfinexApiBroker, final ExecutorService executorService, BitfinexApiCallbackRegistry callbackRegistry) {
 		super(executorService, bitfinexApiBroker);
+		this.callbackRegistry = callbackRegistry;
 		this.positions = new ArrayList<>();
-		callbackRegistry.onPositionsEvent(positions -> positions.forEach(this::updatePosition));
+		callbackRegistry.onPositionsEvent(callbackRegistry.unmonitored(positions -> positions.forEach(this::updatePosition)));
 	}
 
 	/**
@@ -72,5 +80,18 @@ public class PositionManager extends SimpleCallbackManager<Position> {
 			return positions;
 		}
 	}
-	
+
+	/**
+	 * Create a publisher for the position updates, the subscribers receive the items 
+	 * as requested (the publisher has to be closed after use)
+	 * @param bufferSize
+	 * @param overflowPolicy
+	 * @return
+	 */
+	public BufferedPublisher<Position> createPositionPublisher(final int bufferSize, 
+			final OverflowPolicy overflowPolicy) {
+		
+		return createPublisher(bufferSize, overflowPolicy, 
+				c -> callbackRegistry.onPositionsEvent(positions -> positions.forEach(c)));
+	}
 }
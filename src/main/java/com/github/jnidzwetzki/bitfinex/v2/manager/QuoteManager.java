@@ -18,14 +18,18 @@
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.commands.AbstractAPICommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeCandlesCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTickerCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTradesCommand;
@@ -33,11 +37,14 @@ import com.github.jnidzwetzki.bitfinex.v2.commands.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCandle;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExecutedTrade;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.BufferedPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
 
 public class QuoteManager extends AbstractManager {
 
@@ -50,6 +57,11 @@ public class QuoteManager extends AbstractManager {
 	 * The BitfinexCurrencyPair callbacks
 	 */
 	private final BiConsumerCallbackManager<BitfinexTickerSymbol, BitfinexTick> tickerCallbacks;
+	
+	/**
+	 * The conflating BitfinexCurrencyPair callbacks
+	 */
+	private final BiConsumerCallbackManager<BitfinexTickerSymbol, EntryBatch<BitfinexTick>> conflatedTickerCallbacks;
 
 	/**
 	 * The Bitfinex Candlestick callbacks
@@ -60,11 +72,26 @@ public class QuoteManager extends AbstractManager {
 	 * The channel callbacks
 	 */
 	private final BiConsumerCallbackManager<BitfinexExecutedTradeSymbol, ExecutedTrade> tradesCallbacks;
+	
+	/**
+	 * The Bitfinex Candlestick batch callbacks
+	 */
+	private final BiConsumerCallbackManager<BitfinexCandlestickSymbol, EntryBatch<BitfinexCandle>> candleBatchCallbacks;
+	
+	/**
+	 * The executed trades batch callbacks
+	 */
+	private final BiConsumerCallbackManager<BitfinexExecutedTradeSymbol, EntryBatch<ExecutedTrade>> tradesBatchCallbacks;
 
 	/**
 	 * The bitfinex API
 	 */
 	private final BitfinexApiBroker bitfinexApiBroker;
+
+	/**
+	 * The callback registry
+	 */
+	private final BitfinexApiCallbackRegistry callbackRegistry;
 	
 	/**
 	 * The number of symbols that can be subscribed within one connection
@@ -76,14 +103,21 @@ public class QuoteManager extends AbstractManager {
 	public QuoteManager(final BitfinexApiBroker bitfinexApiBroker, final ExecutorService executorService, BitfinexApiCallbackRegistry callbackRegistry) {
 		super(bitfinexApiBroker, executorService);
 		this.bitfinexApiBroker = bitfinexApiBroker;
+		this.callbackRegistry = callbackRegistry;
 		this.lastTickerActivity = new ConcurrentHashMap<>();
 		this.tickerCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
+		this.conflatedTickerCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
 		this.candleCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
 		this.tradesCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
-
-		callbackRegistry.onCandlesticksEvent(this::handleCandlestickCollection);
-		callbackRegistry.onTickEvent(this::handleNewTick);
-		callbackRegistry.onExecutedTradeEvent((sym, trades) -> trades.forEach(t -> this.handleExecutedTradeEntry(sym, t)));
+		this.candleBatchCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
+		this.tradesBatchCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
+
+		callbackRegistry.onCandlesticksEvent(callbackRegistry.unmonitored(this::handleCandlestickCollection));
+		callbackRegistry.onTickEvent(callbackRegistry.unmonitored(this::handleNewTick));
+		callbackRegistry.onExecutedTradeEvent(callbackRegistry.unmonitored((sym, trades) -> {
+			tradesBatchCallbacks.handleEvent(sym, EntryBatch.of(trades));
+			trades.forEach(t -> this.handleExecutedTradeEntry(sym, t));
+		}));
 	}
 
 	/**
@@ -143,6 +177,57 @@ public class QuoteManager extends AbstractManager {
 		return tickerCallbacks.removeCallback(symbol, callback);
 	}
 
+	/**
+	 * Register a new conflating tick callback. While the callback is busy, only 
+	 * the latest tick is kept and delivered afterwards. The callback is executed on the 
+	 * conflation executor of the connection.
+	 * @param symbol
+	 * @param callback
+	 * @return the registered callback (e.g. for the number of conflated ticks)
+	 * @throws APIException
+	 */
+	public ConflatingCallback<BitfinexTickerSymbol, BitfinexTick> registerConflatedTickCallback(
+			final BitfinexTickerSymbol symbol, 
+			final BiConsumer<BitfinexTickerSymbol, BitfinexTick> callback) throws APIException {
+		
+		return registerConflatedTickCallback(symbol, callback, bitfinexApiBroker.getConflationExecutorService());
+	}
+	
+	/**
+	 * Register a new conflating tick callback, executed on the given executor
+	 * @param symbol
+	 * @param callback
+	 * @param executor
+	 * @return the registered callback (e.g. for the number of conflated ticks)
+	 * @throws APIException
+	 */
+	public ConflatingCallback<BitfinexTickerSymbol, BitfinexTick> registerConflatedTickCallback(
+			final BitfinexTickerSymbol symbol, 
+			final BiConsumer<BitfinexTickerSymbol, BitfinexTick> callback, 
+			final Executor executor) throws APIException {
+		
+		final ConflatingCallback<BitfinexTickerSymbol, BitfinexTick> conflatingCallback 
+			= new ConflatingCallback<>(t -> symbol, (s, ticks) -> ticks.forEach(t -> callback.accept(s, t)), 
+					executor);
+		
+		conflatedTickerCallbacks.registerCallback(symbol, conflatingCallback);
+		
+		return conflatingCallback;
+	}
+	
+	/**
+	 * Remove a conflating tick callback
+	 * @param symbol
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeConflatedTickCallback(final BitfinexTickerSymbol symbol,
+			final ConflatingCallback<BitfinexTickerSymbol, BitfinexTick> callback) throws APIException {
+		
+		return conflatedTickerCallbacks.removeCallback(symbol, callback);
+	}
+
 	/**
 	 * Process a list with candles
 	 * @param symbol
@@ -161,6 +246,11 @@ public class QuoteManager extends AbstractManager {
 	public void handleNewTick(final BitfinexTickerSymbol currencyPair, final BitfinexTick tick) {
 		updateChannelHeartbeat(currencyPair);
 		tickerCallbacks.handleEvent(currencyPair, tick);
+		
+		if(conflatedTickerCallbacks.hasCallbacks(currencyPair)) {
+			final EntryBatch<BitfinexTick> batch = new EntryBatch<>(Collections.singletonList(tick), false);
+			conflatedTickerCallbacks.handleEventDirect(currencyPair, batch);
+		}
 	}
 
 	/**
@@ -171,7 +261,36 @@ public class QuoteManager extends AbstractManager {
 	public void subscribeTicker(final BitfinexTickerSymbol tickerSymbol) throws APIException {
 		checkForQuota();
 		final SubscribeTickerCommand command = new SubscribeTickerCommand(tickerSymbol);
-		bitfinexApiBroker.sendCommand(command);
+		bitfinexApiBroker.subscribeChannel(tickerSymbol, command);
+	}
+	
+	/**
+	 * Subscribe a ticker without blocking the caller
+	 * @param tickerSymbol
+	 * @return the future, completed with the channel id when the first tick is dispatched
+	 */
+	public CompletableFuture<Integer> subscribeTickerAsync(final BitfinexTickerSymbol tickerSymbol) {
+		return subscribeAsync(tickerSymbol, new SubscribeTickerCommand(tickerSymbol));
+	}
+	
+	/**
+	 * Subscribe the channel, the quota is checked before
+	 * @param symbol
+	 * @param command
+	 * @return
+	 */
+	private CompletableFuture<Integer> subscribeAsync(final BitfinexStreamSymbol symbol, 
+			final AbstractAPICommand command) {
+		
+		try {
+			checkForQuota();
+		} catch (APIException e) {
+			final CompletableFuture<Integer> result = new CompletableFuture<>();
+			result.completeExceptionally(e);
+			return result;
+		}
+		
+		return bitfinexApiBroker.subscribeAsync(symbol, command);
 	}
 
 	/**
@@ -181,7 +300,7 @@ public class QuoteManager extends AbstractManager {
 	 * @throws APIException
 	 */
 	private void checkForQuota() throws APIException {
-		if(bitfinexApiBroker.getChannelIdSymbolMap().size() >= SYMBOL_QUOTA) {
+		if(bitfinexApiBroker.getChannelRegistry().size() >= SYMBOL_QUOTA) {
 			throw new APIException("Unable to subscript more than " + SYMBOL_QUOTA 
 					+ " symbols per connection");
 		}
@@ -231,6 +350,32 @@ public class QuoteManager extends AbstractManager {
 		return candleCallbacks.removeCallback(symbol, callback);
 	}
 
+	
+	/**
+	 * Register a new candlestick batch callback, the callback receives all 
+	 * candles of a snapshot or update at once
+	 * @param symbol
+	 * @param callback
+	 * @throws APIException
+	 */
+	public void registerCandlestickBatchCallback(final BitfinexCandlestickSymbol symbol,
+			final BiConsumer<BitfinexCandlestickSymbol, EntryBatch<BitfinexCandle>> callback) throws APIException {
+
+		candleBatchCallbacks.registerCallback(symbol, callback);
+	}
+	
+	/**
+	 * Remove a candlestick batch callback
+	 * @param symbol
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeCandlestickBatchCallback(final BitfinexCandlestickSymbol symbol,
+			final BiConsumer<BitfinexCandlestickSymbol, EntryBatch<BitfinexCandle>> callback) throws APIException {
+
+		return candleBatchCallbacks.removeCallback(symbol, callback);
+	}
 
 	/**
 	 * Process a list with candlesticks
@@ -238,6 +383,7 @@ public class QuoteManager extends AbstractManager {
 	 * @param ticksArray
 	 */
 	public void handleCandlestickCollection(final BitfinexCandlestickSymbol symbol, final Collection<BitfinexCandle> ticksBuffer) {
+		candleBatchCallbacks.handleEvent(symbol, EntryBatch.of(ticksBuffer));
 		candleCallbacks.handleEventsCollection(symbol, ticksBuffer);
 	}
 
@@ -260,7 +406,16 @@ public class QuoteManager extends AbstractManager {
 	public void subscribeCandles(final BitfinexCandlestickSymbol symbol) throws APIException {
 		checkForQuota();
 		final SubscribeCandlesCommand command = new SubscribeCandlesCommand(symbol);
-		bitfinexApiBroker.sendCommand(command);
+		bitfinexApiBroker.subscribeChannel(symbol, command);
+	}
+	
+	/**
+	 * Subscribe candles without blocking the caller
+	 * @param symbol
+	 * @return the future, completed with the channel id when the snapshot is dispatched
+	 */
+	public CompletableFuture<Integer> subscribeCandlesAsync(final BitfinexCandlestickSymbol symbol) {
+		return subscribeAsync(symbol, new SubscribeCandlesCommand(symbol));
 	}
 
 	/**
@@ -309,6 +464,32 @@ public class QuoteManager extends AbstractManager {
 		return tradesCallbacks.removeCallback(tradeSymbol, callback);
 	}
 
+	/**
+	 * Register a new executed trade batch callback, the callback receives all 
+	 * trades of a snapshot or update at once
+	 * @param tradeSymbol
+	 * @param callback
+	 * @throws APIException
+	 */
+	public void registerExecutedTradeBatchCallback(final BitfinexExecutedTradeSymbol tradeSymbol,
+			final BiConsumer<BitfinexExecutedTradeSymbol, EntryBatch<ExecutedTrade>> callback) throws APIException {
+
+		tradesBatchCallbacks.registerCallback(tradeSymbol, callback);
+	}
+
+	/**
+	 * Remove a executed trade batch callback
+	 * @param tradeSymbol
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeExecutedTradeBatchCallback(final BitfinexExecutedTradeSymbol tradeSymbol,
+			final BiConsumer<BitfinexExecutedTradeSymbol, EntryBatch<ExecutedTrade>> callback) throws APIException {
+
+		return tradesBatchCallbacks.removeCallback(tradeSymbol, callback);
+	}
+
 	/**
 	 * Subscribe a executed trade channel
 	 * @param currencyPair
@@ -321,7 +502,16 @@ public class QuoteManager extends AbstractManager {
 		final SubscribeTradesCommand subscribeOrderbookCommand
 			= new SubscribeTradesCommand(tradeSymbol);
 
-		bitfinexApiBroker.sendCommand(subscribeOrderbookCommand);
+		bitfinexApiBroker.subscribeChannel(tradeSymbol, subscribeOrderbookCommand);
+	}
+	
+	/**
+	 * Subscribe a executed trade channel without blocking the caller
+	 * @param tradeSymbol
+	 * @return the future, completed with the channel id when the snapshot is dispatched
+	 */
+	public CompletableFuture<Integer> subscribeExecutedTradesAsync(final BitfinexExecutedTradeSymbol tradeSymbol) {
+		return bitfinexApiBroker.subscribeAsync(tradeSymbol, new SubscribeTradesCommand(tradeSymbol));
 	}
 
 	/**
@@ -355,4 +545,48 @@ public class QuoteManager extends AbstractManager {
 		tradesCallbacks.handleEvent(tradeSymbol, entry);
 	}
 
+	/**
+	 * Create a publisher for the ticks of the symbol, the subscribers receive the items 
+	 * as requested (the publisher has to be closed after use)
+	 * @param symbol
+	 * @param bufferSize
+	 * @param overflowPolicy
+	 * @return
+	 */
+	public BufferedPublisher<BitfinexTick> createTickPublisher(final BitfinexTickerSymbol symbol, final int bufferSize, 
+			final OverflowPolicy overflowPolicy) {
+		
+		return createPublisher(bufferSize, overflowPolicy, 
+				c -> callbackRegistry.onTickEvent(symbol, (s, tick) -> c.accept(tick)));
+	}
+
+	/**
+	 * Create a publisher for the candles of the symbol, the subscribers receive the items 
+	 * as requested (the publisher has to be closed after use)
+	 * @param symbol
+	 * @param bufferSize
+	 * @param overflowPolicy
+	 * @return
+	 */
+	public BufferedPublisher<BitfinexCandle> createCandlestickPublisher(final BitfinexCandlestickSymbol symbol, final int bufferSize, 
+			final OverflowPolicy overflowPolicy) {
+		
+		return createPublisher(bufferSize, overflowPolicy, 
+				c -> callbackRegistry.onCandlesticksEvent(symbol, (s, candles) -> candles.forEach(c)));
+	}
+
+	/**
+	 * Create a publisher for the executed trades of the symbol, the subscribers receive the items 
+	 * as requested (the publisher has to be closed after use)
+	 * @param symbol
+	 * @param bufferSize
+	 * @param overflowPolicy
+	 * @return
+	 */
+	public BufferedPublisher<ExecutedTrade> createExecutedTradePublisher(final BitfinexExecutedTradeSymbol symbol, final int bufferSize, 
+			final OverflowPolicy overflowPolicy) {
+		
+		return createPublisher(bufferSize, overflowPolicy, 
+				c -> callbackRegistry.onExecutedTradeEvent(symbol, (s, trades) -> trades.forEach(c)));
+	}
 }
@@ -17,31 +17,80 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeRawOrderbookCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.UnsubscribeChannelCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
 import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
 import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.util.BufferedPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
 
 public class RawOrderbookManager extends AbstractManager {
 
+	/**
+	 * The callback registry
+	 */
+	private final BitfinexApiCallbackRegistry callbackRegistry;
+
 	/**
 	 * The channel callbacks
 	 */
 	private final BiConsumerCallbackManager<RawOrderbookConfiguration, RawOrderbookEntry> channelCallbacks;
+	
+	/**
+	 * The batch callbacks
+	 */
+	private final BiConsumerCallbackManager<RawOrderbookConfiguration, EntryBatch<RawOrderbookEntry>> batchCallbacks;
+	
+	/**
+	 * The conflating callbacks
+	 */
+	private final BiConsumerCallbackManager<RawOrderbookConfiguration, EntryBatch<RawOrderbookEntry>> conflatedCallbacks;
+	
+	/**
+	 * The local raw orderbooks
+	 */
+	private final Map<RawOrderbookConfiguration, LocalRawOrderbook> orderbooks;
+	
+	/**
+	 * The checksum calculator for the local raw orderbooks
+	 */
+	private final OrderbookChecksum orderbookChecksum;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(RawOrderbookManager.class);
 
 	public RawOrderbookManager(final BitfinexApiBroker bitfinexApiBroker, ExecutorService executorService,
 							   BitfinexApiCallbackRegistry callbackRegistry) {
 		super(bitfinexApiBroker, executorService);
+		this.callbackRegistry = callbackRegistry;
 		this.channelCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
-		callbackRegistry.onRawOrderbookEvent((sym, entries) -> {
+		this.batchCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
+		this.conflatedCallbacks = new BiConsumerCallbackManager<>(executorService, bitfinexApiBroker);
+		this.orderbooks = new ConcurrentHashMap<>();
+		this.orderbookChecksum = new OrderbookChecksum();
+		callbackRegistry.onRawOrderbookEvent(callbackRegistry.unmonitored((sym, entries) -> {
+			final EntryBatch<RawOrderbookEntry> batch = EntryBatch.of(entries);
+			updateOrderbook(sym, batch);
+			batchCallbacks.handleEvent(sym, batch);
+			conflatedCallbacks.handleEventDirect(sym, batch);
 			entries.forEach(e -> handleNewOrderbookEntry(sym, e));
-		});
+		}));
 	}
 	
 	/**
@@ -69,6 +118,87 @@ public class RawOrderbookManager extends AbstractManager {
 		return channelCallbacks.removeCallback(orderbookConfiguration, callback);
 	}
 	
+	/**
+	 * Register a new raw orderbook batch callback, the callback receives all entries 
+	 * of a snapshot or update at once
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @throws APIException
+	 */
+	public void registerRawOrderbookBatchCallback(final RawOrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<RawOrderbookConfiguration, EntryBatch<RawOrderbookEntry>> callback) throws APIException {
+		
+		batchCallbacks.registerCallback(orderbookConfiguration, callback);
+	}
+	
+	/**
+	 * Remove a raw orderbook batch callback
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeRawOrderbookBatchCallback(final RawOrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<RawOrderbookConfiguration, EntryBatch<RawOrderbookEntry>> callback) throws APIException {
+		
+		return batchCallbacks.removeCallback(orderbookConfiguration, callback);
+	}
+	
+	/**
+	 * Register a new conflating raw orderbook callback. While the callback is busy, the updates 
+	 * are merged by order id, the callback receives the 
+	 * pending changes as one batch.
+	 * 
+	 * The callback is executed on the conflation executor of the connection.
+	 * 
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @return the registered callback (e.g. for the number of conflated updates)
+	 * @throws APIException
+	 */
+	public ConflatingCallback<RawOrderbookConfiguration, RawOrderbookEntry> registerConflatedRawOrderbookCallback(
+			final RawOrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<RawOrderbookConfiguration, EntryBatch<RawOrderbookEntry>> callback) throws APIException {
+		
+		return registerConflatedRawOrderbookCallback(orderbookConfiguration, callback, 
+				bitfinexApiBroker.getConflationExecutorService());
+	}
+	
+	/**
+	 * Register a new conflating raw orderbook callback, executed on the given executor
+	 * 
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @param executor
+	 * @return the registered callback (e.g. for the number of conflated updates)
+	 * @throws APIException
+	 */
+	public ConflatingCallback<RawOrderbookConfiguration, RawOrderbookEntry> registerConflatedRawOrderbookCallback(
+			final RawOrderbookConfiguration orderbookConfiguration, 
+			final BiConsumer<RawOrderbookConfiguration, EntryBatch<RawOrderbookEntry>> callback, 
+			final Executor executor) throws APIException {
+		
+		final ConflatingCallback<RawOrderbookConfiguration, RawOrderbookEntry> conflatingCallback 
+			= new ConflatingCallback<>(RawOrderbookEntry::getOrderId, callback, executor);
+		
+		conflatedCallbacks.registerCallback(orderbookConfiguration, conflatingCallback);
+		
+		return conflatingCallback;
+	}
+	
+	/**
+	 * Remove a conflating raw orderbook callback
+	 * @param orderbookConfiguration
+	 * @param callback
+	 * @return
+	 * @throws APIException
+	 */
+	public boolean removeConflatedRawOrderbookCallback(final RawOrderbookConfiguration orderbookConfiguration, 
+			final ConflatingCallback<RawOrderbookConfiguration, RawOrderbookEntry> callback) throws APIException {
+		
+		return conflatedCallbacks.removeCallback(orderbookConfiguration, callback);
+	}
+	
 	/**
 	 * Subscribe a orderbook
 	 * @param currencyPair
@@ -78,10 +208,27 @@ public class RawOrderbookManager extends AbstractManager {
 	 */
 	public void subscribeOrderbook(final RawOrderbookConfiguration orderbookConfiguration) {
 		
+		// The book is rebuild in place from the snapshot of the new subscription
+		clearOrderbook(orderbookConfiguration);
+		
 		final SubscribeRawOrderbookCommand subscribeOrderbookCommand 
 			= new SubscribeRawOrderbookCommand(orderbookConfiguration);
 		
-		bitfinexApiBroker.sendCommand(subscribeOrderbookCommand);
+		bitfinexApiBroker.subscribeChannel(orderbookConfiguration, subscribeOrderbookCommand);
+	}
+	
+	/**
+	 * Subscribe a orderbook without blocking the caller
+	 * @param orderbookConfiguration
+	 * @return the future, completed with the channel id when the snapshot is dispatched
+	 */
+	public CompletableFuture<Integer> subscribeOrderbookAsync(final RawOrderbookConfiguration orderbookConfiguration) {
+		
+		// The book is rebuild in place from the snapshot of the new subscription
+		clearOrderbook(orderbookConfiguration);
+		
+		return bitfinexApiBroker.subscribeAsync(orderbookConfiguration, 
+				new SubscribeRawOrderbookCommand(orderbookConfiguration));
 	}
 	
 	/**
@@ -102,6 +249,7 @@ public class RawOrderbookManager extends AbstractManager {
 		final UnsubscribeChannelCommand command = new UnsubscribeChannelCommand(channel);
 		bitfinexApiBroker.sendCommand(command);
 		bitfinexApiBroker.removeChannelForSymbol(orderbookConfiguration);
+		clearOrderbook(orderbookConfiguration);
 	}
 	
 	/**
@@ -114,4 +262,111 @@ public class RawOrderbookManager extends AbstractManager {
 		
 		channelCallbacks.handleEvent(configuration, entry);
 	}
+	
+	/**
+	 * Get the local raw orderbook
+	 * @param orderbookConfiguration
+	 * @return the orderbook or null, if no data for the orderbook is received
+	 */
+	public LocalRawOrderbook getOrderbook(final RawOrderbookConfiguration orderbookConfiguration) {
+		return orderbooks.get(orderbookConfiguration);
+	}
+	
+	/**
+	 * Verify the checksum of the local raw orderbook (CHECKSUM connection feature)
+	 * @param orderbookConfiguration
+	 * @param checksum
+	 * @return false if the local raw orderbook does not match the checksum
+	 */
+	public synchronized boolean verifyChecksum(final RawOrderbookConfiguration orderbookConfiguration, 
+			final int checksum) {
+		
+		final LocalRawOrderbook orderbook = orderbooks.get(orderbookConfiguration);
+		
+		// No data received yet
+		if(orderbook == null) {
+			return true;
+		}
+		
+		return orderbookChecksum.calculate(orderbook) == checksum;
+	}
+	
+	/**
+	 * Clear all local raw orderbooks (e.g. on reconnect)
+	 */
+	public void clear() {
+		orderbooks.values().forEach(LocalRawOrderbook::clear);
+	}
+	
+	/**
+	 * Clear the local raw orderbook of the configuration, the instance is kept, so the 
+	 * references returned by getOrderbook() stay valid
+	 * @param orderbookConfiguration
+	 */
+	private void clearOrderbook(final RawOrderbookConfiguration orderbookConfiguration) {
+		final LocalRawOrderbook orderbook = orderbooks.get(orderbookConfiguration);
+		
+		if(orderbook != null) {
+			orderbook.clear();
+		}
+	}
+	
+	/**
+	 * Apply the entries of a snapshot or update to the local raw orderbook
+	 * 
+	 * @param configuration
+	 * @param entries
+	 */
+	private void updateOrderbook(final RawOrderbookConfiguration configuration, 
+			final EntryBatch<RawOrderbookEntry> entries) {
+		
+		if(entries.isEmpty()) {
+			return;
+		}
+		
+		final LocalRawOrderbook orderbook = orderbooks.computeIfAbsent(configuration, 
+				c -> new LocalRawOrderbook(c, getScale(c, entries.iterator().next())));
+		
+		try {
+			if(entries.isSnapshot()) {
+				orderbook.applySnapshot(entries);
+			} else {
+				orderbook.applyUpdate(entries.iterator().next());
+			}
+		} catch (ArithmeticException e) {
+			logger.error("Unable to apply {} to raw orderbook {}, resubscribing", entries, configuration, e);
+			bitfinexApiBroker.resubscribeChannel(configuration);
+		}
+	}
+	
+	/**
+	 * Get the scale for the local raw orderbook
+	 * @param configuration
+	 * @param entry
+	 * @return
+	 */
+	private int getScale(final RawOrderbookConfiguration configuration, final RawOrderbookEntry entry) {
+		if(entry.isFixedPoint()) {
+			return entry.getScale();
+		}
+		
+		return bitfinexApiBroker.getConfiguration().getFixedPointScale(configuration.getCurrencyPair());
+	}
+
+	/**
+	 * Create a publisher for the raw orderbook entries, the subscribers receive the items 
+	 * as requested (the publisher has to be closed after use). With DROP_OLDEST or 
+	 * CONFLATE, the batches of a full buffer are merged by order id.
+	 * @param configuration
+	 * @param bufferSize
+	 * @param overflowPolicy
+	 * @return
+	 */
+	public BufferedPublisher<EntryBatch<RawOrderbookEntry>> createRawOrderbookPublisher(final RawOrderbookConfiguration configuration, 
+			final int bufferSize, final OverflowPolicy overflowPolicy) {
+		
+		return createPublisher(bufferSize, overflowPolicy, 
+				(older, newer) -> EntryBatch.merge(older, newer, RawOrderbookEntry::getOrderId),
+				c -> callbackRegistry.onRawOrderbookEvent(configuration, (s, entries) -> c.accept(EntryBatch.of(entries))));
+	}
 }
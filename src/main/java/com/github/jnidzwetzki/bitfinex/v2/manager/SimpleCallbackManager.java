@@ -17,24 +17,32 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.manager;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackArray;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor.ConsumerStatistics;
 
 public class SimpleCallbackManager<T> extends AbstractManager {
 	
 	/**
 	 * The order callbacks
 	 */
-	private final List<Consumer<T>> callbacks;
+	private final AtomicReference<CallbackArray<Consumer<T>>> callbacks;
+	
+	/**
+	 * The callback monitor (null if disabled)
+	 */
+	private final CallbackMonitor callbackMonitor;
 	
 	public SimpleCallbackManager(final ExecutorService executorService, 
 			final BitfinexApiBroker bitfinexApiBroker) {
 		super(bitfinexApiBroker, executorService);
-		this.callbacks = new ArrayList<>();
+		this.callbacks = new AtomicReference<>(CallbackArray.empty());
+		this.callbackMonitor = bitfinexApiBroker.getCallbackMonitor();
 	}
 	
 	/**
@@ -42,9 +50,7 @@ public class SimpleCallbackManager<T> extends AbstractManager {
 	 * @param callback
 	 */
 	public void registerCallback(final Consumer<T> callback) {
-		synchronized (callbacks) {
-			callbacks.add(callback);
-		}
+		callbacks.updateAndGet(array -> array.with(callback));
 	}
 	
 	/**
@@ -53,9 +59,16 @@ public class SimpleCallbackManager<T> extends AbstractManager {
 	 * @return
 	 */
 	public boolean removeCallback(final Consumer<T> callback) {
-		synchronized (callbacks) {
-			return callbacks.remove(callback);
+		final CallbackArray<Consumer<T>> oldCallbacks 
+			= callbacks.getAndUpdate(array -> array.without(callback));
+		
+		final boolean removed = oldCallbacks.indexOf(callback) != -1;
+		
+		if(removed && callbackMonitor != null && callbacks.get().indexOf(callback) == -1) {
+			callbackMonitor.remove(callback);
 		}
+		
+		return removed;
 	}
 	
 	/**
@@ -64,20 +77,38 @@ public class SimpleCallbackManager<T> extends AbstractManager {
 	 */
 	public void notifyCallbacks(final T exchangeOrder) {
 
-		// Notify callbacks async		
-		if(callbacks == null) {
+		// Notify callbacks async
+		final CallbackArray<Consumer<T>> callbackArray = callbacks.get();
+		
+		for(int i = 0; i < callbackArray.size(); i++) {
+			final Consumer<T> c = callbackArray.get(i);
+			final Runnable runnable = () -> invokeCallback(c, exchangeOrder);
+			executorService.submit(runnable);
+		}
+	}
+	
+	/**
+	 * Invoke the callback, timed if a callback monitor is configured
+	 * @param callback
+	 * @param element
+	 */
+	private void invokeCallback(final Consumer<T> callback, final T element) {
+		if(callbackMonitor == null) {
+			callback.accept(element);
+			return;
+		}
+		
+		final ConsumerStatistics statistics = callbackMonitor.getStatistics(callback);
+		
+		if(statistics.isQuarantined()) {
 			return;
 		}
-				
-		synchronized(callbacks) {
-			if(callbacks.isEmpty()) {
-				return;
-			}
-			
-			callbacks.forEach((c) -> {
-				final Runnable runnable = () -> c.accept(exchangeOrder);
-				executorService.submit(runnable);
-			});
+		
+		final long startTime = System.nanoTime();
+		try {
+			callback.accept(element);
+		} finally {
+			callbackMonitor.record(statistics, System.nanoTime() - startTime);
 		}
 	}
 }
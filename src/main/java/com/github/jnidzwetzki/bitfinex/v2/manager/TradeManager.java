@@ -20,14 +20,22 @@ package com.github.jnidzwetzki.bitfinex.v2.manager;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
 import com.github.jnidzwetzki.bitfinex.v2.entity.Trade;
+import com.github.jnidzwetzki.bitfinex.v2.util.BufferedPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
 
 import java.util.concurrent.ExecutorService;
 
 public class TradeManager extends SimpleCallbackManager<Trade> {
 
+	/**
+	 * The callback registry
+	 */
+	private final BitfinexApiCallbackRegistry callbackRegistry;
+
 	public TradeManager(final BitfinexApiBroker bitfinexApiBroker, final ExecutorService executorService, BitfinexApiCallbackRegistry callbackRegistry) {
 		super(executorService, bitfinexApiBroker);
-		callbackRegistry.onTradeEvent(this::updateTrade);
+		this.callbackRegistry = callbackRegistry;
+		callbackRegistry.onTradeEvent(callbackRegistry.unmonitored(this::updateTrade));
 	}
 	
 	/**
@@ -38,6 +46,17 @@ public class TradeManager extends SimpleCallbackManager<Trade> {
 		trade.setApikey(bitfinexApiBroker.getConfiguration().getApiKey());
 		notifyCallbacks(trade);
 	}
-	
+
+	/**
+	 * Create a publisher for the trades of the account, the subscribers receive the items 
+	 * as requested (the publisher has to be closed after use)
+	 * @param bufferSize
+	 * @param overflowPolicy
+	 * @return
+	 */
+	public BufferedPublisher<Trade> createTradePublisher(final int bufferSize, 
+			final OverflowPolicy overflowPolicy) {
+		
+		return createPublisher(bufferSize, overflowPolicy, callbackRegistry::onTradeEvent);
+	}
 }
-	
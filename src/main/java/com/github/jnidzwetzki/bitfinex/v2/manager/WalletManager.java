@@ -26,11 +26,18 @@ import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CalculateCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.Wallet;
+import com.github.jnidzwetzki.bitfinex.v2.util.BufferedPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 
 public class WalletManager extends AbstractManager {
 
+	/**
+	 * The callback registry
+	 */
+	private final BitfinexApiCallbackRegistry callbackRegistry;
+
 	/**
 	 * Wallets
 	 *
@@ -40,8 +47,9 @@ public class WalletManager extends AbstractManager {
 
 	public WalletManager(final BitfinexApiBroker bitfinexApiBroker, final ExecutorService executorService, BitfinexApiCallbackRegistry callbackRegistry) {
 		super(bitfinexApiBroker, executorService);
+		this.callbackRegistry = callbackRegistry;
 		this.walletTable = HashBasedTable.create();
-		callbackRegistry.onWalletsEvent(wallets -> wallets.forEach(wallet -> {
+		callbackRegistry.onWalletsEvent(callbackRegistry.unmonitored(wallets -> wallets.forEach(wallet -> {
             try {
                 Table<String, String, Wallet> walletTable = getWalletTable();
                 synchronized (walletTable) {
@@ -51,7 +59,7 @@ public class WalletManager extends AbstractManager {
             } catch (APIException e) {
                 e.printStackTrace();
             }
-        }));
+        })));
 	}
 
 	/**
@@ -111,4 +119,17 @@ public class WalletManager extends AbstractManager {
 		bitfinexApiBroker.sendCommand(new CalculateCommand("wallet_funding_" + symbol));
 	}
 
+	/**
+	 * Create a publisher for the wallet updates, the subscribers receive the items 
+	 * as requested (the publisher has to be closed after use)
+	 * @param bufferSize
+	 * @param overflowPolicy
+	 * @return
+	 */
+	public BufferedPublisher<Wallet> createWalletPublisher(final int bufferSize, 
+			final OverflowPolicy overflowPolicy) {
+		
+		return createPublisher(bufferSize, overflowPolicy, 
+				c -> callbackRegistry.onWalletsEvent(wallets -> wallets.forEach(c)));
+	}
 }
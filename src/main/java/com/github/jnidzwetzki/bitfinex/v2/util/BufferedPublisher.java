@@ -0,0 +1,393 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hot publisher with a bounded buffer per subscriber. 
+ * 
+ * The published items are buffered for each subscriber and delivered on the 
+ * executor as requested by the subscriber. When the buffer of a subscriber is 
+ * full, the overflow policy is applied:
+ * 
+ * BLOCK - the publishing thread waits until the subscriber has received an item
+ * DROP_OLDEST - the oldest buffered item is dropped
+ * CONFLATE - the newest buffered item is replaced (the subscriber receives the latest value)
+ * 
+ * Items of incremental streams (e.g. orderbook updates) can not be dropped without 
+ * corrupting the state of the subscriber. For these streams, a merge function is 
+ * given and DROP_OLDEST and CONFLATE merge the new item into the newest buffered item.
+ * 
+ * Closing the publisher removes it from its source and completes the subscribers 
+ * after their buffered items are delivered.
+ */
+public class BufferedPublisher<T> implements Flow.Publisher<T>, Closeable {
+	
+	/**
+	 * The buffer size per subscriber
+	 */
+	private final int bufferSize;
+	
+	/**
+	 * The overflow policy
+	 */
+	private final OverflowPolicy overflowPolicy;
+	
+	/**
+	 * The executor for the deliveries
+	 */
+	private final Executor executor;
+	
+	/**
+	 * The merge function for full buffers (null if items are dropped)
+	 */
+	private final BinaryOperator<T> mergeFunction;
+	
+	/**
+	 * The subscriptions
+	 */
+	private final AtomicReference<CallbackArray<BufferedSubscription>> subscriptions;
+	
+	/**
+	 * The number of dropped or replaced items
+	 */
+	private final AtomicLong droppedItems;
+	
+	/**
+	 * The registration at the source of the items
+	 */
+	private volatile Closeable source;
+	
+	/**
+	 * Is the publisher closed
+	 */
+	private volatile boolean closed;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(BufferedPublisher.class);
+	
+	public BufferedPublisher(final int bufferSize, final OverflowPolicy overflowPolicy, 
+			final Executor executor) {
+		
+		this(bufferSize, overflowPolicy, executor, null);
+	}
+	
+	public BufferedPublisher(final int bufferSize, final OverflowPolicy overflowPolicy, 
+			final Executor executor, final BinaryOperator<T> mergeFunction) {
+		
+		if(bufferSize < 1) {
+			throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+		}
+		
+		this.bufferSize = bufferSize;
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+		this.executor = Objects.requireNonNull(executor);
+		this.mergeFunction = mergeFunction;
+		this.subscriptions = new AtomicReference<>(CallbackArray.empty());
+		this.droppedItems = new AtomicLong();
+	}
+	
+	@Override
+	public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber);
+		
+		final BufferedSubscription subscription = new BufferedSubscription(subscriber);
+		subscriptions.updateAndGet(array -> array.with(subscription));
+		subscriber.onSubscribe(subscription);
+		
+		// Closed during the subscription
+		if(closed) {
+			subscription.complete();
+		}
+	}
+	
+	/**
+	 * Publish the item to all subscribers
+	 * @param item
+	 */
+	public void publish(final T item) {
+		if(closed) {
+			return;
+		}
+		
+		final CallbackArray<BufferedSubscription> subscriptionArray = subscriptions.get();
+		
+		for(int i = 0; i < subscriptionArray.size(); i++) {
+			subscriptionArray.get(i).offer(item);
+		}
+	}
+	
+	/**
+	 * Set the registration at the source of the items, it is closed with the publisher
+	 * @param source
+	 */
+	public void setSource(final Closeable source) {
+		this.source = source;
+	}
+	
+	/**
+	 * Get the number of dropped, replaced or merged items
+	 * @return
+	 */
+	public long getDroppedItems() {
+		return droppedItems.get();
+	}
+	
+	/**
+	 * Get the number of subscribers
+	 * @return
+	 */
+	public int getNumberOfSubscribers() {
+		return subscriptions.get().size();
+	}
+	
+	@Override
+	public void close() {
+		if(closed) {
+			return;
+		}
+		
+		closed = true;
+		
+		if(source != null) {
+			try {
+				source.close();
+			} catch (IOException e) {
+				logger.error("Unable to close the source of the publisher", e);
+			}
+		}
+		
+		final CallbackArray<BufferedSubscription> subscriptionArray = subscriptions.get();
+		
+		for(int i = 0; i < subscriptionArray.size(); i++) {
+			subscriptionArray.get(i).complete();
+		}
+	}
+	
+	private class BufferedSubscription implements Flow.Subscription, Runnable {
+		
+		/**
+		 * The subscriber
+		 */
+		private final Flow.Subscriber<? super T> subscriber;
+		
+		/**
+		 * The buffered items (guarded by this)
+		 */
+		private final ArrayDeque<T> buffer;
+		
+		/**
+		 * The requested and not delivered items
+		 */
+		private final AtomicLong requested;
+		
+		/**
+		 * The pending drain requests, only one drain runs at a time
+		 */
+		private final AtomicInteger pendingDrains;
+		
+		/**
+		 * Is the subscription cancelled or terminated
+		 */
+		private volatile boolean cancelled;
+		
+		/**
+		 * Is the publisher completed
+		 */
+		private volatile boolean completed;
+		
+		/**
+		 * The error of a invalid request
+		 */
+		private volatile Throwable error;
+		
+		public BufferedSubscription(final Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+			this.buffer = new ArrayDeque<>();
+			this.requested = new AtomicLong();
+			this.pendingDrains = new AtomicInteger();
+		}
+
+		/**
+		 * Buffer the item and schedule the delivery
+		 * @param item
+		 */
+		public void offer(final T item) {
+			synchronized (this) {
+				if(! cancelled && buffer.size() >= bufferSize && isMerging()) {
+					buffer.addLast(mergeFunction.apply(buffer.pollLast(), item));
+					droppedItems.incrementAndGet();
+					return;
+				}
+				
+				while(! cancelled && buffer.size() >= bufferSize) {
+					if(overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+						buffer.pollFirst();
+						droppedItems.incrementAndGet();
+					} else if(overflowPolicy == OverflowPolicy.CONFLATE) {
+						buffer.pollLast();
+						droppedItems.incrementAndGet();
+					} else {
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							droppedItems.incrementAndGet();
+							return;
+						}
+					}
+				}
+				
+				if(cancelled) {
+					return;
+				}
+				
+				buffer.addLast(item);
+			}
+			
+			scheduleDrain();
+		}
+		
+		/**
+		 * Are the items merged when the buffer is full
+		 * @return
+		 */
+		private boolean isMerging() {
+			return mergeFunction != null && overflowPolicy != OverflowPolicy.BLOCK;
+		}
+		
+		@Override
+		public void request(final long n) {
+			if(n <= 0) {
+				error = new IllegalArgumentException("Invalid request: " + n);
+			} else {
+				requested.accumulateAndGet(n, (current, add) -> {
+					final long sum = current + add;
+					return sum < 0 ? Long.MAX_VALUE : sum;
+				});
+			}
+			
+			scheduleDrain();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				cancelled = true;
+				buffer.clear();
+				notifyAll();
+			}
+			
+			subscriptions.updateAndGet(array -> array.without(this));
+		}
+		
+		/**
+		 * Complete the subscription after the buffered items
+		 */
+		public void complete() {
+			completed = true;
+			scheduleDrain();
+		}
+		
+		/**
+		 * Schedule the delivery of the buffered items
+		 */
+		private void scheduleDrain() {
+			if(pendingDrains.getAndIncrement() == 0) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			int missedDrains = 1;
+			
+			do {
+				drain();
+				missedDrains = pendingDrains.addAndGet(-missedDrains);
+			} while(missedDrains != 0);
+		}
+		
+		/**
+		 * Deliver the requested items and the terminal signals
+		 */
+		private void drain() {
+			if(cancelled) {
+				return;
+			}
+			
+			if(error != null) {
+				cancel();
+				subscriber.onError(error);
+				return;
+			}
+			
+			while(requested.get() > 0) {
+				final T item;
+				
+				synchronized (this) {
+					item = buffer.pollFirst();
+					
+					if(item != null) {
+						notifyAll();
+					}
+				}
+				
+				if(item == null || cancelled) {
+					break;
+				}
+				
+				if(requested.get() != Long.MAX_VALUE) {
+					requested.decrementAndGet();
+				}
+				
+				try {
+					subscriber.onNext(item);
+				} catch(Exception e) {
+					logger.error("Got exception in subscriber, cancel the subscription", e);
+					cancel();
+					return;
+				}
+			}
+			
+			final boolean bufferEmpty;
+			synchronized (this) {
+				bufferEmpty = buffer.isEmpty();
+			}
+			
+			if(completed && bufferEmpty && ! cancelled) {
+				cancel();
+				subscriber.onComplete();
+			}
+		}
+	}
+}
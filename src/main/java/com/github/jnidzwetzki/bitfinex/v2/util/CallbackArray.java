@@ -0,0 +1,139 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.Arrays;
+
+/**
+ * A immutable array of callbacks. 
+ * 
+ * Modifications create a new array (copy on write), so the callbacks can be 
+ * iterated by index without locks and without allocating a iterator:
+ * 
+ * for(int i = 0; i < callbacks.size(); i++) {
+ *     callbacks.get(i).accept(event);
+ * }
+ */
+public final class CallbackArray<C> {
+
+	/**
+	 * The empty array
+	 */
+	private final static CallbackArray<Object> EMPTY = new CallbackArray<>(new Object[0]);
+	
+	/**
+	 * The callbacks
+	 */
+	private final Object[] callbacks;
+	
+	private CallbackArray(final Object[] callbacks) {
+		this.callbacks = callbacks;
+	}
+	
+	/**
+	 * Get the empty array
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <C> CallbackArray<C> empty() {
+		return (CallbackArray<C>) EMPTY;
+	}
+	
+	/**
+	 * Get a array with the additional callback
+	 * @param callback
+	 * @return
+	 */
+	public CallbackArray<C> with(final C callback) {
+		if(callback == null) {
+			throw new IllegalArgumentException("The callback is null");
+		}
+		
+		final Object[] newCallbacks = Arrays.copyOf(callbacks, callbacks.length + 1);
+		newCallbacks[callbacks.length] = callback;
+		return new CallbackArray<>(newCallbacks);
+	}
+	
+	/**
+	 * Get a array without the first occurrence of the callback
+	 * @param callback
+	 * @return the new array or this array if the callback is not contained
+	 */
+	public CallbackArray<C> without(final Object callback) {
+		final int pos = indexOf(callback);
+		
+		if(pos == -1) {
+			return this;
+		}
+		
+		if(callbacks.length == 1) {
+			return empty();
+		}
+		
+		final Object[] newCallbacks = new Object[callbacks.length - 1];
+		System.arraycopy(callbacks, 0, newCallbacks, 0, pos);
+		System.arraycopy(callbacks, pos + 1, newCallbacks, pos, callbacks.length - pos - 1);
+		return new CallbackArray<>(newCallbacks);
+	}
+	
+	/**
+	 * Get the position of the callback
+	 * @param callback
+	 * @return the position or -1
+	 */
+	public int indexOf(final Object callback) {
+		for(int pos = 0; pos < callbacks.length; pos++) {
+			if(callbacks[pos].equals(callback)) {
+				return pos;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Get the callback at the position
+	 * @param pos
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public C get(final int pos) {
+		return (C) callbacks[pos];
+	}
+	
+	/**
+	 * Get the number of callbacks
+	 * @return
+	 */
+	public int size() {
+		return callbacks.length;
+	}
+	
+	/**
+	 * Is the array empty
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return callbacks.length == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "CallbackArray [callbacks=" + Arrays.toString(callbacks) + "]";
+	}
+}
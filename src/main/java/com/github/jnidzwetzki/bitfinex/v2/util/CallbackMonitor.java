@@ -0,0 +1,295 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times the callback invocations and detects slow consumers. 
+ * 
+ * Each consumer has its own latency histogram. Invocations that exceed the budget 
+ * are counted as slow, a consumer with too many slow invocations within the window 
+ * of its last invocations is quarantined: the callback managers skip it until it is 
+ * released. Slow invocations leave the window when the consumer is fast again.
+ */
+public class CallbackMonitor {
+	
+	/**
+	 * The budget of one invocation
+	 */
+	private final long budgetNanos;
+	
+	/**
+	 * The default number of invocations in the window
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 100;
+	
+	/**
+	 * The number of slow invocations in the window until a consumer is quarantined (0 = never)
+	 */
+	private final int quarantineThreshold;
+	
+	/**
+	 * The number of invocations in the window
+	 */
+	private final int windowSize;
+	
+	/**
+	 * The statistics per consumer
+	 */
+	private final Map<Object, ConsumerStatistics> statistics;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(CallbackMonitor.class);
+	
+	/**
+	 * Create a monitor that only reports slow consumers
+	 * @param budget
+	 * @param timeUnit
+	 */
+	public CallbackMonitor(final long budget, final TimeUnit timeUnit) {
+		this(budget, timeUnit, 0);
+	}
+	
+	public CallbackMonitor(final long budget, final TimeUnit timeUnit, final int quarantineThreshold) {
+		this(budget, timeUnit, quarantineThreshold, DEFAULT_WINDOW_SIZE);
+	}
+	
+	/**
+	 * Create a monitor that quarantines consumers with quarantineThreshold slow 
+	 * invocations within their last windowSize invocations
+	 * @param budget
+	 * @param timeUnit
+	 * @param quarantineThreshold
+	 * @param windowSize
+	 */
+	public CallbackMonitor(final long budget, final TimeUnit timeUnit, final int quarantineThreshold, 
+			final int windowSize) {
+		
+		if(budget <= 0) {
+			throw new IllegalArgumentException("Invalid budget: " + budget);
+		}
+		
+		if(windowSize <= 0) {
+			throw new IllegalArgumentException("Invalid window size: " + windowSize);
+		}
+		
+		if(quarantineThreshold < 0 || quarantineThreshold > windowSize) {
+			throw new IllegalArgumentException("Invalid quarantine threshold: " + quarantineThreshold);
+		}
+		
+		this.budgetNanos = timeUnit.toNanos(budget);
+		this.quarantineThreshold = quarantineThreshold;
+		this.windowSize = windowSize;
+		this.statistics = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Get the statistics of the consumer
+	 * @param consumer
+	 * @return
+	 */
+	public ConsumerStatistics getStatistics(final Object consumer) {
+		final ConsumerStatistics consumerStatistics = statistics.get(consumer);
+		
+		if(consumerStatistics != null) {
+			return consumerStatistics;
+		}
+		
+		return statistics.computeIfAbsent(consumer, c -> new ConsumerStatistics(c.toString(), windowSize));
+	}
+	
+	/**
+	 * Get the statistics of all consumers
+	 * @return
+	 */
+	public Map<Object, ConsumerStatistics> getStatistics() {
+		return Collections.unmodifiableMap(statistics);
+	}
+	
+	/**
+	 * Record the latency of a invocation
+	 * @param consumerStatistics
+	 * @param nanos
+	 */
+	public void record(final ConsumerStatistics consumerStatistics, final long nanos) {
+		consumerStatistics.histogram.record(nanos);
+		
+		final boolean slow = nanos > budgetNanos;
+		
+		if(slow && consumerStatistics.slowInvocations.incrementAndGet() == 1) {
+			logger.warn("Callback {} exceeded the budget of {} ns: {} ns", 
+					consumerStatistics.name, budgetNanos, nanos);
+		}
+		
+		if(quarantineThreshold == 0) {
+			return;
+		}
+		
+		final int slowInvocationsInWindow = consumerStatistics.recordInWindow(slow);
+		
+		if(slowInvocationsInWindow >= quarantineThreshold && ! consumerStatistics.quarantined) {
+			consumerStatistics.quarantined = true;
+			logger.error("Quarantine callback {} after {} slow of the last {} invocations ({})", 
+					consumerStatistics.name, slowInvocationsInWindow, windowSize, consumerStatistics.histogram);
+		}
+	}
+	
+	/**
+	 * Release a quarantined consumer
+	 * @param consumer
+	 */
+	public void release(final Object consumer) {
+		final ConsumerStatistics consumerStatistics = statistics.get(consumer);
+		
+		if(consumerStatistics == null) {
+			return;
+		}
+		
+		consumerStatistics.slowInvocations.set(0);
+		consumerStatistics.clearWindow();
+		consumerStatistics.quarantined = false;
+	}
+	
+	/**
+	 * Drop the statistics of a removed consumer
+	 * @param consumer
+	 */
+	public void remove(final Object consumer) {
+		statistics.remove(consumer);
+	}
+	
+	/**
+	 * Get the budget of one invocation in nanoseconds
+	 * @return
+	 */
+	public long getBudgetNanos() {
+		return budgetNanos;
+	}
+	
+	public static class ConsumerStatistics {
+		
+		/**
+		 * The name of the consumer
+		 */
+		private final String name;
+		
+		/**
+		 * The latencies
+		 */
+		private final LatencyHistogram histogram;
+		
+		/**
+		 * The invocations that exceeded the budget
+		 */
+		private final AtomicLong slowInvocations;
+		
+		/**
+		 * Is the consumer quarantined
+		 */
+		private volatile boolean quarantined;
+		
+		/**
+		 * The slow flags of the last invocations (ring buffer)
+		 */
+		private final boolean[] window;
+		
+		/**
+		 * The next position in the window
+		 */
+		private int windowPosition;
+		
+		/**
+		 * The slow invocations in the window
+		 */
+		private int slowInvocationsInWindow;
+		
+		private ConsumerStatistics(final String name, final int windowSize) {
+			this.name = name;
+			this.histogram = new LatencyHistogram();
+			this.slowInvocations = new AtomicLong();
+			this.window = new boolean[windowSize];
+		}
+		
+		/**
+		 * Record the invocation in the window, the oldest invocation leaves the window
+		 * @param slow
+		 * @return the slow invocations in the window
+		 */
+		private synchronized int recordInWindow(final boolean slow) {
+			if(window[windowPosition]) {
+				slowInvocationsInWindow--;
+			}
+			
+			window[windowPosition] = slow;
+			
+			if(slow) {
+				slowInvocationsInWindow++;
+			}
+			
+			windowPosition = (windowPosition + 1) % window.length;
+			
+			return slowInvocationsInWindow;
+		}
+		
+		/**
+		 * Remove all invocations from the window
+		 */
+		private synchronized void clearWindow() {
+			Arrays.fill(window, false);
+			windowPosition = 0;
+			slowInvocationsInWindow = 0;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public LatencyHistogram getHistogram() {
+			return histogram;
+		}
+		
+		public long getSlowInvocations() {
+			return slowInvocations.get();
+		}
+		
+		public synchronized int getSlowInvocationsInWindow() {
+			return slowInvocationsInWindow;
+		}
+		
+		public boolean isQuarantined() {
+			return quarantined;
+		}
+
+		@Override
+		public String toString() {
+			return "ConsumerStatistics [name=" + name + ", histogram=" + histogram + ", slowInvocations="
+					+ slowInvocations + ", quarantined=" + quarantined + "]";
+		}
+	}
+}
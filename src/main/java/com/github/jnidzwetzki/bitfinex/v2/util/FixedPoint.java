@@ -0,0 +1,140 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Helper for fixed point values. A fixed point value is a long that
+ * is scaled by 10^scale (e.g. 6359.5 with scale 8 is stored as 635950000000).
+ *
+ */
+public class FixedPoint {
+
+	/**
+	 * The scale of values that are not stored as fixed point values
+	 */
+	public final static int NO_SCALE = -1;
+	
+	/**
+	 * The max supported scale
+	 */
+	public final static int MAX_SCALE = 18;
+	
+	/**
+	 * Marker for missing values (e.g. the price of a funding trade)
+	 */
+	public final static long NULL_VALUE = Long.MIN_VALUE;
+	
+	/**
+	 * The powers of ten that fit into a long
+	 */
+	private final static long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+	
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+	
+	private FixedPoint() {
+		// Utility class
+	}
+	
+	/**
+	 * Convert the BigDecimal into a fixed point value
+	 * @param value
+	 * @param scale
+	 * @return
+	 * @throws ArithmeticException if the value can not be represented without loss
+	 */
+	public static long toFixedPoint(final BigDecimal value, final int scale) {
+		if(value == null) {
+			return NULL_VALUE;
+		}
+		
+		return value.setScale(scale).unscaledValue().longValueExact();
+	}
+	
+	/**
+	 * Convert the unscaled value with the given scale into a fixed point value
+	 * @param unscaledValue
+	 * @param valueScale
+	 * @param scale
+	 * @return
+	 * @throws ArithmeticException if the value can not be represented without loss
+	 */
+	public static long toFixedPoint(final long unscaledValue, final int valueScale, final int scale) {
+		if(valueScale == scale) {
+			return unscaledValue;
+		}
+		
+		if(valueScale < scale) {
+			final int shift = scale - valueScale;
+			
+			if(shift > MAX_SCALE) {
+				return unscaledValue == 0 ? 0 : toFixedPoint(BigDecimal.valueOf(unscaledValue, valueScale), scale);
+			}
+			
+			return Math.multiplyExact(unscaledValue, POWERS_OF_TEN[shift]);
+		}
+
+		final int shift = valueScale - scale;
+		
+		if(shift > MAX_SCALE || unscaledValue % POWERS_OF_TEN[shift] != 0) {
+			return toFixedPoint(BigDecimal.valueOf(unscaledValue, valueScale), scale);
+		}
+		
+		return unscaledValue / POWERS_OF_TEN[shift];
+	}
+	
+	/**
+	 * Convert the fixed point value into a BigDecimal
+	 * @param value
+	 * @param scale
+	 * @return the BigDecimal or null for NULL_VALUE
+	 */
+	public static BigDecimal toBigDecimal(final long value, final int scale) {
+		if(value == NULL_VALUE) {
+			return null;
+		}
+		
+		return BigDecimal.valueOf(value, scale);
+	}
+	
+	/**
+	 * Ensure the scale is supported
+	 * @param scale
+	 */
+	public static void checkScale(final int scale) {
+		if(scale < 0 || scale > MAX_SCALE) {
+			throw new IllegalArgumentException("Scale needs to be between 0 and " + MAX_SCALE + ": " + scale);
+		}
+	}
+	
+	/**
+	 * Ensure the value is a fixed point value
+	 * @param scale
+	 */
+	public static void checkFixedPoint(final int scale) {
+		if(scale == NO_SCALE) {
+			throw new IllegalStateException("The value is not decoded as fixed point value");
+		}
+	}
+}
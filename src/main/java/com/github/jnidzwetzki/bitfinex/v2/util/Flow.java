@@ -0,0 +1,91 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+/**
+ * The reactive streams interfaces of java.util.concurrent.Flow (Java 9). 
+ * 
+ * The library is compiled for Java 8, so the interfaces are declared here with 
+ * the same methods and contracts. Adapters for the JDK interfaces or for other 
+ * reactive streams libraries only need to delegate the calls.
+ */
+public final class Flow {
+
+	private Flow() {
+		
+	}
+	
+	/**
+	 * A producer of items that are received by subscribers
+	 */
+	@FunctionalInterface
+	public interface Publisher<T> {
+		
+		/**
+		 * Add the subscriber, the publisher calls onSubscribe() before any other method
+		 * @param subscriber
+		 */
+		public void subscribe(final Subscriber<? super T> subscriber);
+	}
+	
+	/**
+	 * A receiver of items
+	 */
+	public interface Subscriber<T> {
+		
+		/**
+		 * Called before any other method of the subscription
+		 * @param subscription
+		 */
+		public void onSubscribe(final Subscription subscription);
+		
+		/**
+		 * Called with the next item (at most the requested number of items)
+		 * @param item
+		 */
+		public void onNext(final T item);
+		
+		/**
+		 * Called on a unrecoverable error, no other method is called afterwards
+		 * @param throwable
+		 */
+		public void onError(final Throwable throwable);
+		
+		/**
+		 * Called when no more items will be delivered
+		 */
+		public void onComplete();
+	}
+	
+	/**
+	 * The link between a publisher and a subscriber
+	 */
+	public interface Subscription {
+		
+		/**
+		 * Request n more items (n > 0)
+		 * @param n
+		 */
+		public void request(final long n);
+		
+		/**
+		 * Stop receiving items
+		 */
+		public void cancel();
+	}
+}
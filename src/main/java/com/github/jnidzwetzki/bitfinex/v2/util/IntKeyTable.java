@@ -0,0 +1,343 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * A table indexed by a non negative int key (e.g. the channel id)
+ *
+ * Lookups do not lock. Keys up to MAX_DENSE_KEY are stored in an array that is sized
+ * by the stored keys and grows geometrically, bigger keys are stored in an open
+ * addressing table on int keys. Both are modified in place, only a resize copies
+ * the values and publishes the new version.
+ */
+public class IntKeyTable<V> {
+
+    /**
+     * The initial size of the array
+     */
+    private static final int INITIAL_SIZE = 64;
+
+    /**
+     * The biggest key that is stored in the array
+     */
+    private static final int MAX_DENSE_KEY = (1 << 14) - 1;
+
+    /**
+     * The initial size of the overflow table
+     */
+    private static final int INITIAL_OVERFLOW_SIZE = 16;
+
+    /**
+     * The marker of an unused slot in the overflow table
+     */
+    private static final int EMPTY_KEY = -1;
+
+    /**
+     * The values indexed by key
+     */
+    private volatile AtomicReferenceArray<V> values = new AtomicReferenceArray<>(INITIAL_SIZE);
+
+    /**
+     * The values with a key above MAX_DENSE_KEY
+     */
+    private volatile OverflowTable<V> overflow = new OverflowTable<>(INITIAL_OVERFLOW_SIZE);
+
+    /**
+     * The amount of stored values
+     */
+    private int size;
+
+    /**
+     * Get the value for the key
+     * @param key
+     * @return the value or null
+     */
+    public V get(final int key) {
+        final AtomicReferenceArray<V> table = values;
+
+        if (key >= 0 && key < table.length()) {
+            return table.get(key);
+        }
+
+        if (key > MAX_DENSE_KEY) {
+            return overflow.get(key);
+        }
+
+        return null;
+    }
+
+    /**
+     * Store the value for the key
+     * @param key
+     * @param value
+     * @return the previous value or null
+     */
+    public synchronized V put(final int key, final V value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Invalid key: " + key);
+        }
+
+        final V oldValue;
+
+        if (key > MAX_DENSE_KEY) {
+            if (overflow.isFull()) {
+                overflow = overflow.resize();
+            }
+
+            oldValue = overflow.put(key, value);
+        } else {
+            if (key >= values.length()) {
+                values = grow(values, key);
+            }
+
+            oldValue = values.getAndSet(key, value);
+        }
+
+        if (oldValue == null) {
+            size++;
+        }
+
+        return oldValue;
+    }
+
+    /**
+     * Remove the value of the key
+     * @param key
+     * @return the removed value or null
+     */
+    public synchronized V remove(final int key) {
+        final V oldValue;
+
+        if (key > MAX_DENSE_KEY) {
+            oldValue = overflow.remove(key);
+        } else if (key >= 0 && key < values.length()) {
+            oldValue = values.getAndSet(key, null);
+        } else {
+            return null;
+        }
+
+        if (oldValue != null) {
+            size--;
+        }
+
+        return oldValue;
+    }
+
+    /**
+     * Remove all values
+     */
+    public synchronized void clear() {
+        values = new AtomicReferenceArray<>(INITIAL_SIZE);
+        overflow = new OverflowTable<>(INITIAL_OVERFLOW_SIZE);
+        size = 0;
+    }
+
+    /**
+     * Get a copy of all stored values
+     * @return
+     */
+    public synchronized Map<Integer, V> snapshot() {
+        final Map<Integer, V> result = new HashMap<>();
+        final AtomicReferenceArray<V> table = values;
+
+        for (int key = 0; key < table.length(); key++) {
+            final V value = table.get(key);
+
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+
+        overflow.forEach(result::put);
+        return result;
+    }
+
+    /**
+     * Get the amount of stored values
+     * @return
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Copy the array into an array that can store the key (at least twice the size)
+     * @param table
+     * @param key
+     * @return
+     */
+    private static <V> AtomicReferenceArray<V> grow(final AtomicReferenceArray<V> table, final int key) {
+        final int newLength = Math.min(Integer.highestOneBit(key) << 1, MAX_DENSE_KEY + 1);
+        final AtomicReferenceArray<V> newTable = new AtomicReferenceArray<>(newLength);
+
+        for (int i = 0; i < table.length(); i++) {
+            newTable.lazySet(i, table.get(i));
+        }
+
+        return newTable;
+    }
+
+    /**
+     * Open addressing table with linear probing. The slots of removed keys keep the key
+     * (with a null value) until the next resize, so the probe sequences stay intact. The
+     * value of a slot is written before the key, a reader that sees the key sees the value.
+     */
+    private static final class OverflowTable<V> {
+
+        /**
+         * The keys of the slots
+         */
+        private final AtomicIntegerArray keys;
+
+        /**
+         * The values of the slots
+         */
+        private final AtomicReferenceArray<V> values;
+
+        /**
+         * The mask for the slot index
+         */
+        private final int mask;
+
+        /**
+         * The amount of used slots (including removed keys), guarded by the table
+         */
+        private int usedSlots;
+
+        private OverflowTable(final int capacity) {
+            this.keys = new AtomicIntegerArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+
+            for (int i = 0; i < capacity; i++) {
+                keys.lazySet(i, EMPTY_KEY);
+            }
+        }
+
+        /**
+         * Get the value of the key
+         * @param key
+         * @return the value or null
+         */
+        private V get(final int key) {
+            final int slot = findSlot(key);
+            return keys.get(slot) == key ? values.get(slot) : null;
+        }
+
+        /**
+         * Store the value of the key, the table must not be full
+         * @param key
+         * @param value
+         * @return the previous value or null
+         */
+        private V put(final int key, final V value) {
+            final int slot = findSlot(key);
+
+            if (keys.get(slot) == key) {
+                return values.getAndSet(slot, value);
+            }
+
+            values.set(slot, value);
+            keys.set(slot, key);
+            usedSlots++;
+            return null;
+        }
+
+        /**
+         * Remove the value of the key
+         * @param key
+         * @return the removed value or null
+         */
+        private V remove(final int key) {
+            final int slot = findSlot(key);
+            return keys.get(slot) == key ? values.getAndSet(slot, null) : null;
+        }
+
+        /**
+         * Is the load factor of 0.5 reached with the next key
+         * @return
+         */
+        private boolean isFull() {
+            return (usedSlots + 1) * 2 > keys.length();
+        }
+
+        /**
+         * Copy the stored values into a new table, sized for the stored values
+         * @return
+         */
+        private OverflowTable<V> resize() {
+            int storedValues = 0;
+
+            for (int slot = 0; slot < keys.length(); slot++) {
+                if (values.get(slot) != null) {
+                    storedValues++;
+                }
+            }
+
+            int capacity = INITIAL_OVERFLOW_SIZE;
+
+            while (capacity < (storedValues + 1) * 4) {
+                capacity <<= 1;
+            }
+
+            final OverflowTable<V> newTable = new OverflowTable<>(capacity);
+            forEach(newTable::put);
+            return newTable;
+        }
+
+        /**
+         * Pass all stored values to the consumer
+         * @param consumer
+         */
+        private void forEach(final BiConsumer<Integer, V> consumer) {
+            for (int slot = 0; slot < keys.length(); slot++) {
+                final V value = values.get(slot);
+
+                if (value != null) {
+                    consumer.accept(keys.get(slot), value);
+                }
+            }
+        }
+
+        /**
+         * Get the slot of the key, or the empty slot that ends its probe sequence
+         * @param key
+         * @return
+         */
+        private int findSlot(final int key) {
+            final int hash = key * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+
+            while (true) {
+                final int storedKey = keys.get(slot);
+
+                if (storedKey == key || storedKey == EMPTY_KEY) {
+                    return slot;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+}
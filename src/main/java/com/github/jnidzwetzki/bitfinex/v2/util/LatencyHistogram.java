@@ -0,0 +1,140 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free latency histogram with power of two buckets. 
+ * 
+ * The bucket i counts the values between 2^i and 2^(i+1)-1 nanoseconds, the 
+ * percentiles are reported as the upper bound of their bucket (at most 
+ * the maximal recorded value).
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The number of buckets
+	 */
+	private final static int BUCKETS = 64;
+	
+	/**
+	 * The buckets
+	 */
+	private final AtomicLongArray buckets;
+	
+	/**
+	 * The number of recorded values
+	 */
+	private final AtomicLong count;
+	
+	/**
+	 * The sum of the recorded values
+	 */
+	private final AtomicLong totalNanos;
+	
+	/**
+	 * The biggest recorded value
+	 */
+	private final AtomicLong maxNanos;
+	
+	public LatencyHistogram() {
+		this.buckets = new AtomicLongArray(BUCKETS);
+		this.count = new AtomicLong();
+		this.totalNanos = new AtomicLong();
+		this.maxNanos = new AtomicLong();
+	}
+	
+	/**
+	 * Record a latency
+	 * @param nanos
+	 */
+	public void record(final long nanos) {
+		final long value = Math.max(nanos, 0);
+		buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(value, 1)));
+		count.incrementAndGet();
+		totalNanos.addAndGet(value);
+		
+		long max = maxNanos.get();
+		while(value > max && ! maxNanos.compareAndSet(max, value)) {
+			max = maxNanos.get();
+		}
+	}
+	
+	/**
+	 * Get the percentile (e.g. 0.99) in nanoseconds
+	 * @param percentile
+	 * @return
+	 */
+	public long getPercentileNanos(final double percentile) {
+		if(percentile <= 0 || percentile > 1) {
+			throw new IllegalArgumentException("Invalid percentile: " + percentile);
+		}
+		
+		final long threshold = (long) Math.ceil(count.get() * percentile);
+		
+		if(threshold == 0) {
+			return 0;
+		}
+		
+		long seenValues = 0;
+		
+		for(int bucket = 0; bucket < BUCKETS; bucket++) {
+			seenValues += buckets.get(bucket);
+			
+			if(seenValues >= threshold) {
+				final long upperBound = (bucket == BUCKETS - 1) ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1;
+				return Math.min(upperBound, maxNanos.get());
+			}
+		}
+		
+		return maxNanos.get();
+	}
+	
+	/**
+	 * Get the number of recorded values
+	 * @return
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * Get the mean latency in nanoseconds
+	 * @return
+	 */
+	public long getMeanNanos() {
+		final long values = count.get();
+		return values == 0 ? 0 : totalNanos.get() / values;
+	}
+	
+	/**
+	 * Get the biggest recorded latency in nanoseconds
+	 * @return
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + getCount() + ", meanNanos=" + getMeanNanos() 
+			+ ", p99Nanos=" + getPercentileNanos(0.99) + ", maxNanos=" + getMaxNanos() + "]";
+	}
+}
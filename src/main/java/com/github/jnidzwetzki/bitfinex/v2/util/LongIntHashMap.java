@@ -0,0 +1,244 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map (linear probing) from long keys to non negative int values. 
+ * Keys and values are stored in primitive arrays, no boxing is performed. Removed
+ * entries are compacted by backward shifting, so no tombstones are needed.
+ * 
+ * The map is not thread safe.
+ *
+ */
+public class LongIntHashMap {
+
+	/**
+	 * The value returned for missing keys
+	 */
+	public final static int NO_VALUE = -1;
+	
+	/**
+	 * The max load factor
+	 */
+	private final static double MAX_LOAD_FACTOR = 0.6;
+	
+	/**
+	 * The keys
+	 */
+	private long[] keys;
+	
+	/**
+	 * The values (NO_VALUE marks a free slot)
+	 */
+	private int[] values;
+	
+	/**
+	 * The mask for the slot index
+	 */
+	private int mask;
+	
+	/**
+	 * The number of entries
+	 */
+	private int size;
+	
+	/**
+	 * The number of entries that triggers a resize
+	 */
+	private int resizeThreshold;
+	
+	public LongIntHashMap(final int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+	
+	/**
+	 * Get the value for the key
+	 * @param key
+	 * @return the value or NO_VALUE
+	 */
+	public int get(final long key) {
+		int pos = slot(key);
+		
+		while(values[pos] != NO_VALUE) {
+			if(keys[pos] == key) {
+				return values[pos];
+			}
+			pos = (pos + 1) & mask;
+		}
+		
+		return NO_VALUE;
+	}
+	
+	/**
+	 * Put the value for the key
+	 * @param key
+	 * @param value (needs to be >= 0)
+	 * @return the old value or NO_VALUE
+	 */
+	public int put(final long key, final int value) {
+		if(value < 0) {
+			throw new IllegalArgumentException("Value needs to be >= 0: " + value);
+		}
+		
+		int pos = slot(key);
+		
+		while(values[pos] != NO_VALUE) {
+			if(keys[pos] == key) {
+				final int oldValue = values[pos];
+				values[pos] = value;
+				return oldValue;
+			}
+			pos = (pos + 1) & mask;
+		}
+		
+		keys[pos] = key;
+		values[pos] = value;
+		size++;
+		
+		if(size > resizeThreshold) {
+			resize(keys.length * 2);
+		}
+		
+		return NO_VALUE;
+	}
+	
+	/**
+	 * Remove the key
+	 * @param key
+	 * @return the old value or NO_VALUE
+	 */
+	public int remove(final long key) {
+		int pos = slot(key);
+		
+		while(values[pos] != NO_VALUE) {
+			if(keys[pos] == key) {
+				final int oldValue = values[pos];
+				shiftBack(pos);
+				size--;
+				return oldValue;
+			}
+			pos = (pos + 1) & mask;
+		}
+		
+		return NO_VALUE;
+	}
+	
+	/**
+	 * Remove all entries
+	 */
+	public void clear() {
+		Arrays.fill(values, NO_VALUE);
+		size = 0;
+	}
+	
+	/**
+	 * Get the number of entries
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Close the gap at the given position by moving back the following entries 
+	 * of the probe sequence
+	 * @param gap
+	 */
+	private void shiftBack(int gap) {
+		int pos = gap;
+		
+		while(true) {
+			pos = (pos + 1) & mask;
+			
+			if(values[pos] == NO_VALUE) {
+				break;
+			}
+			
+			final int home = slot(keys[pos]);
+			
+			// Entry can stay if its home slot is cyclically in (gap, pos]
+			final boolean stay = (gap <= pos) ? (gap < home && home <= pos) : (gap < home || home <= pos);
+			
+			if(! stay) {
+				keys[gap] = keys[pos];
+				values[gap] = values[pos];
+				gap = pos;
+			}
+		}
+		
+		values[gap] = NO_VALUE;
+	}
+	
+	/**
+	 * Resize the table
+	 * @param newCapacity
+	 */
+	private void resize(final int newCapacity) {
+		final long[] oldKeys = keys;
+		final int[] oldValues = values;
+		
+		allocate(newCapacity);
+		
+		for(int i = 0; i < oldValues.length; i++) {
+			if(oldValues[i] != NO_VALUE) {
+				int pos = slot(oldKeys[i]);
+				
+				while(values[pos] != NO_VALUE) {
+					pos = (pos + 1) & mask;
+				}
+				
+				keys[pos] = oldKeys[i];
+				values[pos] = oldValues[i];
+			}
+		}
+	}
+	
+	/**
+	 * Allocate the arrays
+	 * @param capacity
+	 */
+	private void allocate(final int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, NO_VALUE);
+		mask = capacity - 1;
+		resizeThreshold = (int) (capacity * MAX_LOAD_FACTOR);
+	}
+	
+	/**
+	 * Get the home slot of the key
+	 * @param key
+	 * @return
+	 */
+	private int slot(final long key) {
+		final long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+	
+	/**
+	 * Get the power of two table size for the expected size
+	 * @param expectedSize
+	 * @return
+	 */
+	private static int tableSizeFor(final int expectedSize) {
+		final int minCapacity = (int) Math.ceil(Math.max(expectedSize, 2) / MAX_LOAD_FACTOR);
+		return Integer.highestOneBit(minCapacity - 1) << 1;
+	}
+}
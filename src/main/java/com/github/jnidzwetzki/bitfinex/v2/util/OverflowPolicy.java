@@ -0,0 +1,39 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+public enum OverflowPolicy {
+	
+	/**
+	 * The producer waits until the slowest consumer has freed a slot
+	 */
+	BLOCK,
+	
+	/**
+	 * The producer overwrites the oldest slot, consumers that are overtaken 
+	 * skip the overwritten messages
+	 */
+	DROP_OLDEST,
+	
+	/**
+	 * Messages with a conflation key replace the pending message with the same 
+	 * key while the buffer is full, messages without a key block
+	 */
+	CONFLATE;
+	
+}
@@ -0,0 +1,455 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pre-allocated single producer / multi consumer ring buffer. 
+ * 
+ * Each consumer runs in its own thread and receives every published message 
+ * in publishing order (the consumers don't share the messages). The producer
+ * only publishes a sequence number, the consumers only publish their own 
+ * processed sequence number, no locks are used. Only the CONFLATE policy uses a 
+ * lock for the conflated messages, they are published by the producer or by a 
+ * consumer that freed up slots.
+ * 
+ * The behavior on a full buffer is defined by the OverflowPolicy, idle threads 
+ * wait according to the WaitStrategy. 
+ *
+ * @param <T>
+ */
+public class RingBuffer<T> implements Closeable {
+	
+	/**
+	 * The conflation key of messages that can not be conflated
+	 */
+	public final static long NO_CONFLATION_KEY = Long.MIN_VALUE;
+	
+	/**
+	 * The slots
+	 */
+	private final AtomicReferenceArray<T> entries;
+	
+	/**
+	 * The capacity and the index mask
+	 */
+	private final int capacity;
+	private final int mask;
+	
+	/**
+	 * The wait strategy
+	 */
+	private final WaitStrategy waitStrategy;
+	
+	/**
+	 * The overflow policy
+	 */
+	private final OverflowPolicy overflowPolicy;
+	
+	/**
+	 * The conflation key of a message (CONFLATE policy)
+	 */
+	private final ToLongFunction<T> conflationKeyFunction;
+	
+	/**
+	 * The last published sequence
+	 */
+	private final AtomicLong cursor;
+	
+	/**
+	 * The last claimed sequence (the slot may be written at the moment, DROP_OLDEST policy)
+	 */
+	private final AtomicLong claimed;
+	
+	/**
+	 * The consumers
+	 */
+	private final List<ConsumerThread> consumers;
+	
+	/**
+	 * The next sequence of the producer (guarded by the conflation lock for the CONFLATE policy)
+	 */
+	private long nextSequence;
+	
+	/**
+	 * The cached minimal consumer sequence (guarded like the next sequence)
+	 */
+	private long cachedMinimumSequence;
+	
+	/**
+	 * The conflated messages, waiting for a free slot (guarded by the conflation lock)
+	 */
+	private final Map<Long, T> conflatedMessages;
+	
+	/**
+	 * The lock of the publishing with the CONFLATE policy
+	 */
+	private final ReentrantLock conflationLock;
+	
+	/**
+	 * Are conflated messages waiting for a free slot
+	 */
+	private volatile boolean conflatedMessagesPending;
+	
+	/**
+	 * The number of conflated messages
+	 */
+	private final AtomicLong conflatedMessageCounter;
+	
+	/**
+	 * The number of dropped messages (summed up over all consumers)
+	 */
+	private final AtomicLong droppedMessageCounter;
+	
+	/**
+	 * Is the ring buffer running
+	 */
+	private volatile boolean running;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(RingBuffer.class);
+	
+	public RingBuffer(final int capacity, final WaitStrategy waitStrategy, final OverflowPolicy overflowPolicy) {
+		this(capacity, waitStrategy, overflowPolicy, m -> NO_CONFLATION_KEY);
+	}
+	
+	public RingBuffer(final int capacity, final WaitStrategy waitStrategy, final OverflowPolicy overflowPolicy, 
+			final ToLongFunction<T> conflationKeyFunction) {
+		
+		if(capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("The capacity has to be a power of two: " + capacity);
+		}
+		
+		this.entries = new AtomicReferenceArray<>(capacity);
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.waitStrategy = waitStrategy;
+		this.overflowPolicy = overflowPolicy;
+		this.conflationKeyFunction = conflationKeyFunction;
+		this.cursor = new AtomicLong(-1);
+		this.claimed = new AtomicLong(-1);
+		this.consumers = new ArrayList<>();
+		this.nextSequence = 0;
+		this.cachedMinimumSequence = -1;
+		this.conflatedMessages = new LinkedHashMap<>();
+		this.conflationLock = new ReentrantLock();
+		this.conflatedMessageCounter = new AtomicLong();
+		this.droppedMessageCounter = new AtomicLong();
+		this.running = false;
+	}
+	
+	/**
+	 * Add a consumer (has to be called before the ring buffer is started)
+	 * @param name
+	 * @param consumer
+	 */
+	public synchronized void addConsumer(final String name, final Consumer<T> consumer) {
+		if(running) {
+			throw new IllegalStateException("Unable to add a consumer to a running ring buffer");
+		}
+		
+		consumers.add(new ConsumerThread(name, consumer));
+	}
+	
+	/**
+	 * Start the consumer threads
+	 */
+	public synchronized void start() {
+		if(running) {
+			return;
+		}
+		
+		running = true;
+		
+		for(final ConsumerThread consumer : consumers) {
+			final Thread thread = new Thread(consumer, consumer.name);
+			thread.setDaemon(true);
+			consumer.thread = thread;
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Stop the consumer threads, messages that are not consumed yet are discarded
+	 */
+	@Override
+	public synchronized void close() {
+		running = false;
+		
+		for(final ConsumerThread consumer : consumers) {
+			final Thread thread = consumer.thread;
+			
+			if(thread == null || thread == Thread.currentThread()) {
+				continue;
+			}
+			
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Publish a message (must only be called by one thread)
+	 * @param message
+	 */
+	public void publish(final T message) {
+		if(overflowPolicy != OverflowPolicy.CONFLATE) {
+			publishMessage(message);
+			return;
+		}
+		
+		conflationLock.lock();
+		
+		try {
+			publishConflating(message);
+		} finally {
+			conflationLock.unlock();
+		}
+	}
+	
+	/**
+	 * Publish a message or conflate it, if the buffer is full (CONFLATE policy)
+	 * @param message
+	 */
+	private void publishConflating(final T message) {
+		if(! conflatedMessages.isEmpty()) {
+			flushConflatedMessages(false);
+		}
+		
+		if(! hasCapacity()) {
+			final long key = conflationKeyFunction.applyAsLong(message);
+			
+			if(key != NO_CONFLATION_KEY) {
+				if(conflatedMessages.put(key, message) != null) {
+					conflatedMessageCounter.incrementAndGet();
+				}
+				conflatedMessagesPending = true;
+				return;
+			}
+			
+			flushConflatedMessages(true);
+		}
+		
+		publishMessage(message);
+	}
+	
+	/**
+	 * Publish the conflated messages in the slots that are freed up by a consumer. 
+	 * The consumer does not wait for the lock, the producer publishes the messages 
+	 * otherwise.
+	 */
+	private void flushConflatedMessagesFromConsumer() {
+		if(! conflationLock.tryLock()) {
+			return;
+		}
+		
+		try {
+			flushConflatedMessages(false);
+		} finally {
+			conflationLock.unlock();
+		}
+	}
+	
+	/**
+	 * Publish the conflated messages 
+	 * @param wait - wait for free slots or publish only as many messages as slots are free
+	 */
+	private void flushConflatedMessages(final boolean wait) {
+		final Iterator<T> iterator = conflatedMessages.values().iterator();
+		
+		while(iterator.hasNext()) {
+			if(! wait && ! hasCapacity()) {
+				return;
+			}
+			
+			publishMessage(iterator.next());
+			iterator.remove();
+		}
+		
+		conflatedMessagesPending = false;
+	}
+	
+	/**
+	 * Publish the message in the next slot
+	 * @param message
+	 */
+	private void publishMessage(final T message) {
+		if(overflowPolicy != OverflowPolicy.DROP_OLDEST) {
+			while(! hasCapacity()) {
+				if(! running) {
+					droppedMessageCounter.incrementAndGet();
+					return;
+				}
+				
+				waitStrategy.idle();
+			}
+		}
+		
+		final long sequence = nextSequence++;
+		
+		if(overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+			claimed.set(sequence);
+		}
+		
+		entries.set((int) sequence & mask, message);
+		cursor.set(sequence);
+	}
+	
+	/**
+	 * Is a slot free for the next sequence
+	 * @return
+	 */
+	private boolean hasCapacity() {
+		final long wrapPoint = nextSequence - capacity;
+		
+		if(wrapPoint <= cachedMinimumSequence) {
+			return true;
+		}
+		
+		long minimumSequence = nextSequence - 1;
+		
+		for(final ConsumerThread consumer : consumers) {
+			minimumSequence = Math.min(minimumSequence, consumer.sequence.get());
+		}
+		
+		cachedMinimumSequence = minimumSequence;
+		
+		return wrapPoint <= minimumSequence;
+	}
+	
+	/**
+	 * Get the capacity of the ring buffer
+	 * @return
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Get the number of conflated (replaced) messages
+	 * @return
+	 */
+	public long getConflatedMessages() {
+		return conflatedMessageCounter.get();
+	}
+	
+	/**
+	 * Get the number of dropped messages (summed up over all consumers)
+	 * @return
+	 */
+	public long getDroppedMessages() {
+		return droppedMessageCounter.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "RingBuffer [capacity=" + capacity + ", waitStrategy=" + waitStrategy + ", overflowPolicy=" 
+				+ overflowPolicy + ", consumers=" + consumers.size() + "]";
+	}
+	
+	private class ConsumerThread implements Runnable {
+		
+		/**
+		 * The name of the consumer
+		 */
+		private final String name;
+		
+		/**
+		 * The consumer
+		 */
+		private final Consumer<T> consumer;
+		
+		/**
+		 * The last processed sequence
+		 */
+		private final AtomicLong sequence;
+		
+		/**
+		 * The thread of the consumer
+		 */
+		private Thread thread;
+		
+		ConsumerThread(final String name, final Consumer<T> consumer) {
+			this.name = name;
+			this.consumer = consumer;
+			this.sequence = new AtomicLong(-1);
+		}
+
+		@Override
+		public void run() {
+			long next = sequence.get() + 1;
+			
+			while(running) {
+				final long available = cursor.get();
+				
+				if(available < next) {
+					waitStrategy.idle();
+					continue;
+				}
+				
+				while(next <= available && running) {
+					final T message = entries.get((int) next & mask);
+					
+					// Overtaken by the producer, continue with the oldest valid slot
+					if(overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+						final long oldestSequence = claimed.get() - capacity + 1;
+						
+						if(next < oldestSequence) {
+							droppedMessageCounter.addAndGet(oldestSequence - next);
+							next = oldestSequence;
+							continue;
+						}
+					}
+					
+					try {
+						consumer.accept(message);
+					} catch(Exception e) {
+						logger.error("Got exception while consuming message {}", message, e);
+					}
+					
+					sequence.lazySet(next);
+					next++;
+				}
+				
+				if(conflatedMessagesPending) {
+					flushConflatedMessagesFromConsumer();
+				}
+			}
+		}
+	}
+}
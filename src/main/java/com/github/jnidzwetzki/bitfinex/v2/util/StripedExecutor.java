@@ -0,0 +1,160 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A executor with a fixed number of single threaded stripes. 
+ * 
+ * Tasks that are submitted with a key always run on the stripe of the key, so the 
+ * tasks of one key are executed serially and in submission order, while tasks of 
+ * different keys run in parallel. Tasks without a key are distributed round robin.
+ * 
+ * The BiConsumerCallbackManager delivers the events of a symbol as one task per 
+ * event on the stripe of the symbol, when this executor is configured.
+ */
+public class StripedExecutor extends AbstractExecutorService {
+	
+	/**
+	 * The stripes
+	 */
+	private final ExecutorService[] stripes;
+	
+	/**
+	 * The next stripe for tasks without a key
+	 */
+	private final AtomicInteger nextStripe;
+	
+	public StripedExecutor(final int numberOfStripes) {
+		this(numberOfStripes, new ThreadFactoryBuilder()
+				.setNameFormat("bitfinex-stripe-%d")
+				.setDaemon(true)
+				.build());
+	}
+	
+	public StripedExecutor(final int numberOfStripes, final ThreadFactory threadFactory) {
+		if(numberOfStripes < 1) {
+			throw new IllegalArgumentException("Invalid number of stripes: " + numberOfStripes);
+		}
+		
+		this.stripes = new ExecutorService[numberOfStripes];
+		this.nextStripe = new AtomicInteger();
+		
+		for(int i = 0; i < numberOfStripes; i++) {
+			stripes[i] = Executors.newSingleThreadExecutor(threadFactory);
+		}
+	}
+	
+	/**
+	 * Execute the task on the stripe of the key
+	 * @param key
+	 * @param task
+	 */
+	public void execute(final Object key, final Runnable task) {
+		stripes[getStripe(key)].execute(task);
+	}
+	
+	/**
+	 * Get the stripe of the key
+	 * @param key
+	 * @return
+	 */
+	public int getStripe(final Object key) {
+		final int hash = key.hashCode();
+		return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % stripes.length;
+	}
+	
+	/**
+	 * Get the number of stripes
+	 * @return
+	 */
+	public int getNumberOfStripes() {
+		return stripes.length;
+	}
+
+	@Override
+	public void execute(final Runnable task) {
+		final int stripe = (nextStripe.getAndIncrement() & Integer.MAX_VALUE) % stripes.length;
+		stripes[stripe].execute(task);
+	}
+
+	@Override
+	public void shutdown() {
+		for(final ExecutorService stripe : stripes) {
+			stripe.shutdown();
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		final List<Runnable> tasks = new ArrayList<>();
+		
+		for(final ExecutorService stripe : stripes) {
+			tasks.addAll(stripe.shutdownNow());
+		}
+		
+		return tasks;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		for(final ExecutorService stripe : stripes) {
+			if(! stripe.isShutdown()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		for(final ExecutorService stripe : stripes) {
+			if(! stripe.isTerminated()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
+	@Override
+	public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		
+		for(final ExecutorService stripe : stripes) {
+			final long remaining = deadline - System.nanoTime();
+			
+			if(! stripe.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The callbacks indexed by symbol. 
+ * 
+ * Each symbol has a immutable CallbackArray, the lookup is a lock free hash map 
+ * read. Registrations replace the array of the symbol. Symbols stay known after 
+ * their last callback is removed.
+ */
+public class SymbolCallbackIndex<S, C> {
+
+	/**
+	 * The callbacks by symbol
+	 */
+	private final Map<S, CallbackArray<C>> callbacks;
+	
+	public SymbolCallbackIndex() {
+		this.callbacks = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * Register a callback for the symbol
+	 * @param symbol
+	 * @param callback
+	 */
+	public void register(final S symbol, final C callback) {
+		callbacks.compute(symbol, (s, array) -> 
+			(array == null ? CallbackArray.<C>empty() : array).with(callback));
+	}
+	
+	/**
+	 * Remove a callback of the symbol
+	 * @param symbol
+	 * @param callback
+	 * @return
+	 */
+	public boolean remove(final S symbol, final Object callback) {
+		final boolean[] removed = new boolean[1];
+		
+		callbacks.computeIfPresent(symbol, (s, array) -> {
+			final CallbackArray<C> newArray = array.without(callback);
+			removed[0] = (newArray != array);
+			return newArray;
+		});
+		
+		return removed[0];
+	}
+	
+	/**
+	 * Get the callbacks of the symbol
+	 * @param symbol
+	 * @return the callbacks (empty if no callback is registered)
+	 */
+	public CallbackArray<C> get(final S symbol) {
+		final CallbackArray<C> array = callbacks.get(symbol);
+		
+		if(array == null) {
+			return CallbackArray.empty();
+		}
+		
+		return array;
+	}
+	
+	/**
+	 * Is the callback registered for any symbol
+	 * @param callback
+	 * @return
+	 */
+	public boolean contains(final Object callback) {
+		for(final CallbackArray<C> array : callbacks.values()) {
+			if(array.indexOf(callback) != -1) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Is the symbol known (callbacks are or were registered)
+	 * @param symbol
+	 * @return
+	 */
+	public boolean isKnownSymbol(final S symbol) {
+		return callbacks.containsKey(symbol);
+	}
+}
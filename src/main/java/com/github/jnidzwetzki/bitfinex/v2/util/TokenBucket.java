@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limiter. The bucket holds up to 'burstSize' tokens and 
+ * is refilled with 'tokensPerSecond' tokens. The time is passed by the caller 
+ * (System.nanoTime()), the instances are not thread safe.
+ */
+public class TokenBucket {
+
+	/**
+	 * The maximal number of tokens
+	 */
+	private final int burstSize;
+	
+	/**
+	 * The nanoseconds per token
+	 */
+	private final long nanosPerToken;
+	
+	/**
+	 * The time when the bucket is full again
+	 */
+	private long fullTime;
+	
+	public TokenBucket(final int burstSize, final int tokensPerSecond, final long now) {
+		
+		if(burstSize < 1) {
+			throw new IllegalArgumentException("Invalid burst size: " + burstSize);
+		}
+		
+		if(tokensPerSecond < 1) {
+			throw new IllegalArgumentException("Invalid rate: " + tokensPerSecond);
+		}
+		
+		this.burstSize = burstSize;
+		this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+		this.fullTime = now;
+	}
+	
+	/**
+	 * Take a token if available
+	 * @param now
+	 * @return
+	 */
+	public boolean tryAcquire(final long now) {
+		if(getWaitNanos(now) > 0) {
+			return false;
+		}
+		
+		// A full bucket does not collect more tokens
+		fullTime = Math.max(fullTime, now) + nanosPerToken;
+		return true;
+	}
+	
+	/**
+	 * Get the time until the next token is available
+	 * @param now
+	 * @return the wait time in nanoseconds (0 if a token is available)
+	 */
+	public long getWaitNanos(final long now) {
+		final long emptyTime = fullTime - burstSize * nanosPerToken;
+		return Math.max(0, emptyTime + nanosPerToken - now);
+	}
+	
+	/**
+	 * Get the number of available tokens
+	 * @param now
+	 * @return
+	 */
+	public int getAvailableTokens(final long now) {
+		if(now >= fullTime) {
+			return burstSize;
+		}
+		
+		return (int) Math.max(0, burstSize - (fullTime - now + nanosPerToken - 1) / nanosPerToken);
+	}
+}
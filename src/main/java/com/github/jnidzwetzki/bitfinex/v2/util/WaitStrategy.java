@@ -0,0 +1,60 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public enum WaitStrategy {
+	
+	/**
+	 * Spin on the sequence (lowest latency, burns a core per waiting thread)
+	 */
+	BUSY_SPIN,
+	
+	/**
+	 * Yield the CPU between two checks of the sequence
+	 */
+	YIELD,
+	
+	/**
+	 * Park the thread for a short time between two checks of the sequence
+	 */
+	PARK;
+	
+	/**
+	 * The park time of the PARK strategy
+	 */
+	private final static long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	
+	/**
+	 * Wait before the sequence is checked again
+	 */
+	public void idle() {
+		switch(this) {
+			case BUSY_SPIN:
+				break;
+			case YIELD:
+				Thread.yield();
+				break;
+			default:
+				LockSupport.parkNanos(PARK_NANOS);
+				break;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+
+public class CallbackRegistryTest {
+
+	/**
+	 * Test the consumers for all symbols and for one symbol
+	 * @throws IOException 
+	 */
+	@Test
+	public void testSymbolConsumers() throws IOException {
+		final BitfinexApiCallbackRegistry registry = new BitfinexApiCallbackRegistry();
+		final BitfinexTickerSymbol btcSymbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.of("BTC","USD"));
+		final BitfinexTickerSymbol ethSymbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.of("ETH","USD"));
+		
+		final List<BitfinexTickerSymbol> allEvents = new ArrayList<>();
+		final List<BitfinexTickerSymbol> btcEvents = new ArrayList<>();
+		
+		final Closeable allConsumer = registry.onTickEvent((s, t) -> allEvents.add(s));
+		final Closeable btcConsumer = registry.onTickEvent(btcSymbol, (s, t) -> btcEvents.add(s));
+		
+		registry.acceptTickEvent(btcSymbol, null);
+		registry.acceptTickEvent(ethSymbol, null);
+		registry.acceptTickEvent(new BitfinexTickerSymbol(BitfinexCurrencyPair.of("BTC","USD")), null);
+		
+		Assert.assertEquals(3, allEvents.size());
+		Assert.assertEquals(2, btcEvents.size());
+		
+		btcConsumer.close();
+		registry.acceptTickEvent(btcSymbol, null);
+		Assert.assertEquals(4, allEvents.size());
+		Assert.assertEquals(2, btcEvents.size());
+		
+		allConsumer.close();
+		registry.acceptTickEvent(btcSymbol, null);
+		Assert.assertEquals(4, allEvents.size());
+	}
+}
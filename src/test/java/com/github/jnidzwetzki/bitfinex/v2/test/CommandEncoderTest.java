@@ -0,0 +1,141 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexOrderBuilder;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CommandEncoder;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CommandException;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderType;
+
+public class CommandEncoderTest {
+
+	/**
+	 * Test the formatting of the values
+	 */
+	@Test
+	public void testValues() {
+		final CommandEncoder encoder = new CommandEncoder(4);
+		
+		encoder.beginArray();
+		encoder.value(new BigDecimal("2.0"));
+		encoder.value(new BigDecimal("0.00000015"));
+		encoder.value(new BigDecimal("-6358.12345678"));
+		encoder.value(new BigDecimal("12345678901234567.891"));
+		encoder.value(new BigDecimal("1E+3"));
+		encoder.value(BigDecimal.valueOf(12));
+		encoder.fixedPointValue(205, 2);
+		encoder.fixedPointValue(-5, 3);
+		encoder.value(Long.MIN_VALUE);
+		encoder.value(-42);
+		encoder.value("a\"b\\c\n");
+		encoder.nullValue();
+		encoder.beginObject().name("x").beginArray().endArray().name("y").value(1).endObject();
+		encoder.endArray();
+		
+		Assert.assertEquals("[\"2.0\",\"0.00000015\",\"-6358.12345678\",\"12345678901234567.891\","
+				+ "\"1000\",\"12\",\"2.05\",\"-0.005\",-9223372036854775808,-42,\"a\\\"b\\\\c\\u000a\","
+				+ "null,{\"x\":[],\"y\":1}]", encoder.toString());
+		
+		// The output is valid JSON
+		Assert.assertEquals(13, new JSONArray(encoder.toString()).length());
+		
+		// The encoder is reusable
+		encoder.reset().beginObject().name("event").value("ping").endObject();
+		Assert.assertEquals("{\"event\":\"ping\"}", encoder.toString());
+	}
+	
+	/**
+	 * Test the encoding of a order
+	 * @throws CommandException
+	 */
+	@Test
+	public void testOrderCommand() throws CommandException {
+		final BitfinexOrder order = BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BTC","USD"), 
+				BitfinexOrderType.EXCHANGE_LIMIT, new BigDecimal("-0.015")).withPrice(new BigDecimal("6421.5"))
+				.setPostOnly().withGroupId(7).build();
+		
+		final String command = new OrderCommand(order).getCommand(Mockito.mock(BitfinexApiBroker.class));
+		Assert.assertTrue(command.startsWith("[0,\"on\", null, {"));
+		Assert.assertTrue(command.endsWith("]\n"));
+		
+		final JSONObject payload = new JSONArray(command).getJSONObject(3);
+		Assert.assertEquals(order.getCid(), payload.getLong("cid"));
+		Assert.assertEquals("EXCHANGE LIMIT", payload.getString("type"));
+		Assert.assertEquals("tBTCUSD", payload.getString("symbol"));
+		Assert.assertEquals("-0.015", payload.getString("amount"));
+		Assert.assertEquals("6421.5", payload.getString("price"));
+		Assert.assertEquals(1, payload.getInt("postonly"));
+		Assert.assertEquals(7, payload.getInt("gid"));
+	}
+	
+	/**
+	 * The encoding of a order does not allocate memory (measured with the 
+	 * allocation counter of the JVM, skipped if the JVM has no counter)
+	 * @throws CommandException
+	 */
+	@Test
+	public void testOrderEncodingAllocations() throws CommandException {
+		final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		
+		Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		
+		final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported() 
+				&& allocationBean.isThreadAllocatedMemoryEnabled());
+		
+		final BitfinexOrder order = BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BTC","USD"), 
+				BitfinexOrderType.EXCHANGE_LIMIT, new BigDecimal("0.25")).withPrice(new BigDecimal("6421.5"))
+				.build();
+		
+		final OrderCommand command = new OrderCommand(order);
+		final BitfinexApiBroker broker = Mockito.mock(BitfinexApiBroker.class);
+		final CommandEncoder encoder = new CommandEncoder();
+		final int iterations = 10_000;
+		
+		// Warm up
+		for(int i = 0; i < iterations; i++) {
+			command.encode(encoder.reset(), broker);
+		}
+		
+		final long threadId = Thread.currentThread().getId();
+		final long allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+		
+		for(int i = 0; i < iterations; i++) {
+			command.encode(encoder.reset(), broker);
+		}
+		
+		final long allocatedBytes = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		
+		Assert.assertTrue("Allocated bytes per command: " + (allocatedBytes / iterations), 
+				allocatedBytes / iterations < 8);
+	}
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBrokerConfig;
+import com.github.jnidzwetzki.bitfinex.v2.CommandScheduler;
+import com.github.jnidzwetzki.bitfinex.v2.commands.AbstractAPICommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CommandClass;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderMultiCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.PingCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.UnsubscribeChannelCommand;
+
+public class CommandSchedulerTest {
+
+	/**
+	 * The executor of the scheduler
+	 */
+	private ScheduledExecutorService executor;
+	
+	/**
+	 * The sent commands
+	 */
+	private BlockingQueue<AbstractAPICommand> sentCommands;
+	
+	/**
+	 * Blocks the executor until the commands are queued
+	 */
+	private CountDownLatch executorLatch;
+	
+	@Before
+	public void before() {
+		executor = Executors.newSingleThreadScheduledExecutor();
+		sentCommands = new LinkedBlockingQueue<>();
+		executorLatch = new CountDownLatch(1);
+		
+		executor.execute(() -> {
+			try {
+				executorLatch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+	
+	@After
+	public void after() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Order operations are sent before control commands and subscriptions, 
+	 * queued order operations are coalesced
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testPriorityAndCoalescing() throws InterruptedException {
+		final BitfinexApiBrokerConfig config = new BitfinexApiBrokerConfig();
+		config.setCommandCoalescingActive(true);
+		
+		final CommandScheduler scheduler = new CommandScheduler(executor, sentCommands::add, config);
+		
+		final UnsubscribeChannelCommand unsubscribe = new UnsubscribeChannelCommand(1);
+		final PingCommand ping = new PingCommand();
+		
+		scheduler.submit(unsubscribe);
+		scheduler.submit(ping);
+		scheduler.submit(new CancelOrderCommand(1));
+		scheduler.submit(new CancelOrderCommand(2));
+		scheduler.submit(new CancelOrderCommand(3));
+		
+		Assert.assertEquals(3, scheduler.getQueueDepth(CommandClass.ORDER));
+		Assert.assertEquals(1, scheduler.getQueueDepth(CommandClass.SUBSCRIPTION));
+		executorLatch.countDown();
+		
+		final AbstractAPICommand first = sentCommands.take();
+		Assert.assertTrue(first instanceof OrderMultiCommand);
+		Assert.assertEquals(3, ((OrderMultiCommand) first).getOperations().size());
+		Assert.assertSame(ping, sentCommands.take());
+		Assert.assertSame(unsubscribe, sentCommands.take());
+		
+		Assert.assertEquals(3, scheduler.getCoalescedCommands());
+		Assert.assertEquals(3, scheduler.getWaitTimes(CommandClass.ORDER).getCount());
+		Assert.assertEquals(0, scheduler.getQueueDepth(CommandClass.ORDER));
+	}
+	
+	/**
+	 * The commands are delayed by the rate limit of their class
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testRateLimit() throws InterruptedException {
+		final BitfinexApiBrokerConfig config = new BitfinexApiBrokerConfig();
+		config.setCommandRateLimit(CommandClass.SUBSCRIPTION, 1, 20);
+		config.setCommandCoalescingActive(false);
+		
+		final CommandScheduler scheduler = new CommandScheduler(executor, sentCommands::add, config);
+		
+		scheduler.submit(new UnsubscribeChannelCommand(1));
+		scheduler.submit(new UnsubscribeChannelCommand(2));
+		scheduler.submit(new CancelOrderCommand(1));
+		scheduler.submit(new CancelOrderCommand(2));
+		executorLatch.countDown();
+		
+		// The order operations are not coalesced and not limited by the subscriptions
+		Assert.assertTrue(sentCommands.take() instanceof CancelOrderCommand);
+		Assert.assertTrue(sentCommands.take() instanceof CancelOrderCommand);
+		Assert.assertTrue(sentCommands.take() instanceof UnsubscribeChannelCommand);
+		Assert.assertNull(sentCommands.poll(10, TimeUnit.MILLISECONDS));
+		
+		// The second subscription is sent after 50 ms
+		Assert.assertTrue(sentCommands.poll(5, TimeUnit.SECONDS) instanceof UnsubscribeChannelCommand);
+		Assert.assertEquals(2, scheduler.getWaitTimes(CommandClass.SUBSCRIPTION).getCount());
+	}
+	
+	/**
+	 * The queued commands are dropped on clear and sent directly on flush
+	 */
+	@Test(timeout=10000)
+	public void testClearAndFlush() {
+		final CommandScheduler scheduler = new CommandScheduler(executor, sentCommands::add, 
+				new BitfinexApiBrokerConfig());
+		
+		scheduler.submit(new UnsubscribeChannelCommand(1));
+		scheduler.submit(new CancelOrderCommand(1));
+		
+		Assert.assertEquals(2, scheduler.clear().size());
+		Assert.assertEquals(0, scheduler.getQueueDepth(CommandClass.ORDER));
+		
+		final UnsubscribeChannelCommand unsubscribe = new UnsubscribeChannelCommand(2);
+		scheduler.submit(unsubscribe);
+		scheduler.flush();
+		
+		// Sent on the calling thread, the executor is still blocked
+		Assert.assertEquals(1, sentCommands.size());
+		Assert.assertSame(unsubscribe, sentCommands.poll());
+		Assert.assertEquals(0, scheduler.getQueueDepth(CommandClass.SUBSCRIPTION));
+		
+		executorLatch.countDown();
+	}
+	
+	/**
+	 * The callback is executed after the command is sent, commands with callbacks are not coalesced
+	 * @throws InterruptedException 
+	 */
+	@Test(timeout=10000)
+	public void testSentCallback() throws InterruptedException {
+		final BitfinexApiBrokerConfig config = new BitfinexApiBrokerConfig();
+		config.setCommandCoalescingActive(true);
+		
+		final CommandScheduler scheduler = new CommandScheduler(executor, sentCommands::add, config);
+		
+		final CancelOrderCommand cancel = new CancelOrderCommand(1);
+		final CountDownLatch sentLatch = new CountDownLatch(1);
+		
+		scheduler.submit(cancel, () -> {
+			Assert.assertSame(cancel, sentCommands.peek());
+			sentLatch.countDown();
+		});
+		scheduler.submit(new CancelOrderCommand(2));
+		executorLatch.countDown();
+		
+		sentLatch.await();
+		Assert.assertSame(cancel, sentCommands.take());
+		Assert.assertTrue(sentCommands.take() instanceof CancelOrderCommand);
+		Assert.assertEquals(0, scheduler.getCoalescedCommands());
+	}
+}
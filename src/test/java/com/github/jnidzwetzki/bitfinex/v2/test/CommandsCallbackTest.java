@@ -17,12 +17,16 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.AuthCallback;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.ConnectionHeartbeatCallback;
+import com.github.jnidzwetzki.bitfinex.v2.callback.command.ErrorCallback;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.SubscribedCallback;
 import com.github.jnidzwetzki.bitfinex.v2.callback.command.UnsubscribedCallback;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ConnectionCapabilities;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
 import org.json.JSONObject;
 import org.junit.Assert;
@@ -98,5 +102,28 @@ public class CommandsCallbackTest {
 		});
 		unsubscribedCallback.handleChannelData(new JSONObject(unsubscribedJson));
 	}
+	
+	/**
+	 * Test the error callback of a subscription
+	 * @throws APIException 
+	 */
+	@Test
+	public void testSubscribeErrorCallback() throws APIException {
+		final String errorJson = "{\"channel\":\"ticker\",\"symbol\":\"tLTCUSD\",\"event\":\"error\",\"msg\":\"subscribe: dup\",\"code\":10301,\"pair\":\"LTCUSD\"}";
+		final AtomicReference<BitfinexStreamSymbol> symbol = new AtomicReference<>();
+		
+		final ErrorCallback errorCallback = new ErrorCallback();
+		errorCallback.onSubscribeErrorEvent((sym, message) -> {
+			Assert.assertEquals("subscribe: dup", message);
+			symbol.set(sym);
+		});
+		errorCallback.handleChannelData(new JSONObject(errorJson));
+		Assert.assertEquals(BitfinexTickerSymbol.fromBitfinexString("tLTCUSD"), symbol.get());
+		
+		// Errors without a channel are only logged
+		symbol.set(null);
+		errorCallback.handleChannelData(new JSONObject("{\"event\":\"error\",\"msg\":\"auth: invalid\",\"code\":10100}"));
+		Assert.assertNull(symbol.get());
+	}
 
 }
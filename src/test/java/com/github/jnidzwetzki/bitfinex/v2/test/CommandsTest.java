@@ -1,9 +1,12 @@
 package com.github.jnidzwetzki.bitfinex.v2.test;
 
+import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
+import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -11,12 +14,16 @@ import org.mockito.Mockito;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBrokerConfig;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexOrderBuilder;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexOrderUpdateBuilder;
 import com.github.jnidzwetzki.bitfinex.v2.commands.AbstractAPICommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.AuthCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderGroupCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderMultiCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.CommandException;
 import com.github.jnidzwetzki.bitfinex.v2.commands.OrderCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderMultiCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderUpdateCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.PingCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SetConnectionFeaturesCommand;
 import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeCandlesCommand;
@@ -64,7 +71,10 @@ public class CommandsTest {
 				new AuthCommand(AuthCommand.AUTH_NONCE_PRODUCER_TIMESTAMP),
 				new CancelOrderCommand(123),
 				new CancelOrderGroupCommand(1),
+				new CancelOrderMultiCommand(Arrays.asList(1L, 2L), Arrays.asList(3)),
 				new OrderCommand(order),
+				new OrderMultiCommand(Arrays.asList(new CancelOrderCommand(1), new OrderCommand(order))),
+				new OrderUpdateCommand(BitfinexOrderUpdateBuilder.create(1).withPrice(12).build()),
 				new PingCommand(), 
 				new SubscribeCandlesCommand(candleSymbol),
 				new SubscribeTickerCommand(new BitfinexTickerSymbol(BitfinexCurrencyPair.of("BCH","USD"))),
@@ -109,6 +119,50 @@ public class CommandsTest {
 		Assert.assertTrue(commandValue.contains("\"2.0\""));
 	}
 	
+	/**
+	 * Test the multi operation command
+	 * @throws CommandException 
+	 */
+	@Test
+	public void testOrderMultiCommand() throws CommandException {
+		final OrderMultiCommand command = new OrderMultiCommand(Arrays.asList(
+				new CancelOrderCommand(12), new CancelOrderGroupCommand(3)));
+		
+		final String commandValue = command.getCommand(buildMockedBitfinexConnection());
+		Assert.assertEquals("[0,\"ox_multi\", null, [[\"oc\",{\"id\":12}],[\"oc_multi\",{\"gid\":3}]]]\n", 
+				commandValue);
+	}
+	
+	/**
+	 * Test the order update command
+	 * @throws CommandException
+	 */
+	@Test
+	public void testOrderUpdateCommand() throws CommandException {
+		final OrderUpdateCommand command = new OrderUpdateCommand(BitfinexOrderUpdateBuilder.create(12)
+				.withPrice(new BigDecimal("101.5")).withDelta(new BigDecimal("-0.5")).build());
+		
+		final JSONObject payload = command.getOperationPayload(buildMockedBitfinexConnection());
+		Assert.assertEquals(12, payload.getLong("id"));
+		Assert.assertEquals("101.5", payload.getString("price"));
+		Assert.assertEquals("-0.5", payload.getString("delta"));
+		Assert.assertFalse(payload.has("amount"));
+		Assert.assertTrue(command.getCommand(buildMockedBitfinexConnection()).startsWith("[0,\"ou\", null, {"));
+	}
+	
+	/**
+	 * Test the cancel multi command
+	 * @throws CommandException
+	 */
+	@Test
+	public void testCancelOrderMultiCommand() throws CommandException {
+		final CancelOrderMultiCommand command = new CancelOrderMultiCommand(Arrays.asList(12L, 13L), 
+				Collections.emptyList());
+		
+		Assert.assertEquals("[0,\"oc_multi\", null, {\"id\":[12,13]}]\n", 
+				command.getCommand(buildMockedBitfinexConnection()));
+	}
+	
 	/**
 	 *  Build the bitfinex connection
 	 * @return
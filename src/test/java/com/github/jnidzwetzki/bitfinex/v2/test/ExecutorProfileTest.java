@@ -0,0 +1,125 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBrokerConfig;
+import com.github.jnidzwetzki.bitfinex.v2.ExecutorProfile;
+import com.github.jnidzwetzki.bitfinex.v2.ManagerType;
+import com.github.jnidzwetzki.bitfinex.v2.util.StripedExecutor;
+
+public class ExecutorProfileTest {
+
+	/**
+	 * Test the profiles of the configuration
+	 */
+	@Test
+	public void testConfiguration() {
+		final BitfinexApiBrokerConfig config = new BitfinexApiBrokerConfig();
+		
+		for(final ManagerType managerType : ManagerType.values()) {
+			Assert.assertEquals(ExecutorProfile.SHARED, config.getExecutorProfile(managerType));
+		}
+		
+		config.setExecutorProfile(ManagerType.ORDERS, ExecutorProfile.VIRTUAL_THREAD);
+		config.setExecutorProfile(ManagerType.QUOTES, ExecutorProfile.DIRECT);
+		
+		final BitfinexApiBrokerConfig copy = new BitfinexApiBrokerConfig(config);
+		Assert.assertEquals(ExecutorProfile.VIRTUAL_THREAD, copy.getExecutorProfile(ManagerType.ORDERS));
+		Assert.assertEquals(ExecutorProfile.DIRECT, copy.getExecutorProfile(ManagerType.QUOTES));
+		Assert.assertEquals(ExecutorProfile.SHARED, copy.getExecutorProfile(ManagerType.WALLETS));
+		
+		// The copy is independent
+		config.setExecutorProfile(ManagerType.WALLETS, ExecutorProfile.STRIPED);
+		Assert.assertEquals(ExecutorProfile.SHARED, copy.getExecutorProfile(ManagerType.WALLETS));
+	}
+	
+	/**
+	 * Test the created executor services
+	 * @throws InterruptedException 
+	 */
+	@Test
+	public void testCreateExecutorService() throws InterruptedException {
+		final BitfinexApiBrokerConfig config = new BitfinexApiBrokerConfig();
+		final ExecutorService sharedExecutor = Executors.newSingleThreadExecutor();
+		config.setExecutorService(sharedExecutor);
+		config.setStripedExecutorThreads(3);
+		
+		try {
+			Assert.assertSame(sharedExecutor, ExecutorProfile.SHARED.createExecutorService(config));
+			
+			// Direct tasks are executed by the calling thread
+			final Thread[] executingThread = new Thread[1];
+			ExecutorProfile.DIRECT.createExecutorService(config).execute(
+					() -> executingThread[0] = Thread.currentThread());
+			Assert.assertSame(Thread.currentThread(), executingThread[0]);
+			
+			final ExecutorService striped = ExecutorProfile.STRIPED.createExecutorService(config);
+			Assert.assertTrue(striped instanceof StripedExecutor);
+			Assert.assertEquals(3, ((StripedExecutor) striped).getNumberOfStripes());
+			striped.shutdown();
+			
+			final ExecutorService virtual = ExecutorProfile.VIRTUAL_THREAD.createExecutorService(config);
+			virtual.execute(() -> executingThread[0] = Thread.currentThread());
+			virtual.shutdown();
+			Assert.assertTrue(virtual.awaitTermination(10, TimeUnit.SECONDS));
+			Assert.assertNotSame(Thread.currentThread(), executingThread[0]);
+		} finally {
+			sharedExecutor.shutdown();
+		}
+	}
+	
+	/**
+	 * Test the release of the executor services on close
+	 */
+	@Test
+	public void testCloseConnection() {
+		final BitfinexApiBrokerConfig config = new BitfinexApiBrokerConfig();
+		final ExecutorService sharedExecutor = Executors.newSingleThreadExecutor();
+		config.setExecutorService(sharedExecutor);
+		config.setExecutorProfile(ManagerType.ORDERS, ExecutorProfile.STRIPED);
+		
+		try {
+			final BitfinexApiBroker bitfinexApiBroker = new BitfinexApiBroker(config);
+			bitfinexApiBroker.close();
+			
+			Assert.assertTrue(bitfinexApiBroker.getScheduler().isShutdown());
+			Assert.assertTrue(bitfinexApiBroker.getConflationExecutorService().isShutdown());
+			
+			// The shared executor is owned by the caller
+			Assert.assertFalse(sharedExecutor.isShutdown());
+		} finally {
+			sharedExecutor.shutdown();
+		}
+	}
+	
+	/**
+	 * Test invalid striped executor sizes
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidStripedExecutorThreads() {
+		new BitfinexApiBrokerConfig().setStripedExecutorThreads(0);
+	}
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBrokerConfig;
+import com.github.jnidzwetzki.bitfinex.v2.FeedArbiter;
+import com.github.jnidzwetzki.bitfinex.v2.RedundantBitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookFrequency;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookPrecision;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.manager.LocalOrderbook;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookChecksum;
+
+public class FeedArbiterTest {
+
+	/**
+	 * The symbol
+	 */
+	private final static OrderbookConfiguration SYMBOL = new OrderbookConfiguration(
+			BitfinexCurrencyPair.of("BTC","USD"), OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+
+	/**
+	 * The first copy of an update is delivered
+	 */
+	@Test
+	public void testArbitration() {
+		final FeedArbiter arbiter = new FeedArbiter(2);
+		
+		Assert.assertTrue(arbiter.accept(0, SYMBOL, "[[100,1,1],[101,1,-1]]"));
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[[100,1,1],[101,1,-1]]"));
+		
+		// Feed A is faster
+		Assert.assertTrue(arbiter.accept(0, SYMBOL, "[100,2,3]"));
+		Assert.assertTrue(arbiter.accept(0, SYMBOL, "[101,0,-1]"));
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[100,2,3]"));
+		
+		// Feed B takes the lead
+		Assert.assertTrue(arbiter.accept(1, SYMBOL, "[102,1,-2]"));
+		Assert.assertFalse(arbiter.accept(0, SYMBOL, "[102,1,-2]"));
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[101,0,-1]"));
+		
+		Assert.assertEquals(3, arbiter.getDeliveredUpdates(0));
+		Assert.assertEquals(1, arbiter.getDeliveredUpdates(1));
+		Assert.assertEquals(4, arbiter.getSuppressedUpdates());
+	}
+	
+	/**
+	 * A feed that stalls and resubscribes catches up without duplicates
+	 */
+	@Test
+	public void testStalledFeed() {
+		final FeedArbiter arbiter = new FeedArbiter(2);
+		
+		Assert.assertTrue(arbiter.accept(0, SYMBOL, "[[100,1,1]]"));
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[[100,1,1]]"));
+		
+		// Feed B stalls, feed A keeps delivering
+		for(int i = 0; i < 10; i++) {
+			Assert.assertTrue(arbiter.accept(0, SYMBOL, "[100," + i + ",1]"));
+		}
+		
+		// Feed B reconnects, the new snapshot is suppressed and the missed updates are skipped
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[[100,7,1]]"));
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[100,8,1]"));
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[100,9,1]"));
+		Assert.assertTrue(arbiter.accept(1, SYMBOL, "[100,10,1]"));
+		Assert.assertFalse(arbiter.accept(0, SYMBOL, "[100,10,1]"));
+		
+		// Reset
+		arbiter.reset(SYMBOL);
+		Assert.assertTrue(arbiter.accept(1, SYMBOL, "[[100,1,1]]"));
+	}
+	
+	/**
+	 * The next snapshot is delivered when no feed has a live subscription
+	 */
+	@Test
+	public void testSubscriptions() {
+		final FeedArbiter arbiter = new FeedArbiter(2);
+		arbiter.feedSubscribed(0, SYMBOL);
+		arbiter.feedSubscribed(1, SYMBOL);
+		
+		Assert.assertTrue(arbiter.accept(0, SYMBOL, "[[100,1,1]]"));
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[[100,1,1]]"));
+		
+		// Feed A is still subscribed
+		arbiter.feedUnsubscribed(1, SYMBOL);
+		arbiter.feedSubscribed(1, SYMBOL);
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[[100,1,1]]"));
+		
+		// Both feeds lost the subscription
+		arbiter.feedUnsubscribed(0, SYMBOL);
+		arbiter.feedUnsubscribed(1, SYMBOL);
+		arbiter.feedSubscribed(1, SYMBOL);
+		Assert.assertTrue(arbiter.accept(1, SYMBOL, "[[100,2,1]]"));
+		
+		// Snapshot after a checksum mismatch
+		arbiter.resetSnapshot(SYMBOL);
+		Assert.assertTrue(arbiter.accept(1, SYMBOL, "[[100,3,1]]"));
+		Assert.assertFalse(arbiter.accept(0, SYMBOL, "[[100,3,1]]"));
+	}
+	
+	/**
+	 * The checksums are verified against the merged data when the feed has seen all payloads
+	 */
+	@Test
+	public void testChecksum() {
+		final FeedArbiter arbiter = new FeedArbiter(2);
+		final List<Integer> checksums = new ArrayList<>();
+		
+		// No verifier
+		Assert.assertTrue(arbiter.verifyChecksum(0, SYMBOL, 1));
+		
+		arbiter.setChecksumVerifier((s, c) -> checksums.add(c) && c == 42);
+		
+		// No snapshot
+		Assert.assertTrue(arbiter.verifyChecksum(0, SYMBOL, 1));
+		
+		Assert.assertTrue(arbiter.accept(0, SYMBOL, "[[100,1,1]]"));
+		Assert.assertTrue(arbiter.accept(0, SYMBOL, "[100,2,1]"));
+		
+		// Feed B has not seen the update
+		Assert.assertTrue(arbiter.verifyChecksum(1, SYMBOL, 1));
+		Assert.assertTrue(checksums.isEmpty());
+		
+		Assert.assertTrue(arbiter.verifyChecksum(0, SYMBOL, 42));
+		Assert.assertFalse(arbiter.accept(1, SYMBOL, "[100,2,1]"));
+		Assert.assertFalse(arbiter.verifyChecksum(1, SYMBOL, 1));
+		Assert.assertEquals(Arrays.asList(42, 1), checksums);
+	}
+	
+	/**
+	 * The checksums of the redundant broker are verified against the merged orderbook
+	 */
+	@Test
+	public void testMergedOrderbookChecksum() {
+		final RedundantBitfinexApiBroker broker = new RedundantBitfinexApiBroker(new BitfinexApiBrokerConfig());
+		final FeedArbiter arbiter = broker.getFeedArbiter();
+		
+		Assert.assertTrue(arbiter.accept(0, SYMBOL, "[[6359,1,-0.5],[6358.9,2,1.25]]"));
+		broker.getCallbackRegistry().acceptOrderbookEvent(SYMBOL, Arrays.asList(
+				new OrderbookEntry(new BigDecimal("6359"), BigDecimal.ONE, new BigDecimal("-0.5")),
+				new OrderbookEntry(new BigDecimal("6358.9"), new BigDecimal(2), new BigDecimal("1.25"))));
+		
+		final LocalOrderbook orderbook = broker.getOrderbookManager().getOrderbook(SYMBOL);
+		Assert.assertEquals(1, orderbook.getBidDepth());
+		
+		final int checksum = new OrderbookChecksum().calculate(orderbook);
+		Assert.assertTrue(arbiter.verifyChecksum(0, SYMBOL, checksum));
+		Assert.assertTrue(arbiter.verifyChecksum(1, SYMBOL, checksum));
+		Assert.assertFalse(arbiter.verifyChecksum(1, SYMBOL, checksum + 1));
+		
+		broker.close();
+	}
+	
+	/**
+	 * Test the invalid parameter
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidFeed() {
+		new FeedArbiter(2).accept(2, SYMBOL, "[]");
+	}
+}
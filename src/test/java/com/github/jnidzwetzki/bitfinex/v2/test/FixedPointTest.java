@@ -0,0 +1,207 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.CandlestickHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelFrameTokenizer;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCandle;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExecutedTrade;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookFrequency;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookPrecision;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Timeframe;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+
+public class FixedPointTest {
+
+	/**
+	 * Test the conversion of values
+	 */
+	@Test
+	public void testConversion() {
+		Assert.assertEquals(635950000000L, FixedPoint.toFixedPoint(new BigDecimal("6359.5"), 8));
+		Assert.assertEquals(-1L, FixedPoint.toFixedPoint(new BigDecimal("-0.00000001"), 8));
+		Assert.assertEquals(150L, FixedPoint.toFixedPoint(new BigDecimal("1.50000000000"), 2));
+		Assert.assertEquals(FixedPoint.NULL_VALUE, FixedPoint.toFixedPoint(null, 8));
+
+		Assert.assertEquals(2500L, FixedPoint.toFixedPoint(25, -2, 0));
+		Assert.assertEquals(15L, FixedPoint.toFixedPoint(1500, 3, 1));
+
+		Assert.assertEquals(new BigDecimal("6359.50000000"), FixedPoint.toBigDecimal(635950000000L, 8));
+		Assert.assertNull(FixedPoint.toBigDecimal(FixedPoint.NULL_VALUE, 8));
+	}
+	
+	/**
+	 * Values with too many digits are rejected
+	 */
+	@Test(expected=ArithmeticException.class)
+	public void testPrecisionLoss() {
+		FixedPoint.toFixedPoint(1234, 4, 2);
+	}
+	
+	/**
+	 * Test the tokenizer
+	 * @throws APIException 
+	 */
+	@Test
+	public void testTokenizer() throws APIException {
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[6359.5,-0.25,1e-8,2.5E+3]");
+		tokenizer.beginArray();
+		Assert.assertEquals(635950000000L, tokenizer.nextFixedPoint(8));
+		Assert.assertEquals(-25000000L, tokenizer.nextFixedPoint(8));
+		Assert.assertEquals(1L, tokenizer.nextFixedPoint(8));
+		Assert.assertEquals(250000000000L, tokenizer.nextFixedPoint(8));
+		tokenizer.endArray();
+		
+		tokenizer.reset("[0.123]");
+		tokenizer.beginArray();
+		
+		try {
+			tokenizer.nextFixedPoint(2);
+			Assert.fail("Exception expected");
+		} catch (APIException e) {
+			// Expected
+		}
+	}
+	
+	/**
+	 * Test the orderbook handler in fixed point mode
+	 * @throws APIException 
+	 */
+	@Test
+	public void testOrderbook() throws APIException {
+		final OrderbookConfiguration configuration = new OrderbookConfiguration(
+				BitfinexCurrencyPair.of("BTC","USD"), OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+		
+		final List<OrderbookEntry> entries = new ArrayList<>();
+		final OrderbookHandler handler = new OrderbookHandler();
+		handler.setFixedPointScale(8);
+		handler.onOrderbookEvent((c, e) -> entries.addAll(e));
+		
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[[6359,1,-0.5],[6358.9,2,1.25]]");
+		handler.handleChannelData(configuration, tokenizer);
+		handler.handleChannelData(configuration, new JSONArray("[6358.8,3,0.1]"));
+		
+		Assert.assertEquals(3, entries.size());
+		Assert.assertTrue(entries.get(0).isFixedPoint());
+		Assert.assertEquals(635900000000L, entries.get(0).getScaledPrice());
+		Assert.assertEquals(-50000000L, entries.get(0).getScaledAmount());
+		Assert.assertEquals(2, entries.get(1).getOrderCount());
+		Assert.assertEquals(new BigDecimal("1.25"), entries.get(1).getAmount().stripTrailingZeros());
+		Assert.assertEquals(635880000000L, entries.get(2).getScaledPrice());
+		Assert.assertEquals(3, entries.get(2).getCount().intValue());
+	}
+	
+	/**
+	 * Entries with a value that does not fit into the scale are decoded as BigDecimal
+	 * @throws APIException
+	 */
+	@Test
+	public void testOrderbookOverflow() throws APIException {
+		final OrderbookConfiguration configuration = new OrderbookConfiguration(
+				BitfinexCurrencyPair.of("BTC","USD"), OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+		
+		final List<OrderbookEntry> entries = new ArrayList<>();
+		final OrderbookHandler handler = new OrderbookHandler();
+		handler.setFixedPointScale(2);
+		handler.onOrderbookEvent((c, e) -> entries.addAll(e));
+		
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[[6359,1,-0.5],[6358.9,2,1.255],[6358,1,2]]");
+		handler.handleChannelData(configuration, tokenizer);
+		handler.handleChannelData(configuration, new JSONArray("[6358.8,3,0.001]"));
+		
+		Assert.assertEquals(4, entries.size());
+		Assert.assertTrue(entries.get(0).isFixedPoint());
+		Assert.assertFalse(entries.get(1).isFixedPoint());
+		Assert.assertEquals(new BigDecimal("6358.9"), entries.get(1).getPrice());
+		Assert.assertEquals(new BigDecimal("1.255"), entries.get(1).getAmount());
+		Assert.assertTrue(entries.get(2).isFixedPoint());
+		Assert.assertEquals(200, entries.get(2).getScaledAmount());
+		Assert.assertFalse(entries.get(3).isFixedPoint());
+		Assert.assertEquals(new BigDecimal("0.001"), entries.get(3).getAmount());
+	}
+	
+	/**
+	 * Scaled values are not available in BigDecimal mode
+	 */
+	@Test(expected=IllegalStateException.class)
+	public void testBigDecimalMode() {
+		final OrderbookEntry entry = new OrderbookEntry(BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE);
+		Assert.assertFalse(entry.isFixedPoint());
+		Assert.assertEquals(1, entry.getOrderCount());
+		entry.getScaledPrice();
+	}
+	
+	/**
+	 * Test the candle and trade handler in fixed point mode
+	 * @throws APIException 
+	 */
+	@Test
+	public void testCandlesAndTrades() throws APIException {
+		final BitfinexCurrencyPair currencyPair = BitfinexCurrencyPair.of("BTC","USD");
+		
+		final List<BitfinexCandle> candles = new ArrayList<>();
+		final CandlestickHandler candlestickHandler = new CandlestickHandler();
+		candlestickHandler.setFixedPointScale(2);
+		candlestickHandler.onCandlesticksEvent((s, c) -> candles.addAll(c));
+		
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[1518037080000,8175.9,8180,8181.5,8170,12.25]");
+		candlestickHandler.handleChannelData(new BitfinexCandlestickSymbol(currencyPair, Timeframe.MINUTES_1), tokenizer);
+		
+		Assert.assertEquals(1, candles.size());
+		Assert.assertEquals(817590L, candles.get(0).getScaledOpen());
+		Assert.assertEquals(1225L, candles.get(0).getScaledVolume());
+		Assert.assertEquals(new BigDecimal("8181.50"), candles.get(0).getHigh());
+		Assert.assertEquals(new BigDecimal("12.25"), candles.get(0).getVolume().get());
+		
+		final List<ExecutedTrade> trades = new ArrayList<>();
+		final ExecutedTradeHandler tradeHandler = new ExecutedTradeHandler();
+		tradeHandler.setFixedPointScale(8);
+		tradeHandler.onExecutedTradeEvent((s, t) -> trades.addAll(t));
+		
+		tokenizer.reset("[[190631057,1518037080162,0.007,8175.9],[190631052,1518037080110,-0.25,0.0002,30]]");
+		tradeHandler.handleChannelData(new BitfinexExecutedTradeSymbol(currencyPair), tokenizer);
+		
+		Assert.assertEquals(2, trades.size());
+		Assert.assertEquals(817590000000L, trades.get(0).getScaledPrice());
+		Assert.assertEquals(FixedPoint.NULL_VALUE, trades.get(0).getScaledRate());
+		Assert.assertNull(trades.get(0).getRate());
+		Assert.assertEquals(20000L, trades.get(1).getScaledRate());
+		Assert.assertNull(trades.get(1).getPrice());
+		Assert.assertEquals(30, trades.get(1).getPeriod());
+	}
+}
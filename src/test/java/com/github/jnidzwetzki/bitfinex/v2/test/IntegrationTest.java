@@ -19,7 +19,6 @@ package com.github.jnidzwetzki.bitfinex.v2.test;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.function.BiConsumer;
 
@@ -30,6 +29,8 @@ import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBrokerConfig;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexConnectionFeature;
 import com.github.jnidzwetzki.bitfinex.v2.SequenceNumberAuditor;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelSubscription;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
@@ -44,7 +45,6 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookEntry;
 import com.github.jnidzwetzki.bitfinex.v2.entity.Timeframe;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
-import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
 import com.github.jnidzwetzki.bitfinex.v2.manager.ConnectionFeatureManager;
 import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookManager;
@@ -266,25 +266,19 @@ public class IntegrationTest {
 			quoteManager.subscribeExecutedTrades(symbol1);
 			quoteManager.subscribeExecutedTrades(symbol2);
 
-			final Map<Integer, BitfinexStreamSymbol> channelIdSymbolMap = bitfinexClient.getChannelIdSymbolMap();
+			// The pending subscriptions are registered by the subscribe methods
+			final ChannelRegistry channelRegistry = bitfinexClient.getChannelRegistry();
+			final ChannelSubscription subscription1 = channelRegistry.getSubscription(symbol1);
+			final ChannelSubscription subscription2 = channelRegistry.getSubscription(symbol2);
 
-			synchronized (channelIdSymbolMap) {
-				while(channelIdSymbolMap.size() != 2) {
-					channelIdSymbolMap.wait();
-				}
-			}
-
-			Assert.assertEquals(2, channelIdSymbolMap.size());
+			subscription1.getSubscribedFuture().get();
+			subscription2.getSubscribedFuture().get();
 
-			bitfinexClient.unsubscribeAllChannels();
+			Assert.assertEquals(2, channelRegistry.size());
 
-			synchronized (channelIdSymbolMap) {
-				while(! channelIdSymbolMap.isEmpty()) {
-					channelIdSymbolMap.wait();
-				}
-			}
+			Assert.assertTrue(bitfinexClient.unsubscribeAllChannels());
 
-			Assert.assertEquals(0, channelIdSymbolMap.size());
+			Assert.assertEquals(0, channelRegistry.size());
 		} catch (Exception e) {
 			// Should not happen
 			e.printStackTrace();
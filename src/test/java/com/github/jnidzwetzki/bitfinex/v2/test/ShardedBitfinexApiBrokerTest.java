@@ -0,0 +1,230 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiConsumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBrokerConfig;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.ShardedBitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+
+public class ShardedBitfinexApiBrokerTest {
+
+	/**
+	 * The symbols
+	 */
+	private final static BitfinexTickerSymbol BTC_SYMBOL = new BitfinexTickerSymbol(BitfinexCurrencyPair.of("BTC","USD"));
+	private final static BitfinexTickerSymbol ETH_SYMBOL = new BitfinexTickerSymbol(BitfinexCurrencyPair.of("ETH","USD"));
+	private final static BitfinexTickerSymbol LTC_SYMBOL = new BitfinexTickerSymbol(BitfinexCurrencyPair.of("LTC","USD"));
+	
+	/**
+	 * Build a sharded broker with mocked shards
+	 * @param numberOfShards
+	 * @return
+	 */
+	private ShardedBitfinexApiBroker buildMockedShardedBroker(final int numberOfShards) {
+		return new ShardedBitfinexApiBroker(new BitfinexApiBrokerConfig(), numberOfShards) {
+			@Override
+			protected BitfinexApiBroker createShard(final BitfinexApiBrokerConfig config, 
+					final BitfinexApiCallbackRegistry callbackRegistry) {
+				
+				final BitfinexApiBroker shard = Mockito.mock(BitfinexApiBroker.class);
+				Mockito.when(shard.getQuoteManager()).thenReturn(Mockito.mock(QuoteManager.class));
+				return shard;
+			}
+		};
+	}
+	
+	/**
+	 * New symbols are placed on the least loaded shard when they are subscribed 
+	 * and stay there until they are unsubscribed
+	 * @throws APIException 
+	 */
+	@Test
+	public void testPlacement() throws APIException {
+		final ShardedBitfinexApiBroker broker = buildMockedShardedBroker(2);
+		
+		Assert.assertNull(broker.getShard(BTC_SYMBOL));
+		Assert.assertEquals(0, broker.getPlacedSymbols(0));
+		
+		broker.subscribeTicker(BTC_SYMBOL);
+		broker.subscribeTicker(ETH_SYMBOL);
+		
+		final BitfinexApiBroker btcShard = broker.getShard(BTC_SYMBOL);
+		final BitfinexApiBroker ethShard = broker.getShard(ETH_SYMBOL);
+		Assert.assertNotSame(btcShard, ethShard);
+		Assert.assertEquals(1, broker.getPlacedSymbols(0));
+		Assert.assertEquals(1, broker.getPlacedSymbols(1));
+		Mockito.verify(btcShard.getQuoteManager()).subscribeTicker(BTC_SYMBOL);
+		Mockito.verify(ethShard.getQuoteManager()).subscribeTicker(ETH_SYMBOL);
+		
+		// Sticky placement
+		broker.subscribeTicker(new BitfinexTickerSymbol(BitfinexCurrencyPair.of("BTC","USD")));
+		Assert.assertSame(btcShard, broker.getShard(BTC_SYMBOL));
+		Assert.assertEquals(1, broker.getPlacedSymbols(0));
+		
+		// Unsubscribed symbols free the slot
+		broker.unsubscribeTicker(BTC_SYMBOL);
+		Mockito.verify(btcShard.getQuoteManager()).unsubscribeTicker(BTC_SYMBOL);
+		Assert.assertNull(broker.getShard(BTC_SYMBOL));
+		
+		try {
+			broker.unsubscribeTicker(BTC_SYMBOL);
+			Assert.fail("Exception expected");
+		} catch(IllegalArgumentException e) {
+			// Expected
+		}
+		
+		broker.subscribeTicker(LTC_SYMBOL);
+		Assert.assertSame(btcShard, broker.getShard(LTC_SYMBOL));
+	}
+	
+	/**
+	 * The placement of a failed subscription is released
+	 * @throws APIException 
+	 */
+	@Test
+	public void testFailedSubscription() throws APIException {
+		final ShardedBitfinexApiBroker broker = buildMockedShardedBroker(1);
+		final QuoteManager quoteManager = broker.getShards().get(0).getQuoteManager();
+		Mockito.doThrow(new APIException("Failed")).when(quoteManager).subscribeTicker(BTC_SYMBOL);
+		
+		try {
+			broker.subscribeTicker(BTC_SYMBOL);
+			Assert.fail("Exception expected");
+		} catch(APIException e) {
+			// Expected
+		}
+		
+		Assert.assertNull(broker.getShard(BTC_SYMBOL));
+		Assert.assertEquals(0, broker.getPlacedSymbols(0));
+	}
+	
+	/**
+	 * Only the primary broker is authenticated
+	 */
+	@Test
+	public void testAuthentication() {
+		final BitfinexApiBrokerConfig config = new BitfinexApiBrokerConfig();
+		config.setApiCredentials("key", "secret");
+		
+		final ShardedBitfinexApiBroker broker = new ShardedBitfinexApiBroker(config, 3);
+		Assert.assertEquals(3, broker.getNumberOfShards());
+		Assert.assertTrue(broker.getPrimaryBroker().getConfiguration().isAuthenticationEnabled());
+		Assert.assertFalse(broker.getShards().get(1).getConfiguration().isAuthenticationEnabled());
+		Assert.assertFalse(broker.getShards().get(2).getConfiguration().isAuthenticationEnabled());
+	}
+	
+	/**
+	 * The shards are limited by the channel quota
+	 * @throws APIException 
+	 */
+	@Test
+	public void testQuota() throws APIException {
+		final int oldQuota = QuoteManager.SYMBOL_QUOTA;
+		QuoteManager.SYMBOL_QUOTA = 1;
+		
+		try {
+			final ShardedBitfinexApiBroker broker = buildMockedShardedBroker(2);
+			broker.subscribeTicker(BTC_SYMBOL);
+			broker.subscribeTicker(ETH_SYMBOL);
+			
+			try {
+				broker.subscribeTicker(LTC_SYMBOL);
+				Assert.fail("Exception expected");
+			} catch(APIException e) {
+				// Expected
+			}
+			
+			Assert.assertNull(broker.getShard(LTC_SYMBOL));
+			broker.unsubscribeTicker(ETH_SYMBOL);
+			broker.subscribeTicker(LTC_SYMBOL);
+			Assert.assertNotNull(broker.getShard(LTC_SYMBOL));
+		} finally {
+			QuoteManager.SYMBOL_QUOTA = oldQuota;
+		}
+	}
+	
+	/**
+	 * The events of all shards are merged
+	 */
+	@Test
+	public void testMergedEvents() {
+		final ShardedBitfinexApiBroker broker = new ShardedBitfinexApiBroker(new BitfinexApiBrokerConfig(), 2);
+		final List<BitfinexTickerSymbol> events = new ArrayList<>();
+		broker.getCallbackRegistry().onTickEvent((s, t) -> events.add(s));
+		
+		broker.getShards().get(0).getCallbackRegistry().acceptTickEvent(BTC_SYMBOL, null);
+		broker.getShards().get(1).getCallbackRegistry().acceptTickEvent(ETH_SYMBOL, null);
+		
+		Assert.assertEquals(2, events.size());
+		Assert.assertEquals(BTC_SYMBOL, events.get(0));
+		Assert.assertEquals(ETH_SYMBOL, events.get(1));
+	}
+	
+	/**
+	 * The callbacks of the merged managers are registered before the subscription 
+	 * and receive the events of all shards
+	 * @throws Exception
+	 */
+	@Test(timeout=10000)
+	public void testMergedManagers() throws Exception {
+		final ShardedBitfinexApiBroker broker = new ShardedBitfinexApiBroker(new BitfinexApiBrokerConfig(), 2);
+		final CountDownLatch latch = new CountDownLatch(2);
+		final List<BitfinexTick> ticks = new CopyOnWriteArrayList<>();
+		final BiConsumer<BitfinexTickerSymbol, BitfinexTick> callback = (s, t) -> {
+			ticks.add(t);
+			latch.countDown();
+		};
+		
+		broker.getQuoteManager().registerTickCallback(BTC_SYMBOL, callback);
+		broker.getQuoteManager().registerTickCallback(ETH_SYMBOL, callback);
+		
+		final BitfinexTick btcTick = new BitfinexTick(BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 
+				BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 
+				BigDecimal.ONE, BigDecimal.ONE);
+		final BitfinexTick ethTick = new BitfinexTick(BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, 
+				BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, 
+				BigDecimal.TEN, BigDecimal.TEN);
+		
+		broker.getShards().get(0).getCallbackRegistry().acceptTickEvent(BTC_SYMBOL, btcTick);
+		broker.getShards().get(1).getCallbackRegistry().acceptTickEvent(ETH_SYMBOL, ethTick);
+		
+		latch.await();
+		Assert.assertEquals(2, ticks.size());
+		Assert.assertTrue(ticks.contains(btcTick));
+		Assert.assertTrue(ticks.contains(ethTick));
+		
+		broker.close();
+	}
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.handler;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelFrameTokenizer;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.TickHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExecutedTrade;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookFrequency;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookPrecision;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+
+public class ChannelFrameTokenizerTest {
+
+	/**
+	 * The delta for double compares
+	 */
+	private static final double DELTA = 0.00000001;
+
+	/**
+	 * Test the number parsing
+	 * @throws APIException
+	 */
+	@Test
+	public void testNumbers() throws APIException {
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[17082, -0.0001,1e-8,2.5E+3,123456789012345678901234.5,null]");
+
+		tokenizer.beginArray();
+		Assert.assertEquals(17082, tokenizer.nextInt());
+		Assert.assertEquals(new BigDecimal("-0.0001"), tokenizer.nextBigDecimal());
+		Assert.assertEquals(new BigDecimal("1e-8"), tokenizer.nextBigDecimal());
+		Assert.assertEquals(new BigDecimal("2.5E+3"), tokenizer.nextBigDecimal());
+		Assert.assertEquals(new BigDecimal("123456789012345678901234.5"), tokenizer.nextBigDecimal());
+		Assert.assertTrue(tokenizer.isNextNull());
+		tokenizer.endArray();
+
+		Assert.assertEquals(ChannelFrameTokenizer.Token.END_OF_FRAME, tokenizer.peek());
+	}
+
+	/**
+	 * Test strings and skipping of nested values
+	 * @throws APIException
+	 */
+	@Test
+	public void testStringsAndSkip() throws APIException {
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[42,\"te\",[1,{\"a\":\"]\"},\"x\\\"y\"],\"hb\"]");
+
+		tokenizer.beginArray();
+		Assert.assertEquals(42, tokenizer.nextLong());
+		Assert.assertTrue(tokenizer.isNextString("te"));
+		Assert.assertFalse(tokenizer.isNextString("t"));
+		Assert.assertEquals("te", tokenizer.nextString());
+
+		tokenizer.beginArray();
+		Assert.assertEquals(1, tokenizer.nextInt());
+		tokenizer.skipValue();
+		Assert.assertEquals("x\"y", tokenizer.nextString());
+		tokenizer.endArray();
+
+		// Remaining values are skipped
+		tokenizer.endArray();
+		Assert.assertFalse(tokenizer.hasNext());
+	}
+
+	/**
+	 * Test invalid frames
+	 * @throws APIException
+	 */
+	@Test(expected=APIException.class)
+	public void testInvalidFrame() throws APIException {
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[\"abc\"]");
+		tokenizer.beginArray();
+		tokenizer.nextBigDecimal();
+	}
+	
+	/**
+	 * Test invalid escape sequences
+	 * @throws APIException
+	 */
+	@Test(expected=APIException.class)
+	public void testInvalidEscape() throws APIException {
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[\"ab\\uZZZZc\"]");
+		tokenizer.beginArray();
+		tokenizer.nextString();
+	}
+	
+	/**
+	 * Test truncated frames
+	 * @throws APIException
+	 */
+	@Test(expected=APIException.class)
+	public void testTruncatedFrame() throws APIException {
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[1,[[1,\"a\\");
+		tokenizer.beginArray();
+		tokenizer.nextInt();
+		tokenizer.skipValue();
+	}
+
+	/**
+	 * Test the decoding of a orderbook snapshot
+	 * @throws APIException
+	 */
+	@Test
+	public void testOrderbookSnapshot() throws APIException {
+		final OrderbookConfiguration configuration = new OrderbookConfiguration(
+				BitfinexCurrencyPair.of("BTC","USD"), OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[[6359,1,-0.5],[6358.9,2,1.25]]");
+
+		final List<OrderbookEntry> entries = new ArrayList<>();
+		final OrderbookHandler handler = new OrderbookHandler();
+		handler.onOrderbookEvent((c, e) -> {
+			Assert.assertEquals(configuration, c);
+			entries.addAll(e);
+		});
+		handler.handleChannelData(configuration, tokenizer);
+
+		Assert.assertEquals(2, entries.size());
+		Assert.assertEquals(6359, entries.get(0).getPrice().doubleValue(), DELTA);
+		Assert.assertEquals(-0.5, entries.get(0).getAmount().doubleValue(), DELTA);
+		Assert.assertEquals(2, entries.get(1).getCount().doubleValue(), DELTA);
+		Assert.assertEquals(1.25, entries.get(1).getAmount().doubleValue(), DELTA);
+	}
+
+	/**
+	 * Test the decoding of a tick
+	 * @throws APIException
+	 */
+	@Test
+	public void testTick() throws APIException {
+		final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.of("BTC", "USD"));
+
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[26123,41.4645776,26129,33.68138507,2931,0.2231,26129,144327.10936387,26149,13139]");
+
+		final AtomicInteger counter = new AtomicInteger();
+		final TickHandler handler = new TickHandler();
+		handler.onTickEvent((s, t) -> {
+			counter.incrementAndGet();
+			Assert.assertEquals(symbol, s);
+			Assert.assertEquals(new BigDecimal("41.4645776"), t.getBidSize());
+			Assert.assertEquals(new BigDecimal("144327.10936387"), t.getVolume());
+			Assert.assertEquals(13139, t.getLow().doubleValue(), DELTA);
+		});
+		handler.handleChannelData(symbol, tokenizer);
+
+		Assert.assertEquals(1, counter.get());
+	}
+
+	/**
+	 * Test the decoding of executed trades (currency and funding)
+	 * @throws APIException
+	 */
+	@Test
+	public void testExecutedTrades() throws APIException {
+		final BitfinexExecutedTradeSymbol symbol
+			= new BitfinexExecutedTradeSymbol(BitfinexCurrencyPair.of("BTC", "USD"));
+
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[[190631057,1518037080162,0.007,8175.9],[190631052,1518037080110,-0.25,0.0002,30]]");
+
+		final List<ExecutedTrade> trades = new ArrayList<>();
+		final ExecutedTradeHandler handler = new ExecutedTradeHandler();
+		handler.onExecutedTradeEvent((s, t) -> trades.addAll(t));
+		handler.handleChannelData(symbol, tokenizer);
+
+		Assert.assertEquals(2, trades.size());
+		Assert.assertEquals(190631057, trades.get(0).getId());
+		Assert.assertEquals(8175.9, trades.get(0).getPrice().doubleValue(), DELTA);
+		Assert.assertNull(trades.get(0).getRate());
+		Assert.assertEquals(0.0002, trades.get(1).getRate().doubleValue(), DELTA);
+		Assert.assertEquals(30, trades.get(1).getPeriod());
+		Assert.assertNull(trades.get(1).getPrice());
+	}
+}
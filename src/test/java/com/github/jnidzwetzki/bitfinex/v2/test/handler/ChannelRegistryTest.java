@@ -0,0 +1,189 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.handler;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelDispatcher;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelSubscription;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.SubscriptionState;
+import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTradesCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+public class ChannelRegistryTest {
+	
+	/**
+	 * The symbol
+	 */
+	private final static BitfinexExecutedTradeSymbol SYMBOL 
+		= new BitfinexExecutedTradeSymbol(BitfinexCurrencyPair.of("BTC", "USD"));
+
+	/**
+	 * Test the lifecycle of a subscription
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSubscription() throws Exception {
+		final ChannelRegistry registry = new ChannelRegistry();
+		final ChannelDispatcher dispatcher = buildDispatcher();
+		
+		final Map<Integer, BitfinexStreamSymbol> channelSymbols = registry.getChannelSymbols();
+		
+		final ChannelSubscription subscription = registry.subscribing(SYMBOL);
+		Assert.assertSame(subscription, registry.subscribing(SYMBOL));
+		Assert.assertEquals(SubscriptionState.PENDING, subscription.getState());
+		Assert.assertEquals(-1, registry.getChannel(SYMBOL));
+		Assert.assertFalse(subscription.getSubscribedFuture().isDone());
+		
+		Assert.assertSame(subscription, registry.subscribed(17082, SYMBOL, dispatcher));
+		Assert.assertEquals(SubscriptionState.ACTIVE, subscription.getState());
+		Assert.assertEquals(17082, (int) subscription.getSubscribedFuture().get());
+		Assert.assertEquals(17082, registry.getChannel(SYMBOL));
+		Assert.assertSame(dispatcher, registry.getDispatcher(17082));
+		Assert.assertEquals(SYMBOL, channelSymbols.get(17082));
+		Assert.assertEquals(1, registry.size());
+		
+		registry.unsubscribing(17082);
+		Assert.assertEquals(SubscriptionState.UNSUBSCRIBING, subscription.getState());
+		Assert.assertEquals(17082, registry.getChannel(SYMBOL));
+		
+		Assert.assertSame(subscription, registry.unsubscribed(17082));
+		Assert.assertTrue(subscription.getUnsubscribedFuture().isDone());
+		Assert.assertEquals(SubscriptionState.CLOSED, subscription.getState());
+		Assert.assertEquals(-1, registry.getChannel(SYMBOL));
+		Assert.assertNull(registry.getDispatcher(17082));
+		Assert.assertTrue(channelSymbols.isEmpty());
+		Assert.assertEquals(0, registry.size());
+		Assert.assertNull(registry.unsubscribed(17082));
+	}
+	
+	/**
+	 * The symbol is mapped to the new channel while the old channel is unsubscribed
+	 */
+	@Test
+	public void testResubscription() {
+		final ChannelRegistry registry = new ChannelRegistry();
+		final ChannelDispatcher dispatcher = buildDispatcher();
+		
+		final ChannelSubscription oldSubscription = registry.subscribed(1, SYMBOL, dispatcher);
+		registry.unsubscribing(1);
+		final ChannelSubscription newSubscription = registry.subscribed(2, SYMBOL, dispatcher);
+		
+		Assert.assertNotSame(oldSubscription, newSubscription);
+		Assert.assertEquals(2, registry.getChannel(SYMBOL));
+		Assert.assertEquals(2, registry.size());
+		
+		registry.unsubscribed(1);
+		Assert.assertEquals(2, registry.getChannel(SYMBOL));
+		Assert.assertSame(newSubscription, registry.getSubscription(SYMBOL));
+		Assert.assertEquals(1, registry.size());
+	}
+	
+	/**
+	 * Test clear and restore
+	 * @throws InterruptedException 
+	 */
+	@Test
+	public void testClearAndRestore() throws InterruptedException {
+		final ChannelRegistry registry = new ChannelRegistry();
+		final ChannelDispatcher dispatcher = buildDispatcher();
+		
+		final ChannelSubscription subscription = registry.subscribed(5, SYMBOL, dispatcher);
+		final Map<Integer, ChannelDispatcher> oldDispatchers = registry.clear();
+		
+		Assert.assertEquals(1, oldDispatchers.size());
+		Assert.assertEquals(0, registry.size());
+		Assert.assertTrue(subscription.getUnsubscribedFuture().isDone());
+		
+		// Pending subscriptions fail on clear
+		final CompletableFuture<Integer> pending = registry.subscribing(SYMBOL).getSubscribedFuture();
+		registry.restore(oldDispatchers);
+		
+		try {
+			pending.get();
+			Assert.fail("Exception expected");
+		} catch (ExecutionException e) {
+			// Expected
+		}
+		
+		Assert.assertEquals(5, registry.getChannel(SYMBOL));
+		Assert.assertSame(dispatcher, registry.getDispatcher(5));
+	}
+
+	/**
+	 * The snapshot future completes with the first data of the channel
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSnapshotFuture() throws Exception {
+		final ChannelRegistry registry = new ChannelRegistry();
+		final ChannelSubscription subscription = registry.subscribing(SYMBOL);
+		
+		registry.dataReceived(12);
+		registry.subscribed(12, SYMBOL, buildDispatcher());
+		Assert.assertTrue(subscription.getSubscribedFuture().isDone());
+		Assert.assertFalse(subscription.getSnapshotFuture().isDone());
+		
+		registry.dataReceived(12);
+		Assert.assertEquals(12, (int) subscription.getSnapshotFuture().get());
+		
+		// Closed subscriptions fail the pending snapshot future
+		final ChannelSubscription otherSubscription = registry.subscribing(
+				new BitfinexExecutedTradeSymbol(BitfinexCurrencyPair.of("ETH", "USD")));
+		registry.clear();
+		Assert.assertTrue(otherSubscription.getSnapshotFuture().isCompletedExceptionally());
+	}
+
+	/**
+	 * Failed subscriptions are removed while pending
+	 */
+	@Test
+	public void testSubscriptionFailed() {
+		final ChannelRegistry registry = new ChannelRegistry();
+		final ChannelSubscription subscription = registry.subscribing(SYMBOL);
+		
+		Assert.assertSame(subscription, registry.subscriptionFailed(SYMBOL, new IllegalStateException()));
+		Assert.assertEquals(SubscriptionState.CLOSED, subscription.getState());
+		Assert.assertTrue(subscription.getSnapshotFuture().isCompletedExceptionally());
+		Assert.assertNull(registry.getSubscription(SYMBOL));
+		
+		// Active subscriptions are reused and not failed
+		final ChannelSubscription activeSubscription = registry.subscribed(3, SYMBOL, buildDispatcher());
+		Assert.assertSame(activeSubscription, registry.subscribing(SYMBOL));
+		Assert.assertNull(registry.subscriptionFailed(SYMBOL, new IllegalStateException()));
+		Assert.assertEquals(SubscriptionState.ACTIVE, activeSubscription.getState());
+		Assert.assertEquals(3, registry.getChannel(SYMBOL));
+	}
+
+	/**
+	 * Build a dispatcher for executed trades
+	 * @return
+	 */
+	private ChannelDispatcher buildDispatcher() {
+		return new ChannelDispatcher(SYMBOL, new ExecutedTradeHandler(), new SubscribeTradesCommand(SYMBOL));
+	}
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelDispatcher;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelResubscriber;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
+import com.github.jnidzwetzki.bitfinex.v2.commands.AbstractAPICommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTradesCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexStreamSymbol;
+
+public class ChannelResubscriberTest {
+
+	/**
+	 * The symbols
+	 */
+	private final static BitfinexExecutedTradeSymbol BTC_SYMBOL 
+		= new BitfinexExecutedTradeSymbol(BitfinexCurrencyPair.of("BTC", "USD"));
+	
+	private final static BitfinexExecutedTradeSymbol ETH_SYMBOL 
+		= new BitfinexExecutedTradeSymbol(BitfinexCurrencyPair.of("ETH", "USD"));
+	
+	/**
+	 * The scheduler
+	 */
+	private ScheduledExecutorService scheduler;
+	
+	/**
+	 * The registry
+	 */
+	private ChannelRegistry registry;
+	
+	/**
+	 * The dispatchers by subscribe command
+	 */
+	private Map<AbstractAPICommand, ChannelDispatcher> dispatchers;
+	
+	/**
+	 * The number of subscribe commands that are not answered, per symbol
+	 */
+	private Map<BitfinexStreamSymbol, AtomicInteger> droppedCommands;
+	
+	/**
+	 * The number of subscribe commands that are rejected, per symbol
+	 */
+	private Map<BitfinexStreamSymbol, AtomicInteger> rejectedCommands;
+	
+	/**
+	 * The sent subscribe commands
+	 */
+	private List<BitfinexStreamSymbol> sentCommands;
+	
+	/**
+	 * The next channel id
+	 */
+	private AtomicInteger nextChannelId;
+	
+	@Before
+	public void before() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		registry = new ChannelRegistry();
+		dispatchers = new HashMap<>();
+		droppedCommands = new HashMap<>();
+		rejectedCommands = new HashMap<>();
+		sentCommands = new ArrayList<>();
+		nextChannelId = new AtomicInteger(1);
+	}
+	
+	@After
+	public void after() {
+		scheduler.shutdownNow();
+	}
+	
+	/**
+	 * All channels are subscribed
+	 * @throws Exception 
+	 */
+	@Test(timeout=10000)
+	public void testResubscription() throws Exception {
+		final ChannelResubscriber resubscriber = buildResubscriber(3);
+		
+		final List<BitfinexStreamSymbol> failed = resubscriber.resubscribe(
+				Arrays.asList(buildDispatcher(BTC_SYMBOL), buildDispatcher(ETH_SYMBOL))).get();
+		
+		Assert.assertTrue(failed.isEmpty());
+		Assert.assertEquals(Arrays.asList(BTC_SYMBOL, ETH_SYMBOL), sentCommands);
+		Assert.assertEquals(2, registry.size());
+		Assert.assertTrue(registry.getChannel(BTC_SYMBOL) > 0);
+		Assert.assertTrue(registry.getChannel(ETH_SYMBOL) > 0);
+	}
+	
+	/**
+	 * A channel that is not subscribed is retried without affecting the other channels
+	 * @throws Exception 
+	 */
+	@Test(timeout=10000)
+	public void testRetry() throws Exception {
+		final ChannelResubscriber resubscriber = buildResubscriber(3);
+		droppedCommands.put(BTC_SYMBOL, new AtomicInteger(2));
+		
+		final List<BitfinexStreamSymbol> failed = resubscriber.resubscribe(
+				Arrays.asList(buildDispatcher(BTC_SYMBOL), buildDispatcher(ETH_SYMBOL))).get();
+		
+		Assert.assertTrue(failed.isEmpty());
+		Assert.assertEquals(Arrays.asList(BTC_SYMBOL, ETH_SYMBOL, BTC_SYMBOL, BTC_SYMBOL), sentCommands);
+		Assert.assertEquals(2, registry.size());
+	}
+	
+	/**
+	 * A channel fails after the maximal number of attempts
+	 * @throws Exception 
+	 */
+	@Test(timeout=10000)
+	public void testFailedChannel() throws Exception {
+		final ChannelResubscriber resubscriber = buildResubscriber(2);
+		droppedCommands.put(ETH_SYMBOL, new AtomicInteger(5));
+		
+		final List<BitfinexStreamSymbol> failed = resubscriber.resubscribe(
+				Arrays.asList(buildDispatcher(BTC_SYMBOL), buildDispatcher(ETH_SYMBOL))).get();
+		
+		Assert.assertEquals(Arrays.asList(ETH_SYMBOL), failed);
+		Assert.assertEquals(Arrays.asList(BTC_SYMBOL, ETH_SYMBOL, ETH_SYMBOL), sentCommands);
+		Assert.assertEquals(1, registry.size());
+		Assert.assertEquals(-1, registry.getChannel(ETH_SYMBOL));
+		
+		// The failed channel is not left pending
+		Assert.assertNull(registry.getSubscription(ETH_SYMBOL));
+	}
+	
+	/**
+	 * A rejected subscription (subscribe error event) is retried
+	 * @throws Exception 
+	 */
+	@Test(timeout=10000)
+	public void testRejectedChannel() throws Exception {
+		final ChannelResubscriber resubscriber = buildResubscriber(3);
+		rejectedCommands.put(BTC_SYMBOL, new AtomicInteger(1));
+		
+		final List<BitfinexStreamSymbol> failed = resubscriber.resubscribe(
+				Arrays.asList(buildDispatcher(BTC_SYMBOL), buildDispatcher(ETH_SYMBOL))).get();
+		
+		Assert.assertTrue(failed.isEmpty());
+		Assert.assertEquals(Arrays.asList(BTC_SYMBOL, ETH_SYMBOL, BTC_SYMBOL), sentCommands);
+		Assert.assertEquals(2, registry.size());
+		Assert.assertTrue(registry.getChannel(BTC_SYMBOL) > 0);
+	}
+	
+	/**
+	 * The pending attempts are stopped when the resubscription is cancelled
+	 * @throws Exception 
+	 */
+	@Test(timeout=10000)
+	public void testCancel() throws Exception {
+		final ChannelResubscriber resubscriber = buildResubscriber(3);
+		droppedCommands.put(BTC_SYMBOL, new AtomicInteger(5));
+		droppedCommands.put(ETH_SYMBOL, new AtomicInteger(5));
+		
+		final CompletableFuture<List<BitfinexStreamSymbol>> resubscription = resubscriber.resubscribe(
+				Arrays.asList(buildDispatcher(BTC_SYMBOL), buildDispatcher(ETH_SYMBOL)));
+		
+		Assert.assertTrue(resubscription.cancel(false));
+		
+		// Wait for the timeouts of the first attempts
+		Thread.sleep(200);
+		scheduler.submit(() -> {}).get();
+		
+		// The first attempts may be sent already, but they are not retried
+		Assert.assertEquals(new HashSet<>(sentCommands).size(), sentCommands.size());
+	}
+	
+	/**
+	 * Build the resubscriber, the commands are answered on the scheduler
+	 * @param maxAttempts
+	 * @return
+	 */
+	private ChannelResubscriber buildResubscriber(final int maxAttempts) {
+		return new ChannelResubscriber(registry, command -> {
+			final ChannelDispatcher dispatcher = dispatchers.get(command);
+			final BitfinexStreamSymbol symbol = dispatcher.getSymbol();
+			sentCommands.add(symbol);
+			
+			final AtomicInteger dropped = droppedCommands.get(symbol);
+			if(dropped != null && dropped.getAndDecrement() > 0) {
+				return;
+			}
+			
+			final AtomicInteger rejected = rejectedCommands.get(symbol);
+			if(rejected != null && rejected.getAndDecrement() > 0) {
+				scheduler.schedule(() -> registry.subscriptionFailed(symbol, 
+						new APIException("Subscription of " + symbol + " failed")), 1, TimeUnit.MILLISECONDS);
+				return;
+			}
+			
+			scheduler.schedule(() -> registry.subscribed(nextChannelId.getAndIncrement(), symbol, dispatcher), 
+					1, TimeUnit.MILLISECONDS);
+		}, scheduler, 1000, 50, maxAttempts);
+	}
+	
+	/**
+	 * Build a dispatcher for executed trades
+	 * @param symbol
+	 * @return
+	 */
+	private ChannelDispatcher buildDispatcher(final BitfinexExecutedTradeSymbol symbol) {
+		final SubscribeTradesCommand command = new SubscribeTradesCommand(symbol);
+		final ChannelDispatcher dispatcher = new ChannelDispatcher(symbol, new ExecutedTradeHandler(), command);
+		dispatchers.put(command, dispatcher);
+		return dispatcher;
+	}
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
+import com.github.jnidzwetzki.bitfinex.v2.manager.ConflatingCallback;
+
+public class ConflatingCallbackTest {
+
+	/**
+	 * Test the conflation of the pending updates
+	 */
+	@Test
+	public void testConflation() {
+		final List<Runnable> tasks = new ArrayList<>();
+		final List<EntryBatch<String>> delivered = new ArrayList<>();
+		
+		final ConflatingCallback<String, String> callback = new ConflatingCallback<>(
+				keyFunction(), (s, b) -> delivered.add(b), tasks::add);
+		
+		callback.accept("sym", new EntryBatch<>(Arrays.asList("a=1", "b=1"), false));
+		callback.accept("sym", new EntryBatch<>(Arrays.asList("a=2"), false));
+		callback.accept("sym", new EntryBatch<>(Arrays.asList("c=1", "a=3"), false));
+		
+		// Only one delivery task is scheduled
+		Assert.assertEquals(1, tasks.size());
+		Assert.assertEquals(2, callback.getConflatedUpdates());
+		
+		tasks.remove(0).run();
+		Assert.assertEquals(1, delivered.size());
+		Assert.assertFalse(delivered.get(0).isSnapshot());
+		Assert.assertEquals(Arrays.asList("a=3", "b=1", "c=1"), new ArrayList<>(delivered.get(0)));
+		
+		// Delivery is done, the next update schedules a new task
+		callback.accept("sym", new EntryBatch<>(Arrays.asList("b=2"), false));
+		Assert.assertEquals(1, tasks.size());
+		tasks.remove(0).run();
+		Assert.assertEquals(Arrays.asList("b=2"), new ArrayList<>(delivered.get(1)));
+		Assert.assertEquals(2, callback.getConflatedUpdates());
+	}
+	
+	/**
+	 * A snapshot replaces the pending updates
+	 */
+	@Test
+	public void testSnapshot() {
+		final List<Runnable> tasks = new ArrayList<>();
+		final List<EntryBatch<String>> delivered = new ArrayList<>();
+		
+		final ConflatingCallback<String, String> callback = new ConflatingCallback<>(
+				keyFunction(), (s, b) -> delivered.add(b), tasks::add);
+		
+		callback.accept("sym", new EntryBatch<>(Arrays.asList("a=1", "b=1"), false));
+		callback.accept("sym", new EntryBatch<>(Arrays.asList("c=1", "d=1"), true));
+		callback.accept("sym", new EntryBatch<>(Arrays.asList("d=2"), false));
+		
+		Assert.assertEquals(3, callback.getConflatedUpdates());
+		
+		tasks.remove(0).run();
+		Assert.assertEquals(1, delivered.size());
+		Assert.assertTrue(delivered.get(0).isSnapshot());
+		Assert.assertEquals(Arrays.asList("c=1", "d=2"), new ArrayList<>(delivered.get(0)));
+	}
+	
+	/**
+	 * Conflate the entries by the part before the '='
+	 * @return
+	 */
+	private static Function<String, Object> keyFunction() {
+		return e -> e.substring(0, e.indexOf('='));
+	}
+}
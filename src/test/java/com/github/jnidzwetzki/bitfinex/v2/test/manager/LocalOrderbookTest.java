@@ -0,0 +1,244 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelFrameTokenizer;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.OrderbookHandler;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookFrequency;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookPrecision;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.manager.LocalOrderbook;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class LocalOrderbookTest {
+
+	/**
+	 * The orderbook configuration
+	 */
+	private final static OrderbookConfiguration CONFIGURATION = new OrderbookConfiguration(
+			BitfinexCurrencyPair.of("BTC","USD"), OrderBookPrecision.P0, OrderBookFrequency.F0, 25);
+	
+	/**
+	 * Test snapshots, updates and deletions
+	 */
+	@Test
+	public void testSnapshotAndUpdates() {
+		final LocalOrderbook orderbook = new LocalOrderbook(CONFIGURATION, 2);
+		
+		Assert.assertEquals(FixedPoint.NULL_VALUE, orderbook.getBestBidPrice());
+		Assert.assertEquals(FixedPoint.NULL_VALUE, orderbook.getBestAskPrice());
+		
+		orderbook.applySnapshot(Arrays.asList(
+				new OrderbookEntry(99_00, 1, 200, 2),
+				new OrderbookEntry(100_00, 2, 100, 2),
+				new OrderbookEntry(98_00, 1, 300, 2),
+				new OrderbookEntry(101_00, 1, -150, 2),
+				new OrderbookEntry(102_00, 3, -50, 2)));
+		
+		Assert.assertEquals(3, orderbook.getBidDepth());
+		Assert.assertEquals(2, orderbook.getAskDepth());
+		Assert.assertEquals(100_00, orderbook.getBestBidPrice());
+		Assert.assertEquals(100, orderbook.getBestBidAmount());
+		Assert.assertEquals(101_00, orderbook.getBestAskPrice());
+		Assert.assertEquals(150, orderbook.getBestAskAmount());
+		Assert.assertEquals(98_00, orderbook.getBidPrice(2));
+		Assert.assertEquals(3, orderbook.getAskCount(1));
+		Assert.assertEquals(FixedPoint.NULL_VALUE, orderbook.getBidPrice(3));
+		Assert.assertEquals(FixedPoint.NULL_VALUE, orderbook.getAskPrice(-1));
+		
+		Assert.assertEquals(300, orderbook.getCumulativeBidAmount(99_00));
+		Assert.assertEquals(600, orderbook.getCumulativeBidAmount(0));
+		Assert.assertEquals(0, orderbook.getCumulativeBidAmount(100_50));
+		Assert.assertEquals(200, orderbook.getCumulativeAskAmount(102_00));
+		
+		// New best bid, update and deletion
+		orderbook.applyUpdate(new OrderbookEntry(100_50, 1, 10, 2));
+		orderbook.applyUpdate(new OrderbookEntry(99_00, 4, 250, 2));
+		orderbook.applyUpdate(new OrderbookEntry(101_00, 0, -1, 2));
+		orderbook.applyUpdate(new OrderbookEntry(100_00, 0, 1, 2));
+		
+		Assert.assertEquals(3, orderbook.getBidDepth());
+		Assert.assertEquals(100_50, orderbook.getBestBidPrice());
+		Assert.assertEquals(99_00, orderbook.getBidPrice(1));
+		Assert.assertEquals(250, orderbook.getBidAmount(1));
+		Assert.assertEquals(4, orderbook.getBidCount(1));
+		Assert.assertEquals(1, orderbook.getAskDepth());
+		Assert.assertEquals(102_00, orderbook.getBestAskPrice());
+		
+		// Snapshot replaces the book
+		orderbook.applySnapshot(Arrays.asList(
+				new OrderbookEntry(50_00, 1, 1, 2),
+				new OrderbookEntry(51_00, 1, -1, 2)));
+		Assert.assertEquals(1, orderbook.getBidDepth());
+		Assert.assertEquals(50_00, orderbook.getBestBidPrice());
+	}
+	
+	/**
+	 * Test that a invalid snapshot does not change the book
+	 */
+	@Test
+	public void testInvalidSnapshot() {
+		final LocalOrderbook orderbook = new LocalOrderbook(CONFIGURATION, 2);
+		
+		orderbook.applySnapshot(Arrays.asList(
+				new OrderbookEntry(99_00, 1, 200, 2),
+				new OrderbookEntry(101_00, 1, -150, 2)));
+		
+		try {
+			orderbook.applySnapshot(Arrays.asList(
+					new OrderbookEntry(new BigDecimal("98"), BigDecimal.ONE, BigDecimal.ONE),
+					new OrderbookEntry(new BigDecimal("97.001"), BigDecimal.ONE, BigDecimal.ONE)));
+			Assert.fail("Exception expected");
+		} catch (ArithmeticException e) {
+			// Expected
+		}
+		
+		Assert.assertEquals(1, orderbook.getBidDepth());
+		Assert.assertEquals(99_00, orderbook.getBestBidPrice());
+		Assert.assertEquals(101_00, orderbook.getBestAskPrice());
+	}
+	
+	/**
+	 * Test the growth of the book
+	 */
+	@Test
+	public void testManyLevels() {
+		final LocalOrderbook orderbook = new LocalOrderbook(CONFIGURATION, 0);
+		
+		for(int i = 1; i <= 100; i++) {
+			orderbook.applyUpdate(new OrderbookEntry(i, 1, i, 0));
+			orderbook.applyUpdate(new OrderbookEntry(1000 - i, 1, -i, 0));
+		}
+		
+		Assert.assertEquals(100, orderbook.getBidDepth());
+		Assert.assertEquals(100, orderbook.getAskDepth());
+		Assert.assertEquals(100, orderbook.getBestBidPrice());
+		Assert.assertEquals(1, orderbook.getBidPrice(99));
+		Assert.assertEquals(900, orderbook.getBestAskPrice());
+		Assert.assertEquals(999, orderbook.getAskPrice(99));
+		Assert.assertEquals(5050, orderbook.getCumulativeBidAmount(1));
+	}
+	
+	/**
+	 * Test the maintenance of the book in the manager
+	 */
+	@Test
+	public void testOrderbookManager() {
+		final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+		Mockito.when(bitfinexApiBroker.getConfiguration().getFixedPointScale(Mockito.any())).thenReturn(8);
+		
+		final BitfinexApiCallbackRegistry callbackRegistry = new BitfinexApiCallbackRegistry();
+		final OrderbookManager orderbookManager = new OrderbookManager(bitfinexApiBroker, 
+				MoreExecutors.newDirectExecutorService(), callbackRegistry);
+		
+		Assert.assertNull(orderbookManager.getOrderbook(CONFIGURATION));
+		
+		callbackRegistry.acceptOrderbookEvent(CONFIGURATION, Arrays.asList(
+				new OrderbookEntry(new BigDecimal("6359"), BigDecimal.ONE, new BigDecimal("-0.5")),
+				new OrderbookEntry(new BigDecimal("6358.9"), new BigDecimal(2), new BigDecimal("1.25"))));
+		
+		final LocalOrderbook orderbook = orderbookManager.getOrderbook(CONFIGURATION);
+		Assert.assertEquals(8, orderbook.getScale());
+		Assert.assertEquals(635890000000L, orderbook.getBestBidPrice());
+		Assert.assertEquals(125000000L, orderbook.getBestBidAmount());
+		Assert.assertEquals(635900000000L, orderbook.getBestAskPrice());
+		
+		callbackRegistry.acceptOrderbookEvent(CONFIGURATION, Arrays.asList(
+				new OrderbookEntry(new BigDecimal("6359"), BigDecimal.ZERO, new BigDecimal("-1"))));
+		Assert.assertEquals(0, orderbook.getAskDepth());
+		
+		// A snapshot that does not fit into the scale triggers a resubscription
+		callbackRegistry.acceptOrderbookEvent(CONFIGURATION, Arrays.asList(
+				new OrderbookEntry(new BigDecimal("6359.000000001"), BigDecimal.ONE, new BigDecimal("-1")),
+				new OrderbookEntry(new BigDecimal("6358"), BigDecimal.ONE, new BigDecimal("1"))));
+		Assert.assertEquals(1, orderbook.getBidDepth());
+		Mockito.verify(bitfinexApiBroker).resubscribeChannel(CONFIGURATION);
+		
+		orderbookManager.clear();
+		Assert.assertEquals(0, orderbook.getBidDepth());
+		
+		// The book is reloaded in place on resubscribe
+		orderbookManager.subscribeOrderbook(CONFIGURATION);
+		callbackRegistry.acceptOrderbookEvent(CONFIGURATION, Arrays.asList(
+				new OrderbookEntry(new BigDecimal("6358"), BigDecimal.ONE, new BigDecimal("1"))));
+		Assert.assertSame(orderbook, orderbookManager.getOrderbook(CONFIGURATION));
+		Assert.assertEquals(1, orderbook.getBidDepth());
+	}
+	
+	/**
+	 * Test the batch callbacks and the snapshot flag of the handler
+	 * @throws APIException 
+	 */
+	@Test
+	public void testBatchCallbacks() throws APIException {
+		final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+		Mockito.when(bitfinexApiBroker.getConfiguration().getFixedPointScale(Mockito.any())).thenReturn(8);
+		
+		final BitfinexApiCallbackRegistry callbackRegistry = new BitfinexApiCallbackRegistry();
+		final OrderbookManager orderbookManager = new OrderbookManager(bitfinexApiBroker, 
+				MoreExecutors.newDirectExecutorService(), callbackRegistry);
+		
+		final OrderbookHandler handler = new OrderbookHandler();
+		handler.onOrderbookEvent(callbackRegistry::acceptOrderbookEvent);
+		
+		final List<EntryBatch<OrderbookEntry>> batches = new ArrayList<>();
+		orderbookManager.registerOrderbookBatchCallback(CONFIGURATION, (c, b) -> batches.add(b));
+		
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[[6359,1,-0.5],[6358.9,2,1.25],[6358,1,2]]");
+		handler.handleChannelData(CONFIGURATION, tokenizer);
+		
+		Assert.assertEquals(1, batches.size());
+		Assert.assertTrue(batches.get(0).isSnapshot());
+		Assert.assertEquals(3, batches.get(0).size());
+		Assert.assertEquals(2, orderbookManager.getOrderbook(CONFIGURATION).getBidDepth());
+		
+		tokenizer.reset("[6357,1,3]");
+		handler.handleChannelData(CONFIGURATION, tokenizer);
+		
+		Assert.assertEquals(2, batches.size());
+		Assert.assertFalse(batches.get(1).isSnapshot());
+		Assert.assertEquals(3, orderbookManager.getOrderbook(CONFIGURATION).getBidDepth());
+		
+		// A snapshot with one entry replaces the book
+		tokenizer.reset("[[6360,1,-1]]");
+		handler.handleChannelData(CONFIGURATION, tokenizer);
+		
+		Assert.assertEquals(3, batches.size());
+		Assert.assertTrue(batches.get(2).isSnapshot());
+		Assert.assertEquals(0, orderbookManager.getOrderbook(CONFIGURATION).getBidDepth());
+		Assert.assertEquals(1, orderbookManager.getOrderbook(CONFIGURATION).getAskDepth());
+	}
+}
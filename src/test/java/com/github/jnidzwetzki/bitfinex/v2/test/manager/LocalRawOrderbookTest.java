@@ -0,0 +1,158 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.manager.LocalRawOrderbook;
+import com.github.jnidzwetzki.bitfinex.v2.manager.RawOrderbookManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.FixedPoint;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class LocalRawOrderbookTest {
+
+	/**
+	 * The orderbook configuration
+	 */
+	private final static RawOrderbookConfiguration CONFIGURATION 
+		= new RawOrderbookConfiguration(BitfinexCurrencyPair.of("BTC","USD"));
+	
+	/**
+	 * Test the levels and the queues of the book
+	 */
+	@Test
+	public void testQueues() {
+		final LocalRawOrderbook orderbook = new LocalRawOrderbook(CONFIGURATION, 0);
+		
+		orderbook.applySnapshot(Arrays.asList(
+				new RawOrderbookEntry(1, 100, 10, 0),
+				new RawOrderbookEntry(2, 100, 20, 0),
+				new RawOrderbookEntry(3, 100, 30, 0),
+				new RawOrderbookEntry(4, 99, 5, 0),
+				new RawOrderbookEntry(5, 101, -7, 0)));
+		
+		Assert.assertEquals(5, orderbook.getOrderCount());
+		Assert.assertEquals(2, orderbook.getBidDepth());
+		Assert.assertEquals(1, orderbook.getAskDepth());
+		Assert.assertEquals(100, orderbook.getBestBidPrice());
+		Assert.assertEquals(60, orderbook.getBidAmount(0));
+		Assert.assertEquals(3, orderbook.getBidOrderCount(0));
+		Assert.assertEquals(101, orderbook.getBestAskPrice());
+		Assert.assertEquals(7, orderbook.getAskAmount(0));
+		
+		Assert.assertEquals(2, orderbook.getQueuePosition(3));
+		Assert.assertEquals(30, orderbook.getAmountAhead(3));
+		Assert.assertEquals(0, orderbook.getQueuePosition(4));
+		
+		// Amount change keeps the position
+		orderbook.applyUpdate(new RawOrderbookEntry(2, 100, 15, 0));
+		Assert.assertEquals(1, orderbook.getQueuePosition(2));
+		Assert.assertEquals(55, orderbook.getBidAmount(0));
+		
+		// Remove the first order of the queue
+		orderbook.applyUpdate(new RawOrderbookEntry(1, 0, 1, 0));
+		Assert.assertFalse(orderbook.containsOrder(1));
+		Assert.assertEquals(0, orderbook.getQueuePosition(2));
+		Assert.assertEquals(15, orderbook.getAmountAhead(3));
+		Assert.assertEquals(-1, orderbook.getQueuePosition(1));
+		Assert.assertEquals(FixedPoint.NULL_VALUE, orderbook.getAmountAhead(1));
+		
+		// Price change moves the order to the end of the new queue
+		orderbook.applyUpdate(new RawOrderbookEntry(2, 99, 15, 0));
+		Assert.assertEquals(1, orderbook.getQueuePosition(2));
+		Assert.assertEquals(99, orderbook.getOrderPrice(2));
+		Assert.assertEquals(30, orderbook.getBidAmount(0));
+		Assert.assertEquals(20, orderbook.getBidAmount(1));
+		
+		// Remove the last order of a level
+		orderbook.applyUpdate(new RawOrderbookEntry(5, 0, -1, 0));
+		Assert.assertEquals(0, orderbook.getAskDepth());
+		Assert.assertEquals(FixedPoint.NULL_VALUE, orderbook.getBestAskPrice());
+		Assert.assertEquals(3, orderbook.getOrderCount());
+	}
+	
+	/**
+	 * Test a book with many orders (growth of the slots and the levels)
+	 */
+	@Test
+	public void testManyOrders() {
+		final LocalRawOrderbook orderbook = new LocalRawOrderbook(CONFIGURATION, 0);
+		
+		for(int i = 0; i < 10_000; i++) {
+			orderbook.applyUpdate(new RawOrderbookEntry(i, 1000 + (i % 200), -1, 0));
+		}
+		
+		Assert.assertEquals(10_000, orderbook.getOrderCount());
+		Assert.assertEquals(200, orderbook.getAskDepth());
+		Assert.assertEquals(1000, orderbook.getBestAskPrice());
+		Assert.assertEquals(50, orderbook.getAskOrderCount(0));
+		Assert.assertEquals(49, orderbook.getQueuePosition(9800));
+		
+		for(int i = 0; i < 10_000; i += 2) {
+			orderbook.applyUpdate(new RawOrderbookEntry(i, 0, -1, 0));
+		}
+		
+		Assert.assertEquals(5_000, orderbook.getOrderCount());
+		Assert.assertEquals(100, orderbook.getAskDepth());
+		Assert.assertEquals(1001, orderbook.getBestAskPrice());
+		
+		orderbook.clear();
+		Assert.assertEquals(0, orderbook.getOrderCount());
+		Assert.assertFalse(orderbook.containsOrder(1));
+	}
+	
+	/**
+	 * Test the maintenance of the book in the manager
+	 */
+	@Test
+	public void testRawOrderbookManager() {
+		final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+		Mockito.when(bitfinexApiBroker.getConfiguration().getFixedPointScale(Mockito.any())).thenReturn(8);
+		
+		final BitfinexApiCallbackRegistry callbackRegistry = new BitfinexApiCallbackRegistry();
+		final RawOrderbookManager orderbookManager = new RawOrderbookManager(bitfinexApiBroker, 
+				MoreExecutors.newDirectExecutorService(), callbackRegistry);
+		
+		callbackRegistry.acceptRawOrderbookEvent(CONFIGURATION, Arrays.asList(
+				new RawOrderbookEntry(1, new BigDecimal("6359"), new BigDecimal("-0.5")),
+				new RawOrderbookEntry(2, new BigDecimal("6358.9"), new BigDecimal("1.25"))));
+		
+		final LocalRawOrderbook orderbook = orderbookManager.getOrderbook(CONFIGURATION);
+		Assert.assertEquals(635890000000L, orderbook.getBestBidPrice());
+		Assert.assertEquals(50000000L, orderbook.getOrderAmount(1));
+		
+		callbackRegistry.acceptRawOrderbookEvent(CONFIGURATION, Arrays.asList(
+				new RawOrderbookEntry(1, BigDecimal.ZERO, new BigDecimal("-1"))));
+		Assert.assertEquals(1, orderbook.getOrderCount());
+		
+		// The book is cleared and kept on resubscribe
+		orderbookManager.subscribeOrderbook(CONFIGURATION);
+		Assert.assertSame(orderbook, orderbookManager.getOrderbook(CONFIGURATION));
+		Assert.assertEquals(0, orderbook.getOrderCount());
+	}
+}
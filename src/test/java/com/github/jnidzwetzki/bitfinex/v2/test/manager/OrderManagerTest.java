@@ -17,17 +17,30 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.bitfinex.v2.test.manager;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import org.json.JSONArray;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
 import com.github.jnidzwetzki.bitfinex.v2.BitfinexOrderBuilder;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexOrderUpdateBuilder;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.NotificationHandler;
 import com.github.jnidzwetzki.bitfinex.v2.callback.api.OrderHandler;
+import com.github.jnidzwetzki.bitfinex.v2.commands.CancelOrderCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderMultiCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderUpdateCommand;
+import com.github.jnidzwetzki.bitfinex.v2.commands.OrderCommand;
 import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
@@ -35,6 +48,8 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderType;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ConnectionCapabilities;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
 import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrderState;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderRequestError;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderRequestError.RequestType;
 import com.github.jnidzwetzki.bitfinex.v2.manager.OrderManager;
 
 
@@ -303,5 +318,306 @@ public class OrderManagerTest {
         orderManager.placeOrderAndWaitUntilActive(order);
     }
 
+    /**
+     * Test the async placement of an order, orders in the error state are placed again
+     *
+     * @throws Exception
+     */
+    @Test(timeout = 60000)
+    public void testPlaceOrderAsync() throws Exception {
+        final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+
+        final BitfinexOrder order
+                = BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BCH", "USD"), BitfinexOrderType.MARKET, 1).build();
+
+        final CompletableFuture<ExchangeOrder> future = orderManager.placeOrderAsync(order);
+        Assert.assertFalse(future.isDone());
+        Assert.assertEquals(1, orderManager.getNumberOfPendingRequests());
+
+        final ExchangeOrder errorOrder = new ExchangeOrder();
+        errorOrder.setCid(order.getCid());
+        errorOrder.setState(ExchangeOrderState.STATE_ERROR);
+        orderManager.updateOrder(errorOrder);
+        Assert.assertFalse(future.isDone());
+
+        // The retry is scheduled
+        Mockito.verify(bitfinexApiBroker, Mockito.timeout(10000).times(2)).sendCommand(Mockito.any(OrderCommand.class));
+
+        final ExchangeOrder activeOrder = new ExchangeOrder();
+        activeOrder.setOrderId(15);
+        activeOrder.setCid(order.getCid());
+        activeOrder.setState(ExchangeOrderState.STATE_ACTIVE);
+        orderManager.updateOrder(activeOrder);
+
+        Assert.assertEquals(15, future.get(10, TimeUnit.SECONDS).getOrderId());
+        Assert.assertEquals(0, orderManager.getNumberOfPendingRequests());
+    }
+
+    /**
+     * Test the async cancelation of an order
+     *
+     * @throws Exception
+     */
+    @Test(timeout = 60000)
+    public void testCancelOrderAsync() throws Exception {
+        final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+
+        final CompletableFuture<ExchangeOrder> future = orderManager.cancelOrderAsync(12);
+
+        // Pending cancellations of the same order share the result
+        Assert.assertSame(future, orderManager.cancelOrderAsync(12));
+        Mockito.verify(bitfinexApiBroker, Mockito.times(1)).sendCommand(Mockito.any(CancelOrderCommand.class));
+
+        final ExchangeOrder exchangeOrder = new ExchangeOrder();
+        exchangeOrder.setOrderId(12);
+        exchangeOrder.setState(ExchangeOrderState.STATE_CANCELED);
+        orderManager.updateOrder(exchangeOrder);
+
+        Assert.assertEquals(ExchangeOrderState.STATE_CANCELED, future.get(10, TimeUnit.SECONDS).getState());
+        Assert.assertEquals(0, orderManager.getNumberOfPendingRequests());
+    }
+
+    /**
+     * Test that the pending requests fail when the connection is closed
+     *
+     * @throws Exception
+     */
+    @Test(timeout = 60000)
+    public void testFailPendingRequests() throws Exception {
+        final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+
+        final CompletableFuture<ExchangeOrder> future = orderManager.cancelOrderAsync(12);
+        Assert.assertEquals(1, orderManager.getNumberOfPendingRequests());
+
+        orderManager.failPendingRequests(new APIException("The connection is closed"));
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Request is not failed");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof APIException);
+        }
+
+        Assert.assertEquals(0, orderManager.getNumberOfPendingRequests());
+    }
+
+    /**
+     * Test the rejected cancelation of an order, the cancelation is retried
+     *
+     * @throws Exception
+     */
+    @Test(timeout = 60000)
+    public void testCancelOrderRejected() throws Exception {
+        final String jsonString = "[0,\"n\",[1575289447641,\"oc-req\",null,null,[1185815100,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null],null,\"ERROR\",\"Temporarily unavailable.\"]]";
+        final JSONArray jsonArray = new JSONArray(jsonString);
+
+        final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+        final NotificationHandler notificationHandler = new NotificationHandler();
+        notificationHandler.onOrderRequestError(bitfinexApiBroker.getCallbackRegistry()::acceptOrderRequestError);
+
+        final CompletableFuture<ExchangeOrder> future = orderManager.cancelOrderAsync(1185815100L);
+
+        for(int attempt = 1; attempt <= 3; attempt++) {
+            Mockito.verify(bitfinexApiBroker, Mockito.timeout(10000).times(attempt))
+                .sendCommand(Mockito.any(CancelOrderCommand.class));
+            notificationHandler.handleChannelData(jsonArray);
+        }
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Cancelation is not rejected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof APIException);
+        }
+
+        // The rejection does not change the order
+        Assert.assertEquals(0, orderManager.getNumberOfPendingRequests());
+        Assert.assertEquals(0, orderManager.getOrderStore().getNumberOfArchivedOrders());
+    }
+
+    /**
+     * Test the cancelation of an unknown order, the cancelation is not retried
+     *
+     * @throws Exception
+     */
+    @Test(timeout = 60000)
+    public void testCancelOrderNotFound() throws Exception {
+        final String jsonString = "[0,\"n\",[1575289447641,\"oc-req\",null,null,[1185815100,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null,null],null,\"ERROR\",\"Order not found.\"]]";
+        final JSONArray jsonArray = new JSONArray(jsonString);
 
+        final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+        final NotificationHandler notificationHandler = new NotificationHandler();
+        notificationHandler.onOrderRequestError(bitfinexApiBroker.getCallbackRegistry()::acceptOrderRequestError);
+
+        final CompletableFuture<ExchangeOrder> future = orderManager.cancelOrderAsync(1185815100L);
+        notificationHandler.handleChannelData(jsonArray);
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Cancelation is not rejected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("Order not found"));
+        }
+
+        Mockito.verify(bitfinexApiBroker, Mockito.times(1)).sendCommand(Mockito.any(CancelOrderCommand.class));
+        Assert.assertEquals(0, orderManager.getNumberOfPendingRequests());
+    }
+
+    /**
+     * Test the notifications of multi operation requests, the errors are reported per operation
+     *
+     * @throws APIException
+     */
+    @Test
+    public void testMultiOperationNotification() throws APIException {
+        final List<ExchangeOrder> orderErrors = new ArrayList<>();
+        final List<OrderRequestError> requestErrors = new ArrayList<>();
+
+        final NotificationHandler notificationHandler = new NotificationHandler();
+        notificationHandler.onExchangeOrderNotification(orderErrors::add);
+        notificationHandler.onOrderRequestError(requestErrors::add);
+
+        notificationHandler.handleChannelData(new JSONArray("[0,\"n\",[1568711312683,\"ox_multi-req\",null,null,["
+                + "[1568711312683,\"on-req\",null,null,[[null,null,1002,\"tBCHUSD\",null,null,1,1,\"LIMIT\"]],null,\"ERROR\",\"Invalid order: not enough balance\"],"
+                + "[1568711312683,\"on-req\",null,null,[[31,null,1001,\"tBCHUSD\",null,null,1,1,\"LIMIT\"]],null,\"SUCCESS\",\"Submitting 1 orders.\"],"
+                + "[1568711312683,\"oc-req\",null,null,[21,null,null,null],null,\"ERROR\",\"Order not found.\"]"
+                + "],null,\"INFO\",\"Submitting 3 orders.\"]]"));
+
+        Assert.assertEquals(1, orderErrors.size());
+        Assert.assertEquals(1002, orderErrors.get(0).getCid());
+        Assert.assertEquals(ExchangeOrderState.STATE_ERROR, orderErrors.get(0).getState());
+        Assert.assertEquals(1, requestErrors.size());
+        Assert.assertEquals(RequestType.CANCEL, requestErrors.get(0).getRequestType());
+        Assert.assertEquals(21, requestErrors.get(0).getOrderId());
+
+        // The errors of multi cancellations contain the orders
+        notificationHandler.handleChannelData(new JSONArray("[0,\"n\",[1568711312683,\"oc_multi-req\",null,null,"
+                + "[[22,null,null,null],[23,null,null,null]],null,\"ERROR\",\"Order not found.\"]]"));
+
+        Assert.assertEquals(3, requestErrors.size());
+        Assert.assertEquals(22, requestErrors.get(1).getOrderId());
+        Assert.assertEquals(23, requestErrors.get(2).getOrderId());
+    }
+
+    /**
+     * Test the batch operations, the operations are sent in one frame
+     *
+     * @throws Exception
+     */
+    @Test(timeout = 60000)
+    public void testReplaceOrdersAsync() throws Exception {
+        final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+
+        final BitfinexOrder order1 = BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BCH", "USD"), 
+                BitfinexOrderType.LIMIT, 1).withPrice(100).build();
+        order1.setCid(1001);
+        final BitfinexOrder order2 = BitfinexOrderBuilder.create(BitfinexCurrencyPair.of("BCH", "USD"), 
+                BitfinexOrderType.LIMIT, 1).withPrice(101).build();
+        order2.setCid(1002);
+
+        final List<CompletableFuture<ExchangeOrder>> futures
+                = orderManager.replaceOrdersAsync(Arrays.asList(21L, 22L), Arrays.asList(order1, order2));
+
+        Assert.assertEquals(4, futures.size());
+        Assert.assertEquals(4, orderManager.getNumberOfPendingRequests());
+
+        final ArgumentCaptor<OrderMultiCommand> captor = ArgumentCaptor.forClass(OrderMultiCommand.class);
+        Mockito.verify(bitfinexApiBroker, Mockito.times(1)).sendCommand(captor.capture());
+        Assert.assertEquals(3, captor.getValue().getOperations().size());
+
+        for(final long orderId : Arrays.asList(21L, 22L)) {
+            final ExchangeOrder exchangeOrder = new ExchangeOrder();
+            exchangeOrder.setOrderId(orderId);
+            exchangeOrder.setState(ExchangeOrderState.STATE_CANCELED);
+            orderManager.updateOrder(exchangeOrder);
+        }
+
+        final ExchangeOrder activeOrder = new ExchangeOrder();
+        activeOrder.setOrderId(31);
+        activeOrder.setCid(1001);
+        activeOrder.setState(ExchangeOrderState.STATE_ACTIVE);
+        orderManager.updateOrder(activeOrder);
+
+        Assert.assertEquals(22, futures.get(1).get(10, TimeUnit.SECONDS).getOrderId());
+        Assert.assertEquals(31, futures.get(2).get(10, TimeUnit.SECONDS).getOrderId());
+        Assert.assertFalse(futures.get(3).isDone());
+
+        // Cancel by cid uses the order store
+        final List<CompletableFuture<ExchangeOrder>> cancelFutures
+                = orderManager.cancelOrdersByCidAsync(Arrays.asList(1001L, 9999L));
+        Assert.assertFalse(cancelFutures.get(0).isDone());
+        Assert.assertTrue(cancelFutures.get(1).isCompletedExceptionally());
+    }
+
+    /**
+     * Test the in-place update of an order
+     *
+     * @throws Exception
+     */
+    @Test(timeout = 60000)
+    public void testUpdateOrderAsync() throws Exception {
+        final BitfinexApiBroker bitfinexApiBroker = TestHelper.buildMockedBitfinexConnection();
+        final OrderManager orderManager = bitfinexApiBroker.getOrderManager();
+
+        final CompletableFuture<ExchangeOrder> future = orderManager.updateOrderAsync(
+                BitfinexOrderUpdateBuilder.create(12).withPrice(105).build());
+
+        Mockito.verify(bitfinexApiBroker, Mockito.times(1)).sendCommand(Mockito.any(OrderUpdateCommand.class));
+
+        // Only one update per order can be pending
+        Assert.assertTrue(orderManager.updateOrderAsync(
+                BitfinexOrderUpdateBuilder.create(12).withPrice(106).build()).isCompletedExceptionally());
+
+        // Updates with the old price do not confirm the update
+        final ExchangeOrder oldOrder = new ExchangeOrder();
+        oldOrder.setOrderId(12);
+        oldOrder.setPrice(new BigDecimal("100"));
+        oldOrder.setState(ExchangeOrderState.STATE_PARTIALLY_FILLED);
+        orderManager.updateOrder(oldOrder);
+        Assert.assertFalse(future.isDone());
+
+        final ExchangeOrder updatedOrder = new ExchangeOrder();
+        updatedOrder.setOrderId(12);
+        updatedOrder.setPrice(new BigDecimal("105.0"));
+        updatedOrder.setState(ExchangeOrderState.STATE_PARTIALLY_FILLED);
+        orderManager.updateOrder(updatedOrder);
+
+        Assert.assertSame(updatedOrder, future.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, orderManager.getNumberOfPendingRequests());
+
+        // Partial fills do not confirm a amount update
+        final CompletableFuture<ExchangeOrder> amountFuture = orderManager.updateOrderAsync(
+                BitfinexOrderUpdateBuilder.create(12).withAmount(new BigDecimal("3")).build());
+
+        final ExchangeOrder filledOrder = new ExchangeOrder();
+        filledOrder.setOrderId(12);
+        filledOrder.setAmount(new BigDecimal("1.5"));
+        filledOrder.setState(ExchangeOrderState.STATE_PARTIALLY_FILLED);
+        orderManager.updateOrder(filledOrder);
+        Assert.assertFalse(amountFuture.isDone());
+
+        final ExchangeOrder resizedOrder = new ExchangeOrder();
+        resizedOrder.setOrderId(12);
+        resizedOrder.setAmount(new BigDecimal("3"));
+        resizedOrder.setState(ExchangeOrderState.STATE_PARTIALLY_FILLED);
+        orderManager.updateOrder(resizedOrder);
+
+        Assert.assertSame(resizedOrder, amountFuture.get(10, TimeUnit.SECONDS));
+
+        // Rejected updates are sent again
+        orderManager.updateOrderAsync(BitfinexOrderUpdateBuilder.create(12).withPrice(107).build());
+
+        final NotificationHandler notificationHandler = new NotificationHandler();
+        notificationHandler.onOrderRequestError(bitfinexApiBroker.getCallbackRegistry()::acceptOrderRequestError);
+        notificationHandler.handleChannelData(new JSONArray("[0,\"n\",[1575289447641,\"ou-req\",null,null,[12,null,null,null],null,\"ERROR\",\"Temporarily unavailable.\"]]"));
+
+        Mockito.verify(bitfinexApiBroker, Mockito.timeout(10000).times(4))
+            .sendCommand(Mockito.any(OrderUpdateCommand.class));
+    }
 }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrderState;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderStore;
+
+public class OrderStoreTest {
+
+	/**
+	 * Test the indexes of the open orders
+	 */
+	@Test
+	public void testIndexes() {
+		final OrderStore orderStore = new OrderStore();
+		
+		orderStore.update(buildOrder(1, 11, 5, "tBTCUSD", ExchangeOrderState.STATE_ACTIVE));
+		orderStore.update(buildOrder(2, 12, 5, "tETHUSD", ExchangeOrderState.STATE_ACTIVE));
+		orderStore.update(buildOrder(3, 13, 6, "tBTCUSD", ExchangeOrderState.STATE_ACTIVE));
+		
+		Assert.assertEquals(3, orderStore.getNumberOfOpenOrders());
+		Assert.assertEquals(2, orderStore.getOrder(2).getOrderId());
+		Assert.assertEquals(3, orderStore.getOrderByCid(13).getOrderId());
+		Assert.assertEquals(2, orderStore.getOpenOrdersForGroup(5).size());
+		Assert.assertEquals(1, orderStore.getOpenOrdersForGroup(6).size());
+		Assert.assertEquals(2, orderStore.getOpenOrdersForSymbol("tBTCUSD").size());
+		Assert.assertTrue(orderStore.getOpenOrdersForSymbol("tXRPUSD").isEmpty());
+		
+		// Updates replace the order
+		orderStore.update(buildOrder(1, 11, 5, "tBTCUSD", ExchangeOrderState.STATE_PARTIALLY_FILLED));
+		Assert.assertEquals(3, orderStore.getNumberOfOpenOrders());
+		Assert.assertEquals(ExchangeOrderState.STATE_PARTIALLY_FILLED, orderStore.getOrder(1).getState());
+		Assert.assertEquals(ExchangeOrderState.STATE_PARTIALLY_FILLED, orderStore.getOrderByCid(11).getState());
+		Assert.assertEquals(2, orderStore.getOpenOrdersForSymbol("tBTCUSD").size());
+		
+		// Changed group and symbol are reindexed
+		orderStore.update(buildOrder(1, 11, 6, "tETHUSD", ExchangeOrderState.STATE_ACTIVE));
+		Assert.assertEquals(1, orderStore.getOpenOrdersForGroup(5).size());
+		Assert.assertEquals(2, orderStore.getOpenOrdersForGroup(6).size());
+		Assert.assertEquals(1, orderStore.getOpenOrdersForSymbol("tBTCUSD").size());
+		Assert.assertEquals(2, orderStore.getOpenOrdersForSymbol("tETHUSD").size());
+		
+		orderStore.clear();
+		Assert.assertEquals(0, orderStore.getNumberOfOpenOrders());
+		Assert.assertNull(orderStore.getOrder(1));
+	}
+	
+	/**
+	 * Terminal orders are moved into the archive
+	 */
+	@Test
+	public void testArchive() {
+		final OrderStore orderStore = new OrderStore(2);
+		
+		orderStore.update(buildOrder(1, 11, 5, "tBTCUSD", ExchangeOrderState.STATE_ACTIVE));
+		orderStore.update(buildOrder(1, 11, 5, "tBTCUSD", ExchangeOrderState.STATE_EXECUTED));
+		
+		Assert.assertEquals(0, orderStore.getNumberOfOpenOrders());
+		Assert.assertTrue(orderStore.getOpenOrdersForGroup(5).isEmpty());
+		Assert.assertTrue(orderStore.getOpenOrdersForSymbol("tBTCUSD").isEmpty());
+		Assert.assertEquals(1, orderStore.getNumberOfArchivedOrders());
+		Assert.assertEquals(ExchangeOrderState.STATE_EXECUTED, orderStore.getOrder(1).getState());
+		Assert.assertEquals(ExchangeOrderState.STATE_EXECUTED, orderStore.getOrderByCid(11).getState());
+		
+		orderStore.update(buildOrder(2, 12, 5, "tBTCUSD", ExchangeOrderState.STATE_CANCELED));
+		orderStore.update(buildOrder(3, 13, 5, "tBTCUSD", ExchangeOrderState.STATE_ERROR));
+		
+		// The oldest order is evicted
+		Assert.assertEquals(2, orderStore.getNumberOfArchivedOrders());
+		Assert.assertNull(orderStore.getOrder(1));
+		Assert.assertNull(orderStore.getOrderByCid(11));
+		Assert.assertEquals(ExchangeOrderState.STATE_ERROR, orderStore.getOrderByCid(13).getState());
+	}
+	
+	/**
+	 * Rejected orders have no order id, they are archived by cid and evicted as well
+	 */
+	@Test
+	public void testArchiveWithoutOrderId() {
+		final OrderStore orderStore = new OrderStore(2);
+		
+		orderStore.update(buildOrder(0, 11, 5, "tBTCUSD", ExchangeOrderState.STATE_ERROR));
+		orderStore.update(buildOrder(0, 12, 5, "tBTCUSD", ExchangeOrderState.STATE_ERROR));
+		
+		Assert.assertEquals(0, orderStore.getNumberOfArchivedOrders());
+		Assert.assertNull(orderStore.getOrder(0));
+		Assert.assertEquals(ExchangeOrderState.STATE_ERROR, orderStore.getOrderByCid(11).getState());
+		Assert.assertEquals(ExchangeOrderState.STATE_ERROR, orderStore.getOrderByCid(12).getState());
+		
+		orderStore.update(buildOrder(0, 13, 5, "tBTCUSD", ExchangeOrderState.STATE_ERROR));
+		orderStore.update(buildOrder(4, 14, 5, "tBTCUSD", ExchangeOrderState.STATE_CANCELED));
+		
+		Assert.assertNull(orderStore.getOrderByCid(11));
+		Assert.assertNull(orderStore.getOrderByCid(12));
+		Assert.assertEquals(ExchangeOrderState.STATE_ERROR, orderStore.getOrderByCid(13).getState());
+		Assert.assertEquals(ExchangeOrderState.STATE_CANCELED, orderStore.getOrderByCid(14).getState());
+	}
+	
+	/**
+	 * Build a exchange order
+	 * @param orderId
+	 * @param cid
+	 * @param groupId
+	 * @param symbol
+	 * @param state
+	 * @return
+	 */
+	private static ExchangeOrder buildOrder(final long orderId, final long cid, final int groupId, 
+			final String symbol, final ExchangeOrderState state) {
+		
+		final ExchangeOrder exchangeOrder = new ExchangeOrder();
+		exchangeOrder.setOrderId(orderId);
+		exchangeOrder.setCid(cid);
+		exchangeOrder.setGroupId(groupId);
+		exchangeOrder.setSymbol(symbol);
+		exchangeOrder.setState(state);
+		return exchangeOrder;
+	}
+}
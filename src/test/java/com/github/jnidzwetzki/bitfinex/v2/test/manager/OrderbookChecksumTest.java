@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.manager;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookFrequency;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderBookPrecision;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.OrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookConfiguration;
+import com.github.jnidzwetzki.bitfinex.v2.entity.RawOrderbookEntry;
+import com.github.jnidzwetzki.bitfinex.v2.manager.LocalOrderbook;
+import com.github.jnidzwetzki.bitfinex.v2.manager.LocalRawOrderbook;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderbookChecksum;
+
+public class OrderbookChecksumTest {
+
+	/**
+	 * The currency pair
+	 */
+	private final static BitfinexCurrencyPair CURRENCY_PAIR = BitfinexCurrencyPair.of("BTC","USD");
+
+	/**
+	 * Test the checksum of a orderbook and the number formatting
+	 */
+	@Test
+	public void testOrderbookChecksum() {
+		final LocalOrderbook orderbook = new LocalOrderbook(new OrderbookConfiguration(
+				CURRENCY_PAIR, OrderBookPrecision.P0, OrderBookFrequency.F0, 25), 8);
+
+		orderbook.applySnapshot(Arrays.asList(
+				new OrderbookEntry(new BigDecimal("6359"), new BigDecimal("1"), new BigDecimal("1.5")),
+				new OrderbookEntry(new BigDecimal("6358.9"), new BigDecimal("2"), new BigDecimal("0.00000015")),
+				new OrderbookEntry(new BigDecimal("6358.10"), new BigDecimal("1"), new BigDecimal("0.000001")),
+				new OrderbookEntry(new BigDecimal("6360"), new BigDecimal("1"), new BigDecimal("-0.25")),
+				new OrderbookEntry(new BigDecimal("6361.12345678"), new BigDecimal("1"), new BigDecimal("-10"))));
+
+		final OrderbookChecksum checksum = new OrderbookChecksum();
+
+		Assert.assertEquals(crc("6359:1.5:6360:-0.25:6358.9:1.5e-7:6361.12345678:-10:6358.1:0.000001"),
+				checksum.calculate(orderbook));
+
+		// The calculator is reusable
+		orderbook.applyUpdate(new OrderbookEntry(new BigDecimal("6358.9"),
+				BigDecimal.ZERO, new BigDecimal("1")));
+
+		Assert.assertEquals(crc("6359:1.5:6360:-0.25:6358.1:0.000001:6361.12345678:-10"),
+				checksum.calculate(orderbook));
+	}
+
+	/**
+	 * Only the top 25 levels are part of the checksum
+	 */
+	@Test
+	public void testTopLevels() {
+		final LocalOrderbook orderbook = new LocalOrderbook(new OrderbookConfiguration(
+				CURRENCY_PAIR, OrderBookPrecision.P0, OrderBookFrequency.F0, 100), 2);
+
+		final List<OrderbookEntry> entries = new ArrayList<>();
+		final StringBuilder expected = new StringBuilder();
+
+		for(int level = 0; level < 30; level++) {
+			entries.add(new OrderbookEntry(1000_00 - level * 100, 1, 100 + level, 2));
+			entries.add(new OrderbookEntry(1001_00 + level * 100, 1, -(200 + level), 2));
+
+			if(level < OrderbookChecksum.CHECKSUM_LEVELS) {
+				if(level > 0) {
+					expected.append(":");
+				}
+
+				expected.append(new BigDecimal(1000 - level).toPlainString()).append(":")
+					.append(BigDecimal.valueOf(100 + level, 2).stripTrailingZeros().toPlainString()).append(":")
+					.append(new BigDecimal(1001 + level).toPlainString()).append(":")
+					.append(BigDecimal.valueOf(-(200 + level), 2).stripTrailingZeros().toPlainString());
+			}
+		}
+
+		orderbook.applySnapshot(entries);
+
+		Assert.assertEquals(crc(expected.toString()), new OrderbookChecksum().calculate(orderbook));
+	}
+
+	/**
+	 * Test the checksum of a raw orderbook
+	 */
+	@Test
+	public void testRawOrderbookChecksum() {
+		final LocalRawOrderbook orderbook = new LocalRawOrderbook(
+				new RawOrderbookConfiguration(CURRENCY_PAIR), 8);
+
+		orderbook.applySnapshot(Arrays.asList(
+				new RawOrderbookEntry(11, new BigDecimal("100"), new BigDecimal("0.5")),
+				new RawOrderbookEntry(12, new BigDecimal("100"), new BigDecimal("2")),
+				new RawOrderbookEntry(13, new BigDecimal("99"), new BigDecimal("1")),
+				new RawOrderbookEntry(21, new BigDecimal("101"), new BigDecimal("-0.75"))));
+
+		Assert.assertEquals(crc("11:0.5:21:-0.75:12:2:13:1"), new OrderbookChecksum().calculate(orderbook));
+	}
+
+	/**
+	 * Empty books have the checksum of the empty string
+	 */
+	@Test
+	public void testEmptyOrderbook() {
+		final LocalOrderbook orderbook = new LocalOrderbook(new OrderbookConfiguration(
+				CURRENCY_PAIR, OrderBookPrecision.P0, OrderBookFrequency.F0, 25), 8);
+
+		Assert.assertEquals(0, new OrderbookChecksum().calculate(orderbook));
+	}
+
+	/**
+	 * Calculate the reference checksum
+	 * @param value
+	 * @return
+	 */
+	private static int crc(final String value) {
+		final CRC32 crc = new CRC32();
+		crc.update(value.getBytes(StandardCharsets.US_ASCII));
+		return (int) crc.getValue();
+	}
+}
@@ -18,6 +18,8 @@
 package com.github.jnidzwetzki.bitfinex.v2.test.manager;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.mockito.Mockito;
 
@@ -36,6 +38,15 @@ public class TestHelper {
 	 */
 	public final static String API_KEY = "abc123";
 	
+	/**
+	 * The scheduler of the mocked connections
+	 */
+	private final static ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+		final Thread thread = new Thread(r, "test-scheduler");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
 	/**
 	 * Build a mocked bitfinex connection
 	 * @return
@@ -52,6 +63,8 @@ public class TestHelper {
 		Mockito.when(config.getApiKey()).thenReturn(API_KEY);
 		Mockito.when(bitfinexApiBroker.isAuthenticated()).thenReturn(true);
 		Mockito.when(bitfinexApiBroker.getCapabilities()).thenReturn(ConnectionCapabilities.ALL_CAPABILITIES);
+		Mockito.when(bitfinexApiBroker.getScheduler()).thenReturn(SCHEDULER);
+		Mockito.when(bitfinexApiBroker.getCallbackRegistry()).thenReturn(callbackRegistry);
 
 		final OrderManager orderManager = new OrderManager(bitfinexApiBroker, executorService, callbackRegistry);
 		final TradeManager tradeManager = new TradeManager(bitfinexApiBroker, executorService, callbackRegistry);
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.EntryBatch;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+import com.github.jnidzwetzki.bitfinex.v2.test.manager.TestHelper;
+import com.github.jnidzwetzki.bitfinex.v2.util.BufferedPublisher;
+import com.github.jnidzwetzki.bitfinex.v2.util.Flow;
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class BufferedPublisherTest {
+
+	/**
+	 * The items are delivered as requested
+	 */
+	@Test
+	public void testDemand() {
+		final BufferedPublisher<Integer> publisher = new BufferedPublisher<>(10, 
+				OverflowPolicy.BLOCK, MoreExecutors.directExecutor());
+		
+		final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>();
+		publisher.subscribe(subscriber);
+		Assert.assertEquals(1, publisher.getNumberOfSubscribers());
+		
+		for(int i = 0; i < 5; i++) {
+			publisher.publish(i);
+		}
+		
+		Assert.assertTrue(subscriber.items.isEmpty());
+		
+		subscriber.subscription.request(2);
+		Assert.assertEquals(Arrays.asList(0, 1), subscriber.items);
+		
+		publisher.publish(5);
+		subscriber.subscription.request(10);
+		Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), subscriber.items);
+		
+		// Delivered directly with pending demand
+		publisher.publish(6);
+		Assert.assertEquals(7, subscriber.items.size());
+		
+		publisher.close();
+		Assert.assertTrue(subscriber.completed);
+		Assert.assertEquals(0, publisher.getNumberOfSubscribers());
+	}
+	
+	/**
+	 * Test the overflow policies
+	 */
+	@Test
+	public void testOverflow() {
+		final BufferedPublisher<Integer> dropPublisher = new BufferedPublisher<>(3, 
+				OverflowPolicy.DROP_OLDEST, MoreExecutors.directExecutor());
+		final BufferedPublisher<Integer> conflatePublisher = new BufferedPublisher<>(3, 
+				OverflowPolicy.CONFLATE, MoreExecutors.directExecutor());
+		
+		final RecordingSubscriber<Integer> dropSubscriber = new RecordingSubscriber<>();
+		final RecordingSubscriber<Integer> conflateSubscriber = new RecordingSubscriber<>();
+		dropPublisher.subscribe(dropSubscriber);
+		conflatePublisher.subscribe(conflateSubscriber);
+		
+		for(int i = 0; i < 6; i++) {
+			dropPublisher.publish(i);
+			conflatePublisher.publish(i);
+		}
+		
+		// The buffered items are delivered before the completion
+		dropPublisher.close();
+		conflatePublisher.close();
+		Assert.assertFalse(dropSubscriber.completed);
+		
+		dropSubscriber.subscription.request(Long.MAX_VALUE);
+		conflateSubscriber.subscription.request(Long.MAX_VALUE);
+		
+		Assert.assertEquals(Arrays.asList(3, 4, 5), dropSubscriber.items);
+		Assert.assertEquals(Arrays.asList(0, 1, 5), conflateSubscriber.items);
+		Assert.assertEquals(3, dropPublisher.getDroppedItems());
+		Assert.assertEquals(3, conflatePublisher.getDroppedItems());
+		Assert.assertTrue(dropSubscriber.completed);
+		Assert.assertTrue(conflateSubscriber.completed);
+	}
+	
+	/**
+	 * The batches of incremental streams are merged instead of dropped
+	 */
+	@Test
+	public void testMergeOverflow() {
+		final BufferedPublisher<EntryBatch<Integer>> publisher = new BufferedPublisher<>(2, 
+				OverflowPolicy.DROP_OLDEST, MoreExecutors.directExecutor(), 
+				(older, newer) -> EntryBatch.merge(older, newer, i -> i % 10));
+		
+		final RecordingSubscriber<EntryBatch<Integer>> subscriber = new RecordingSubscriber<>();
+		publisher.subscribe(subscriber);
+		
+		publisher.publish(new EntryBatch<>(Arrays.asList(1, 2), true));
+		publisher.publish(new EntryBatch<>(Arrays.asList(3), false));
+		publisher.publish(new EntryBatch<>(Arrays.asList(13), false));
+		publisher.publish(new EntryBatch<>(Arrays.asList(4), false));
+		
+		subscriber.subscription.request(Long.MAX_VALUE);
+		
+		Assert.assertEquals(2, subscriber.items.size());
+		Assert.assertTrue(subscriber.items.get(0).isSnapshot());
+		Assert.assertFalse(subscriber.items.get(1).isSnapshot());
+		Assert.assertEquals(Arrays.asList(13, 4), new ArrayList<>(subscriber.items.get(1)));
+		Assert.assertEquals(2, publisher.getDroppedItems());
+		
+		// A snapshot replaces the pending updates
+		final EntryBatch<Integer> snapshot = new EntryBatch<>(Arrays.asList(7), true);
+		Assert.assertSame(snapshot, EntryBatch.merge(subscriber.items.get(1), snapshot, i -> i));
+		
+		publisher.close();
+	}
+	
+	/**
+	 * Invalid requests terminate the subscription
+	 */
+	@Test
+	public void testInvalidRequest() {
+		final BufferedPublisher<Integer> publisher = new BufferedPublisher<>(3, 
+				OverflowPolicy.BLOCK, MoreExecutors.directExecutor());
+		
+		final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(0);
+		
+		Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+		Assert.assertEquals(0, publisher.getNumberOfSubscribers());
+	}
+	
+	/**
+	 * Test the tick publisher of the quote manager
+	 * @throws Exception 
+	 */
+	@Test
+	public void testTickPublisher() throws Exception {
+		final ExecutorService executorService = MoreExecutors.newDirectExecutorService();
+		final BitfinexApiCallbackRegistry callbackRegistry = new BitfinexApiCallbackRegistry();
+		final BitfinexApiBroker broker = Mockito.mock(BitfinexApiBroker.class);
+		final QuoteManager quoteManager = new QuoteManager(broker, executorService, callbackRegistry);
+		
+		final BitfinexTickerSymbol btcSymbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.of("BTC","USD"));
+		final BitfinexTickerSymbol ethSymbol = new BitfinexTickerSymbol(BitfinexCurrencyPair.of("ETH","USD"));
+		final BitfinexTick tick = Mockito.mock(BitfinexTick.class);
+		
+		final BufferedPublisher<BitfinexTick> publisher 
+			= quoteManager.createTickPublisher(btcSymbol, 10, OverflowPolicy.DROP_OLDEST);
+		
+		final RecordingSubscriber<BitfinexTick> subscriber = new RecordingSubscriber<>();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		
+		callbackRegistry.acceptTickEvent(btcSymbol, tick);
+		callbackRegistry.acceptTickEvent(ethSymbol, tick);
+		Assert.assertEquals(1, subscriber.items.size());
+		
+		// The publisher is removed from the registry
+		publisher.close();
+		callbackRegistry.acceptTickEvent(btcSymbol, tick);
+		Assert.assertEquals(1, subscriber.items.size());
+		Assert.assertTrue(subscriber.completed);
+	}
+	
+	/**
+	 * The order publisher delivers the batches of the frames
+	 * @throws Exception 
+	 */
+	@Test
+	public void testOrderPublisher() throws Exception {
+		final BitfinexApiBroker broker = TestHelper.buildMockedBitfinexConnection();
+		final BitfinexApiCallbackRegistry callbackRegistry = broker.getCallbackRegistry();
+		
+		final BufferedPublisher<EntryBatch<ExchangeOrder>> publisher 
+			= broker.getOrderManager().createOrderPublisher(10, OverflowPolicy.DROP_OLDEST);
+		
+		final RecordingSubscriber<EntryBatch<ExchangeOrder>> subscriber = new RecordingSubscriber<>();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		
+		final ExchangeOrder order1 = new ExchangeOrder();
+		order1.setOrderId(1);
+		final ExchangeOrder order2 = new ExchangeOrder();
+		order2.setOrderId(2);
+		
+		callbackRegistry.acceptExchangeOrdersEvent(new EntryBatch<>(Arrays.asList(order1, order2), true));
+		callbackRegistry.acceptExchangeOrderNotification(order1);
+		
+		Assert.assertEquals(2, subscriber.items.size());
+		Assert.assertTrue(subscriber.items.get(0).isSnapshot());
+		Assert.assertEquals(2, subscriber.items.get(0).size());
+		Assert.assertFalse(subscriber.items.get(1).isSnapshot());
+		Assert.assertEquals(1, subscriber.items.get(1).size());
+		
+		publisher.close();
+	}
+	
+	private static class RecordingSubscriber<T> implements Flow.Subscriber<T> {
+		
+		private final List<T> items = new ArrayList<>();
+		
+		private Flow.Subscription subscription;
+		
+		private Throwable error;
+		
+		private boolean completed;
+
+		@Override
+		public void onSubscribe(final Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(final T item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(final Throwable throwable) {
+			this.error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+}
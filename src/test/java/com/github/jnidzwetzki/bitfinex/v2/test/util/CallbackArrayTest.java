@@ -0,0 +1,86 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackArray;
+import com.github.jnidzwetzki.bitfinex.v2.util.SymbolCallbackIndex;
+
+public class CallbackArrayTest {
+
+	/**
+	 * Test the copy on write array
+	 */
+	@Test
+	public void testCallbackArray() {
+		final CallbackArray<String> empty = CallbackArray.empty();
+		Assert.assertTrue(empty.isEmpty());
+		
+		final CallbackArray<String> array1 = empty.with("a");
+		final CallbackArray<String> array2 = array1.with("b").with("a");
+		
+		// The arrays are immutable
+		Assert.assertTrue(empty.isEmpty());
+		Assert.assertEquals(1, array1.size());
+		Assert.assertEquals(3, array2.size());
+		Assert.assertEquals("b", array2.get(1));
+		
+		// Only the first occurrence is removed
+		final CallbackArray<String> array3 = array2.without("a");
+		Assert.assertEquals(2, array3.size());
+		Assert.assertEquals("b", array3.get(0));
+		Assert.assertEquals("a", array3.get(1));
+		
+		Assert.assertSame(array3, array3.without("c"));
+		Assert.assertSame(CallbackArray.empty(), array1.without("a"));
+		Assert.assertEquals(-1, array3.indexOf("c"));
+	}
+	
+	/**
+	 * Test the index
+	 */
+	@Test
+	public void testSymbolCallbackIndex() {
+		final SymbolCallbackIndex<String, String> index = new SymbolCallbackIndex<>();
+		
+		Assert.assertFalse(index.isKnownSymbol("BTC"));
+		Assert.assertTrue(index.get("BTC").isEmpty());
+		
+		index.register("BTC", "a");
+		index.register("BTC", "b");
+		index.register("ETH", "c");
+		
+		final CallbackArray<String> btcCallbacks = index.get("BTC");
+		Assert.assertEquals(2, btcCallbacks.size());
+		Assert.assertEquals(1, index.get("ETH").size());
+		
+		Assert.assertTrue(index.remove("BTC", "a"));
+		Assert.assertFalse(index.remove("BTC", "a"));
+		Assert.assertFalse(index.remove("XRP", "a"));
+		
+		// The old array is not modified
+		Assert.assertEquals(2, btcCallbacks.size());
+		Assert.assertEquals(1, index.get("BTC").size());
+		
+		Assert.assertTrue(index.remove("BTC", "b"));
+		Assert.assertTrue(index.get("BTC").isEmpty());
+		Assert.assertTrue(index.isKnownSymbol("BTC"));
+	}
+}
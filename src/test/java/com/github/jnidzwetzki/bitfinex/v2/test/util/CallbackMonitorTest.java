@@ -0,0 +1,211 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiCallbackRegistry;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Trade;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BiConsumerCallbackManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor;
+import com.github.jnidzwetzki.bitfinex.v2.util.CallbackMonitor.ConsumerStatistics;
+import com.github.jnidzwetzki.bitfinex.v2.util.LatencyHistogram;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class CallbackMonitorTest {
+
+	/**
+	 * Test the percentiles of the histogram
+	 */
+	@Test
+	public void testHistogram() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getPercentileNanos(0.99));
+		
+		for(int i = 0; i < 99; i++) {
+			histogram.record(100);
+		}
+		
+		histogram.record(5000);
+		
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(5000, histogram.getMaxNanos());
+		Assert.assertEquals(149, histogram.getMeanNanos());
+		
+		// 100 is in the bucket 64 - 127
+		Assert.assertEquals(127, histogram.getPercentileNanos(0.5));
+		Assert.assertEquals(127, histogram.getPercentileNanos(0.99));
+		Assert.assertEquals(5000, histogram.getPercentileNanos(1.0));
+	}
+	
+	/**
+	 * Test the quarantine of slow consumers
+	 */
+	@Test
+	public void testQuarantine() {
+		final CallbackMonitor monitor = new CallbackMonitor(1, TimeUnit.MILLISECONDS, 2);
+		final ConsumerStatistics statistics = monitor.getStatistics("consumer");
+		
+		monitor.record(statistics, TimeUnit.MICROSECONDS.toNanos(10));
+		monitor.record(statistics, TimeUnit.MILLISECONDS.toNanos(5));
+		Assert.assertEquals(1, statistics.getSlowInvocations());
+		Assert.assertFalse(statistics.isQuarantined());
+		
+		monitor.record(statistics, TimeUnit.MILLISECONDS.toNanos(5));
+		Assert.assertTrue(statistics.isQuarantined());
+		Assert.assertSame(statistics, monitor.getStatistics("consumer"));
+		Assert.assertEquals(3, statistics.getHistogram().getCount());
+		
+		monitor.release("consumer");
+		Assert.assertFalse(statistics.isQuarantined());
+		Assert.assertEquals(0, statistics.getSlowInvocations());
+	}
+	
+	/**
+	 * Slow invocations leave the window when the consumer is fast again
+	 */
+	@Test
+	public void testQuarantineWindow() {
+		final CallbackMonitor monitor = new CallbackMonitor(1, TimeUnit.MILLISECONDS, 2, 3);
+		final ConsumerStatistics statistics = monitor.getStatistics("consumer");
+		final long fast = TimeUnit.MICROSECONDS.toNanos(10);
+		final long slow = TimeUnit.MILLISECONDS.toNanos(5);
+		
+		for(int i = 0; i < 10; i++) {
+			monitor.record(statistics, slow);
+			monitor.record(statistics, fast);
+			monitor.record(statistics, fast);
+		}
+		
+		Assert.assertEquals(10, statistics.getSlowInvocations());
+		Assert.assertEquals(1, statistics.getSlowInvocationsInWindow());
+		Assert.assertFalse(statistics.isQuarantined());
+		
+		monitor.record(statistics, slow);
+		monitor.record(statistics, fast);
+		monitor.record(statistics, slow);
+		Assert.assertEquals(2, statistics.getSlowInvocationsInWindow());
+		Assert.assertTrue(statistics.isQuarantined());
+		
+		monitor.release("consumer");
+		Assert.assertEquals(0, statistics.getSlowInvocationsInWindow());
+	}
+	
+	/**
+	 * Test the monitor in the callback manager
+	 * @throws Exception 
+	 */
+	@Test
+	public void testCallbackManager() throws Exception {
+		final CallbackMonitor monitor = new CallbackMonitor(1, TimeUnit.MILLISECONDS, 2);
+		final BitfinexApiBroker broker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(broker.getCallbackMonitor()).thenReturn(monitor);
+		
+		final BiConsumerCallbackManager<String, Integer> callbackManager 
+			= new BiConsumerCallbackManager<>(MoreExecutors.newDirectExecutorService(), broker);
+		
+		final List<Integer> fastEvents = new ArrayList<>();
+		final List<Integer> slowEvents = new ArrayList<>();
+		final BiConsumer<String, Integer> fastCallback = (s, e) -> fastEvents.add(e);
+		final BiConsumer<String, Integer> slowCallback = (s, e) -> {
+			slowEvents.add(e);
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		
+		callbackManager.registerCallback("BTC", fastCallback);
+		callbackManager.registerCallback("BTC", slowCallback);
+		
+		for(int i = 0; i < 4; i++) {
+			callbackManager.handleEvent("BTC", i);
+		}
+		
+		// The slow callback is quarantined after two events
+		Assert.assertEquals(4, fastEvents.size());
+		Assert.assertEquals(2, slowEvents.size());
+		Assert.assertTrue(monitor.getStatistics(slowCallback).isQuarantined());
+		Assert.assertFalse(monitor.getStatistics(fastCallback).isQuarantined());
+		Assert.assertEquals(4, monitor.getStatistics(fastCallback).getHistogram().getCount());
+		
+		// The statistics of removed callbacks are dropped
+		callbackManager.removeCallback("BTC", slowCallback);
+		Assert.assertFalse(monitor.getStatistics().containsKey(slowCallback));
+	}
+	
+	/**
+	 * Only the user consumers of the registry are monitored
+	 * @throws Exception 
+	 */
+	@Test
+	public void testCallbackRegistry() throws Exception {
+		final CallbackMonitor monitor = new CallbackMonitor(1, TimeUnit.MILLISECONDS, 1);
+		final BitfinexApiCallbackRegistry registry = new BitfinexApiCallbackRegistry();
+		registry.setCallbackMonitor(monitor);
+		
+		final List<Trade> internalEvents = new ArrayList<>();
+		final List<Trade> userEvents = new ArrayList<>();
+		final Consumer<Trade> internalConsumer = t -> {
+			internalEvents.add(t);
+			sleep(5);
+		};
+		final Consumer<Trade> userConsumer = t -> {
+			userEvents.add(t);
+			sleep(5);
+		};
+		
+		registry.onTradeEvent(registry.unmonitored(internalConsumer));
+		final Closeable userRegistration = registry.onTradeEvent(userConsumer);
+		
+		for(int i = 0; i < 3; i++) {
+			registry.acceptTradeEvent(new Trade());
+		}
+		
+		Assert.assertEquals(3, internalEvents.size());
+		Assert.assertEquals(1, userEvents.size());
+		Assert.assertFalse(monitor.getStatistics().containsKey(internalConsumer));
+		Assert.assertTrue(monitor.getStatistics().get(userConsumer).isQuarantined());
+		
+		userRegistration.close();
+		Assert.assertTrue(monitor.getStatistics().isEmpty());
+	}
+	
+	/**
+	 * Sleep the given time
+	 * @param millis
+	 */
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
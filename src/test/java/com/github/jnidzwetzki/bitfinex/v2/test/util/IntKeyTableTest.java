@@ -0,0 +1,145 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelDispatcher;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ChannelFrameTokenizer;
+import com.github.jnidzwetzki.bitfinex.v2.callback.channel.ExecutedTradeHandler;
+import com.github.jnidzwetzki.bitfinex.v2.commands.SubscribeTradesCommand;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExecutedTrade;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexExecutedTradeSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.util.IntKeyTable;
+
+public class IntKeyTableTest {
+
+	/**
+	 * Test put, get and remove of dispatchers
+	 */
+	@Test
+	public void testPutGetRemove() {
+		final IntKeyTable<ChannelDispatcher> table = new IntKeyTable<>();
+		final ChannelDispatcher dispatcher = buildDispatcher(new ArrayList<>());
+		
+		Assert.assertNull(table.get(17082));
+		Assert.assertNull(table.get(-1));
+		
+		table.put(1, dispatcher);
+		table.put(17082, dispatcher);
+		table.put(Integer.MAX_VALUE, dispatcher);
+		Assert.assertEquals(3, table.size());
+		Assert.assertSame(dispatcher, table.get(1));
+		Assert.assertSame(dispatcher, table.get(17082));
+		Assert.assertSame(dispatcher, table.get(Integer.MAX_VALUE));
+		Assert.assertNull(table.get(17081));
+		Assert.assertEquals(3, table.snapshot().size());
+		
+		Assert.assertSame(dispatcher, table.remove(17082));
+		Assert.assertNull(table.remove(17082));
+		Assert.assertSame(dispatcher, table.remove(Integer.MAX_VALUE));
+		Assert.assertNull(table.get(17082));
+		Assert.assertEquals(1, table.size());
+		
+		table.clear();
+		Assert.assertNull(table.get(1));
+		Assert.assertEquals(0, table.size());
+	}
+	
+	/**
+	 * Test the growth of the array and the overflow table, with removed and reused keys
+	 */
+	@Test
+	public void testGrowth() {
+		final IntKeyTable<Integer> table = new IntKeyTable<>();
+		
+		for(int i = 0; i < 1000; i++) {
+			table.put(i * 37, i);
+			table.put(100000 + i * 7919, i);
+		}
+		
+		Assert.assertEquals(2000, table.size());
+		
+		for(int i = 0; i < 1000; i++) {
+			Assert.assertEquals(Integer.valueOf(i), table.get(i * 37));
+			Assert.assertEquals(Integer.valueOf(i), table.get(100000 + i * 7919));
+		}
+		
+		for(int i = 0; i < 1000; i += 2) {
+			Assert.assertEquals(Integer.valueOf(i), table.remove(100000 + i * 7919));
+		}
+		
+		// Removed keys are reused and skipped on resize
+		for(int i = 0; i < 1000; i++) {
+			table.put(5000000 + i, -i);
+		}
+		
+		table.put(100000, 42);
+		
+		Assert.assertEquals(2501, table.size());
+		Assert.assertEquals(Integer.valueOf(42), table.get(100000));
+		Assert.assertNull(table.get(100000 + 2 * 7919));
+		Assert.assertEquals(Integer.valueOf(3), table.get(100000 + 3 * 7919));
+		Assert.assertEquals(Integer.valueOf(-999), table.get(5000999));
+		Assert.assertNull(table.get(5001000));
+		Assert.assertEquals(2501, table.snapshot().size());
+	}
+	
+	/**
+	 * Test the dispatching of a frame
+	 * @throws APIException
+	 */
+	@Test
+	public void testDispatch() throws APIException {
+		final List<ExecutedTrade> trades = new ArrayList<>();
+		final IntKeyTable<ChannelDispatcher> table = new IntKeyTable<>();
+		table.put(42, buildDispatcher(trades));
+		
+		final ChannelFrameTokenizer tokenizer = new ChannelFrameTokenizer();
+		tokenizer.reset("[42,\"te\",[190631057,1518037080162,0.007,8175.9]]");
+		tokenizer.beginArray();
+		final ChannelDispatcher dispatcher = table.get(tokenizer.nextInt());
+		Assert.assertTrue(tokenizer.isNextString("te"));
+		tokenizer.skipValue();
+		dispatcher.dispatch(tokenizer);
+		
+		Assert.assertEquals(1, trades.size());
+		Assert.assertEquals(190631057, trades.get(0).getId());
+	}
+
+	/**
+	 * Build a dispatcher for executed trades
+	 * @param trades
+	 * @return
+	 */
+	private ChannelDispatcher buildDispatcher(final List<ExecutedTrade> trades) {
+		final BitfinexExecutedTradeSymbol symbol 
+			= new BitfinexExecutedTradeSymbol(BitfinexCurrencyPair.of("BTC", "USD"));
+		
+		final ExecutedTradeHandler handler = new ExecutedTradeHandler();
+		handler.onExecutedTradeEvent((s, t) -> trades.addAll(t));
+		
+		return new ChannelDispatcher(symbol, handler, new SubscribeTradesCommand(symbol));
+	}
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.LongIntHashMap;
+
+public class LongIntHashMapTest {
+
+	/**
+	 * Test put, get and remove
+	 */
+	@Test
+	public void testPutGetRemove() {
+		final LongIntHashMap map = new LongIntHashMap(2);
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.get(1));
+		
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.put(1, 10));
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.put(-5, 20));
+		Assert.assertEquals(10, map.put(1, 11));
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals(11, map.get(1));
+		Assert.assertEquals(20, map.get(-5));
+		
+		Assert.assertEquals(11, map.remove(1));
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.remove(1));
+		Assert.assertEquals(1, map.size());
+		
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertEquals(LongIntHashMap.NO_VALUE, map.get(-5));
+	}
+	
+	/**
+	 * Compare the map with a java.util.HashMap (resize and backward shift deletion)
+	 */
+	@Test
+	public void testRandomOperations() {
+		final LongIntHashMap map = new LongIntHashMap(4);
+		final Map<Long, Integer> expected = new HashMap<>();
+		final Random random = new Random(42);
+		
+		for(int i = 0; i < 100_000; i++) {
+			final long key = random.nextInt(2_000) * 1_000_003L;
+			
+			if(random.nextInt(3) == 0) {
+				final Integer oldValue = expected.remove(key);
+				Assert.assertEquals(oldValue == null ? LongIntHashMap.NO_VALUE : oldValue.intValue(), map.remove(key));
+			} else {
+				final Integer oldValue = expected.put(key, i);
+				Assert.assertEquals(oldValue == null ? LongIntHashMap.NO_VALUE : oldValue.intValue(), map.put(key, i));
+			}
+		}
+		
+		Assert.assertEquals(expected.size(), map.size());
+		
+		for(final Map.Entry<Long, Integer> entry : expected.entrySet()) {
+			Assert.assertEquals(entry.getValue().intValue(), map.get(entry.getKey()));
+		}
+	}
+	
+	/**
+	 * Negative values are not allowed
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testNegativeValue() {
+		new LongIntHashMap(4).put(1, -1);
+	}
+}
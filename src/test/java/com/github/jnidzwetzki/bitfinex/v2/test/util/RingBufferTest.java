@@ -0,0 +1,219 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.OverflowPolicy;
+import com.github.jnidzwetzki.bitfinex.v2.util.RingBuffer;
+import com.github.jnidzwetzki.bitfinex.v2.util.WaitStrategy;
+
+public class RingBufferTest {
+
+	/**
+	 * Every consumer receives every message in order
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=10000)
+	public void testMultipleConsumers() throws InterruptedException {
+		final int messages = 1000;
+		
+		for(final WaitStrategy waitStrategy : WaitStrategy.values()) {
+			final List<Integer> received1 = new ArrayList<>();
+			final List<Integer> received2 = new ArrayList<>();
+			final CountDownLatch latch = new CountDownLatch(2);
+			
+			final RingBuffer<Integer> ringBuffer = new RingBuffer<>(16, waitStrategy, OverflowPolicy.BLOCK);
+			ringBuffer.addConsumer("consumer-1", m -> {
+				received1.add(m);
+				if(m == messages - 1) {
+					latch.countDown();
+				}
+			});
+			ringBuffer.addConsumer("consumer-2", m -> {
+				received2.add(m);
+				if(m == messages - 1) {
+					latch.countDown();
+				}
+			});
+			ringBuffer.start();
+			
+			for(int i = 0; i < messages; i++) {
+				ringBuffer.publish(i);
+			}
+			
+			latch.await();
+			ringBuffer.close();
+			
+			Assert.assertEquals(messages, received1.size());
+			Assert.assertEquals(received1, received2);
+			
+			for(int i = 0; i < messages; i++) {
+				Assert.assertEquals(i, received1.get(i).intValue());
+			}
+			
+			Assert.assertEquals(0, ringBuffer.getDroppedMessages());
+		}
+	}
+	
+	/**
+	 * A slow consumer skips the overwritten messages
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=10000)
+	public void testDropOldest() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final List<Integer> received = new CopyOnWriteArrayList<>();
+		
+		final RingBuffer<Integer> ringBuffer = new RingBuffer<>(4, WaitStrategy.YIELD, OverflowPolicy.DROP_OLDEST);
+		ringBuffer.addConsumer("consumer", m -> {
+			received.add(m);
+			awaitQuietly(release);
+			if(m == 99) {
+				done.countDown();
+			}
+		});
+		ringBuffer.start();
+		
+		// The producer never blocks
+		for(int i = 0; i < 100; i++) {
+			ringBuffer.publish(i);
+		}
+		
+		release.countDown();
+		done.await();
+		ringBuffer.close();
+		
+		Assert.assertEquals(100, received.size() + ringBuffer.getDroppedMessages());
+		Assert.assertTrue(ringBuffer.getDroppedMessages() > 0);
+		
+		for(int i = 1; i < received.size(); i++) {
+			Assert.assertTrue(received.get(i - 1) < received.get(i));
+		}
+	}
+	
+	/**
+	 * Messages with the same key are conflated while the buffer is full
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=10000)
+	public void testConflate() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final List<String> received = new CopyOnWriteArrayList<>();
+		
+		final RingBuffer<String> ringBuffer = new RingBuffer<>(4, WaitStrategy.PARK, OverflowPolicy.CONFLATE, 
+				m -> m.contains(":") ? m.charAt(0) : RingBuffer.NO_CONFLATION_KEY);
+		
+		ringBuffer.addConsumer("consumer", m -> {
+			received.add(m);
+			awaitQuietly(release);
+			if("end".equals(m)) {
+				done.countDown();
+			}
+		});
+		ringBuffer.start();
+		
+		ringBuffer.publish("a:1");
+		ringBuffer.publish("b:1");
+		ringBuffer.publish("c:1");
+		ringBuffer.publish("d:1");
+		
+		// Buffer is full
+		ringBuffer.publish("t:1");
+		ringBuffer.publish("t:2");
+		ringBuffer.publish("t:3");
+		
+		release.countDown();
+		ringBuffer.publish("end");
+		
+		done.await();
+		ringBuffer.close();
+		
+		Assert.assertEquals(Arrays.asList("a:1", "b:1", "c:1", "d:1", "t:3", "end"), received);
+		Assert.assertEquals(2, ringBuffer.getConflatedMessages());
+	}
+	
+	/**
+	 * The conflated messages are published when the consumer frees up slots, 
+	 * without a further message of the producer
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=10000)
+	public void testConflateFlushByConsumer() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final List<String> received = new CopyOnWriteArrayList<>();
+		
+		final RingBuffer<String> ringBuffer = new RingBuffer<>(2, WaitStrategy.PARK, OverflowPolicy.CONFLATE, 
+				m -> m.charAt(0));
+		
+		ringBuffer.addConsumer("consumer", m -> {
+			received.add(m);
+			awaitQuietly(release);
+			if("t:3".equals(m)) {
+				done.countDown();
+			}
+		});
+		ringBuffer.start();
+		
+		ringBuffer.publish("a:1");
+		ringBuffer.publish("b:1");
+		
+		// Buffer is full
+		ringBuffer.publish("t:1");
+		ringBuffer.publish("t:2");
+		ringBuffer.publish("t:3");
+		
+		release.countDown();
+		done.await();
+		ringBuffer.close();
+		
+		Assert.assertEquals(Arrays.asList("a:1", "b:1", "t:3"), received);
+		Assert.assertEquals(2, ringBuffer.getConflatedMessages());
+	}
+	
+	/**
+	 * Test the capacity check
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new RingBuffer<String>(12, WaitStrategy.PARK, OverflowPolicy.BLOCK);
+	}
+	
+	/**
+	 * Wait for the latch
+	 * @param latch
+	 */
+	private static void awaitQuietly(final CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.manager.BiConsumerCallbackManager;
+import com.github.jnidzwetzki.bitfinex.v2.util.StripedExecutor;
+
+public class StripedExecutorTest {
+
+	/**
+	 * The tasks of a key are executed in order on the same thread
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=10000)
+	public void testKeyAffinity() throws InterruptedException {
+		final StripedExecutor executor = new StripedExecutor(4);
+		final Map<String, List<Integer>> results = new ConcurrentHashMap<>();
+		final Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+		
+		for(int i = 0; i < 1000; i++) {
+			final String key = "key" + (i % 10);
+			final int value = i;
+			executor.execute(key, () -> {
+				results.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+				threads.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+			});
+		}
+		
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		Assert.assertTrue(executor.isTerminated());
+		
+		Assert.assertEquals(10, results.size());
+		threads.values().forEach(t -> Assert.assertEquals(1, t.size()));
+		
+		for(final List<Integer> values : results.values()) {
+			Assert.assertEquals(100, values.size());
+			
+			for(int i = 1; i < values.size(); i++) {
+				Assert.assertEquals(values.get(i - 1) + 10, values.get(i).intValue());
+			}
+		}
+	}
+	
+	/**
+	 * The events of a symbol are delivered in order by the callback manager
+	 * @throws InterruptedException 
+	 * @throws APIException 
+	 */
+	@Test(timeout=10000)
+	public void testCallbackManagerOrder() throws InterruptedException, APIException {
+		final StripedExecutor executor = new StripedExecutor(3);
+		final BiConsumerCallbackManager<String, Integer> callbackManager 
+			= new BiConsumerCallbackManager<>(executor, Mockito.mock(BitfinexApiBroker.class));
+		
+		final Map<String, List<Integer>> results = new ConcurrentHashMap<>();
+		
+		for(int i = 0; i < 5; i++) {
+			final String symbol = "symbol" + i;
+			callbackManager.registerCallback(symbol, (s, e) -> {
+				results.computeIfAbsent(s, k -> new ArrayList<>()).add(e);
+			});
+			
+			// A failing callback does not affect the other callbacks
+			callbackManager.registerCallback(symbol, (s, e) -> {
+				throw new IllegalStateException("Failing callback");
+			});
+		}
+		
+		for(int i = 0; i < 500; i++) {
+			callbackManager.handleEvent("symbol" + (i % 5), i);
+		}
+		
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		
+		Assert.assertEquals(5, results.size());
+		for(final List<Integer> values : results.values()) {
+			Assert.assertEquals(100, values.size());
+			
+			for(int i = 1; i < values.size(); i++) {
+				Assert.assertTrue(values.get(i - 1) < values.get(i));
+			}
+		}
+	}
+	
+	/**
+	 * Test the stripe selection
+	 */
+	@Test
+	public void testStripes() {
+		final StripedExecutor executor = new StripedExecutor(5);
+		
+		try {
+			Assert.assertEquals(5, executor.getNumberOfStripes());
+			
+			for(int i = -100; i < 100; i++) {
+				final int stripe = executor.getStripe(i);
+				Assert.assertTrue(stripe >= 0 && stripe < 5);
+				Assert.assertEquals(stripe, executor.getStripe(i));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
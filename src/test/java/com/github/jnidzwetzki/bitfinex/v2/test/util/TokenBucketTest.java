@@ -0,0 +1,58 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.bitfinex.v2.test.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.bitfinex.v2.util.TokenBucket;
+
+public class TokenBucketTest {
+
+	/**
+	 * Test the burst and the refill
+	 */
+	@Test
+	public void testRateLimit() {
+		final long start = TimeUnit.SECONDS.toNanos(100);
+		final long interval = TimeUnit.MILLISECONDS.toNanos(100);
+		final TokenBucket bucket = new TokenBucket(3, 10, start);
+		
+		Assert.assertEquals(3, bucket.getAvailableTokens(start));
+		Assert.assertTrue(bucket.tryAcquire(start));
+		Assert.assertTrue(bucket.tryAcquire(start));
+		Assert.assertTrue(bucket.tryAcquire(start));
+		Assert.assertFalse(bucket.tryAcquire(start));
+		Assert.assertEquals(0, bucket.getAvailableTokens(start));
+		Assert.assertEquals(interval, bucket.getWaitNanos(start));
+		
+		// One token after 100 ms
+		Assert.assertTrue(bucket.tryAcquire(start + interval));
+		Assert.assertFalse(bucket.tryAcquire(start + interval));
+		
+		// The bucket holds no more than 3 tokens
+		final long later = start + TimeUnit.SECONDS.toNanos(10);
+		Assert.assertEquals(3, bucket.getAvailableTokens(later));
+		Assert.assertTrue(bucket.tryAcquire(later));
+		Assert.assertTrue(bucket.tryAcquire(later));
+		Assert.assertTrue(bucket.tryAcquire(later));
+		Assert.assertFalse(bucket.tryAcquire(later));
+	}
+}